@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.tools.jmx;
+
+import com.google.inject.spi.ProvisionMetrics;
+
+class ManagedBindingMetrics implements ManagedBindingMetricsMBean {
+
+  final ProvisionMetrics metrics;
+
+  ManagedBindingMetrics(ProvisionMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  public long getProvisionCount() {
+    return metrics.getProvisionCount();
+  }
+
+  public long getCreationCount() {
+    return metrics.getCreationCount();
+  }
+
+  public long getMeanCreationNanos() {
+    return metrics.getMeanCreationNanos();
+  }
+
+  public long[] getCreationHistogram() {
+    return metrics.getCreationHistogram();
+  }
+
+  public long getScopeWaitCount() {
+    return metrics.getScopeWaitCount();
+  }
+
+  public long getScopeWaitNanos() {
+    return metrics.getScopeWaitNanos();
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.tools.jmx;
+
+/**
+ * JMX interface to the provisioning metrics of a binding. Metrics are only collected by injectors
+ * created with {@code -Dguice.metrics=true}.
+ */
+public interface ManagedBindingMetricsMBean {
+
+  /**
+   * Gets the number of times the binding was provisioned.
+   */
+  long getProvisionCount();
+
+  /**
+   * Gets the number of instances that the binding created, before scoping.
+   */
+  long getCreationCount();
+
+  /**
+   * Gets the mean time to create an instance, in nanoseconds, of the creations that were timed.
+   */
+  long getMeanCreationNanos();
+
+  /**
+   * Gets the number of timed creations by duration. Bucket {@code i} counts creations that took
+   * less than 2<sup>i</sup> nanoseconds, and more than the previous bucket's bound.
+   */
+  long[] getCreationHistogram();
+
+  /**
+   * Gets the number of times a thread waited to enter the binding's scope.
+   */
+  long getScopeWaitCount();
+
+  /**
+   * Gets the total time that threads waited to enter the binding's scope, in nanoseconds.
+   */
+  long getScopeWaitNanos();
+}
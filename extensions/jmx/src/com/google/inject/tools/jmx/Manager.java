@@ -21,6 +21,8 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.inject.Module;
+import com.google.inject.spi.Diagnostics;
+import com.google.inject.spi.ProvisionMetrics;
 import java.lang.annotation.Annotation;
 import java.lang.management.ManagementFactory;
 import javax.management.MBeanServer;
@@ -47,6 +49,8 @@ public class Manager {
   /**
    * Registers all the bindings of an Injector with the given MBean server.
    * Consider using the name of your root {@link Module} class as the domain.
+   * If the injector collects provisioning metrics, they're registered for
+   * each binding too, with the additional property {@code metrics=provision}.
    */
   public static void manage(MBeanServer server, String domain,
       Injector injector) {
@@ -73,6 +77,12 @@ public class Manager {
       try {
         server.registerMBean(new ManagedBinding(binding),
             new ObjectName(name.toString()));
+
+        ProvisionMetrics metrics = Diagnostics.getProvisionMetrics(binding);
+        if (metrics != null) {
+          server.registerMBean(new ManagedBindingMetrics(metrics),
+              new ObjectName(name + ",metrics=provision"));
+        }
       }
       catch (MalformedObjectNameException e) {
         throw new RuntimeException("Bad object name: "
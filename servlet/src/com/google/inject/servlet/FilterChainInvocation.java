@@ -21,6 +21,7 @@ import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * A Filter chain impl which basically passes itself to the "current" filter and iterates the chain
@@ -36,28 +37,41 @@ import javax.servlet.ServletResponse;
  */
 class FilterChainInvocation implements FilterChain {
   private final List<FilterDefinition> filterDefinitions;
+  private final ManagedFilterPipeline filterPipeline;
   private final FilterChain proceedingChain;
   private final ManagedServletPipeline servletPipeline;
 
   //state variable tracks current link in filterchain
   private int index = -1;
 
+  // the filters that match the servlet path they were last looked up for, and the next one to run
+  private String matchedPath;
+  private int[] filters;
+  private int next;
+
   public FilterChainInvocation(List<FilterDefinition> filterDefinitions,
-      ManagedServletPipeline servletPipeline, FilterChain proceedingChain) {
+      ManagedFilterPipeline filterPipeline, ManagedServletPipeline servletPipeline,
+      FilterChain proceedingChain) {
 
     this.filterDefinitions = filterDefinitions;
+    this.filterPipeline = filterPipeline;
     this.servletPipeline = servletPipeline;
     this.proceedingChain = proceedingChain;
   }
 
   public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse)
       throws IOException, ServletException {
-    index++;
 
-    //dispatch down the chain while there are more filters
-    if (index < filterDefinitions.size()) {
+    //find the next filter that matches, if there are any more filters
+    if (index + 1 < filterDefinitions.size()) {
+      lookUpFilters(((HttpServletRequest) servletRequest).getServletPath());
+    }
+
+    if (filters != null && next < filters.length) {
+      index = filters[next++];
       filterDefinitions.get(index).doFilter(servletRequest, servletResponse, this);
     } else {
+      index = filterDefinitions.size();
 
       //we've reached the end of the filterchain, let's try to dispatch to a servlet
       final boolean serviced = servletPipeline.service(servletRequest, servletResponse);
@@ -68,4 +82,22 @@ class FilterChainInvocation implements FilterChain {
       }
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Looks up the filters that match {@code path}. Filters may wrap the request, so the path is
+   * checked at each link, but the filters are only looked up again if it changes. The chain then
+   * continues with the first of them that comes after the current filter.
+   */
+  private void lookUpFilters(String path) {
+    if (filters != null && (path == null ? matchedPath == null : path.equals(matchedPath))) {
+      return;
+    }
+
+    filters = filterPipeline.getFilterChain(path);
+    matchedPath = path;
+    next = 0;
+    while (next < filters.length && filters[next] <= index) {
+      next++;
+    }
+  }
+}
@@ -32,7 +32,6 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
-import javax.servlet.http.HttpServletRequest;
 
 /**
  * An internal representation of a filter definition against a particular URI pattern.
@@ -55,8 +54,8 @@ class FilterDefinition {
     this.initParams = Collections.unmodifiableMap(new HashMap<String, String>(initParams));
   }
 
-  private boolean shouldFilter(String uri) {
-    return patternMatcher.matches(uri);
+  UriPatternMatcher getPatternMatcher() {
+    return patternMatcher;
   }
 
   public void init(final ServletContext servletContext, Injector injector,
@@ -119,20 +118,14 @@ class FilterDefinition {
     }
   }
 
+  /**
+   * Runs the filter. The pipeline has already matched the request's servlet path against this
+   * filter's pattern, so it isn't checked again.
+   */
   public void doFilter(ServletRequest servletRequest,
       ServletResponse servletResponse, FilterChainInvocation filterChainInvocation)
       throws IOException, ServletException {
-
-    final String path = ((HttpServletRequest) servletRequest).getServletPath();
-
-    if (shouldFilter(path)) {
-      filter.get()
-            .doFilter(servletRequest, servletResponse, filterChainInvocation);
-
-    } else {
-      //otherwise proceed down chain anyway
-      filterChainInvocation.doFilter(servletRequest, servletResponse);
-    }
+    filter.get().doFilter(servletRequest, servletResponse, filterChainInvocation);
   }
 
   //VisibleForTesting
@@ -60,6 +60,9 @@ public class GuiceFilter implements Filter {
   static final ThreadLocal<Context> localContext = new ThreadLocal<Context>();
   static volatile FilterPipeline pipeline = new DefaultFilterPipeline();
 
+  /** The request scope slots of the current pipeline. */
+  static volatile RequestScopedObjects.Slots requestSlots = new RequestScopedObjects.Slots();
+
   /** Used to inject the servlets configured via {@link ServletModule} */
   static volatile WeakReference<ServletContext> servletContext =
       new WeakReference<ServletContext>(null);
@@ -88,11 +91,13 @@ public class GuiceFilter implements Filter {
 
     // We overwrite the default pipeline
     GuiceFilter.pipeline = pipeline;
+    requestSlots = new RequestScopedObjects.Slots();
   }
 
   //VisibleForTesting
   static void reset() {
     pipeline = new DefaultFilterPipeline();
+    requestSlots = new RequestScopedObjects.Slots();
   }
 
   public void doFilter(ServletRequest servletRequest,
@@ -104,7 +109,7 @@ public class GuiceFilter implements Filter {
 
     try {
       localContext.set(new Context((HttpServletRequest) servletRequest,
-          (HttpServletResponse) servletResponse));
+          (HttpServletResponse) servletResponse, previous, requestSlots));
 
       //dispatch across the servlet pipeline, ensuring web.xml's filterchain is honored
       filterPipeline.dispatch(servletRequest, servletResponse, filterChain);
@@ -142,9 +147,24 @@ public class GuiceFilter implements Filter {
     final HttpServletRequest request;
     final HttpServletResponse response;
 
-    Context(HttpServletRequest request, HttpServletResponse response) {
+    /**
+     * The context of this request's outermost dispatch. Requests that are forwarded or included
+     * share its request scoped objects.
+     */
+    final Context outermost;
+
+    /** The request scope slots of the outermost dispatch's pipeline. */
+    final RequestScopedObjects.Slots slots;
+
+    /** The request scoped objects, or null if they haven't been looked up yet. */
+    private RequestScopedObjects scoped;
+
+    Context(HttpServletRequest request, HttpServletResponse response, Context enclosing,
+        RequestScopedObjects.Slots slots) {
       this.request = request;
       this.response = response;
+      this.outermost = enclosing != null ? enclosing.outermost : this;
+      this.slots = enclosing != null ? enclosing.slots : slots;
     }
 
     HttpServletRequest getRequest() {
@@ -154,6 +174,36 @@ public class GuiceFilter implements Filter {
     HttpServletResponse getResponse() {
       return response;
     }
+
+    /** Returns the request scoped object in {@code slot}, or null if there isn't one yet. */
+    Object getScoped(int slot) {
+      RequestScopedObjects scoped = getScopedObjects(false);
+      return scoped != null ? scoped.get(slot) : null;
+    }
+
+    void setScoped(int slot, Object value) {
+      getScopedObjects(true).set(slot, value);
+    }
+
+    /**
+     * Returns the request scoped objects of the outermost dispatch. They're kept in a request
+     * attribute, so that a dispatch made after an earlier one returned, such as an error dispatch,
+     * finds the same objects.
+     */
+    private RequestScopedObjects getScopedObjects(boolean create) {
+      Context outermost = this.outermost;
+      RequestScopedObjects scoped = outermost.scoped;
+      if (scoped == null) {
+        HttpServletRequest request = outermost.request;
+        scoped = (RequestScopedObjects) request.getAttribute(RequestScopedObjects.ATTRIBUTE);
+        if (scoped == null && create) {
+          scoped = new RequestScopedObjects(slots);
+          request.setAttribute(RequestScopedObjects.ATTRIBUTE, scoped);
+        }
+        outermost.scoped = scoped;
+      }
+      return scoped;
+    }
   }
 
   public void init(FilterConfig filterConfig) throws ServletException {
@@ -25,10 +25,13 @@ import com.google.inject.TypeLiteral;
 import com.google.inject.internal.Lists;
 import com.google.inject.internal.Maps;
 import com.google.inject.internal.Sets;
+import com.google.inject.servlet.UriPatternType.ServletStyleUriPatternMatcher;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.RequestDispatcher;
@@ -47,7 +50,23 @@ import javax.servlet.http.HttpServletRequestWrapper;
  */
 @Singleton
 class ManagedFilterPipeline implements FilterPipeline{
+  /**
+   * The most servlet paths whose filter chains are cached. Once the cache is full, each new path
+   * replaces one that hasn't been used since the cache last looked at it.
+   */
+  static final int MAX_CACHED_FILTER_CHAINS = 1024;
+
+  private static final int[] NO_FILTERS = new int[0];
+
   private final List<FilterDefinition> filterDefinitions;
+  private final UriDispatchTable filterTable;
+
+  // the chain of every absolute path, if every filter is mapped to /*, or null
+  private final int[] everyFilter;
+
+  // the indices of the filters that match recently dispatched servlet paths, in order
+  private final FilterChainCache filterChains = new FilterChainCache(MAX_CACHED_FILTER_CHAINS);
+
   private final ManagedServletPipeline servletPipeline;
   private final Provider<ServletContext> servletContext;
 
@@ -67,6 +86,133 @@ class ManagedFilterPipeline implements FilterPipeline{
     this.servletContext = servletContext;
 
     this.filterDefinitions = Collections.unmodifiableList(collectFilterDefinitions(injector));
+
+    List<UriPatternMatcher> patternMatchers = Lists.newArrayList();
+    boolean everyFilterMatchesAbsolutePaths = true;
+    for (FilterDefinition filterDefinition : filterDefinitions) {
+      patternMatchers.add(filterDefinition.getPatternMatcher());
+      everyFilterMatchesAbsolutePaths &= matchesAbsolutePaths(filterDefinition.getPatternMatcher());
+    }
+    this.filterTable = new UriDispatchTable(patternMatchers);
+
+    if (everyFilterMatchesAbsolutePaths) {
+      everyFilter = new int[filterDefinitions.size()];
+      for (int i = 0; i < everyFilter.length; i++) {
+        everyFilter[i] = i;
+      }
+    } else {
+      everyFilter = null;
+    }
+  }
+
+  /** Returns true if {@code patternMatcher} is the servlet-style pattern {@code /*}. */
+  private static boolean matchesAbsolutePaths(UriPatternMatcher patternMatcher) {
+    if (!(patternMatcher instanceof ServletStyleUriPatternMatcher)) {
+      return false;
+    }
+
+    ServletStyleUriPatternMatcher servletStyle = (ServletStyleUriPatternMatcher) patternMatcher;
+    return servletStyle.getKind() == ServletStyleUriPatternMatcher.Kind.SUFFIX
+        && "/".equals(servletStyle.getPattern());
+  }
+
+  /**
+   * Returns the indices of the filters that match {@code servletPath}, in order. The set of filters
+   * that match a path never changes, so the chains of recently dispatched paths are cached. Callers
+   * must not modify the returned array.
+   */
+  int[] getFilterChain(String servletPath) {
+    if (servletPath == null) {
+      return NO_FILTERS;
+    }
+
+    //when every filter is mapped to /*, every absolute path has the same chain
+    if (everyFilter != null && servletPath.startsWith("/")) {
+      return everyFilter;
+    }
+
+    int[] chain = filterChains.get(servletPath);
+    if (chain != null) {
+      return chain;
+    }
+
+    boolean[] matches = filterTable.matches(servletPath);
+    int length = 0;
+    for (boolean match : matches) {
+      if (match) {
+        length++;
+      }
+    }
+    chain = new int[length];
+    for (int i = 0, j = 0; j < length; i++) {
+      if (matches[i]) {
+        chain[j++] = i;
+      }
+    }
+
+    filterChains.put(servletPath, chain);
+    return chain;
+  }
+
+  /**
+   * Filter chains by servlet path, evicted in the "second chance" (CLOCK) order: the paths are kept
+   * in a ring, and a path that was looked up since the ring's hand last passed it is skipped once.
+   * Lookups don't lock, and only mark their entry as used. Only misses lock, to add a path.
+   */
+  private static final class FilterChainCache {
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    // guarded by this
+    private final String[] paths;
+    private int hand;
+
+    FilterChainCache(int capacity) {
+      paths = new String[capacity];
+    }
+
+    int[] get(String path) {
+      Entry entry = entries.get(path);
+      if (entry == null) {
+        return null;
+      }
+      //only written when clear, so that hot paths don't keep writing to shared memory
+      if (!entry.used) {
+        entry.used = true;
+      }
+      return entry.chain;
+    }
+
+    synchronized void put(String path, int[] chain) {
+      //a concurrent miss may already have added it
+      if (entries.containsKey(path)) {
+        return;
+      }
+
+      //every used path the hand passes is cleared, so this ends within one turn of the ring
+      while (paths[hand] != null) {
+        Entry entry = entries.get(paths[hand]);
+        if (!entry.used) {
+          entries.remove(paths[hand]);
+          break;
+        }
+        entry.used = false;
+        hand = (hand + 1) % paths.length;
+      }
+      paths[hand] = path;
+      entries.put(path, new Entry(chain));
+      hand = (hand + 1) % paths.length;
+    }
+
+    private static final class Entry {
+      final int[] chain;
+
+      //a racy flag; a lost update only costs an early eviction or an extra turn in the cache
+      boolean used;
+
+      Entry(int[] chain) {
+        this.chain = chain;
+      }
+    }
   }
 
   /**
@@ -119,7 +265,7 @@ class ManagedFilterPipeline implements FilterPipeline{
     }
 
     //obtain the servlet pipeline to dispatch against
-    new FilterChainInvocation(filterDefinitions, servletPipeline, proceedingFilterChain)
+    new FilterChainInvocation(filterDefinitions, this, servletPipeline, proceedingFilterChain)
         .doFilter(withDispatcher(request, servletPipeline), response);
 
   }
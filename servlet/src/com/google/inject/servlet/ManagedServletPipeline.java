@@ -35,6 +35,7 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * A wrapping dispatcher for servlets, in much the same way as {@link ManagedFilterPipeline} is for
@@ -45,12 +46,19 @@ import javax.servlet.http.HttpServlet;
 @Singleton
 class ManagedServletPipeline {
   private final List<ServletDefinition> servletDefinitions;
+  private final UriDispatchTable dispatchTable;
   private static final TypeLiteral<List<ServletDefinition>> SERVLET_DEFS =
       new TypeLiteral<List<ServletDefinition>>() {};
 
   @Inject
   public ManagedServletPipeline(Injector injector) {
     this.servletDefinitions = Collections.unmodifiableList(collectServletDefinitions(injector));
+
+    List<UriPatternMatcher> patternMatchers = Lists.newArrayList();
+    for (ServletDefinition servletDefinition : servletDefinitions) {
+      patternMatchers.add(servletDefinition.getPatternMatcher());
+    }
+    this.dispatchTable = new UriDispatchTable(patternMatchers);
   }
 
   boolean hasServletsMapped() {
@@ -88,15 +96,27 @@ class ManagedServletPipeline {
   public boolean service(ServletRequest request, ServletResponse response)
       throws IOException, ServletException {
 
-    //stop at the first matching servlet and service
-    for (ServletDefinition servletDefinition : servletDefinitions) {
-      if (servletDefinition.service(request, response)) {
-        return true;
-      }
+    if (!hasServletsMapped()) {
+      return false;
     }
 
+    //stop at the first matching servlet and service
+    String servletPath = ((HttpServletRequest) request).getServletPath();
+    ServletDefinition servletDefinition = firstMatch(servletPath);
+
     //there was no match...
-    return false;
+    if (servletDefinition == null) {
+      return false;
+    }
+
+    servletDefinition.doService(servletPath, request, response);
+    return true;
+  }
+
+  /** Returns the first servlet definition that serves {@code path}, or null if none do. */
+  private ServletDefinition firstMatch(String path) {
+    int index = dispatchTable.firstMatch(path);
+    return index != -1 ? servletDefinitions.get(index) : null;
   }
 
   public void destroy() {
@@ -112,32 +132,31 @@ class ManagedServletPipeline {
    * the given path or null if no mapping was found.
    */
   RequestDispatcher getRequestDispatcher(String path) {
-    for (final ServletDefinition servletDefinition : servletDefinitions) {
-      if (servletDefinition.shouldServe(path)) {
-        return new RequestDispatcher() {
+    final ServletDefinition servletDefinition = firstMatch(path);
+    if (servletDefinition != null) {
+      return new RequestDispatcher() {
 
-          public void forward(ServletRequest servletRequest, ServletResponse servletResponse)
-              throws ServletException, IOException {
+        public void forward(ServletRequest servletRequest, ServletResponse servletResponse)
+            throws ServletException, IOException {
 
-            Preconditions.checkState(!servletResponse.isCommitted(),
-                "Response has been committed--you can only call forward before"
-                + " committing the response (hint: don't flush buffers)");
+          Preconditions.checkState(!servletResponse.isCommitted(),
+              "Response has been committed--you can only call forward before"
+              + " committing the response (hint: don't flush buffers)");
 
-            // clear buffer before forwarding
-            servletResponse.resetBuffer();
+          // clear buffer before forwarding
+          servletResponse.resetBuffer();
 
-            // now dispatch to the servlet
-            servletDefinition.doService(servletRequest, servletResponse);
-          }
+          // now dispatch to the servlet
+          servletDefinition.doService(servletRequest, servletResponse);
+        }
 
-          public void include(ServletRequest servletRequest, ServletResponse servletResponse)
-              throws ServletException, IOException {
+        public void include(ServletRequest servletRequest, ServletResponse servletResponse)
+            throws ServletException, IOException {
 
-            // route to the target servlet
-            servletDefinition.doService(servletRequest, servletResponse);
-          }
-        };
-      }
+          // route to the target servlet
+          servletDefinition.doService(servletRequest, servletResponse);
+        }
+      };
     }
 
     //otherwise, can't process
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.servlet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The request scoped objects of one request, indexed by the slots that {@link Slots} assigns. The
+ * holder is kept in a single request attribute, so that later dispatches of the same request, such
+ * as error dispatches, see the same objects. A request is handled by one thread at a time, so
+ * nothing here is locked.
+ */
+final class RequestScopedObjects {
+
+  /** The name of the request attribute that holds the request scoped objects. */
+  static final String ATTRIBUTE = RequestScopedObjects.class.getName();
+
+  private Object[] objects;
+
+  /** Creates a holder with room for every slot assigned so far. */
+  RequestScopedObjects(Slots slots) {
+    objects = new Object[slots.size()];
+  }
+
+  /** Returns the object in {@code slot}, or null if there isn't one yet. */
+  Object get(int slot) {
+    return slot < objects.length ? objects[slot] : null;
+  }
+
+  void set(int slot, Object value) {
+    // only a binding first used during this request has a slot beyond the end
+    if (slot >= objects.length) {
+      Object[] grown = new Object[slot + 1];
+      System.arraycopy(objects, 0, grown, 0, objects.length);
+      objects = grown;
+    }
+    objects[slot] = value;
+  }
+
+  /**
+   * Assigns each request scoped binding a slot the first time it's used with a filter pipeline.
+   * Every pipeline gets new slots, so they're numbered densely from zero, and slots of discarded
+   * injectors go away with their pipelines.
+   */
+  static final class Slots {
+    private final ConcurrentMap<Object, Integer> slots = new ConcurrentHashMap<Object, Integer>();
+
+    /** Returns the slot of {@code binding}, assigning the next one if it doesn't have one yet. */
+    int slotOf(Object binding) {
+      Integer slot = slots.get(binding);
+      if (slot != null) {
+        return slot;
+      }
+
+      synchronized (this) {
+        slot = slots.get(binding);
+        if (slot == null) {
+          slot = slots.size();
+          slots.put(binding, slot);
+        }
+        return slot;
+      }
+    }
+
+    /** Returns the number of slots assigned so far. */
+    int size() {
+      return slots.size();
+    }
+  }
+
+  /** A binding's slot among the {@link Slots} of the pipeline it was last used with. */
+  static final class Slot {
+    final Slots slots;
+    final int index;
+
+    Slot(Slots slots, int index) {
+      this.slots = slots;
+      this.index = index;
+    }
+  }
+}
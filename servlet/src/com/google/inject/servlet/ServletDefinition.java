@@ -58,8 +58,8 @@ class ServletDefinition {
     this.initParams = Collections.unmodifiableMap(new HashMap<String, String>(initParams));
   }
 
-  boolean shouldServe(String uri) {
-    return patternMatcher.matches(uri);
+  UriPatternMatcher getPatternMatcher() {
+    return patternMatcher;
   }
 
   public void init(final ServletContext servletContext, Injector injector,
@@ -122,98 +122,137 @@ class ServletDefinition {
   }
 
   /**
-   * Wrapper around the service chain to ensure a servlet is servicing what it must and provides it
-   * with a wrapped request.
-   *
-   * @return Returns true if this servlet triggered for the given request. Or false if
-   *          guice-servlet should continue dispatching down the servlet pipeline.
-   * 
-   * @throws IOException If thrown by underlying servlet
-   * @throws ServletException If thrown by underlying servlet
+   * Utility that delegates to the actual service method of the servlet wrapped with a contextual
+   * request (i.e. with correctly computed path info). This is used by request dispatchers, whose
+   * servlets may never ask for the paths, so they're computed when they're first asked for.
    */
-  public boolean service(ServletRequest servletRequest,
-      ServletResponse servletResponse) throws IOException, ServletException {
+  void doService(ServletRequest servletRequest, ServletResponse servletResponse)
+      throws ServletException, IOException {
+    httpServlet.get().service(new PathsRequestWrapper((HttpServletRequest) servletRequest),
+        servletResponse);
+  }
 
-    final boolean serve = shouldServe(((HttpServletRequest) servletRequest).getServletPath());
+  /**
+   * Like {@link #doService(ServletRequest, ServletResponse)}, for a request whose servlet path has
+   * already been read from the container. The path info is computed up front, and when both paths
+   * are the same as the container's the servlet is given the request itself.
+   */
+  void doService(String containerServletPath, ServletRequest servletRequest,
+      ServletResponse servletResponse) throws ServletException, IOException {
+    HttpServletRequest request = (HttpServletRequest) servletRequest;
 
-    //invocations of the chain end at the first matched servlet
-    if (serve) {
-      doService(servletRequest, servletResponse);
+    String servletPath = computeServletPath(containerServletPath);
+    String pathInfo = computePathInfo(request.getRequestURI(), request.getContextPath().length(),
+        servletPath.length());
+
+    if (!servletPath.equals(containerServletPath) || !equal(pathInfo, request.getPathInfo())) {
+      request = new PathsRequestWrapper(request, servletPath, pathInfo);
     }
 
-    //return false if no servlet matched (so we can proceed down to the web.xml servlets)
-    return serve;
+    httpServlet.get().service(request, servletResponse);
+  }
+
+  private String computeServletPath(String containerServletPath) {
+    String path = patternMatcher.extractPath(containerServletPath);
+    return (null == path) ? containerServletPath : path;
   }
 
   /**
-   * Utility that delegates to the actual service method of the servlet wrapped with a contextual
-   * request (i.e. with correctly computed path info).
+   * Returns the part of {@code requestUri} that follows the context path and the servlet path, with
+   * runs of slashes collapsed to one, as {@code requestUri.substring(contextPathLength)
+   * .replaceAll("[/]{2,}", "/").substring(servletPathLength)} would. Returns null when there's
+   * nothing left after a non-empty servlet path, or when the servlet path is longer than the URI.
+   */
+  static String computePathInfo(String requestUri, int contextPathLength, int servletPathLength) {
+    int length = requestUri.length();
+
+    // skip the servlet path, counting each run of slashes as one character
+    int start = contextPathLength;
+    for (int skipped = 0; skipped < servletPathLength; skipped++) {
+      if (start >= length) {
+        return null;
+      }
+      if (requestUri.charAt(start++) == '/') {
+        while (start < length && requestUri.charAt(start) == '/') {
+          start++;
+        }
+      }
+    }
+
+    if (start >= length) {
+      return servletPathLength != 0 ? null : "";
+    }
+
+    int doubleSlash = requestUri.indexOf("//", start);
+    if (doubleSlash < 0) {
+      return requestUri.substring(start);
+    }
+
+    StringBuilder pathInfo = new StringBuilder(length - start);
+    pathInfo.append(requestUri, start, doubleSlash + 1);
+    for (int i = doubleSlash + 2; i < length; i++) {
+      char c = requestUri.charAt(i);
+      if (c != '/' || requestUri.charAt(i - 1) != '/') {
+        pathInfo.append(c);
+      }
+    }
+    return pathInfo.toString();
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  /**
+   * Presents the servlet path and path info that were computed for a servlet mapping.
    *
    * We need to suppress deprecation coz we use HttpServletRequestWrapper, which implements
    * deprecated API for backwards compatibility.
    */
-  @SuppressWarnings({ "JavaDoc", "deprecation" })
-  void doService(final ServletRequest servletRequest, ServletResponse servletResponse)
-      throws ServletException, IOException {
-
-    //noinspection OverlyComplexAnonymousInnerClass
-    HttpServletRequest request = new HttpServletRequestWrapper(
-        (HttpServletRequest) servletRequest) {
-      private String path;
-      private boolean pathComputed = false;
-      //must use a boolean on the memo field, because null is a legal value (TODO no, it's not)
-
-      private boolean pathInfoComputed = false;
-      private String pathInfo;
-
-      @Override
-      public String getPathInfo() {
-        if (!pathInfoComputed) {
-          final int servletPathLength = getServletPath().length();
-          pathInfo = getRequestURI().substring(getContextPath().length()).replaceAll("[/]{2,}", "/")
-              .substring(servletPathLength);
-
-          // Corner case: when servlet path and request path match exactly (without trailing '/'),
-          // then pathinfo is null
-          if ("".equals(pathInfo) && servletPathLength != 0) {
-            pathInfo = null;
-          }
-
-          pathInfoComputed = true;
-        }
+  @SuppressWarnings("deprecation")
+  private class PathsRequestWrapper extends HttpServletRequestWrapper {
+    private String servletPath;
+    private boolean pathInfoComputed;
+    private String pathInfo;
+
+    /** Computes the paths when they're first asked for. */
+    PathsRequestWrapper(HttpServletRequest request) {
+      super(request);
+    }
 
-        return pathInfo;
-      }
+    PathsRequestWrapper(HttpServletRequest request, String servletPath, String pathInfo) {
+      super(request);
+      this.servletPath = servletPath;
+      this.pathInfo = pathInfo;
+      this.pathInfoComputed = true;
+    }
 
-      @Override
-      public String getServletPath() {
-        return computePath();
+    @Override
+    public String getServletPath() {
+      if (null == servletPath) {
+        servletPath = computeServletPath(super.getServletPath());
       }
 
-      @Override
-      public String getPathTranslated() {
-        final String info = getPathInfo();
+      return servletPath;
+    }
 
-        return (null == info) ? null : getRealPath(info);
+    @Override
+    public String getPathInfo() {
+      if (!pathInfoComputed) {
+        pathInfo = computePathInfo(getRequestURI(), getContextPath().length(),
+            getServletPath().length());
+        pathInfoComputed = true;
       }
 
-      // Memoizer pattern.
-      private String computePath() {
-        if (!pathComputed) {
-          String servletPath = super.getServletPath();
-          path = patternMatcher.extractPath(servletPath);
-          pathComputed = true;
-
-          if (null == path) {
-            path = servletPath;
-          }
-        }
+      return pathInfo;
+    }
 
-        return path;
-      }
-    };
+    @Override
+    public String getPathTranslated() {
+      final String info = getPathInfo();
 
-    httpServlet.get().service(request, servletResponse);
+      return (null == info) ? null : getRealPath(info);
+    }
   }
 
   String getKey() {
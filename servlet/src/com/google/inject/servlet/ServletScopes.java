@@ -26,7 +26,6 @@ import com.google.inject.spi.CachingProvider;
 import com.google.inject.spi.DefaultBindingScopingVisitor;
 import java.lang.annotation.Annotation;
 import java.util.concurrent.atomic.AtomicBoolean;
-import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 /**
@@ -39,23 +38,43 @@ public class ServletScopes {
   private ServletScopes() {}
 
   /**
-   * HTTP servlet request scope.
+   * Use "-Dguice.servlet.request.attributes=true" to also keep request scoped objects in request
+   * attributes named by their keys, so that JSPs can read them. Objects already in these attributes
+   * are then used rather than created.
+   */
+  public static final String REQUEST_ATTRIBUTES_SETTING = "guice.servlet.request.attributes";
+
+  /**
+   * HTTP servlet request scope. Each request scoped binding is assigned a slot the first time it's
+   * used with a filter pipeline, and the request's objects are kept by slot in a single request
+   * attribute. Forwards, includes and later dispatches of the same request, such as error
+   * dispatches, share them.
    */
   public static final Scope REQUEST = new Scope() {
     public <T> Provider<T> scope(Key<T> key, final Provider<T> creator) {
-      final String name = key.toString();
+      final String name = Boolean.getBoolean(REQUEST_ATTRIBUTES_SETTING) ? key.toString() : null;
       return new CachingProvider<T>() {
+        /** This binding's slot in the pipeline it was last used with. */
+        private volatile RequestScopedObjects.Slot slot;
+
         public T get() {
-          HttpServletRequest request = GuiceFilter.getRequest();
-          synchronized (request) {
-            @SuppressWarnings("unchecked")
-            T t = (T) request.getAttribute(name);
+          GuiceFilter.Context context = GuiceFilter.getContext();
+          int slot = slot(context);
+          @SuppressWarnings("unchecked")
+          T t = (T) context.getScoped(slot);
+          if (t == null) {
+            if (name != null) {
+              t = getAttribute(context);
+            }
             if (t == null) {
               t = creator.get();
-              request.setAttribute(name, t);
+              if (name != null) {
+                context.getRequest().setAttribute(name, t);
+              }
             }
-            return t;
+            context.setScoped(slot, t);
           }
+          return t;
         }
 
         public String toString() {
@@ -63,12 +82,24 @@ public class ServletScopes {
         }
 
         public T getCachedValue() {
-          HttpServletRequest request = GuiceFilter.getRequest();
-          synchronized (request) {
-            @SuppressWarnings("unchecked")
-            T t = (T) request.getAttribute(name);
-            return t;
+          GuiceFilter.Context context = GuiceFilter.getContext();
+          @SuppressWarnings("unchecked")
+          T t = (T) context.getScoped(slot(context));
+          return t == null && name != null ? getAttribute(context) : t;
+        }
+
+        private int slot(GuiceFilter.Context context) {
+          RequestScopedObjects.Slot slot = this.slot;
+          if (slot == null || slot.slots != context.slots) {
+            slot = new RequestScopedObjects.Slot(context.slots, context.slots.slotOf(this));
+            this.slot = slot;
           }
+          return slot.index;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T getAttribute(GuiceFilter.Context context) {
+          return (T) context.getRequest().getAttribute(name);
         }
       };
     }
@@ -79,7 +110,8 @@ public class ServletScopes {
   };
 
   /**
-   * HTTP session scope.
+   * HTTP session scope. Each object is kept in the session attribute named by its key. Objects are
+   * read without locking the session, and only created while holding its lock.
    */
   public static final Scope SESSION = new Scope() {
     public <T> Provider<T> scope(Key<T> key, final Provider<T> creator) {
@@ -87,9 +119,16 @@ public class ServletScopes {
       return new CachingProvider<T>() {
         public T get() {
           HttpSession session = GuiceFilter.getRequest().getSession();
+          @SuppressWarnings("unchecked")
+          T t = (T) session.getAttribute(name);
+          if (t != null) {
+            return t;
+          }
+
           synchronized (session) {
             @SuppressWarnings("unchecked")
-            T t = (T) session.getAttribute(name);
+            T existing = (T) session.getAttribute(name);
+            t = existing;
             if (t == null) {
               t = creator.get();
               session.setAttribute(name, t);
@@ -104,11 +143,9 @@ public class ServletScopes {
 
         public T getCachedValue() {
           HttpSession session = GuiceFilter.getRequest().getSession();
-          synchronized (session) {
-            @SuppressWarnings("unchecked")
-            T t = (T) session.getAttribute(name);
-            return t;
-          }
+          @SuppressWarnings("unchecked")
+          T t = (T) session.getAttribute(name);
+          return t;
         }
       };
     }
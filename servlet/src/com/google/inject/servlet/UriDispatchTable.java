@@ -0,0 +1,298 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.servlet;
+
+import com.google.inject.internal.Lists;
+import com.google.inject.internal.Maps;
+import com.google.inject.servlet.UriPatternType.RegexUriPatternMatcher;
+import com.google.inject.servlet.UriPatternType.ServletStyleUriPatternMatcher;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Finds which of a list of URI patterns match a URI without testing each pattern in turn.
+ * Servlet-style literal patterns are looked up in a hash table, and {@code /foo/*} and
+ * {@code *.html} patterns in tries of their prefixes and reversed suffixes, so the cost of matching
+ * them depends on the URI's length rather than on the number of patterns. Regular expressions are
+ * combined into a single alternation that tries them in order, unless they can't be combined.
+ * Other patterns are tested one by one.
+ *
+ * <p>Patterns are identified by their index in the list. When several match, the first wins.
+ */
+final class UriDispatchTable {
+  private static final int[] NONE = new int[0];
+
+  /** Back references can't be renumbered when patterns are combined. */
+  private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+
+  private final List<UriPatternMatcher> matchers;
+
+  /** Indices of literal patterns, by pattern. */
+  private final Map<String, int[]> literals = Maps.newHashMap();
+
+  /** Indices of {@code /foo/*} patterns, by prefix. */
+  private final Node prefixes = new Node();
+
+  /** Indices of {@code *.html} patterns, by reversed suffix. */
+  private final Node suffixes = new Node();
+
+  /** Indices of regex and other patterns, which are tested by their matchers. */
+  private final int[] tested;
+
+  /** The regular expressions combined, or null if there are none or they can't be combined. */
+  private final Pattern combined;
+  /** The regex pattern indices, in the order of their groups in {@link #combined}. */
+  private final int[] combinedIndices;
+  /** The number of the group that wraps each regex in {@link #combined}. */
+  private final int[] combinedGroups;
+
+  UriDispatchTable(List<? extends UriPatternMatcher> matchers) {
+    this.matchers = Lists.newArrayList(matchers);
+
+    List<Integer> tested = Lists.newArrayList();
+    List<Integer> regexIndices = Lists.newArrayList();
+    List<Pattern> regexes = Lists.newArrayList();
+    for (int i = 0; i < this.matchers.size(); i++) {
+      UriPatternMatcher matcher = this.matchers.get(i);
+      if (matcher instanceof ServletStyleUriPatternMatcher) {
+        ServletStyleUriPatternMatcher servletStyle = (ServletStyleUriPatternMatcher) matcher;
+        String pattern = servletStyle.getPattern();
+        switch (servletStyle.getKind()) {
+          case LITERAL:
+            int[] indices = literals.get(pattern);
+            literals.put(pattern, append(indices != null ? indices : NONE, i));
+            break;
+          case SUFFIX:
+            prefixes.add(pattern, false, i);
+            break;
+          case PREFIX:
+            suffixes.add(pattern, true, i);
+            break;
+        }
+      } else {
+        tested.add(i);
+        if (matcher instanceof RegexUriPatternMatcher) {
+          regexIndices.add(i);
+          regexes.add(((RegexUriPatternMatcher) matcher).getPattern());
+        }
+      }
+    }
+
+    this.tested = toArray(tested);
+    this.combinedIndices = toArray(regexIndices);
+    this.combinedGroups = new int[regexes.size()];
+    this.combined = combine(regexes, combinedGroups);
+  }
+
+  /**
+   * Returns a pattern that matches if any of {@code regexes} match, with each regex wrapped in a
+   * group whose number is stored in {@code groups}. Returns null if there's nothing to combine, or
+   * if the regexes can't be combined, such as when two of them name a group the same or one ends
+   * inside a quote.
+   */
+  private static Pattern combine(List<Pattern> regexes, int[] groups) {
+    if (regexes.size() < 2) {
+      return null;
+    }
+
+    StringBuilder combined = new StringBuilder();
+    int group = 1;
+    for (int i = 0; i < regexes.size(); i++) {
+      String regex = regexes.get(i).pattern();
+      if (BACK_REFERENCE.matcher(regex).find()) {
+        return null;
+      }
+      if (i > 0) {
+        combined.append('|');
+      }
+      combined.append('(').append(regex).append(')');
+      groups[i] = group;
+      group += 1 + regexes.get(i).matcher("").groupCount();
+    }
+    try {
+      return Pattern.compile(combined.toString());
+    } catch (PatternSyntaxException e) {
+      return null;
+    }
+  }
+
+  int size() {
+    return matchers.size();
+  }
+
+  /** Returns the index of the first pattern that matches {@code uri}, or -1 if none do. */
+  int firstMatch(String uri) {
+    if (uri == null) {
+      return -1;
+    }
+
+    int first = Integer.MAX_VALUE;
+    int[] literal = literals.get(uri);
+    if (literal != null) {
+      first = literal[0];
+    }
+    first = prefixes.firstMatch(uri, false, first);
+    first = suffixes.firstMatch(uri, true, first);
+
+    if (combined != null && combinedIndices[0] < first) {
+      Matcher matcher = combined.matcher(uri);
+      if (matcher.matches()) {
+        for (int i = 0; i < combinedGroups.length && combinedIndices[i] < first; i++) {
+          if (matcher.start(combinedGroups[i]) != -1) {
+            first = combinedIndices[i];
+            break;
+          }
+        }
+      }
+    }
+
+    for (int i : tested) {
+      if (i >= first) {
+        break;
+      }
+      UriPatternMatcher matcher = matchers.get(i);
+      // regular expressions were tried together
+      if (combined != null && matcher instanceof RegexUriPatternMatcher) {
+        continue;
+      }
+      if (matcher.matches(uri)) {
+        first = i;
+        break;
+      }
+    }
+
+    return first != Integer.MAX_VALUE ? first : -1;
+  }
+
+  /** Returns whether each pattern matches {@code uri}. */
+  boolean[] matches(String uri) {
+    boolean[] result = new boolean[matchers.size()];
+    if (uri == null) {
+      return result;
+    }
+
+    int[] literal = literals.get(uri);
+    if (literal != null) {
+      for (int i : literal) {
+        result[i] = true;
+      }
+    }
+    prefixes.matches(uri, false, result);
+    suffixes.matches(uri, true, result);
+    for (int i : tested) {
+      result[i] = matchers.get(i).matches(uri);
+    }
+    return result;
+  }
+
+  private static int[] append(int[] indices, int index) {
+    int[] result = new int[indices.length + 1];
+    System.arraycopy(indices, 0, result, 0, indices.length);
+    result[indices.length] = index;
+    return result;
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] result = new int[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = list.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * A trie node. The indices of the patterns that end at a node are kept in increasing order, and
+   * its children are sorted by character.
+   */
+  private static final class Node {
+    char[] chars = new char[0];
+    Node[] children = new Node[0];
+    int[] indices = NONE;
+
+    /** Adds the pattern at {@code index}, reading {@code s} backwards if {@code reverse}. */
+    void add(String s, boolean reverse, int index) {
+      Node node = this;
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(reverse ? s.length() - 1 - i : i);
+        int position = Arrays.binarySearch(node.chars, c);
+        if (position < 0) {
+          position = -position - 1;
+          node.chars = insert(node.chars, position, c);
+          Node[] children = new Node[node.children.length + 1];
+          System.arraycopy(node.children, 0, children, 0, position);
+          System.arraycopy(node.children, position, children, position + 1,
+              node.children.length - position);
+          children[position] = new Node();
+          node.children = children;
+        }
+        node = node.children[position];
+      }
+      node.indices = append(node.indices, index);
+    }
+
+    /** Returns the lowest index of a pattern matching {@code uri}, if lower than {@code first}. */
+    int firstMatch(String uri, boolean reverse, int first) {
+      Node node = this;
+      for (int i = 0; ; i++) {
+        if (node.indices.length > 0 && node.indices[0] < first) {
+          first = node.indices[0];
+        }
+        if (i == uri.length()) {
+          return first;
+        }
+        node = node.child(uri.charAt(reverse ? uri.length() - 1 - i : i));
+        if (node == null) {
+          return first;
+        }
+      }
+    }
+
+    /** Marks the patterns that match {@code uri} in {@code result}. */
+    void matches(String uri, boolean reverse, boolean[] result) {
+      Node node = this;
+      for (int i = 0; ; i++) {
+        for (int index : node.indices) {
+          result[index] = true;
+        }
+        if (i == uri.length()) {
+          return;
+        }
+        node = node.child(uri.charAt(reverse ? uri.length() - 1 - i : i));
+        if (node == null) {
+          return;
+        }
+      }
+    }
+
+    Node child(char c) {
+      int position = Arrays.binarySearch(chars, c);
+      return position >= 0 ? children[position] : null;
+    }
+
+    private static char[] insert(char[] chars, int position, char c) {
+      char[] result = new char[chars.length + 1];
+      System.arraycopy(chars, 0, result, 0, position);
+      result[position] = c;
+      System.arraycopy(chars, position, result, position + 1, chars.length - position);
+      return result;
+    }
+  }
+}
@@ -40,11 +40,15 @@ enum UriPatternType {
    *
    * @author dhanji@gmail.com (Dhanji R. Prasanna)
    */
-  private static class ServletStyleUriPatternMatcher implements UriPatternMatcher {
+  static class ServletStyleUriPatternMatcher implements UriPatternMatcher {
     private final String pattern;
     private final Kind patternKind;
 
-    private static enum Kind { PREFIX, SUFFIX, LITERAL, }
+    /**
+     * The kinds of pattern. {@code PREFIX} patterns like {@code *.html} match the end of a URI, and
+     * {@code SUFFIX} patterns like {@code /foo/*} match its start.
+     */
+    static enum Kind { PREFIX, SUFFIX, LITERAL, }
 
     public ServletStyleUriPatternMatcher(String pattern) {
       if (pattern.startsWith("*")) {
@@ -91,6 +95,15 @@ enum UriPatternType {
       //else treat as literal
       return path;
     }
+
+    Kind getKind() {
+      return patternKind;
+    }
+
+    /** Returns the pattern without its wildcard. */
+    String getPattern() {
+      return pattern;
+    }
   }
 
   /**
@@ -99,7 +112,7 @@ enum UriPatternType {
    *
    * @author dhanji@gmail.com (Dhanji R. Prasanna)
    */
-  private static class RegexUriPatternMatcher implements UriPatternMatcher {
+  static class RegexUriPatternMatcher implements UriPatternMatcher {
     private final Pattern pattern;
 
     public RegexUriPatternMatcher(String pattern) {
@@ -117,5 +130,9 @@ enum UriPatternType {
       }
       return null;
     }
+
+    Pattern getPattern() {
+      return pattern;
+    }
   }
 }
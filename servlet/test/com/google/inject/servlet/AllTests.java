@@ -48,6 +48,9 @@ public class AllTests {
     // Multiple modules tests.
     suite.addTestSuite(MultiModuleDispatchIntegrationTest.class);
 
+    // Dispatch table tests.
+    suite.addTestSuite(UriDispatchTableTest.class);
+
     return suite;
   }
 }
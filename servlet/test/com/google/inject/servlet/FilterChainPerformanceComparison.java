@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.servlet;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * A microbenchmark of {@link ManagedFilterPipeline#getFilterChain(String)} on several threads. It
+ * compares the concurrent cache with the original, an access-ordered map that every lookup locked.
+ */
+public class FilterChainPerformanceComparison {
+
+  private static final int LOOKUPS = 2000000;
+  private static final String[] PATHS
+      = { "/index.html", "/thing/stuff.html", "/images/logo.png", "/thing/index.jsp" };
+
+  public static void main(String[] args) throws Exception {
+    Injector injector = Guice.createInjector(new ServletModule() {
+      @Override protected void configureServlets() {
+        filter("/*").through(NoopFilter.class);
+        filter("*.html").through(NoopFilter.class);
+        filter("/thing/*").through(Key.get(NoopFilter.class));
+      }
+    });
+    final ManagedFilterPipeline pipeline
+        = (ManagedFilterPipeline) injector.getInstance(FilterPipeline.class);
+    final OriginalCache original = new OriginalCache(pipeline);
+
+    Lookup current = new Lookup() {
+      public int[] get(String path) {
+        return pipeline.getFilterChain(path);
+      }
+    };
+
+    for (int i = 0; i < 5; i++) {
+      for (int threads = 1; threads <= 8; threads *= 2) {
+        run(original, threads, "Original, " + threads + " threads: ");
+        run(current, threads, "Current, " + threads + " threads:  ");
+      }
+      System.err.println();
+    }
+  }
+
+  interface Lookup {
+    int[] get(String path);
+  }
+
+  static void run(final Lookup lookup, int threads, String label) throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threads);
+    final int[] sink = new int[threads];
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      new Thread() {
+        @Override public void run() {
+          try {
+            start.await();
+            int length = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+              length += lookup.get(PATHS[i & 3]).length;
+            }
+            sink[thread] = length;
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+
+    long startNanos = System.nanoTime();
+    start.countDown();
+    done.await();
+    long time = System.nanoTime() - startNanos;
+    if (sink[0] == 42) {
+      System.err.print(""); // keep the lookups from being eliminated
+    }
+    System.err.println(label + (time / ((long) LOOKUPS * threads)) + "ns per lookup");
+  }
+
+  /** The original cache, which locked an access-ordered map for every lookup. */
+  static class OriginalCache implements Lookup {
+    private final ManagedFilterPipeline pipeline;
+    private final Map<String, int[]> filterChains
+        = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+          @Override protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > ManagedFilterPipeline.MAX_CACHED_FILTER_CHAINS;
+          }
+        };
+
+    OriginalCache(ManagedFilterPipeline pipeline) {
+      this.pipeline = pipeline;
+    }
+
+    public int[] get(String path) {
+      int[] chain;
+      synchronized (filterChains) {
+        chain = filterChains.get(path);
+      }
+      if (chain != null) {
+        return chain;
+      }
+
+      chain = pipeline.getFilterChain(path);
+      synchronized (filterChains) {
+        filterChains.put(path, chain);
+      }
+      return chain;
+    }
+  }
+
+  @com.google.inject.Singleton
+  static class NoopFilter implements Filter {
+    public void init(FilterConfig filterConfig) {}
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+        throws IOException {}
+
+    public void destroy() {}
+  }
+}
@@ -96,8 +96,6 @@ public class FilterDefinitionTest extends TestCase {
         .andReturn(mockFilter)
         .anyTimes();
 
-    expect(request.getServletPath()).andReturn("/index.html");
-
     replay(injector, request);
 
     String pattern = "/*";
@@ -112,7 +110,7 @@ public class FilterDefinitionTest extends TestCase {
     assert mockFilter.isInit() : "Init did not fire";
 
     final boolean proceed[] = new boolean[1];
-    filterDef.doFilter(request, null, new FilterChainInvocation(null, null, null) {
+    filterDef.doFilter(request, null, new FilterChainInvocation(null, null, null, null) {
       public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse)
           throws IOException, ServletException {
 
@@ -151,8 +149,6 @@ public class FilterDefinitionTest extends TestCase {
         .andReturn(mockFilter)
         .anyTimes();
 
-    expect(request.getServletPath()).andReturn("/index.html");
-
     replay(injector, request);
 
     String pattern = "/*";
@@ -167,7 +163,7 @@ public class FilterDefinitionTest extends TestCase {
     assert mockFilter.isInit() : "Init did not fire";
 
     final boolean proceed[] = new boolean[1];
-    filterDef.doFilter(request, null, new FilterChainInvocation(null, null, null) {
+    filterDef.doFilter(request, null, new FilterChainInvocation(null, null, null, null) {
       public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse)
           throws IOException, ServletException {
         proceed[0] = true;
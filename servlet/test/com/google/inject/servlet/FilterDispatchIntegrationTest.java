@@ -11,6 +11,7 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
 import java.io.IOException;
+import java.util.Arrays;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -18,6 +19,7 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import junit.framework.TestCase;
 
 
@@ -154,6 +156,142 @@ public class FilterDispatchIntegrationTest extends TestCase {
         + "; destroys: " + destroys;
   }
 
+  public final void testFilterChainsAreCachedPerServletPath() {
+    final Injector injector = Guice.createInjector(new ServletModule() {
+
+      @Override
+      protected void configureServlets() {
+        filter("/*").through(TestFilter.class);
+        filter("*.html").through(TestFilter.class);
+        filterRegex("/[a-z]+\\.html").through(Key.get(TestFilter.class));
+      }
+    });
+
+    ManagedFilterPipeline pipeline
+        = (ManagedFilterPipeline) injector.getInstance(FilterPipeline.class);
+
+    int[] chain = pipeline.getFilterChain("/index.html");
+    assertEquals("[0, 1, 2]", Arrays.toString(chain));
+    assertSame(chain, pipeline.getFilterChain("/index.html"));
+    assertEquals("[0]", Arrays.toString(pipeline.getFilterChain("/index.xml")));
+    assertEquals("[1]", Arrays.toString(pipeline.getFilterChain("index.html")));
+    assertEquals("[]", Arrays.toString(pipeline.getFilterChain(null)));
+  }
+
+  public final void testFilterChainsAreFoundAgainOnceTheCacheIsFull() {
+    final Injector injector = Guice.createInjector(new ServletModule() {
+
+      @Override
+      protected void configureServlets() {
+        filter("/*").through(TestFilter.class);
+        filter("*.html").through(TestFilter.class);
+      }
+    });
+
+    ManagedFilterPipeline pipeline
+        = (ManagedFilterPipeline) injector.getInstance(FilterPipeline.class);
+
+    int[] chain = pipeline.getFilterChain("/index.html");
+    for (int i = 0; i < ManagedFilterPipeline.MAX_CACHED_FILTER_CHAINS; i++) {
+      assertEquals("[0]", Arrays.toString(pipeline.getFilterChain("/" + i)));
+    }
+    int[] found = pipeline.getFilterChain("/index.html");
+    assertNotSame(chain, found);
+    assertEquals("[0, 1]", Arrays.toString(found));
+  }
+
+  public final void testFilterChainsInUseStayCachedWhileManyPathsAreDispatched() {
+    final Injector injector = Guice.createInjector(new ServletModule() {
+
+      @Override
+      protected void configureServlets() {
+        filter("/*").through(TestFilter.class);
+        filter("*.html").through(TestFilter.class);
+      }
+    });
+
+    ManagedFilterPipeline pipeline
+        = (ManagedFilterPipeline) injector.getInstance(FilterPipeline.class);
+
+    // as when a crawler requests many distinct paths between requests for a popular page
+    int[] chain = pipeline.getFilterChain("/index.html");
+    for (int i = 0; i < 3 * ManagedFilterPipeline.MAX_CACHED_FILTER_CHAINS; i++) {
+      assertEquals("[0]", Arrays.toString(pipeline.getFilterChain("/" + i)));
+      if (i % 100 == 0) {
+        assertSame(chain, pipeline.getFilterChain("/index.html"));
+      }
+    }
+    assertSame(chain, pipeline.getFilterChain("/index.html"));
+  }
+
+  public final void testFilterChainWhenEveryFilterIsMappedToEverything() {
+    final Injector injector = Guice.createInjector(new ServletModule() {
+
+      @Override
+      protected void configureServlets() {
+        filter("/*").through(TestFilter.class);
+        filter("/*").through(Key.get(TestFilter.class));
+      }
+    });
+
+    ManagedFilterPipeline pipeline
+        = (ManagedFilterPipeline) injector.getInstance(FilterPipeline.class);
+
+    assertEquals("[0, 1]", Arrays.toString(pipeline.getFilterChain("/index.html")));
+    assertSame(pipeline.getFilterChain("/index.html"), pipeline.getFilterChain("/other.html"));
+    assertEquals("[]", Arrays.toString(pipeline.getFilterChain("")));
+  }
+
+  public final void testFiltersAreMatchedAgainWhenAFilterChangesTheServletPath()
+      throws ServletException, IOException {
+    final Injector injector = Guice.createInjector(new ServletModule() {
+
+      @Override
+      protected void configureServlets() {
+        filter("/*").through(RewritingFilter.class);
+        filter("/rewritten/*").through(TestFilter.class);
+
+        // This filter should never fire, as the path no longer matches it
+        filter("/index.html").through(Key.get(TestFilter.class));
+      }
+    });
+
+    final FilterPipeline pipeline = injector.getInstance(FilterPipeline.class);
+    pipeline.initPipeline(null);
+
+    //create ourselves a mock request with test URI
+    HttpServletRequest requestMock = createMock(HttpServletRequest.class);
+
+    expect(requestMock.getServletPath())
+            .andReturn("/index.html")
+            .anyTimes();
+
+    //dispatch request
+    replay(requestMock);
+    pipeline.dispatch(requestMock, null, createMock(FilterChain.class));
+    pipeline.destroyPipeline();
+
+    verify(requestMock);
+
+    assertEquals(1, doFilters);
+  }
+
+  @Singleton
+  public static class RewritingFilter implements Filter {
+    public void init(FilterConfig filterConfig) throws ServletException {}
+
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse,
+        FilterChain filterChain) throws IOException, ServletException {
+      filterChain.doFilter(new HttpServletRequestWrapper((HttpServletRequest) servletRequest) {
+        @Override public String getServletPath() {
+          return "/rewritten" + super.getServletPath();
+        }
+      }, servletResponse);
+    }
+
+    public void destroy() {}
+  }
+
   @Singleton
   public static class TestFilter implements Filter {
     public void init(FilterConfig filterConfig) throws ServletException {
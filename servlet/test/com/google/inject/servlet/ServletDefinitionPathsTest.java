@@ -96,6 +96,52 @@ public class ServletDefinitionPathsTest extends TestCase {
 
   }
 
+  public final void testRequestIsNotWrappedWhenContainerPathsAreCorrect()
+      throws IOException, ServletException {
+    Injector injector = createMock(Injector.class);
+    final HttpServletRequest request = createMock(HttpServletRequest.class);
+    HttpServletResponse response = createMock(HttpServletResponse.class);
+
+    expect(injector.getBinding(Key.get(HttpServlet.class)))
+        .andReturn(createMock(Binding.class));
+
+    final boolean[] run = new boolean[1];
+    expect(injector.getInstance(Key.get(HttpServlet.class)))
+        .andReturn(new HttpServlet() {
+
+          @Override
+          protected void service(HttpServletRequest servletRequest,
+              HttpServletResponse httpServletResponse) throws ServletException, IOException {
+            assertSame(request, servletRequest);
+            run[0] = true;
+          }
+        });
+
+    expect(request.getRequestURI()).andReturn("/path/thing/stuff");
+    expect(request.getContextPath()).andReturn("/path");
+    expect(request.getPathInfo()).andReturn("/stuff");
+
+    replay(injector, request);
+
+    ServletDefinition servletDefinition = new ServletDefinition("/thing/*",
+        Key.get(HttpServlet.class), UriPatternType.get(UriPatternType.SERVLET, "/thing/*"),
+        new HashMap<String, String>());
+
+    servletDefinition.init(null, injector,
+        Sets.newSetFromMap(Maps.<HttpServlet, Boolean>newIdentityHashMap()));
+    servletDefinition.doService("/thing", request, response);
+
+    assertTrue("Servlet did not run!", run[0]);
+  }
+
+  public final void testComputePathInfo() {
+    assertEquals("/a/b/", ServletDefinition.computePathInfo("/ctx//x///a//b//", 4, 2));
+    assertEquals("/a", ServletDefinition.computePathInfo("/x/a", 0, 2));
+    assertEquals("", ServletDefinition.computePathInfo("/ctx", 4, 0));
+    assertNull(ServletDefinition.computePathInfo("/ctx/x", 4, 2));
+    assertNull(ServletDefinition.computePathInfo("/ctx/x", 4, 3));
+  }
+
   // Data-driven test.
   public final void testPathInfoWithServletStyleMatching() throws IOException, ServletException {
     pathInfoWithServletStyleMatching("/path/index.html", "/path", "/*", "/index.html", "");
@@ -123,6 +169,15 @@ public class ServletDefinitionPathsTest extends TestCase {
   private void pathInfoWithServletStyleMatching(final String requestUri, final String contextPath,
       String mapping, final String expectedPathInfo, final String servletPath)
       throws IOException, ServletException {
+    pathInfoWithServletStyleMatching(requestUri, contextPath, mapping, expectedPathInfo,
+        servletPath, false);
+    pathInfoWithServletStyleMatching(requestUri, contextPath, mapping, expectedPathInfo,
+        servletPath, true);
+  }
+
+  private void pathInfoWithServletStyleMatching(final String requestUri, final String contextPath,
+      String mapping, final String expectedPathInfo, final String servletPath,
+      boolean precomputed) throws IOException, ServletException {
 
     Injector injector = createMock(Injector.class);
     HttpServletRequest request = createMock(HttpServletRequest.class);
@@ -169,6 +224,11 @@ public class ServletDefinitionPathsTest extends TestCase {
     expect(request.getContextPath())
         .andReturn(contextPath);
 
+    // when the path info is precomputed, the request is only wrapped if the container's differs
+    expect(request.getPathInfo())
+        .andReturn(null)
+        .anyTimes();
+
     replay(injector, request);
 
     ServletDefinition servletDefinition = new ServletDefinition(mapping, Key.get(HttpServlet.class),
@@ -176,7 +236,11 @@ public class ServletDefinitionPathsTest extends TestCase {
 
     servletDefinition.init(null, injector,
         Sets.newSetFromMap(Maps.<HttpServlet, Boolean>newIdentityHashMap()));
-    servletDefinition.doService(request, response);
+    if (precomputed) {
+      servletDefinition.doService(servletPath, request, response);
+    } else {
+      servletDefinition.doService(request, response);
+    }
 
     assertTrue("Servlet did not run!", run[0]);
 
@@ -213,6 +277,15 @@ public class ServletDefinitionPathsTest extends TestCase {
   public final void pathInfoWithRegexMatching(final String requestUri, final String contextPath,
       String mapping, final String expectedPathInfo, final String servletPath)
       throws IOException, ServletException {
+    pathInfoWithRegexMatching(requestUri, contextPath, mapping, expectedPathInfo, servletPath,
+        false);
+    pathInfoWithRegexMatching(requestUri, contextPath, mapping, expectedPathInfo, servletPath,
+        true);
+  }
+
+  private void pathInfoWithRegexMatching(final String requestUri, final String contextPath,
+      String mapping, final String expectedPathInfo, final String servletPath,
+      boolean precomputed) throws IOException, ServletException {
 
     Injector injector = createMock(Injector.class);
     HttpServletRequest request = createMock(HttpServletRequest.class);
@@ -259,6 +332,11 @@ public class ServletDefinitionPathsTest extends TestCase {
     expect(request.getContextPath())
         .andReturn(contextPath);
 
+    // when the path info is precomputed, the request is only wrapped if the container's differs
+    expect(request.getPathInfo())
+        .andReturn(null)
+        .anyTimes();
+
     replay(injector, request);
 
     ServletDefinition servletDefinition = new ServletDefinition(mapping, Key.get(HttpServlet.class),
@@ -266,7 +344,11 @@ public class ServletDefinitionPathsTest extends TestCase {
 
     servletDefinition.init(null, injector,
         Sets.newSetFromMap(Maps.<HttpServlet, Boolean>newIdentityHashMap()));
-    servletDefinition.doService(request, response);
+    if (precomputed) {
+      servletDefinition.doService(servletPath, request, response);
+    } else {
+      servletDefinition.doService(request, response);
+    }
 
     assertTrue("Servlet did not run!", run[0]);
   }
@@ -82,6 +82,12 @@ public class ServletDispatchIntegrationTest extends TestCase {
         .andReturn("/index.html")
         .times(1);
 
+    // the servlet's path info is computed once, from the request URI
+    expect(requestMock.getRequestURI())
+        .andReturn("/index.html");
+    expect(requestMock.getContextPath())
+        .andReturn("");
+
     //dispatch request
     replay(requestMock);
 
@@ -126,6 +132,12 @@ public class ServletDispatchIntegrationTest extends TestCase {
         .andReturn("/index.html")
         .times(2);
 
+    // the servlet's path info is computed once, from the request URI
+    expect(requestMock.getRequestURI())
+        .andReturn("/index.html");
+    expect(requestMock.getContextPath())
+        .andReturn("");
+
     //dispatch request
     replay(requestMock);
 
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.servlet;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Singleton;
+import com.google.inject.internal.Maps;
+import com.google.inject.internal.Sets;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A microbenchmark of the servlet path and path info that a managed servlet sees. It compares
+ * {@link ServletDefinition#doService(String, javax.servlet.ServletRequest,
+ * javax.servlet.ServletResponse)} with the original wrapper, which collapsed slashes with a regular
+ * expression, for a mapping that changes the servlet path and for one whose paths are the
+ * container's, where the request is no longer wrapped.
+ */
+public class ServletPathPerformanceComparison {
+
+  private static final int REQUESTS = 2000000;
+
+  public static void main(String[] args) throws Exception {
+    Injector injector = Guice.createInjector();
+    PathsServlet servlet = injector.getInstance(PathsServlet.class);
+    ServletDefinition prefix = definition("/thing/*", injector);
+    ServletDefinition literal = definition("/thing/index.html", injector);
+
+    HttpServletRequest prefixRequest
+        = request("/app/thing/stuff/index.html", "/app", "/thing/stuff/index.html", null);
+    HttpServletRequest literalRequest
+        = request("/app/thing/index.html", "/app", "/thing/index.html", null);
+
+    for (int i = 0; i < 10; i++) {
+      original(prefix, prefixRequest, servlet,   "Original, /thing/*:          ");
+      current(prefix, prefixRequest, servlet,    "Current, /thing/*:           ");
+      original(literal, literalRequest, servlet, "Original, /thing/index.html: ");
+      current(literal, literalRequest, servlet,  "Current, /thing/index.html:  ");
+      System.err.println();
+    }
+  }
+
+  static void original(ServletDefinition definition, HttpServletRequest request,
+      PathsServlet servlet, String label) throws Exception {
+    UriPatternMatcher patternMatcher = definition.getPatternMatcher();
+    long start = System.nanoTime();
+    for (int i = 0; i < REQUESTS; i++) {
+      servlet.service(new OriginalPathsWrapper(request, patternMatcher), null);
+    }
+    report(label, System.nanoTime() - start, servlet);
+  }
+
+  static void current(ServletDefinition definition, HttpServletRequest request,
+      PathsServlet servlet, String label) throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < REQUESTS; i++) {
+      // the pipeline reads the servlet path once, to find the servlet
+      definition.doService(request.getServletPath(), request, null);
+    }
+    report(label, System.nanoTime() - start, servlet);
+  }
+
+  static void report(String label, long time, PathsServlet servlet) {
+    if (servlet.length == 42) {
+      System.err.print(""); // keep the calls from being eliminated
+    }
+    System.err.println(label + (time / REQUESTS) + "ns per request");
+  }
+
+  static ServletDefinition definition(String pattern, Injector injector)
+      throws ServletException {
+    ServletDefinition definition = new ServletDefinition(pattern, Key.get(PathsServlet.class),
+        UriPatternType.get(UriPatternType.SERVLET, pattern), new HashMap<String, String>());
+    definition.init(null, injector,
+        Sets.newSetFromMap(Maps.<HttpServlet, Boolean>newIdentityHashMap()));
+    return definition;
+  }
+
+  /** Returns a request whose path getters return constants, like a container's. */
+  static HttpServletRequest request(final String requestUri, final String contextPath,
+      final String servletPath, final String pathInfo) {
+    return (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("getRequestURI")) {
+              return requestUri;
+            } else if (name.equals("getContextPath")) {
+              return contextPath;
+            } else if (name.equals("getServletPath")) {
+              return servletPath;
+            } else if (name.equals("getPathInfo")) {
+              return pathInfo;
+            }
+            throw new UnsupportedOperationException(name);
+          }
+        });
+  }
+
+  /** Reads both paths, as a servlet that dispatches on them would. */
+  @Singleton
+  static class PathsServlet extends HttpServlet {
+    int length;
+
+    @Override protected void service(HttpServletRequest request, HttpServletResponse response)
+        throws ServletException, IOException {
+      String pathInfo = request.getPathInfo();
+      length += request.getServletPath().length() + (pathInfo == null ? 0 : pathInfo.length());
+    }
+  }
+
+  /** The request wrapper that ServletDefinition used to create for every request. */
+  @SuppressWarnings("deprecation")
+  static class OriginalPathsWrapper extends HttpServletRequestWrapper {
+    private final UriPatternMatcher patternMatcher;
+    private String path;
+    private boolean pathComputed = false;
+    private boolean pathInfoComputed = false;
+    private String pathInfo;
+
+    OriginalPathsWrapper(HttpServletRequest request, UriPatternMatcher patternMatcher) {
+      super(request);
+      this.patternMatcher = patternMatcher;
+    }
+
+    @Override
+    public String getPathInfo() {
+      if (!pathInfoComputed) {
+        final int servletPathLength = getServletPath().length();
+        pathInfo = getRequestURI().substring(getContextPath().length()).replaceAll("[/]{2,}", "/")
+            .substring(servletPathLength);
+
+        if ("".equals(pathInfo) && servletPathLength != 0) {
+          pathInfo = null;
+        }
+
+        pathInfoComputed = true;
+      }
+
+      return pathInfo;
+    }
+
+    @Override
+    public String getServletPath() {
+      if (!pathComputed) {
+        String servletPath = super.getServletPath();
+        path = patternMatcher.extractPath(servletPath);
+        pathComputed = true;
+
+        if (null == path) {
+          path = servletPath;
+        }
+      }
+
+      return path;
+    }
+  }
+}
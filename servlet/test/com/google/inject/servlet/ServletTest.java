@@ -22,16 +22,26 @@ import com.google.inject.CreationException;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
+import com.google.inject.internal.ImmutableList;
+import com.google.inject.internal.Lists;
+import com.google.inject.internal.Maps;
 
 import junit.framework.TestCase;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
 
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.eq;
@@ -51,17 +61,106 @@ public class ServletTest extends TestCase {
     GuiceFilter.reset();
   }
 
-  public void testNewRequestObject()
+  public void testRequestObjectsAreKeptInOneRequestAttribute()
+      throws CreationException, IOException, ServletException {
+    final Injector injector = createInjector();
+
+    GuiceFilter filter = new GuiceFilter();
+
+    // the mocks fail if any other request attributes are used
+    final HttpServletRequest request = createMock(HttpServletRequest.class);
+    final HttpServletRequest next = createMock(HttpServletRequest.class);
+    final HttpServletRequest included = createMock(HttpServletRequest.class);
+    for (HttpServletRequest outermost : new HttpServletRequest[] { request, next }) {
+      expect(outermost.getAttribute(RequestScopedObjects.ATTRIBUTE)).andReturn(null).times(2);
+      outermost.setAttribute(eq(RequestScopedObjects.ATTRIBUTE),
+          isA(RequestScopedObjects.class));
+    }
+
+    final InRequest[] inRequest = new InRequest[1];
+    final FilterChain includedChain = new FilterChain() {
+      public void doFilter(ServletRequest servletRequest,
+          ServletResponse servletResponse) {
+        assertSame(inRequest[0], injector.getInstance(InRequest.class));
+      }
+    };
+    FilterChain filterChain = new FilterChain() {
+      public void doFilter(ServletRequest servletRequest,
+          ServletResponse servletResponse) throws IOException, ServletException {
+        inRequest[0] = injector.getInstance(InRequest.class);
+        assertSame(inRequest[0], injector.getInstance(InRequest.class));
+        new GuiceFilter().doFilter(included, servletResponse, includedChain);
+      }
+    };
+
+    replay(request, next, included);
+
+    filter.doFilter(request, null, filterChain);
+    InRequest first = inRequest[0];
+    filter.doFilter(next, null, filterChain);
+    assertNotSame(first, inRequest[0]);
+
+    verify(request, next, included);
+  }
+
+  public void testLaterDispatchesOfARequestShareItsObjects()
       throws CreationException, IOException, ServletException {
     final Injector injector = createInjector();
 
     GuiceFilter filter = new GuiceFilter();
 
+    final List<InRequest> inRequest = Lists.newArrayList();
+    FilterChain filterChain = new FilterChain() {
+      public void doFilter(ServletRequest servletRequest,
+          ServletResponse servletResponse) {
+        inRequest.add(injector.getInstance(InRequest.class));
+      }
+    };
+
+    // as in an error dispatch, which the container makes after the first dispatch returns
+    HttpServletRequest request = requestWithAttributes();
+    filter.doFilter(request, null, filterChain);
+    filter.doFilter(request, null, filterChain);
+    filter.doFilter(requestWithAttributes(), null, filterChain);
+
+    assertSame(inRequest.get(0), inRequest.get(1));
+    assertNotSame(inRequest.get(0), inRequest.get(2));
+  }
+
+  public void testRequestSlotsAreAssignedPerPipeline()
+      throws CreationException, IOException, ServletException {
+    final Injector[] injector = { createInjector() };
+    FilterChain filterChain = new FilterChain() {
+      public void doFilter(ServletRequest servletRequest,
+          ServletResponse servletResponse) {
+        injector[0].getInstance(InRequest.class);
+      }
+    };
+
+    new GuiceFilter().doFilter(requestWithAttributes(), null, filterChain);
+    int slots = GuiceFilter.requestSlots.size();
+    assertTrue(slots > 0);
+
+    // a new injector installs a new pipeline, whose slots are numbered from zero again
+    injector[0] = createInjector();
+    assertEquals(0, GuiceFilter.requestSlots.size());
+    new GuiceFilter().doFilter(requestWithAttributes(), null, filterChain);
+    assertEquals(slots, GuiceFilter.requestSlots.size());
+  }
+
+  public void testNewRequestObject()
+      throws CreationException, IOException, ServletException {
+    final Injector injector = createInjectorWithRequestAttributes();
+
+    GuiceFilter filter = new GuiceFilter();
+
     final HttpServletRequest request = createMock(HttpServletRequest.class);
 
     String name = Key.get(InRequest.class).toString();
     expect(request.getAttribute(name)).andReturn(null);
     request.setAttribute(eq(name), isA(InRequest.class));
+    expect(request.getAttribute(RequestScopedObjects.ATTRIBUTE)).andReturn(null).times(2);
+    request.setAttribute(eq(RequestScopedObjects.ATTRIBUTE), isA(RequestScopedObjects.class));
 
     final boolean[] invoked = new boolean[1];
     FilterChain filterChain = new FilterChain() {
@@ -83,7 +182,7 @@ public class ServletTest extends TestCase {
 
   public void testExistingRequestObject()
       throws CreationException, IOException, ServletException {
-    final Injector injector = createInjector();
+    final Injector injector = createInjectorWithRequestAttributes();
 
     GuiceFilter filter = new GuiceFilter();
 
@@ -91,7 +190,9 @@ public class ServletTest extends TestCase {
 
     final InRequest inRequest = new InRequest();
     String name = Key.get(InRequest.class).toString();
-    expect(request.getAttribute(name)).andReturn(inRequest).times(2);
+    expect(request.getAttribute(name)).andReturn(inRequest);
+    expect(request.getAttribute(RequestScopedObjects.ATTRIBUTE)).andReturn(null).times(2);
+    request.setAttribute(eq(RequestScopedObjects.ATTRIBUTE), isA(RequestScopedObjects.class));
 
     final boolean[] invoked = new boolean[1];
     FilterChain filterChain = new FilterChain() {
@@ -123,8 +224,9 @@ public class ServletTest extends TestCase {
 
     String name = Key.get(InSession.class).toString();
 
+    // read without the session's lock, then again while holding it to create the object
     expect(request.getSession()).andReturn(session);
-    expect(session.getAttribute(name)).andReturn(null);
+    expect(session.getAttribute(name)).andReturn(null).times(2);
     session.setAttribute(eq(name), isA(InSession.class));
 
     final boolean[] invoked = new boolean[1];
@@ -180,6 +282,159 @@ public class ServletTest extends TestCase {
     assertTrue(invoked[0]);
   }
 
+  public void testOnlyNewSessionObjectsAreSetOnTheSession()
+      throws CreationException, IOException, ServletException {
+    final Injector injector = createInjector();
+    final List<String> set = Lists.newArrayList();
+    HttpSession session = sessionWithAttributes(set);
+
+    FilterChain filterChain = new FilterChain() {
+      public void doFilter(ServletRequest servletRequest,
+          ServletResponse servletResponse) {
+        injector.getInstance(InSession.class);
+        injector.getInstance(BoundInSession.class);
+        injector.getInstance(InSession.class);
+      }
+    };
+    new GuiceFilter().doFilter(requestWithSession(session), null, filterChain);
+    new GuiceFilter().doFilter(requestWithSession(session), null, filterChain);
+
+    assertEquals(ImmutableList.of(
+        Key.get(InSession.class).toString(), Key.get(BoundInSession.class).toString()), set);
+  }
+
+  public void testSessionObjectsGetBindingCallbacks()
+      throws CreationException, IOException, ServletException {
+    final Injector injector = createInjector();
+    HttpSession session = sessionWithAttributes(Lists.<String>newArrayList());
+
+    final BoundInSession[] bound = new BoundInSession[1];
+    new GuiceFilter().doFilter(requestWithSession(session), null, new FilterChain() {
+      public void doFilter(ServletRequest servletRequest,
+          ServletResponse servletResponse) {
+        bound[0] = injector.getInstance(BoundInSession.class);
+      }
+    });
+    assertEquals(1, bound[0].bound);
+    assertEquals(0, bound[0].unbound);
+
+    session.invalidate();
+    assertEquals(1, bound[0].unbound);
+  }
+
+  public void testRemovedSessionObjectIsCreatedAgain()
+      throws CreationException, IOException, ServletException {
+    final Injector injector = createInjector();
+    final HttpSession session = sessionWithAttributes(Lists.<String>newArrayList());
+
+    final BoundInSession[] bound = new BoundInSession[3];
+    new GuiceFilter().doFilter(requestWithSession(session), null, new FilterChain() {
+      public void doFilter(ServletRequest servletRequest,
+          ServletResponse servletResponse) {
+        bound[0] = injector.getInstance(BoundInSession.class);
+        // as an application does to reset a session scoped object, on logout for example
+        session.removeAttribute(Key.get(BoundInSession.class).toString());
+        bound[1] = injector.getInstance(BoundInSession.class);
+      }
+    });
+    new GuiceFilter().doFilter(requestWithSession(session), null, new FilterChain() {
+      public void doFilter(ServletRequest servletRequest,
+          ServletResponse servletResponse) {
+        bound[2] = injector.getInstance(BoundInSession.class);
+      }
+    });
+
+    assertEquals(1, bound[0].unbound);
+    assertNotSame(bound[0], bound[1]);
+    assertSame(bound[1], bound[2]);
+    assertEquals(1, bound[1].bound);
+    assertEquals(0, bound[1].unbound);
+  }
+
+  /**
+   * Returns a session that only supports attributes, and removes them like a container would:
+   * objects get {@link HttpSessionBindingListener} callbacks. The name of each attribute that is
+   * set is added to {@code set}.
+   */
+  private static HttpSession sessionWithAttributes(final List<String> set) {
+    final Map<String, Object> attributes = Maps.newLinkedHashMap();
+    return (HttpSession) Proxy.newProxyInstance(
+        HttpSession.class.getClassLoader(), new Class<?>[] { HttpSession.class },
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("getAttribute")) {
+              return attributes.get((String) args[0]);
+            } else if (name.equals("setAttribute")) {
+              set.add((String) args[0]);
+              attributes.put((String) args[0], args[1]);
+              if (args[1] instanceof HttpSessionBindingListener) {
+                ((HttpSessionBindingListener) args[1]).valueBound(
+                    new HttpSessionBindingEvent((HttpSession) proxy, (String) args[0]));
+              }
+              return null;
+            } else if (name.equals("removeAttribute")) {
+              Object value = attributes.remove((String) args[0]);
+              if (value instanceof HttpSessionBindingListener) {
+                ((HttpSessionBindingListener) value).valueUnbound(
+                    new HttpSessionBindingEvent((HttpSession) proxy, (String) args[0]));
+              }
+              return null;
+            } else if (name.equals("invalidate")) {
+              for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+                if (entry.getValue() instanceof HttpSessionBindingListener) {
+                  ((HttpSessionBindingListener) entry.getValue()).valueUnbound(
+                      new HttpSessionBindingEvent((HttpSession) proxy, entry.getKey()));
+                }
+              }
+              attributes.clear();
+              return null;
+            }
+            throw new UnsupportedOperationException(name);
+          }
+        });
+  }
+
+  /** Returns a request whose session is {@code session}. */
+  private static HttpServletRequest requestWithSession(final HttpSession session) {
+    final HttpServletRequest request = requestWithAttributes();
+    return (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return method.getName().equals("getSession") ? session : method.invoke(request, args);
+          }
+        });
+  }
+
+  /** Returns a request that only supports attributes. */
+  private static HttpServletRequest requestWithAttributes() {
+    final Map<String, Object> attributes = Maps.newHashMap();
+    return (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("getAttribute")) {
+              return attributes.get((String) args[0]);
+            } else if (name.equals("setAttribute")) {
+              attributes.put((String) args[0], args[1]);
+              return null;
+            }
+            throw new UnsupportedOperationException(name);
+          }
+        });
+  }
+
+  private Injector createInjectorWithRequestAttributes() throws CreationException {
+    System.setProperty(ServletScopes.REQUEST_ATTRIBUTES_SETTING, "true");
+    try {
+      return createInjector();
+    } finally {
+      System.clearProperty(ServletScopes.REQUEST_ATTRIBUTES_SETTING);
+    }
+  }
+
   private Injector createInjector() throws CreationException {
 
     return Guice.createInjector(new AbstractModule() {
@@ -188,6 +443,7 @@ public class ServletTest extends TestCase {
       protected void configure() {
         install(new ServletModule());
         bind(InSession.class);
+        bind(BoundInSession.class);
         bind(InRequest.class);
       }
     });
@@ -196,6 +452,20 @@ public class ServletTest extends TestCase {
   @SessionScoped
   static class InSession {}
 
+  @SessionScoped
+  static class BoundInSession implements HttpSessionBindingListener {
+    int bound;
+    int unbound;
+
+    public void valueBound(HttpSessionBindingEvent event) {
+      bound++;
+    }
+
+    public void valueUnbound(HttpSessionBindingEvent event) {
+      unbound++;
+    }
+  }
+
   @RequestScoped
   static class InRequest {}
 }
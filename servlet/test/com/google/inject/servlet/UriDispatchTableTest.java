@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.servlet;
+
+import static com.google.inject.servlet.UriPatternType.REGEX;
+import static com.google.inject.servlet.UriPatternType.SERVLET;
+import com.google.inject.internal.Lists;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class UriDispatchTableTest extends TestCase {
+
+  private final List<UriPatternMatcher> matchers = Lists.newArrayList();
+
+  public void testFirstMatchWins() {
+    add(SERVLET, "/index/*");
+    add(SERVLET, "/index/page.html");
+    add(SERVLET, "*.html");
+    add(REGEX, "/in(.*)");
+    add(REGEX, "/index/(.*)");
+    add(SERVLET, "/*");
+
+    assertMatchesLikeMatchers("/index/page.html", "/index/", "/index", "/in", "/info.html",
+        "/other", "/", "", ".html", null);
+    UriDispatchTable table = new UriDispatchTable(matchers);
+    assertEquals(0, table.firstMatch("/index/page.html"));
+    assertEquals(2, table.firstMatch("/info.html"));
+    assertEquals(3, table.firstMatch("/info"));
+    assertEquals(5, table.firstMatch("/other"));
+    assertEquals(-1, table.firstMatch(null));
+  }
+
+  public void testLaterPatternsOfEachKind() {
+    add(SERVLET, "/a");
+    add(SERVLET, "/b/*");
+    add(SERVLET, "*.c");
+    add(REGEX, "/d");
+    add(REGEX, "/e(.*)");
+    add(SERVLET, "/a");
+    add(SERVLET, "/b/c/*");
+    add(SERVLET, "*c");
+
+    assertMatchesLikeMatchers("/a", "/b/", "/b/c/x.c", "/x.c", "/d", "/e", "/ef", "/f", "/b/c/d");
+    UriDispatchTable table = new UriDispatchTable(matchers);
+    assertEquals(4, table.firstMatch("/ec"));
+    assertEquals(7, table.firstMatch("/fc"));
+  }
+
+  public void testBackReferencesAreTestedSeparately() {
+    add(REGEX, "/(a+)/\\1");
+    add(REGEX, "/(b)(.*)");
+
+    assertMatchesLikeMatchers("/aa/aa", "/aa/a", "/b/c", "/c");
+  }
+
+  public void testRegexesWithTheSameNamedGroupAreTestedSeparately() {
+    add(REGEX, "/a/(?<id>[0-9]+)");
+    add(REGEX, "/b/(?<id>[0-9]+)");
+
+    assertMatchesLikeMatchers("/a/1", "/b/2", "/c/3");
+  }
+
+  public void testRegexesEndingInsideAQuoteAreTestedSeparately() {
+    add(REGEX, "/a/\\Q*");
+    add(REGEX, "/b(.*)");
+
+    assertMatchesLikeMatchers("/a/*", "/a/b", "/b/c", "/c");
+  }
+
+  public void testNoPatterns() {
+    assertMatchesLikeMatchers("/", "/index.html");
+  }
+
+  private void add(UriPatternType type, String pattern) {
+    matchers.add(UriPatternType.get(type, pattern));
+  }
+
+  /** Asserts that the table finds the same matches as testing each pattern in turn. */
+  private void assertMatchesLikeMatchers(String... uris) {
+    UriDispatchTable table = new UriDispatchTable(matchers);
+    for (String uri : uris) {
+      int first = -1;
+      boolean[] matches = new boolean[matchers.size()];
+      for (int i = 0; i < matchers.size(); i++) {
+        matches[i] = matchers.get(i).matches(uri);
+        if (matches[i] && first == -1) {
+          first = i;
+        }
+      }
+
+      assertEquals(uri, first, table.firstMatch(uri));
+      boolean[] tableMatches = table.matches(uri);
+      for (int i = 0; i < matches.length; i++) {
+        assertEquals(uri + " " + i, matches[i], tableMatches[i]);
+      }
+    }
+  }
+}
@@ -79,6 +79,12 @@ public class VarargsServletDispatchIntegrationTest extends TestCase {
         .andReturn("/index.html")
         .times(1);
 
+    // the servlet's path info is computed once, from the request URI
+    expect(requestMock.getRequestURI())
+        .andReturn("/index.html");
+    expect(requestMock.getContextPath())
+        .andReturn("");
+
     //dispatch request
     replay(requestMock);
 
@@ -112,9 +118,19 @@ public class VarargsServletDispatchIntegrationTest extends TestCase {
     //create ourselves a mock request with test URI
     HttpServletRequest requestMock = createMock(HttpServletRequest.class);
 
+    // the servlet is found with a single lookup, rather than by testing each mapping in turn
     expect(requestMock.getServletPath())
-        .andReturn("/index.html")
-        .times(3);
+        .andReturn("/index.html");
+
+    // the servlet's path info is computed once, from the request URI
+    expect(requestMock.getRequestURI())
+        .andReturn("/index.html");
+    expect(requestMock.getContextPath())
+        .andReturn("");
+
+    // the servlet's paths are the container's, so the request isn't wrapped
+    expect(requestMock.getPathInfo())
+        .andReturn(null);
 
     //dispatch request
     replay(requestMock);
@@ -156,6 +172,12 @@ public class VarargsServletDispatchIntegrationTest extends TestCase {
         .andReturn("/index.html")
         .times(2);
 
+    // the servlet's path info is computed once, from the request URI
+    expect(requestMock.getRequestURI())
+        .andReturn("/index.html");
+    expect(requestMock.getContextPath())
+        .andReturn("");
+
     //dispatch request
     replay(requestMock);
 
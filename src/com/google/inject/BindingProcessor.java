@@ -106,8 +106,13 @@ class BindingProcessor extends AbstractProcessor {
       public Void visit(ProviderInstanceBinding<? extends T> binding) {
         Provider<? extends T> provider = binding.getProviderInstance();
         Set<InjectionPoint> injectionPoints = binding.getInjectionPoints();
+        Provider<? extends T> target = provider instanceof ProviderMethod
+            ? ((ProviderMethod<? extends T>) provider)
+                .forInjector(injector.options.generateInvokers, injector.options.hiddenClasses,
+                    injector.options.trace)
+            : provider;
         Initializable<Provider<? extends T>> initializable = initializer
-            .<Provider<? extends T>>requestInjection(injector, provider, source, injectionPoints);
+            .<Provider<? extends T>>requestInjection(injector, target, source, injectionPoints);
         InternalFactory<T> factory = new InternalFactoryToProviderAdapter<T>(initializable, source);
         InternalFactory<? extends T> scopedFactory = Scopes.scope(key, injector, factory, scoping);
         putBinding(new ProviderInstanceBindingImpl<T>(injector, key, source, scopedFactory, scoping,
@@ -52,12 +52,16 @@ class BoundProviderFactory<T> implements InternalFactory<T>, CreationListener {
 
   public T get(Errors errors, InternalContext context, Dependency<?> dependency)
       throws ErrorsException {
-    errors = errors.withSource(providerKey);
-    Provider<? extends T> provider = providerFactory.get(errors, context, dependency);
+    int numErrorsBefore = errors.size();
     try {
-      return errors.checkForNull(provider.get(), source, dependency);
-    } catch(RuntimeException userException) {
-      throw errors.errorInProvider(userException).toException();
+      Provider<? extends T> provider = providerFactory.get(errors, context, dependency);
+      try {
+        return errors.checkForNull(provider.get(), source, dependency);
+      } catch(RuntimeException userException) {
+        throw errors.errorInProvider(userException).toException();
+      }
+    } finally {
+      errors.addSourceToNewErrors(providerKey, numErrorsBefore);
     }
   }
 
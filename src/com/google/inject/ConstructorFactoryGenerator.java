@@ -0,0 +1,551 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.BytecodeGen;
+import com.google.inject.internal.ConstructorFactory;
+import com.google.inject.internal.Errors;
+import com.google.inject.internal.ErrorsException;
+import com.google.inject.internal.ImmutableList;
+import com.google.inject.internal.InternalContext;
+import com.google.inject.internal.InternalFactory;
+import com.google.inject.internal.Lists;
+import com.google.inject.internal.MoreTypes;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.InjectionPoint;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_5;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates a {@link ConstructorFactory} class for a constructor and its injectable fields. The
+ * generated code is equivalent to {@link SingleParameterInjector#getAll}, the constructor proxy and
+ * {@link SingleFieldInjector}, unrolled for one type: each dependency's {@link InternalFactory} is
+ * called from its own call site, and the results are passed to the constructor and assigned to
+ * fields without an intermediate array or reflection.
+ *
+ * <p>Members that generated code can't access, like private constructors and fields, are left to
+ * the reflective implementation.
+ */
+final class ConstructorFactoryGenerator {
+
+  private static final Logger logger = Logger.getLogger(ConstructorFactoryGenerator.class.getName());
+
+  private static final AtomicInteger counter = new AtomicInteger();
+
+  private static final String FACTORY = Type.getInternalName(ConstructorFactory.class);
+  private static final String ERRORS = Type.getInternalName(Errors.class);
+  private static final String ERRORS_EXCEPTION = Type.getInternalName(ErrorsException.class);
+  private static final String CONTEXT = Type.getInternalName(InternalContext.class);
+  private static final String INTERNAL_FACTORY = Type.getInternalName(InternalFactory.class);
+  private static final String DEPENDENCY_DESC = Type.getDescriptor(Dependency.class);
+  private static final String INTERNAL_FACTORY_DESC = Type.getDescriptor(InternalFactory.class);
+  private static final String INJECTION_POINT_DESC = Type.getDescriptor(InjectionPoint.class);
+  private static final String GET_DESC = "(L" + ERRORS + ";L" + CONTEXT + ";" + DEPENDENCY_DESC
+      + ")Ljava/lang/Object;";
+  private static final String SET_DEPENDENCY_DESC = "(" + DEPENDENCY_DESC + ")V";
+  private static final String WITH_SOURCE_DESC = "(Ljava/lang/Object;)L" + ERRORS + ";";
+  private static final String MERGE_DESC = "(L" + ERRORS + ";)L" + ERRORS + ";";
+
+  private final Constructor<?> constructor;
+  private final SingleParameterInjector<?>[] parameterInjectors;
+  private final String className;
+  private final String internalName;
+
+  /** Fields to inject, or null if some members must be injected reflectively. */
+  private List<SingleFieldInjector> fieldInjectors;
+
+  /** The class whose package we must share, or null if the generated class only uses public API. */
+  private Class<?> samePackageAs;
+
+  private ConstructorFactoryGenerator(Constructor<?> constructor,
+      SingleParameterInjector<?>[] parameterInjectors) {
+    this.constructor = constructor;
+    this.parameterInjectors = parameterInjectors != null
+        ? parameterInjectors
+        : new SingleParameterInjector<?>[0];
+
+    String prefix = constructor.getDeclaringClass().getName();
+    if (prefix.startsWith("java.")) {
+      prefix = "$" + prefix;
+    }
+    this.className = prefix + "$$ConstructorFactoryByGuice$$"
+        + Integer.toHexString(counter.incrementAndGet());
+    this.internalName = className.replace('.', '/');
+  }
+
+  /**
+   * Returns a generated factory for the type constructed by {@code constructionProxy}, or {@code
+   * null} if generated code can't construct that type.
+   *
+   * @param hiddenClasses true to define the factory as a hidden class of the constructed type,
+   *     where the VM supports them.
+   */
+  static <T> ConstructorFactory<T> create(ConstructionProxy<T> constructionProxy,
+      SingleParameterInjector<?>[] parameterInjectors, MembersInjectorImpl<T> membersInjector,
+      boolean hiddenClasses) {
+    // intercepted types are constructed as enhanced subclasses
+    if (!constructionProxy.getMethodInterceptors().isEmpty()) {
+      return null;
+    }
+
+    Constructor<T> constructor = constructionProxy.getConstructor();
+    ConstructorFactoryGenerator generator
+        = new ConstructorFactoryGenerator(constructor, parameterInjectors);
+    if (!generator.canAccessConstructor()) {
+      return null;
+    }
+    generator.fieldInjectors = generator.accessibleFields(membersInjector.getMemberInjectors());
+
+    try {
+      return generator.generate(hiddenClasses);
+    } catch (Exception e) {
+      logger.log(Level.FINE, "Failed to generate a factory for " + constructor, e);
+      return null;
+    } catch (LinkageError e) {
+      logger.log(Level.FINE, "Failed to generate a factory for " + constructor, e);
+      return null;
+    }
+  }
+
+  private boolean canAccessConstructor() {
+    if (!canAccess(constructor)) {
+      return false;
+    }
+    for (Class<?> parameterType : constructor.getParameterTypes()) {
+      if (!canAccess(parameterType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the field injectors for {@code memberInjectors}, or null unless they're all fields that
+   * generated code can assign. Methods are injected reflectively, in order with the fields.
+   */
+  private List<SingleFieldInjector> accessibleFields(
+      ImmutableList<SingleMemberInjector> memberInjectors) {
+    List<SingleFieldInjector> result = Lists.newArrayList();
+    for (SingleMemberInjector memberInjector : memberInjectors) {
+      if (!(memberInjector instanceof SingleFieldInjector)) {
+        return null;
+      }
+      Field field = ((SingleFieldInjector) memberInjector).field;
+      if (Modifier.isFinal(field.getModifiers())
+          || !canAccess(field)
+          || !canAccess(field.getType())) {
+        return null;
+      }
+      result.add((SingleFieldInjector) memberInjector);
+    }
+    return result;
+  }
+
+  /** Returns true if generated code can call or assign {@code member}. */
+  private boolean canAccess(Member member) {
+    int modifiers = member.getModifiers();
+    if (Modifier.isPrivate(modifiers) || !canAccess(member.getDeclaringClass())) {
+      return false;
+    }
+    // protected members are only visible to subclasses in other packages
+    return Modifier.isPublic(modifiers) || requireSamePackage(member.getDeclaringClass());
+  }
+
+  /** Returns true if generated code can reference {@code type}. */
+  private boolean canAccess(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    // the VM treats protected nested classes as public, and private ones as package-private
+    return type.isPrimitive()
+        || BytecodeGen.Visibility.forType(type) == BytecodeGen.Visibility.PUBLIC
+        || requireSamePackage(type);
+  }
+
+  private boolean requireSamePackage(Class<?> type) {
+    Class<?> constructed = constructor.getDeclaringClass();
+    if (constructed.getClassLoader() == null
+        || type.getClassLoader() != constructed.getClassLoader()
+        || !packageName(type).equals(packageName(constructed))) {
+      return false;
+    }
+    samePackageAs = constructed;
+    return true;
+  }
+
+  private static String packageName(Class<?> type) {
+    String name = type.getName();
+    int lastDot = name.lastIndexOf('.');
+    return lastDot != -1 ? name.substring(0, lastDot) : "";
+  }
+
+  @SuppressWarnings("unchecked") // the generated class constructs instances of T
+  private <T> ConstructorFactory<T> generate(boolean hiddenClasses) throws Exception {
+    Class<?> constructed = constructor.getDeclaringClass();
+    ClassLoader classLoader = samePackageAs != null
+        ? samePackageAs.getClassLoader()
+        : BytecodeGen.getClassLoader(constructed);
+
+    Class<?> factoryClass = BytecodeGen.defineClass(
+        constructed, className, toBytecode(), classLoader, hiddenClasses);
+    List<SingleFieldInjector> fieldInjectors = fieldsToInject();
+    Object[] arguments = new Object[parameterInjectors.length * 2 + fieldInjectors.size() * 3];
+    int i = 0;
+    for (SingleParameterInjector<?> parameterInjector : parameterInjectors) {
+      arguments[i++] = parameterInjector.dependency;
+      arguments[i++] = parameterInjector.factory;
+    }
+    for (SingleFieldInjector fieldInjector : fieldInjectors) {
+      arguments[i++] = fieldInjector.dependency;
+      arguments[i++] = fieldInjector.factory;
+      arguments[i++] = fieldInjector.injectionPoint;
+    }
+    return (ConstructorFactory<T>) factoryClass.getConstructor(Object[].class)
+        .newInstance(new Object[] { arguments });
+  }
+
+  private List<SingleFieldInjector> fieldsToInject() {
+    return fieldInjectors != null ? fieldInjectors : ImmutableList.<SingleFieldInjector>of();
+  }
+
+  private byte[] toBytecode() {
+    List<SingleFieldInjector> fieldInjectors = fieldsToInject();
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, internalName, null, FACTORY, null);
+
+    for (int i = 0; i < parameterInjectors.length; i++) {
+      cw.visitField(ACC_PRIVATE | ACC_FINAL, "dependency" + i, DEPENDENCY_DESC, null, null);
+      cw.visitField(ACC_PRIVATE | ACC_FINAL, "factory" + i, INTERNAL_FACTORY_DESC, null, null);
+    }
+    for (int i = 0; i < fieldInjectors.size(); i++) {
+      cw.visitField(ACC_PRIVATE | ACC_FINAL, "fieldDependency" + i, DEPENDENCY_DESC, null, null);
+      cw.visitField(ACC_PRIVATE | ACC_FINAL, "fieldFactory" + i, INTERNAL_FACTORY_DESC, null, null);
+      cw.visitField(ACC_PRIVATE | ACC_FINAL, "fieldInjectionPoint" + i, INJECTION_POINT_DESC,
+          null, null);
+    }
+
+    generateConstructor(cw);
+    generateNewInstance(cw);
+    generateInjectMembers(cw);
+
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "injectsMembers", "()Z", null, null);
+    mv.visitCode();
+    mv.visitInsn(this.fieldInjectors != null ? ICONST_1 : ICONST_0);
+    mv.visitInsn(IRETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /** Copies the dependencies, factories and injection points from an array into fields. */
+  private void generateConstructor(ClassWriter cw) {
+    List<SingleFieldInjector> fieldInjectors = fieldsToInject();
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, FACTORY, "<init>", "()V");
+
+    int index = 0;
+    for (int i = 0; i < parameterInjectors.length; i++) {
+      copyArgument(mv, index++, "dependency" + i, DEPENDENCY_DESC);
+      copyArgument(mv, index++, "factory" + i, INTERNAL_FACTORY_DESC);
+    }
+    for (int i = 0; i < fieldInjectors.size(); i++) {
+      copyArgument(mv, index++, "fieldDependency" + i, DEPENDENCY_DESC);
+      copyArgument(mv, index++, "fieldFactory" + i, INTERNAL_FACTORY_DESC);
+      copyArgument(mv, index++, "fieldInjectionPoint" + i, INJECTION_POINT_DESC);
+    }
+
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void copyArgument(MethodVisitor mv, int index, String name, String desc) {
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitLdcInsn(index);
+    mv.visitInsn(AALOAD);
+    mv.visitTypeInsn(CHECKCAST, Type.getType(desc).getInternalName());
+    mv.visitFieldInsn(PUTFIELD, internalName, name, desc);
+  }
+
+  /**
+   * Resolves each parameter like {@link SingleParameterInjector#getAll}, collecting all errors
+   * before giving up, and then invokes the constructor directly.
+   */
+  private void generateNewInstance(ClassWriter cw) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "newInstance",
+        "(L" + ERRORS + ";L" + CONTEXT + ";)Ljava/lang/Object;", null,
+        new String[] { ERRORS_EXCEPTION, Type.getInternalName(InvocationTargetException.class) });
+    mv.visitCode();
+
+    // locals: this, errors, context, numErrorsBefore, numErrorsBeforeParameter, exception,
+    // parameters...
+    int errors = 1;
+    int context = 2;
+    int numErrorsBefore = 3;
+    int numErrorsBeforeParameter = 4;
+    int exception = 5;
+    int firstParameter = 6;
+
+    mv.visitVarInsn(ALOAD, errors);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "size", "()I");
+    mv.visitVarInsn(ISTORE, numErrorsBefore);
+
+    for (int i = 0; i < parameterInjectors.length; i++) {
+      String dependency = "dependency" + i;
+      mv.visitInsn(ACONST_NULL);
+      mv.visitVarInsn(ASTORE, firstParameter + i);
+
+      Label start = new Label();
+      Label end = new Label();
+      Label onErrorsException = new Label();
+      Label onThrowable = new Label();
+      Label done = new Label();
+      Label next = new Label();
+      mv.visitTryCatchBlock(start, end, onErrorsException, ERRORS_EXCEPTION);
+      mv.visitTryCatchBlock(start, end, onThrowable, null);
+
+      mv.visitVarInsn(ALOAD, errors);
+      mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "size", "()I");
+      mv.visitVarInsn(ISTORE, numErrorsBeforeParameter);
+      setDependency(mv, context, dependency);
+      mv.visitLabel(start);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, internalName, "factory" + i, INTERNAL_FACTORY_DESC);
+      mv.visitVarInsn(ALOAD, errors);
+      mv.visitVarInsn(ALOAD, context);
+      loadField(mv, dependency, DEPENDENCY_DESC);
+      mv.visitMethodInsn(INVOKEINTERFACE, INTERNAL_FACTORY, "get", GET_DESC);
+      mv.visitVarInsn(ASTORE, firstParameter + i);
+      mv.visitLabel(end);
+      mv.visitJumpInsn(GOTO, done);
+
+      // errors.merge(e.getErrors()), after the finally block
+      mv.visitLabel(onErrorsException);
+      mv.visitVarInsn(ASTORE, exception);
+      finishDependency(mv, errors, context, dependency, numErrorsBeforeParameter);
+      mv.visitVarInsn(ALOAD, errors);
+      mv.visitVarInsn(ALOAD, exception);
+      mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS_EXCEPTION, "getErrors", "()L" + ERRORS + ";");
+      mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "merge", MERGE_DESC);
+      mv.visitInsn(POP);
+      mv.visitJumpInsn(GOTO, next);
+
+      // finally
+      mv.visitLabel(onThrowable);
+      mv.visitVarInsn(ASTORE, exception);
+      finishDependency(mv, errors, context, dependency, numErrorsBeforeParameter);
+      mv.visitVarInsn(ALOAD, exception);
+      mv.visitInsn(ATHROW);
+
+      mv.visitLabel(done);
+      finishDependency(mv, errors, context, dependency, numErrorsBeforeParameter);
+      mv.visitLabel(next);
+    }
+
+    mv.visitVarInsn(ALOAD, errors);
+    mv.visitVarInsn(ILOAD, numErrorsBefore);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "throwIfNewErrors", "(I)V");
+
+    String constructed = Type.getInternalName(constructor.getDeclaringClass());
+    mv.visitTypeInsn(NEW, constructed);
+    mv.visitInsn(DUP);
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      mv.visitVarInsn(ALOAD, firstParameter + i);
+      unbox(mv, parameterTypes[i]);
+    }
+
+    // wrap exceptions thrown by the constructor, as reflection would
+    Label start = new Label();
+    Label end = new Label();
+    Label onThrowable = new Label();
+    mv.visitTryCatchBlock(start, end, onThrowable, "java/lang/Throwable");
+    mv.visitLabel(start);
+    mv.visitMethodInsn(INVOKESPECIAL, constructed, "<init>",
+        Type.getConstructorDescriptor(constructor));
+    mv.visitLabel(end);
+    mv.visitInsn(ARETURN);
+
+    String invocationTargetException = Type.getInternalName(InvocationTargetException.class);
+    mv.visitLabel(onThrowable);
+    mv.visitVarInsn(ASTORE, exception);
+    mv.visitTypeInsn(NEW, invocationTargetException);
+    mv.visitInsn(DUP);
+    mv.visitVarInsn(ALOAD, exception);
+    mv.visitMethodInsn(INVOKESPECIAL, invocationTargetException, "<init>",
+        "(Ljava/lang/Throwable;)V");
+    mv.visitInsn(ATHROW);
+
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /** Injects each field like {@link SingleFieldInjector#inject}. */
+  private void generateInjectMembers(ClassWriter cw) {
+    List<SingleFieldInjector> fieldInjectors = fieldsToInject();
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "injectMembers",
+        "(Ljava/lang/Object;L" + ERRORS + ";L" + CONTEXT + ";)V", null, null);
+    mv.visitCode();
+
+    // locals: this, instance, errors, context, numErrorsBefore, exception
+    int instance = 1;
+    int errors = 2;
+    int context = 3;
+    int numErrorsBefore = 4;
+    int exception = 5;
+
+    for (int i = 0; i < fieldInjectors.size(); i++) {
+      Field field = fieldInjectors.get(i).field;
+      String dependency = "fieldDependency" + i;
+
+      mv.visitVarInsn(ALOAD, errors);
+      mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "size", "()I");
+      mv.visitVarInsn(ISTORE, numErrorsBefore);
+
+      Label start = new Label();
+      Label end = new Label();
+      Label onErrorsException = new Label();
+      Label onThrowable = new Label();
+      Label done = new Label();
+      mv.visitTryCatchBlock(start, end, onErrorsException, ERRORS_EXCEPTION);
+      mv.visitTryCatchBlock(start, end, onThrowable, null);
+
+      setDependency(mv, context, dependency);
+      mv.visitLabel(start);
+      String declaringClass = Type.getInternalName(field.getDeclaringClass());
+      mv.visitVarInsn(ALOAD, instance);
+      mv.visitTypeInsn(CHECKCAST, declaringClass);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, internalName, "fieldFactory" + i, INTERNAL_FACTORY_DESC);
+      mv.visitVarInsn(ALOAD, errors);
+      mv.visitVarInsn(ALOAD, context);
+      loadField(mv, dependency, DEPENDENCY_DESC);
+      mv.visitMethodInsn(INVOKEINTERFACE, INTERNAL_FACTORY, "get", GET_DESC);
+      unbox(mv, field.getType());
+      mv.visitFieldInsn(PUTFIELD, declaringClass, field.getName(),
+          Type.getDescriptor(field.getType()));
+      mv.visitLabel(end);
+      mv.visitJumpInsn(GOTO, done);
+
+      // errors.withSource(injectionPoint).merge(e.getErrors());
+      mv.visitLabel(onErrorsException);
+      mv.visitVarInsn(ASTORE, exception);
+      mv.visitVarInsn(ALOAD, errors);
+      loadField(mv, "fieldInjectionPoint" + i, INJECTION_POINT_DESC);
+      mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "withSource", WITH_SOURCE_DESC);
+      mv.visitVarInsn(ALOAD, exception);
+      mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS_EXCEPTION, "getErrors", "()L" + ERRORS + ";");
+      mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "merge", MERGE_DESC);
+      mv.visitInsn(POP);
+      mv.visitJumpInsn(GOTO, done);
+
+      // finally
+      mv.visitLabel(onThrowable);
+      mv.visitVarInsn(ASTORE, exception);
+      finishDependency(mv, errors, context, dependency, numErrorsBefore);
+      mv.visitVarInsn(ALOAD, exception);
+      mv.visitInsn(ATHROW);
+
+      mv.visitLabel(done);
+      finishDependency(mv, errors, context, dependency, numErrorsBefore);
+    }
+
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void loadField(MethodVisitor mv, String name, String desc) {
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, internalName, name, desc);
+  }
+
+  private void setDependency(MethodVisitor mv, int context, String dependency) {
+    mv.visitVarInsn(ALOAD, context);
+    loadField(mv, dependency, DEPENDENCY_DESC);
+    mv.visitMethodInsn(INVOKEVIRTUAL, CONTEXT, "setDependency", SET_DEPENDENCY_DESC);
+  }
+
+  /** Clears the context's dependency and attributes new errors to it. */
+  private void finishDependency(MethodVisitor mv, int errors, int context, String dependency,
+      int numErrorsBefore) {
+    mv.visitVarInsn(ALOAD, context);
+    mv.visitInsn(ACONST_NULL);
+    mv.visitMethodInsn(INVOKEVIRTUAL, CONTEXT, "setDependency", SET_DEPENDENCY_DESC);
+    mv.visitVarInsn(ALOAD, errors);
+    loadField(mv, dependency, DEPENDENCY_DESC);
+    mv.visitVarInsn(ILOAD, numErrorsBefore);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "addSourceToNewErrors", "(Ljava/lang/Object;I)V");
+  }
+
+  /** Converts the object on the stack to {@code type}, unboxing primitives. */
+  private static void unbox(MethodVisitor mv, Class<?> type) {
+    if (!type.isPrimitive()) {
+      mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+      return;
+    }
+
+    String wrapperName = Type.getInternalName(
+        MoreTypes.makeKeySafe(TypeLiteral.get(type)).getRawType());
+    mv.visitTypeInsn(CHECKCAST, wrapperName);
+    mv.visitMethodInsn(INVOKEVIRTUAL, wrapperName, type.getName() + "Value",
+        "()" + Type.getDescriptor(type));
+  }
+}
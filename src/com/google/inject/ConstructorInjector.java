@@ -17,10 +17,12 @@
 package com.google.inject;
 
 import com.google.inject.internal.ConstructionContext;
+import com.google.inject.internal.ConstructorFactory;
 import com.google.inject.internal.Errors;
 import com.google.inject.internal.ErrorsException;
 import com.google.inject.internal.ImmutableSet;
 import com.google.inject.internal.InternalContext;
+import com.google.inject.internal.ProvisionTracer;
 import com.google.inject.spi.CachedValue;
 import com.google.inject.spi.InjectionPoint;
 import java.lang.reflect.InvocationTargetException;
@@ -37,16 +39,24 @@ class ConstructorInjector<T> implements CachedValue<T> {
   private final SingleParameterInjector<?>[] parameterInjectors;
   private final ConstructionProxy<T> constructionProxy;
   private final MembersInjectorImpl<T> membersInjector;
+  /** A generated factory to use instead of reflection, or null. */
+  private final ConstructorFactory<T> factory;
+  /** The name of constructions in the provisioning trace, or null to not trace them. */
+  private final String tracedName;
 
   ConstructorInjector(ImmutableSet<InjectionPoint> injectableMembers,
       ConstructionProxy<T> constructionProxy,
       SingleParameterInjector<?>[] parameterInjectors,
-      MembersInjectorImpl<T> membersInjector)
+      MembersInjectorImpl<T> membersInjector,
+      ConstructorFactory<T> factory,
+      String tracedName)
       throws ErrorsException {
     this.injectableMembers = injectableMembers;
     this.constructionProxy = constructionProxy;
     this.parameterInjectors = parameterInjectors;
     this.membersInjector = membersInjector;
+    this.factory = factory;
+    this.tracedName = tracedName;
   }
 
   public ImmutableSet<InjectionPoint> getInjectableMembers() {
@@ -69,26 +79,36 @@ class ConstructorInjector<T> implements CachedValue<T> {
   Object construct(Errors errors, InternalContext context, Class<?> expectedType)
       throws ErrorsException {
     ConstructionContext<T> constructionContext = context.getConstructionContext(this);
+    if (constructionContext != null) {
+      // We have a circular reference between constructors. Return a proxy.
+      if (constructionContext.isConstructing()) {
+        // TODO (crazybob): if we can't proxy this object, can we proxy the other object?
+        return constructionContext.createProxy(errors, expectedType);
+      }
 
-    // We have a circular reference between constructors. Return a proxy.
-    if (constructionContext.isConstructing()) {
-      // TODO (crazybob): if we can't proxy this object, can we proxy the other object?
-      return constructionContext.createProxy(errors, expectedType);
+      // If we're re-entering this factory while injecting fields or methods,
+      // return the same instance. This prevents infinite loops.
+      T t = constructionContext.getCurrentReference();
+      if (t != null) {
+        return t;
+      }
     }
 
-    // If we're re-entering this factory while injecting fields or methods,
-    // return the same instance. This prevents infinite loops.
-    T t = constructionContext.getCurrentReference();
-    if (t != null) {
-      return t;
+    if (tracedName != null) {
+      ProvisionTracer.begin(ProvisionTracer.Category.CONSTRUCTOR, tracedName);
     }
-
+    constructionContext = context.enterConstruction(this);
     try {
+      T t;
       // First time through...
       constructionContext.startConstruction();
       try {
-        Object[] parameters = SingleParameterInjector.getAll(errors, context, parameterInjectors);
-        t = constructionProxy.newInstance(parameters);
+        if (factory != null) {
+          t = factory.newInstance(errors, context);
+        } else {
+          Object[] parameters = SingleParameterInjector.getAll(errors, context, parameterInjectors);
+          t = constructionProxy.newInstance(parameters);
+        }
         constructionContext.setProxyDelegates(t);
       } finally {
         constructionContext.finishConstruction();
@@ -97,7 +117,12 @@ class ConstructorInjector<T> implements CachedValue<T> {
       // Store reference. If an injector re-enters this factory, they'll get the same reference.
       constructionContext.setCurrentReference(t);
 
-      membersInjector.injectMembers(t, errors, context);
+      if (factory != null && factory.injectsMembers()) {
+        factory.injectMembers(t, errors, context);
+        membersInjector.injectUserMembers(t, errors);
+      } else {
+        membersInjector.injectMembers(t, errors, context);
+      }
       membersInjector.notifyListeners(t, errors);
 
       return t;
@@ -109,6 +134,10 @@ class ConstructorInjector<T> implements CachedValue<T> {
           .errorInjectingConstructor(cause).toException();
     } finally {
       constructionContext.removeCurrentReference();
+      context.exitConstruction();
+      if (tracedName != null) {
+        ProvisionTracer.end(ProvisionTracer.Category.CONSTRUCTOR, tracedName);
+      }
     }
   }
 }
@@ -16,6 +16,7 @@
 
 package com.google.inject;
 
+import com.google.inject.internal.ConstructorFactory;
 import com.google.inject.internal.Errors;
 import com.google.inject.internal.ErrorsException;
 import com.google.inject.internal.FailableCache;
@@ -69,11 +70,13 @@ class ConstructorInjectorStore {
     MembersInjectorImpl<T> membersInjector = injector.membersInjectorStore.get(type, errors);
 
     /*if[AOP]*/
-    ImmutableList<MethodAspect> injectorAspects = injector.state.getMethodAspects();
-    ImmutableList<MethodAspect> methodAspects = membersInjector.getAddedAspects().isEmpty()
-        ? injectorAspects
-        : ImmutableList.copyOf(concat(injectorAspects, membersInjector.getAddedAspects()));
-    ConstructionProxyFactory<T> factory = new ProxyFactory<T>(injectionPoint, methodAspects);
+    MethodAspectIndex methodAspects = membersInjector.getAddedAspects().isEmpty()
+        ? injector.state.getMethodAspectIndex()
+        : new MethodAspectIndex(ImmutableList.copyOf(
+            concat(injector.state.getMethodAspects(), membersInjector.getAddedAspects())));
+    ConstructionProxyFactory<T> factory
+        = new ProxyFactory<T>(injectionPoint, methodAspects, injector.options.generateInvokers,
+            injector.options.hiddenClasses);
     /*end[AOP]*/
     /*if[NO_AOP]
     ConstructionProxyFactory<T> factory = new DefaultConstructionProxyFactory<T>(injectionPoint);
@@ -81,7 +84,18 @@ class ConstructorInjectorStore {
 
     errors.throwIfNewErrors(numErrorsBefore);
 
-    return new ConstructorInjector<T>(membersInjector.getInjectionPoints(), factory.create(),
-        constructorParameterInjectors, membersInjector);
+    ConstructionProxy<T> constructionProxy = factory.create();
+    ConstructorFactory<T> constructorFactory = null;
+    /*if[AOP]*/
+    if (injector.options.generateFactories) {
+      constructorFactory = ConstructorFactoryGenerator.create(
+          constructionProxy, constructorParameterInjectors, membersInjector,
+          injector.options.hiddenClasses);
+    }
+    /*end[AOP]*/
+
+    return new ConstructorInjector<T>(membersInjector.getInjectionPoints(), constructionProxy,
+        constructorParameterInjectors, membersInjector, constructorFactory,
+        injector.options.trace ? type.toString() : null);
   }
 }
@@ -18,6 +18,7 @@ package com.google.inject;
 
 import com.google.inject.internal.BytecodeGen;
 import com.google.inject.internal.BytecodeGen.Visibility;
+import com.google.inject.internal.GeneratedMethodInvoker;
 import com.google.inject.internal.ImmutableMap;
 import com.google.inject.spi.InjectionPoint;
 import java.lang.reflect.Constructor;
@@ -34,18 +35,57 @@ import java.util.List;
 class DefaultConstructionProxyFactory<T> implements ConstructionProxyFactory<T> {
 
   private final InjectionPoint injectionPoint;
+  private final boolean generateInvoker;
+  private final boolean hiddenClasses;
 
   /**
    * @param injectionPoint an injection point whose member is a constructor of {@code T}.
    */
   DefaultConstructionProxyFactory(InjectionPoint injectionPoint) {
+    this(injectionPoint, false, false);
+  }
+
+  /**
+   * @param generateInvoker true to call the constructor with a generated invoker where possible.
+   * @param hiddenClasses true to define that invoker as a hidden class of {@code T}, where the VM
+   *     supports them.
+   */
+  DefaultConstructionProxyFactory(InjectionPoint injectionPoint, boolean generateInvoker,
+      boolean hiddenClasses) {
     this.injectionPoint = injectionPoint;
+    this.generateInvoker = generateInvoker;
+    this.hiddenClasses = hiddenClasses;
   }
 
   public ConstructionProxy<T> create() {
     @SuppressWarnings("unchecked") // the injection point is for a constructor of T
     final Constructor<T> constructor = (Constructor<T>) injectionPoint.getMember();
 
+    /*if[AOP]*/
+    final GeneratedMethodInvoker invoker = generateInvoker
+        ? com.google.inject.internal.MemberInvokerGenerator.getMethodInvoker(
+            constructor, hiddenClasses)
+        : null;
+    if (invoker != null) {
+      return new ConstructionProxy<T>() {
+        @SuppressWarnings("unchecked") // the invoker calls a constructor of T
+        public T newInstance(Object... arguments) throws InvocationTargetException {
+          return (T) invoker.invoke(null, arguments);
+        }
+        public InjectionPoint getInjectionPoint() {
+          return injectionPoint;
+        }
+        public Constructor<T> getConstructor() {
+          return constructor;
+        }
+        public ImmutableMap<Method, List<org.aopalliance.intercept.MethodInterceptor>>
+            getMethodInterceptors() {
+          return ImmutableMap.of();
+        }
+      };
+    }
+    /*end[AOP]*/
+
     // Use FastConstructor if the constructor is public.
     if (Modifier.isPublic(constructor.getModifiers())) {
       /*if[AOP]*/
@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.BindingImpl;
+import com.google.inject.internal.Lists;
+import com.google.inject.internal.Maps;
+import com.google.inject.internal.Sets;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.ExposedBinding;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.ProviderBinding;
+import com.google.inject.spi.ProviderInstanceBinding;
+import com.google.inject.spi.ProviderKeyBinding;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the dependencies of bindings to the bindings that satisfy them. This only follows
+ * bindings that already exist; it never creates just-in-time bindings.
+ *
+ * <p>Some bindings can call back into the injector in ways that aren't visible in their
+ * dependencies, such as a class that injects the {@link Injector} itself, one that depends on a
+ * key whose binding hasn't been created yet, or a provider instance that doesn't declare its
+ * dependencies. The dependencies of those bindings are <i>unknown</i>, and callers must assume they
+ * may depend on any other binding.
+ *
+ * <p>Each injector has a graph of its own bindings, which caches their dependencies and the
+ * strongly connected components they belong to. A binding's dependencies are resolved once, so
+ * every caller agrees on them, even if a missing binding is created later. Walks may cross into the
+ * graphs of parent and private injectors, so all graphs share one lock.
+ */
+final class DependencyGraph {
+
+  private static final Key<Injector> INJECTOR_KEY = Key.get(Injector.class);
+
+  /** The component of bindings that reach a binding with unknown dependencies. */
+  private static final Set<BindingImpl<?>> UNKNOWN = Collections.emptySet();
+
+  /** Direct dependencies by binding; {@code null} values are bindings with unknown dependencies. */
+  private final Map<BindingImpl<?>, Collection<BindingImpl<?>>> edges = Maps.newIdentityHashMap();
+
+  /** Strongly connected components by binding, shared by their members. */
+  private final Map<BindingImpl<?>, Set<BindingImpl<?>>> components
+      = Maps.newIdentityHashMap();
+
+  /**
+   * Returns the bindings that {@code binding} depends upon directly, or {@code null} if its
+   * dependencies are unknown.
+   */
+  static Collection<BindingImpl<?>> getDependencies(BindingImpl<?> binding) {
+    synchronized (DependencyGraph.class) {
+      return dependencies(binding);
+    }
+  }
+
+  /**
+   * Returns the strongly connected component containing {@code binding}: the bindings that it
+   * depends upon, and that also depend on it. The result always contains {@code binding}, and has
+   * more elements only if {@code binding} is part of a dependency cycle. Members of a cycle get the
+   * same set. Returns {@code null} if the dependencies of any reachable binding are unknown.
+   */
+  static Set<BindingImpl<?>> getCycle(BindingImpl<?> binding) {
+    synchronized (DependencyGraph.class) {
+      Set<BindingImpl<?>> component = component(binding);
+      if (component == null) {
+        findComponents(binding);
+        component = component(binding);
+      }
+      return component != UNKNOWN ? component : null;
+    }
+  }
+
+  /** Returns the graph that caches {@code binding}, or null if it doesn't belong to an injector. */
+  private static DependencyGraph graphOf(BindingImpl<?> binding) {
+    InjectorImpl injector = (InjectorImpl) binding.getInjector();
+    return injector != null ? injector.dependencyGraph : null;
+  }
+
+  private static Collection<BindingImpl<?>> dependencies(BindingImpl<?> binding) {
+    DependencyGraph graph = graphOf(binding);
+    if (graph == null) {
+      return null;
+    }
+    if (graph.edges.containsKey(binding)) {
+      return graph.edges.get(binding);
+    }
+    Collection<BindingImpl<?>> result = resolveDependencies(binding);
+    graph.edges.put(binding, result);
+    return result;
+  }
+
+  private static Set<BindingImpl<?>> component(BindingImpl<?> binding) {
+    DependencyGraph graph = graphOf(binding);
+    return graph != null ? graph.components.get(binding) : UNKNOWN;
+  }
+
+  private static void setComponent(BindingImpl<?> binding, Set<BindingImpl<?>> component) {
+    DependencyGraph graph = graphOf(binding);
+    if (graph != null) {
+      graph.components.put(binding, component);
+    }
+  }
+
+  /**
+   * Finds the components of every binding reachable from {@code root} whose component isn't known
+   * yet, using Tarjan's algorithm. Components are found dependencies first, so a component is
+   * unknown if any of its members' dependencies are unknown or it depends on an unknown component.
+   */
+  private static void findComponents(BindingImpl<?> root) {
+    Map<BindingImpl<?>, Integer> indices = Maps.newIdentityHashMap();
+    Map<BindingImpl<?>, Integer> lowLinks = Maps.newIdentityHashMap();
+    List<BindingImpl<?>> stack = Lists.newArrayList();
+    Set<BindingImpl<?>> onStack = Sets.newSetFromMap(
+        Maps.<BindingImpl<?>, Boolean>newIdentityHashMap());
+
+    // the depth-first walk, as bindings and iterators over their remaining dependencies
+    List<BindingImpl<?>> path = Lists.newArrayList();
+    List<Iterator<BindingImpl<?>>> pending = Lists.newArrayList();
+    Map<BindingImpl<?>, Boolean> unknown = Maps.newIdentityHashMap();
+
+    visit(root, indices, lowLinks, stack, onStack, path, pending, unknown);
+    while (!path.isEmpty()) {
+      int top = path.size() - 1;
+      BindingImpl<?> binding = path.get(top);
+      Iterator<BindingImpl<?>> dependencies = pending.get(top);
+
+      if (dependencies.hasNext()) {
+        BindingImpl<?> dependency = dependencies.next();
+        Set<BindingImpl<?>> known = component(dependency);
+        if (known != null) {
+          if (known == UNKNOWN) {
+            unknown.put(binding, true);
+          }
+        } else if (!indices.containsKey(dependency)) {
+          visit(dependency, indices, lowLinks, stack, onStack, path, pending, unknown);
+        } else if (onStack.contains(dependency)) {
+          lowLinks.put(binding, Math.min(lowLinks.get(binding), indices.get(dependency)));
+        }
+        continue;
+      }
+
+      path.remove(top);
+      pending.remove(top);
+
+      if (lowLinks.get(binding).equals(indices.get(binding))) {
+        Set<BindingImpl<?>> component = Sets.newSetFromMap(
+            Maps.<BindingImpl<?>, Boolean>newIdentityHashMap());
+        boolean componentUnknown = false;
+        BindingImpl<?> member;
+        do {
+          member = stack.remove(stack.size() - 1);
+          onStack.remove(member);
+          component.add(member);
+          componentUnknown |= unknown.containsKey(member);
+        } while (member != binding);
+
+        for (BindingImpl<?> each : component) {
+          if (componentUnknown) {
+            unknown.put(each, true);
+          }
+          setComponent(each, componentUnknown ? UNKNOWN : component);
+        }
+      }
+
+      if (top > 0) {
+        BindingImpl<?> parent = path.get(top - 1);
+        lowLinks.put(parent, Math.min(lowLinks.get(parent), lowLinks.get(binding)));
+        if (unknown.containsKey(binding)) {
+          unknown.put(parent, true);
+        }
+      }
+    }
+  }
+
+  private static void visit(BindingImpl<?> binding, Map<BindingImpl<?>, Integer> indices,
+      Map<BindingImpl<?>, Integer> lowLinks, List<BindingImpl<?>> stack,
+      Set<BindingImpl<?>> onStack, List<BindingImpl<?>> path,
+      List<Iterator<BindingImpl<?>>> pending, Map<BindingImpl<?>, Boolean> unknown) {
+    int index = indices.size();
+    indices.put(binding, index);
+    lowLinks.put(binding, index);
+    stack.add(binding);
+    onStack.add(binding);
+    path.add(binding);
+
+    Collection<BindingImpl<?>> dependencies = dependencies(binding);
+    if (dependencies == null) {
+      unknown.put(binding, true);
+      dependencies = Collections.emptySet();
+    }
+    pending.add(dependencies.iterator());
+  }
+
+  private static Collection<BindingImpl<?>> resolveDependencies(BindingImpl<?> binding) {
+    InjectorImpl injector = (InjectorImpl) binding.getInjector();
+    if (injector == null) {
+      return null;
+    }
+
+    if (binding instanceof LinkedKeyBinding) {
+      return resolve(injector, ((LinkedKeyBinding<?>) binding).getLinkedKey());
+    } else if (binding instanceof ProviderKeyBinding) {
+      return resolve(injector, ((ProviderKeyBinding<?>) binding).getProviderKey());
+    } else if (binding instanceof ProviderBinding) {
+      return resolve(injector, ((ProviderBinding<?>) binding).getProvidedKey());
+    } else if (binding instanceof ExposedBinding) {
+      Injector privateInjector = ((ExposedBinding<?>) binding).getPrivateElements().getInjector();
+      return resolve((InjectorImpl) privateInjector, binding.getKey());
+    } else if (!(binding instanceof HasDependencies)) {
+      return null;
+    } else if (binding instanceof ProviderInstanceBinding
+        && !(((ProviderInstanceBinding<?>) binding).getProviderInstance()
+            instanceof HasDependencies)) {
+      // the provider may call providers it got from the binder, which its injection points don't
+      // show, so only a provider that declares its dependencies is followed
+      return null;
+    }
+
+    Set<Dependency<?>> dependencies;
+    try {
+      dependencies = ((HasDependencies) binding).getDependencies();
+    } catch (IllegalStateException notInitialized) {
+      return null;
+    }
+
+    List<BindingImpl<?>> result = Lists.newArrayList();
+    for (Dependency<?> dependency : dependencies) {
+      Collection<BindingImpl<?>> resolved = resolve(injector, dependency.getKey());
+      if (resolved == null) {
+        return null;
+      }
+      result.addAll(resolved);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the binding for {@code key} as a collection of one element, or {@code null} if
+   * depending on {@code key} may lead anywhere.
+   */
+  private static Collection<BindingImpl<?>> resolve(InjectorImpl injector, Key<?> key) {
+    if (key.equals(INJECTOR_KEY) || InjectorImpl.isMembersInjector(key)) {
+      return null;
+    }
+
+    // Depending on Provider<T> means depending on T, since the provider may be called at any time
+    if (InjectorImpl.isProvider(key)) {
+      BindingImpl<?> providerBinding = injector.getExistingBinding(key);
+      if (providerBinding instanceof ProviderBinding) {
+        key = ((ProviderBinding<?>) providerBinding).getProvidedKey();
+      } else if (providerBinding != null) {
+        return Lists.<BindingImpl<?>>newArrayList(providerBinding);
+      } else {
+        return null;
+      }
+    }
+
+    // a binding that hasn't been created yet may lead anywhere once it is
+    BindingImpl<?> binding = injector.getExistingBinding(key);
+    return binding != null ? Lists.<BindingImpl<?>>newArrayList(binding) : null;
+  }
+}
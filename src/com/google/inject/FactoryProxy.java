@@ -53,7 +53,12 @@ class FactoryProxy<T> implements InternalFactory<T>, BindingProcessor.CreationLi
 
   public T get(Errors errors, InternalContext context, Dependency<?> dependency)
       throws ErrorsException {
-    return targetFactory.get(errors.withSource(targetKey), context, dependency);
+    int numErrorsBefore = errors.size();
+    try {
+      return targetFactory.get(errors, context, dependency);
+    } finally {
+      errors.addSourceToNewErrors(targetKey, numErrorsBefore);
+    }
   }
 
   @Override public String toString() {
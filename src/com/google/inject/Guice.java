@@ -89,8 +89,35 @@ public final class Guice {
    */
   public static Injector createInjector(Stage stage,
       Iterable<? extends Module> modules) {
+    return createInjector(stage, InjectorOptions.fromSystemProperties(), modules);
+  }
+
+  /**
+   * Creates an injector for the given set of modules, in a given development
+   * stage, with the given options rather than those set by system properties.
+   *
+   * @throws CreationException if one or more errors occur during Injector
+   *     construction
+   * @since 2.0
+   */
+  public static Injector createInjector(Stage stage, InjectorOptions options,
+      Module... modules) {
+    return createInjector(stage, options, Arrays.asList(modules));
+  }
+
+  /**
+   * Creates an injector for the given set of modules, in a given development
+   * stage, with the given options rather than those set by system properties.
+   *
+   * @throws CreationException if one or more errors occur during Injector
+   *     construction
+   * @since 2.0
+   */
+  public static Injector createInjector(Stage stage, InjectorOptions options,
+      Iterable<? extends Module> modules) {
     return new InjectorBuilder()
         .stage(stage)
+        .options(options)
         .addModules(modules)
         .build();
   }
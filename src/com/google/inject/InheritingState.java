@@ -45,6 +45,7 @@ class InheritingState implements State {
   private final List<MatcherAndConverter> converters = Lists.newArrayList();
   /*if[AOP]*/
   private final List<MethodAspect> methodAspects = Lists.newArrayList();
+  private volatile MethodAspectIndex methodAspectIndex;
   /*end[AOP]*/
   private final List<TypeListenerBinding> listenerBindings = Lists.newArrayList();
   private final WeakKeySet blacklistedKeys = new WeakKeySet();
@@ -109,6 +110,7 @@ class InheritingState implements State {
   /*if[AOP]*/
   public void addMethodAspect(MethodAspect methodAspect) {
     methodAspects.add(methodAspect);
+    methodAspectIndex = null;
   }
 
   public ImmutableList<MethodAspect> getMethodAspects() {
@@ -117,6 +119,15 @@ class InheritingState implements State {
         .addAll(methodAspects)
         .build();
   }
+
+  public MethodAspectIndex getMethodAspectIndex() {
+    MethodAspectIndex result = methodAspectIndex;
+    if (result == null) {
+      result = new MethodAspectIndex(getMethodAspects());
+      methodAspectIndex = result;
+    }
+    return result;
+  }
   /*end[AOP]*/
 
   public void addTypeListener(TypeListenerBinding listenerBinding) {
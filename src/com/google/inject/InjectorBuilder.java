@@ -22,6 +22,8 @@ import com.google.inject.internal.ErrorsException;
 import com.google.inject.internal.ImmutableSet;
 import com.google.inject.internal.InternalContext;
 import com.google.inject.internal.Iterables;
+import com.google.inject.internal.Lists;
+import com.google.inject.internal.StartupReport;
 import com.google.inject.internal.Stopwatch;
 import com.google.inject.spi.Dependency;
 import java.util.Collection;
@@ -50,10 +52,12 @@ import java.util.Set;
  */
 class InjectorBuilder {
 
-  private final Stopwatch stopwatch = new Stopwatch();
+  private final StartupReport report = new StartupReport();
+  private final Stopwatch stopwatch = new Stopwatch(report);
   private final Errors errors = new Errors();
 
   private Stage stage;
+  private InjectorOptions options;
 
   private final Initializer initializer = new Initializer();
   private final BindingProcessor bindingProcesor;
@@ -77,12 +81,20 @@ class InjectorBuilder {
     return this;
   }
 
+  /** Sets the options for the created injector. */
+  InjectorBuilder options(InjectorOptions options) {
+    this.options = options.copy();
+    shellBuilder.options(this.options);
+    return this;
+  }
+
   /**
    * Sets the parent of the injector to-be-constructed. As a side effect, this sets this injector's
-   * stage to the stage of {@code parent}.
+   * stage and options to those of {@code parent}.
    */
   InjectorBuilder parentInjector(InjectorImpl parent) {
     shellBuilder.parent(parent);
+    this.options = parent.options;
     return stage(parent.getInstance(Stage.class));
   }
 
@@ -96,8 +108,20 @@ class InjectorBuilder {
       throw new AssertionError("Already built, builders are not reusable.");
     }
 
-    // Synchronize while we're building up the bindings and other injector state. This ensures that
-    // the JIT bindings in the parent injector don't change while we're being built
+    StartupReport previousReport = StartupReport.setCurrent(report);
+    try {
+      Injector injector = buildInjector();
+      report.attach(injector);
+      return injector;
+    } finally {
+      StartupReport.setCurrent(previousReport);
+    }
+  }
+
+  private Injector buildInjector() {
+    // Synchronize while we're building up the bindings and other injector state, so that injectors
+    // in the same tree are built one at a time. The parent injector may still create JIT bindings
+    // concurrently; that's equivalent to it creating them just before we were built.
     synchronized (shellBuilder.lock()) {
       shells = shellBuilder.build(initializer, bindingProcesor, stopwatch, errors);
       stopwatch.resetAndLog("Injector construction");
@@ -172,8 +196,17 @@ class InjectorBuilder {
     stopwatch.resetAndLog("Instance injection");
     errors.throwCreationExceptionIfErrorsExist();
 
-    for (InjectorShell shell : shells) {
-      loadEagerSingletons(shell.getInjector(), stage, errors);
+    int preloadThreads = options.preloadThreads;
+    if (preloadThreads > 1) {
+      List<BindingImpl<?>> eagerSingletons = Lists.newArrayList();
+      for (InjectorShell shell : shells) {
+        eagerSingletons.addAll(getEagerSingletons(shell.getInjector(), stage));
+      }
+      new SingletonPreloader(eagerSingletons, preloadThreads, report).load(errors);
+    } else {
+      for (InjectorShell shell : shells) {
+        loadEagerSingletons(shell.getInjector(), stage, errors);
+      }
     }
     stopwatch.resetAndLog("Preloading singletons");
     errors.throwCreationExceptionIfErrorsExist();
@@ -183,33 +216,54 @@ class InjectorBuilder {
    * Loads eager singletons, or all singletons if we're in Stage.PRODUCTION. Bindings discovered
    * while we're binding these singletons are not be eager.
    */
-  public void loadEagerSingletons(InjectorImpl injector, Stage stage, final Errors errors) {
+  public void loadEagerSingletons(InjectorImpl injector, Stage stage, Errors errors) {
+    for (BindingImpl<?> binding : getEagerSingletons(injector, stage)) {
+      loadEagerSingleton(binding, errors);
+    }
+  }
+
+  /** Returns the bindings of {@code injector} that should be loaded eagerly in {@code stage}. */
+  static List<BindingImpl<?>> getEagerSingletons(InjectorImpl injector, Stage stage) {
     @SuppressWarnings("unchecked") // casting Collection<Binding> to Collection<BindingImpl> is safe
     Set<BindingImpl<?>> candidateBindings = ImmutableSet.copyOf(Iterables.concat(
         (Collection) injector.state.getExplicitBindingsThisLevel().values(),
         injector.jitBindings.values()));
-    for (final BindingImpl<?> binding : candidateBindings) {
+    List<BindingImpl<?>> result = Lists.newArrayList();
+    for (BindingImpl<?> binding : candidateBindings) {
       if (binding.getScoping().isEagerSingleton(stage)) {
-        try {
-          injector.callInContext(new ContextualCallable<Void>() {
-            Dependency<?> dependency = Dependency.get(binding.getKey());
-            public Void call(InternalContext context) {
-              context.setDependency(dependency);
-              Errors errorsForBinding = errors.withSource(dependency);
-              try {
-                binding.getInternalFactory().get(errorsForBinding, context, dependency);
-              } catch (ErrorsException e) {
-                errorsForBinding.merge(e.getErrors());
-              } finally {
-                context.setDependency(null);
-              }
-
-              return null;
-            }
-          });
-        } catch (ErrorsException e) {
-          throw new AssertionError();
+        result.add(binding);
+      }
+    }
+    return result;
+  }
+
+  /** Provisions the singleton for {@code binding}, adding failures to {@code errors}. */
+  static void loadEagerSingleton(final BindingImpl<?> binding, final Errors errors) {
+    InjectorImpl injector = (InjectorImpl) binding.getInjector();
+    StartupReport report = StartupReport.current();
+    long start = System.nanoTime();
+    try {
+      injector.callInContext(new ContextualCallable<Void>() {
+        Dependency<?> dependency = Dependency.get(binding.getKey());
+        public Void call(InternalContext context) {
+          context.setDependency(dependency);
+          Errors errorsForBinding = errors.withSource(dependency);
+          try {
+            binding.getInternalFactory().get(errorsForBinding, context, dependency);
+          } catch (ErrorsException e) {
+            errorsForBinding.merge(e.getErrors());
+          } finally {
+            context.setDependency(null);
+          }
+
+          return null;
         }
+      });
+    } catch (ErrorsException e) {
+      throw new AssertionError();
+    } finally {
+      if (report != null) {
+        report.record(StartupReport.Category.EAGER_SINGLETON, binding.getKey().toString(), start);
       }
     }
   }
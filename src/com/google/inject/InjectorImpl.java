@@ -30,11 +30,13 @@ import com.google.inject.internal.InternalFactory;
 import com.google.inject.internal.LinkedBindingImpl;
 import com.google.inject.internal.LinkedProviderBindingImpl;
 import com.google.inject.internal.Lists;
+import com.google.inject.internal.MapMaker;
 import com.google.inject.internal.Maps;
 import com.google.inject.internal.MatcherAndConverter;
 import com.google.inject.internal.Nullable;
 import com.google.inject.internal.Scoping;
 import com.google.inject.internal.SourceProvider;
+import com.google.inject.internal.StartupReport;
 import com.google.inject.internal.ToStringBuilder;
 import com.google.inject.spi.BindingTargetVisitor;
 import com.google.inject.spi.CachedValue;
@@ -68,24 +70,36 @@ class InjectorImpl implements Injector, Lookups {
   final BindingsMultimap bindingsMultimap = new BindingsMultimap();
   final Initializer initializer;
 
-  /** Just-in-time binding cache. Guarded by state.lock() */
-  final Map<Key<?>, BindingImpl<?>> jitBindings = Maps.newHashMap();
+  /**
+   * Just-in-time binding cache. Read without locking, so it only holds initialized bindings once
+   * the injector has been built; until then, bindings are staged by {@link #jitBindingCreator}.
+   */
+  final Map<Key<?>, BindingImpl<?>> jitBindings = new MapMaker().makeMap();
+
+  /** The dependencies of this injector's bindings, for choosing singleton locks. */
+  final DependencyGraph dependencyGraph = new DependencyGraph();
+
+  /** Creates missing just-in-time bindings. Shared with child injectors. */
+  final JitBindingCreator jitBindingCreator;
 
   Lookups lookups = new DeferredLookups(this);
 
-  InjectorImpl(@Nullable InjectorImpl parent, State state, Initializer initializer) {
+  /** This injector's options. Child injectors and private environments inherit them. */
+  final InjectorOptions options;
+
+  InjectorImpl(@Nullable InjectorImpl parent, State state, Initializer initializer,
+      InjectorOptions options) {
     this.parent = parent;
     this.state = state;
     this.initializer = initializer;
+    this.options = options;
 
     if (parent != null) {
-      localContext = parent.localContext;
+      contextPool = parent.contextPool;
+      jitBindingCreator = parent.jitBindingCreator;
     } else {
-      localContext = new ThreadLocal<Object[]>() {
-        protected Object[] initialValue() {
-          return new Object[1];
-        }
-      };
+      contextPool = new InternalContextPool();
+      jitBindingCreator = new JitBindingCreator();
     }
   }
 
@@ -138,6 +152,31 @@ class InjectorImpl implements Injector, Lookups {
     return getBinding(Key.get(type));
   }
 
+  /**
+   * Returns the explicit or just-in-time binding for {@code key}, or null if no such binding has
+   * been created yet. Unlike {@link #getBindingOrThrow}, this never creates bindings.
+   */
+  <T> BindingImpl<T> getExistingBinding(Key<T> key) {
+    BindingImpl<T> binding = state.getExplicitBinding(key);
+    if (binding != null) {
+      return binding;
+    }
+
+    return getPublishedJitBinding(key);
+  }
+
+  /** Returns the initialized just-in-time binding for {@code key} from this or a parent injector. */
+  <T> BindingImpl<T> getPublishedJitBinding(Key<T> key) {
+    for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
+      @SuppressWarnings("unchecked") // we only store bindings that match their key
+      BindingImpl<T> binding = (BindingImpl<T>) injector.jitBindings.get(key);
+      if (binding != null) {
+        return binding;
+      }
+    }
+    return null;
+  }
+
   public Injector getParent() {
     return parent;
   }
@@ -160,19 +199,13 @@ class InjectorImpl implements Injector, Lookups {
    */
   private <T> BindingImpl<T> getJustInTimeBinding(Key<T> key, Errors errors)
       throws ErrorsException {
-    synchronized (state.lock()) {
-      // first try to find a JIT binding that we've already created
-      for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
-        @SuppressWarnings("unchecked") // we only store bindings that match their key
-        BindingImpl<T> binding = (BindingImpl<T>) injector.jitBindings.get(key);
-
-        if (binding != null) {
-          return binding;
-        }
-      }
-
-      return createJustInTimeBindingRecursive(key, errors);
+    // first try to find a JIT binding that we've already created
+    BindingImpl<T> binding = getPublishedJitBinding(key);
+    if (binding != null) {
+      return binding;
     }
+
+    return jitBindingCreator.create(this, key, errors);
   }
 
   /** Returns true if the key type is Provider (but not a subclass of Provider). */
@@ -369,23 +402,33 @@ class InjectorImpl implements Injector, Lookups {
   <T> void initializeBinding(BindingImpl<T> binding, Errors errors) throws ErrorsException {
     // Put the partially constructed binding in the map a little early. This enables us to handle
     // circular dependencies. Example: FooImpl -> BarImpl -> FooImpl.
-    // Note: We don't need to synchronize on state.lock() during injector creation.
+    // Once the injector is built, the binding is only staged, so other threads see it initialized.
     // TODO: for the above example, remove the binding for BarImpl if the binding for FooImpl fails
     if (binding instanceof ConstructorBindingImpl<?>) {
       Key<T> key = binding.getKey();
-      jitBindings.put(key, binding);
+      putJitBinding(key, binding);
       boolean successful = false;
       try {
         ((ConstructorBindingImpl) binding).initialize(this, errors);
         successful = true;
       } finally {
-        if (!successful) {
+        if (!successful && !jitBindingCreator.unstage(this, key)) {
           jitBindings.remove(key);
         }
       }
     }
   }
 
+  /**
+   * Adds a just-in-time binding. Bindings created after the injector is built are published to
+   * other threads once they're initialized.
+   */
+  private void putJitBinding(Key<?> key, BindingImpl<?> binding) {
+    if (!jitBindingCreator.stage(this, key, binding)) {
+      jitBindings.put(key, binding);
+    }
+  }
+
   /**
    * Creates a binding for an injectable type with the given scope. Looks for a scope on the type if
    * none is specified.
@@ -495,19 +538,23 @@ class InjectorImpl implements Injector, Lookups {
     InternalFactory<T> internalFactory = new InternalFactory<T>() {
       public T get(Errors errors, InternalContext context, Dependency dependency)
           throws ErrorsException {
-        errors = errors.withSource(providerKey);
-        Provider<?> provider = providerBinding.getInternalFactory().get(
-            errors, context, dependency);
+        int numErrorsBefore = errors.size();
         try {
-          Object o = provider.get();
-          if (o != null && !rawType.isInstance(o)) {
-            throw errors.subtypeNotProvided(providerType, rawType).toException();
+          Provider<?> provider = providerBinding.getInternalFactory().get(
+              errors, context, dependency);
+          try {
+            Object o = provider.get();
+            if (o != null && !rawType.isInstance(o)) {
+              throw errors.subtypeNotProvided(providerType, rawType).toException();
+            }
+            @SuppressWarnings("unchecked") // protected by isInstance() check above
+            T t = (T) o;
+            return t;
+          } catch (RuntimeException e) {
+            throw errors.errorInProvider(e).toException();
           }
-          @SuppressWarnings("unchecked") // protected by isInstance() check above
-          T t = (T) o;
-          return t;
-        } catch (RuntimeException e) {
-          throw errors.errorInProvider(e).toException();
+        } finally {
+          errors.addSourceToNewErrors(providerKey, numErrorsBefore);
         }
       }
     };
@@ -548,8 +595,12 @@ class InjectorImpl implements Injector, Lookups {
     InternalFactory<T> internalFactory = new InternalFactory<T>() {
       public T get(Errors errors, InternalContext context, Dependency<?> dependency)
           throws ErrorsException {
-        return targetBinding.getInternalFactory().get(
-            errors.withSource(targetKey), context, dependency);
+        int numErrorsBefore = errors.size();
+        try {
+          return targetBinding.getInternalFactory().get(errors, context, dependency);
+        } finally {
+          errors.addSourceToNewErrors(targetKey, numErrorsBefore);
+        }
       }
     };
 
@@ -566,7 +617,7 @@ class InjectorImpl implements Injector, Lookups {
    * Attempts to create a just-in-time binding for {@code key} in the root injector, falling back to
    * other ancestor injectors until this injector is tried.
    */
-  private <T> BindingImpl<T> createJustInTimeBindingRecursive(Key<T> key, Errors errors)
+  <T> BindingImpl<T> createJustInTimeBindingRecursive(Key<T> key, Errors errors)
       throws ErrorsException {
     // ask the parent to create the JIT binding
     if (parent != null) {
@@ -580,9 +631,14 @@ class InjectorImpl implements Injector, Lookups {
       throw errors.childBindingAlreadySet(key).toException();
     }
 
+    StartupReport report = StartupReport.current();
+    long start = System.nanoTime();
     BindingImpl<T> binding = createJustInTimeBinding(key, errors);
+    if (report != null) {
+      report.record(StartupReport.Category.JIT_BINDING, key.toString(), start);
+    }
     state.parent().blacklist(key);
-    jitBindings.put(key, binding);
+    putJitBinding(key, binding);
     return binding;
   }
 
@@ -750,23 +806,28 @@ class InjectorImpl implements Injector, Lookups {
     final Dependency<T> dependency = Dependency.get(key);
 
     return new CachingProvider<T>() {
+      /*
+       * This is the hottest path in Guice, so it allocates nothing unless provisioning fails. It
+       * inlines callInContext(), and reuses the context's errors rather than creating its own.
+       */
       public T get() {
-        final Errors errors = new Errors(dependency);
+        InternalContext context = contextPool.enter();
+        boolean outermost = context.enter();
+        Errors errors = context.getErrors();
+        int numErrorsBefore = errors.size();
+        context.setDependency(dependency);
         try {
-          T t = callInContext(new ContextualCallable<T>() {
-            public T call(InternalContext context) throws ErrorsException {
-              context.setDependency(dependency);
-              try {
-                return factory.get(errors, context, dependency);
-              } finally {
-                context.setDependency(null);
-              }
-            }
-          });
-          errors.throwIfNewErrors(0);
+          T t = factory.get(errors, context, dependency);
+          errors.throwIfNewErrors(numErrorsBefore);
           return t;
         } catch (ErrorsException e) {
-          throw new ProvisionException(errors.merge(e.getErrors()).getMessages());
+          throw new ProvisionException(
+              errors.removeNewErrors(dependency, numErrorsBefore, e.getErrors()).getMessages());
+        } finally {
+          context.setDependency(null);
+          if (outermost) {
+            contextPool.exit(context);
+          }
         }
       }
 
@@ -804,22 +865,22 @@ class InjectorImpl implements Injector, Lookups {
     return getProvider(type).get();
   }
 
-  final ThreadLocal<Object[]> localContext;
+  /** Contexts for provisions on each thread. Shared with child injectors. */
+  final InternalContextPool contextPool;
 
-  /** Looks up thread local context. Creates (and removes) a new context if necessary. */
+  /** Looks up the thread's context. Releases the context when the outermost call completes. */
   <T> T callInContext(ContextualCallable<T> callable) throws ErrorsException {
-    Object[] reference = localContext.get();
-    if (reference[0] == null) {
-      reference[0] = new InternalContext();
+    InternalContext context = contextPool.enter();
+    if (context.enter()) {
       try {
-        return callable.call((InternalContext)reference[0]);
+        return callable.call(context);
       } finally {
-        // Only clear the context if this call created it.
-        reference[0] = null;
+        // Only release the context if this call entered it.
+        contextPool.exit(context);
       }
     } else {
-      // Someone else will clean up this context.
-      return callable.call((InternalContext)reference[0]);
+      // Someone else will reset this context.
+      return callable.call(context);
     }
   }
 
@@ -78,6 +78,7 @@ class InjectorShell {
 
     private InjectorImpl parent;
     private Stage stage;
+    private InjectorOptions options;
 
     /** null unless this exists in a {@link Binder#newPrivateBinder private environment} */
     private PrivateElementsImpl privateElements;
@@ -85,6 +86,12 @@ class InjectorShell {
     Builder parent(InjectorImpl parent) {
       this.parent = parent;
       this.state = new InheritingState(parent.state);
+      this.options = parent.options;
+      return this;
+    }
+
+    Builder options(InjectorOptions options) {
+      this.options = options;
       return this;
     }
 
@@ -118,10 +125,11 @@ class InjectorShell {
     List<InjectorShell> build(Initializer initializer, BindingProcessor bindingProcessor,
         Stopwatch stopwatch, Errors errors) {
       checkState(stage != null, "Stage not initialized");
+      checkState(options != null, "Options not initialized");
       checkState(privateElements == null || parent != null, "PrivateElements with no parent");
       checkState(state != null, "no state. Did you remember to lock() ?");
 
-      InjectorImpl injector = new InjectorImpl(parent, state, initializer);
+      InjectorImpl injector = new InjectorImpl(parent, state, initializer, options);
       if (privateElements != null) {
         privateElements.initInjector(injector);
       }
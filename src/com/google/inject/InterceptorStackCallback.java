@@ -16,6 +16,7 @@
 
 package com.google.inject;
 
+import com.google.inject.internal.Lists;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Method;
 import java.util.List;
@@ -24,12 +25,24 @@ import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
 /**
- * Intercepts a method with a stack of interceptors.
+ * Intercepts a method with a stack of interceptors. Each proxied method gets its own callback, so
+ * the stack is computed once when the proxy class is created. Use {@link #create} to get a callback
+ * that's specialized for methods with a single interceptor.
  *
  * @author crazybob@google.com (Bob Lee)
  */
 class InterceptorStackCallback implements net.sf.cglib.proxy.MethodInterceptor {
 
+  /** Calls the intercepted method directly. */
+  static final net.sf.cglib.proxy.MethodInterceptor INVOKE_SUPER
+      = new net.sf.cglib.proxy.MethodInterceptor() {
+    public Object intercept(
+        Object proxy, Method method, Object[] arguments, MethodProxy methodProxy)
+        throws Throwable {
+      return methodProxy.invokeSuper(proxy, arguments);
+    }
+  };
+
   final MethodInterceptor[] interceptors;
   final Method method;
 
@@ -39,6 +52,23 @@ class InterceptorStackCallback implements net.sf.cglib.proxy.MethodInterceptor {
     this.interceptors = interceptors.toArray(new MethodInterceptor[interceptors.size()]);
   }
 
+  /**
+   * Returns a callback that intercepts {@code method} with {@code interceptors}, which mustn't be
+   * empty.
+   */
+  static net.sf.cglib.proxy.MethodInterceptor create(Method method,
+      List<MethodInterceptor> interceptors) {
+    for (MethodInterceptor interceptor : interceptors) {
+      if (interceptor instanceof SwitchableInterceptor) {
+        return new SwitchingCallback(method, interceptors);
+      }
+    }
+
+    return interceptors.size() == 1
+        ? new SingleInterceptorCallback(method, interceptors.get(0))
+        : new InterceptorStackCallback(method, interceptors);
+  }
+
   public Object intercept(Object proxy, Method method, Object[] arguments,
       MethodProxy methodProxy) throws Throwable {
     return new InterceptedMethodInvocation(proxy, methodProxy, arguments).proceed();
@@ -86,4 +116,108 @@ class InterceptorStackCallback implements net.sf.cglib.proxy.MethodInterceptor {
       return getMethod();
     }
   }
+
+  /**
+   * Intercepts a method with a single interceptor. Its invocations are immutable and proceed
+   * straight to the intercepted method, so they needn't track their position in a stack.
+   */
+  static class SingleInterceptorCallback implements net.sf.cglib.proxy.MethodInterceptor {
+
+    final MethodInterceptor interceptor;
+    final Method method;
+
+    SingleInterceptorCallback(Method method, MethodInterceptor interceptor) {
+      this.method = method;
+      this.interceptor = interceptor;
+    }
+
+    public Object intercept(Object proxy, Method method, Object[] arguments,
+        MethodProxy methodProxy) throws Throwable {
+      return interceptor.invoke(
+          new SingleInterceptorInvocation(this.method, proxy, methodProxy, arguments));
+    }
+  }
+
+  /**
+   * Intercepts a method that has switchable interceptors. It delegates to a callback for the
+   * interceptors that are currently enabled, which is replaced whenever one of them is switched,
+   * so that calls don't check whether each interceptor is enabled.
+   */
+  static class SwitchingCallback implements net.sf.cglib.proxy.MethodInterceptor {
+
+    final Method method;
+    final List<MethodInterceptor> interceptors;
+    volatile net.sf.cglib.proxy.MethodInterceptor target;
+
+    SwitchingCallback(Method method, List<MethodInterceptor> interceptors) {
+      this.method = method;
+      this.interceptors = interceptors;
+      for (MethodInterceptor interceptor : interceptors) {
+        if (interceptor instanceof SwitchableInterceptor) {
+          ((SwitchableInterceptor) interceptor).addCallback(this);
+        }
+      }
+    }
+
+    public Object intercept(Object proxy, Method method, Object[] arguments,
+        MethodProxy methodProxy) throws Throwable {
+      return target.intercept(proxy, method, arguments, methodProxy);
+    }
+
+    /** Links this to the interceptors that are enabled now. */
+    synchronized void relink() {
+      List<MethodInterceptor> enabled = Lists.newArrayList();
+      for (MethodInterceptor interceptor : interceptors) {
+        if (!(interceptor instanceof SwitchableInterceptor)) {
+          enabled.add(interceptor);
+        } else if (((SwitchableInterceptor) interceptor).isEnabled()) {
+          enabled.add(((SwitchableInterceptor) interceptor).getDelegate());
+        }
+      }
+
+      if (enabled.isEmpty()) {
+        target = INVOKE_SUPER;
+      } else if (enabled.size() == 1) {
+        target = new SingleInterceptorCallback(method, enabled.get(0));
+      } else {
+        target = new InterceptorStackCallback(method, enabled);
+      }
+    }
+  }
+
+  static final class SingleInterceptorInvocation implements MethodInvocation {
+
+    final Method method;
+    final Object proxy;
+    final MethodProxy methodProxy;
+    final Object[] arguments;
+
+    SingleInterceptorInvocation(Method method, Object proxy, MethodProxy methodProxy,
+        Object[] arguments) {
+      this.method = method;
+      this.proxy = proxy;
+      this.methodProxy = methodProxy;
+      this.arguments = arguments;
+    }
+
+    public Object proceed() throws Throwable {
+      return methodProxy.invokeSuper(proxy, arguments);
+    }
+
+    public Method getMethod() {
+      return method;
+    }
+
+    public Object[] getArguments() {
+      return arguments;
+    }
+
+    public Object getThis() {
+      return proxy;
+    }
+
+    public AccessibleObject getStaticPart() {
+      return method;
+    }
+  }
 }
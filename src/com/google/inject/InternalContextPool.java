@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.InternalContext;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hands out the {@link InternalContext} used by provisions on the current thread. A context is only
+ * bound to a thread while that thread is provisioning; the rest of the time it sits in a small
+ * pool shared by all threads. Applications that inject from many short-lived threads therefore
+ * need only as many contexts as there are concurrent provisions, not one per thread that ever
+ * injected.
+ *
+ * <p>Contexts are passed explicitly down the {@link com.google.inject.internal.InternalFactory}
+ * chain, so the thread-bound lookup is only needed where provisioning enters Guice from user code.
+ * Those entry points follow this pattern:
+ *
+ * <pre>
+ *   InternalContext context = contextPool.enter();
+ *   boolean outermost = context.enter();
+ *   try {
+ *     ...
+ *   } finally {
+ *     if (outermost) {
+ *       contextPool.exit(context);
+ *     }
+ *   }</pre>
+ *
+ * <p>Neither taking nor returning a pooled context allocates.
+ */
+final class InternalContextPool {
+
+  /**
+   * The context bound to each thread that's provisioning. Unbound by setting null rather than by
+   * removing, since removing would reallocate the thread's entry on its next provision. A null
+   * entry doesn't keep anything reachable.
+   */
+  private final ThreadLocal<InternalContext> boundContexts = new ThreadLocal<InternalContext>();
+
+  /** Idle contexts. Contexts that don't fit are left for the garbage collector. */
+  private final AtomicReferenceArray<InternalContext> idleContexts
+      = new AtomicReferenceArray<InternalContext>(
+          Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+
+  /**
+   * Returns the context bound to the current thread, binding an idle context if there's none. If
+   * {@link InternalContext#enter entering} the returned context succeeds, the caller must pass it
+   * to {@link #exit} when it's done.
+   */
+  InternalContext enter() {
+    InternalContext context = boundContexts.get();
+    if (context == null) {
+      context = takeIdleContext();
+      boundContexts.set(context);
+    }
+    return context;
+  }
+
+  /** Resets {@code context}, unbinds it from the current thread and makes it available to others. */
+  void exit(InternalContext context) {
+    context.exit();
+    boundContexts.set(null);
+
+    int size = idleContexts.length();
+    for (int i = firstIndex(size), probes = 0; probes < size; i = (i + 1) % size, probes++) {
+      if (idleContexts.get(i) == null && idleContexts.compareAndSet(i, null, context)) {
+        return;
+      }
+    }
+  }
+
+  private InternalContext takeIdleContext() {
+    int size = idleContexts.length();
+    for (int i = firstIndex(size), probes = 0; probes < size; i = (i + 1) % size, probes++) {
+      if (idleContexts.get(i) != null) {
+        InternalContext context = idleContexts.getAndSet(i, null);
+        if (context != null) {
+          return context;
+        }
+      }
+    }
+    return new InternalContext();
+  }
+
+  /** Spreads threads across the pool, so they don't contend for the same few slots. */
+  private int firstIndex(int size) {
+    return (int) (Thread.currentThread().getId() % size);
+  }
+}
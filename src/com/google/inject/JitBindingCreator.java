@@ -0,0 +1,381 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.BindingImpl;
+import com.google.inject.internal.Errors;
+import com.google.inject.internal.ErrorsException;
+import com.google.inject.internal.Lists;
+import com.google.inject.internal.Maps;
+import com.google.inject.internal.Sets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Coordinates the creation of just-in-time bindings by concurrent threads, for an injector and all
+ * of its children. Bindings that have been created are read from {@link InjectorImpl#jitBindings}
+ * without locking; this is only used when a binding is missing.
+ *
+ * <p>Each thread creates bindings in a <i>session</i>, which lasts for its outermost call to
+ * {@link #create}. A session claims each key it creates, so that threads creating the same key
+ * wait for each other while threads creating different keys don't. The bindings a session creates
+ * are staged rather than published, so that within the session they can refer to each other while
+ * they're only partially initialized. That's how circular dependencies are resolved. The staged
+ * bindings are published when the session ends, at which point they're all initialized.
+ *
+ * <p>If a session would wait for a key claimed by a session that's waiting for it, directly or
+ * indirectly, the two sessions are merged instead. The merged session then behaves like a single
+ * thread that created the bindings of both, and ends once all of its threads are done. Its threads
+ * still create each key once: a thread that needs a key that another thread of its session is
+ * creating waits until that binding is staged, unless that thread is waiting for it in turn.
+ */
+final class JitBindingCreator {
+
+  /** Guards all sessions and claims. Never held while creating bindings. */
+  private final Object lock = new Object();
+
+  /** The session creating each key. */
+  private final Map<Key<?>, Session> claims = Maps.newHashMap();
+
+  /** The thread creating each claimed key, until its binding is created or has failed. */
+  private final Map<Key<?>, Creation> creations = Maps.newHashMap();
+
+  /** The key that each waiting thread needs, when another thread of its session is creating it. */
+  private final Map<Thread, Key<?>> waitingThreads = Maps.newHashMap();
+
+  /** The session of each thread that's creating bindings. */
+  private final ThreadLocal<Session> currentSession = new ThreadLocal<Session>();
+
+  /**
+   * Returns the just-in-time binding for {@code key} in {@code injector}, creating it if
+   * necessary.
+   */
+  <T> BindingImpl<T> create(InjectorImpl injector, Key<T> key, Errors errors)
+      throws ErrorsException {
+    Session session = currentSession.get();
+    boolean outermost = session == null;
+    if (outermost) {
+      session = new Session();
+      currentSession.set(session);
+    }
+
+    try {
+      BindingImpl<T> binding = claim(injector, key, session);
+      if (binding != null) {
+        return binding;
+      }
+      try {
+        return injector.createJustInTimeBindingRecursive(key, errors);
+      } finally {
+        finishCreating(key);
+      }
+    } finally {
+      if (outermost) {
+        endSession();
+      }
+    }
+  }
+
+  /**
+   * Stages a binding being created by the current thread. Returns false if the thread isn't
+   * creating bindings in a session, in which case the injector is being built and the binding can
+   * be put in {@link InjectorImpl#jitBindings} directly.
+   */
+  boolean stage(InjectorImpl injector, Key<?> key, BindingImpl<?> binding) {
+    Session session = currentSession.get();
+    if (session == null) {
+      return false;
+    }
+
+    synchronized (lock) {
+      Map<Key<?>, BindingImpl<?>> bindings = session.resolve().staged.get(injector);
+      if (bindings == null) {
+        bindings = Maps.newHashMap();
+        session.resolve().staged.put(injector, bindings);
+      }
+      bindings.put(key, binding);
+      if (!waitingThreads.isEmpty()) {
+        lock.notifyAll();
+      }
+    }
+    return true;
+  }
+
+  /** Removes a binding whose initialization failed. Returns false, like {@link #stage}. */
+  boolean unstage(InjectorImpl injector, Key<?> key) {
+    Session session = currentSession.get();
+    if (session == null) {
+      return false;
+    }
+
+    synchronized (lock) {
+      Map<Key<?>, BindingImpl<?>> bindings = session.resolve().staged.get(injector);
+      if (bindings != null) {
+        bindings.remove(key);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the binding for {@code key} if it has been published or staged by {@code session}.
+   * Otherwise this claims the key for {@code session}, waiting for any other session that has
+   * claimed it or any other thread of this session that's creating it, and returns null.
+   */
+  private <T> BindingImpl<T> claim(InjectorImpl injector, Key<T> key, Session session) {
+    boolean interrupted = false;
+    try {
+      synchronized (lock) {
+        while (true) {
+          session = session.resolve();
+          BindingImpl<T> binding = findBinding(injector, key, session);
+          if (binding != null) {
+            return binding;
+          }
+
+          Session owner = claims.get(key);
+          if (owner == null) {
+            claims.put(key, session);
+            session.claimedKeys.add(key);
+            startCreating(key);
+            return null;
+          }
+
+          owner = owner.resolve();
+          if (owner == session) {
+            // we're creating this key already, but its binding isn't staged yet
+            Thread current = Thread.currentThread();
+            Creation creation = creations.get(key);
+            if (creation == null || creation.thread == current) {
+              startCreating(key); // this thread is creating it, or a failed creation is retried
+              return null;
+            } else if (isWaitingFor(creation.thread, current)) {
+              return null; // the threads need each other's keys, like a circular dependency
+            }
+            waitingThreads.put(current, key);
+            try {
+              interrupted |= awaitChange();
+            } finally {
+              waitingThreads.remove(current);
+            }
+          } else if (isWaitingFor(owner, session)) {
+            merge(session, owner);
+          } else {
+            session.waitingFor.add(owner);
+            try {
+              interrupted |= awaitChange();
+            } finally {
+              session.resolve().waitingFor.remove(owner);
+            }
+          }
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Records that the current thread is creating {@code key}. Guarded by lock. */
+  private void startCreating(Key<?> key) {
+    Creation creation = creations.get(key);
+    if (creation != null && creation.thread == Thread.currentThread()) {
+      creation.depth++;
+    } else {
+      creations.put(key, new Creation(Thread.currentThread()));
+    }
+  }
+
+  /** Wakes threads waiting for the current thread to create {@code key}, if it was creating it. */
+  private void finishCreating(Key<?> key) {
+    synchronized (lock) {
+      Creation creation = creations.get(key);
+      if (creation != null && creation.thread == Thread.currentThread()
+          && --creation.depth == 0) {
+        creations.remove(key);
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /** Returns the published or staged binding for {@code key}. Guarded by lock. */
+  private <T> BindingImpl<T> findBinding(InjectorImpl injector, Key<T> key, Session session) {
+    BindingImpl<T> published = injector.getPublishedJitBinding(key);
+    if (published != null) {
+      return published;
+    }
+
+    for (InjectorImpl i = injector; i != null; i = i.parent) {
+      Map<Key<?>, BindingImpl<?>> bindings = session.staged.get(i);
+      if (bindings != null) {
+        @SuppressWarnings("unchecked") // we only stage bindings that match their key
+        BindingImpl<T> staged = (BindingImpl<T>) bindings.get(key);
+        if (staged != null) {
+          return staged;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if a thread of {@code waiting} is waiting, directly or indirectly, for a key
+   * claimed by {@code claiming}. Guarded by lock.
+   */
+  private boolean isWaitingFor(Session waiting, Session claiming) {
+    Set<Session> visited = Sets.newSetFromMap(Maps.<Session, Boolean>newIdentityHashMap());
+    List<Session> queue = Lists.newArrayList();
+    queue.add(waiting);
+    while (!queue.isEmpty()) {
+      Session session = queue.remove(queue.size() - 1);
+      if (!visited.add(session)) {
+        continue;
+      }
+      for (Session waitingFor : session.waitingFor) {
+        Session resolved = waitingFor.resolve();
+        if (resolved == claiming) {
+          return true;
+        }
+        queue.add(resolved);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if {@code waiting} is waiting, directly or indirectly, for a key that {@code
+   * creating} is creating. Guarded by lock.
+   */
+  private boolean isWaitingFor(Thread waiting, Thread creating) {
+    Set<Thread> visited = Sets.newSetFromMap(Maps.<Thread, Boolean>newIdentityHashMap());
+    for (Thread thread = waiting; visited.add(thread); ) {
+      Key<?> key = waitingThreads.get(thread);
+      Creation creation = key != null ? creations.get(key) : null;
+      if (creation == null) {
+        return false;
+      } else if (creation.thread == creating) {
+        return true;
+      }
+      thread = creation.thread;
+    }
+    return false;
+  }
+
+  /** Merges {@code from} into {@code into}, and wakes threads that may now proceed. */
+  private void merge(Session from, Session into) {
+    from.mergedInto = into;
+    into.threads += from.threads;
+    into.claimedKeys.addAll(from.claimedKeys);
+    into.waitingFor.addAll(from.waitingFor);
+    for (Map.Entry<InjectorImpl, Map<Key<?>, BindingImpl<?>>> entry : from.staged.entrySet()) {
+      Map<Key<?>, BindingImpl<?>> bindings = into.staged.get(entry.getKey());
+      if (bindings == null) {
+        into.staged.put(entry.getKey(), entry.getValue());
+      } else {
+        bindings.putAll(entry.getValue());
+      }
+    }
+    lock.notifyAll();
+  }
+
+  /**
+   * Ends the current thread's part in its session. The last thread to finish publishes the
+   * session's bindings; the others wait for that so that the bindings they return are initialized.
+   */
+  private void endSession() {
+    Session session = currentSession.get();
+    currentSession.remove();
+
+    synchronized (lock) {
+      session = session.resolve();
+      if (--session.threads > 0) {
+        boolean interrupted = false;
+        while (!session.resolve().published) {
+          interrupted |= awaitChange();
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+        return;
+      }
+
+      for (Map.Entry<InjectorImpl, Map<Key<?>, BindingImpl<?>>> entry : session.staged.entrySet()) {
+        entry.getKey().jitBindings.putAll(entry.getValue());
+      }
+      for (Key<?> key : session.claimedKeys) {
+        claims.remove(key);
+      }
+      session.published = true;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Waits for another session to publish or merge. Returns true if the thread was interrupted, in
+   * which case the caller should restore its interrupt status once it stops waiting. Like the lock
+   * that this replaces, creating bindings can't be interrupted. Guarded by lock.
+   */
+  private boolean awaitChange() {
+    try {
+      lock.wait();
+      return false;
+    } catch (InterruptedException e) {
+      return true;
+    }
+  }
+
+  /** A thread creating a key, and how many of its calls are creating it. */
+  private static class Creation {
+    final Thread thread;
+    int depth = 1;
+
+    Creation(Thread thread) {
+      this.thread = thread;
+    }
+  }
+
+  /** The bindings created by one thread, or by several once sessions have been merged. */
+  private static class Session {
+    /** The session this was merged into, or null. */
+    Session mergedInto;
+
+    /** The number of threads that haven't yet ended their part in this session. */
+    int threads = 1;
+
+    /** Whether this session's bindings have been published. */
+    boolean published;
+
+    /** Sessions whose claims this session's threads are waiting for. */
+    final List<Session> waitingFor = Lists.newArrayList();
+
+    final List<Key<?>> claimedKeys = Lists.newArrayList();
+
+    /** Bindings that will be published when this session ends, by injector. */
+    final Map<InjectorImpl, Map<Key<?>, BindingImpl<?>>> staged = Maps.newIdentityHashMap();
+
+    /** Returns the session that this has been merged into, or this. Guarded by lock. */
+    Session resolve() {
+      Session session = this;
+      while (session.mergedInto != null) {
+        session = session.mergedInto;
+      }
+      return session;
+    }
+  }
+}
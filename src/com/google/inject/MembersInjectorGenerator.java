@@ -0,0 +1,666 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.BytecodeGen;
+import com.google.inject.internal.Errors;
+import com.google.inject.internal.ErrorsException;
+import com.google.inject.internal.GeneratedMembersInjector;
+import com.google.inject.internal.GeneratedMembersInjector.MemberInjection;
+import com.google.inject.internal.ImmutableList;
+import com.google.inject.internal.InternalContext;
+import com.google.inject.internal.InternalFactory;
+import com.google.inject.internal.Lists;
+import com.google.inject.internal.MoreTypes;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.InjectionListener;
+import com.google.inject.spi.InjectionPoint;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.POP2;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_5;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates a {@link GeneratedMembersInjector} class for a type. The generated code is equivalent
+ * to {@link MembersInjectorImpl}'s loops over {@link SingleFieldInjector}, {@link
+ * SingleMethodInjector}, user members injectors and injection listeners, unrolled for one type:
+ * each dependency's {@link InternalFactory} is called from its own call site, and the results are
+ * assigned to fields and passed to methods without an intermediate array or reflection.
+ *
+ * <p>Members that generated code can't access, like private fields and methods, are injected by
+ * their reflective member injectors, called in order with the others.
+ */
+final class MembersInjectorGenerator {
+
+  private static final Logger logger = Logger.getLogger(MembersInjectorGenerator.class.getName());
+
+  private static final AtomicInteger counter = new AtomicInteger();
+
+  private static final String SUPERCLASS = Type.getInternalName(GeneratedMembersInjector.class);
+  private static final String ERRORS = Type.getInternalName(Errors.class);
+  private static final String ERRORS_EXCEPTION = Type.getInternalName(ErrorsException.class);
+  private static final String CONTEXT = Type.getInternalName(InternalContext.class);
+  private static final String INTERNAL_FACTORY = Type.getInternalName(InternalFactory.class);
+  private static final String MEMBER_INJECTION = Type.getInternalName(MemberInjection.class);
+  private static final String MEMBERS_INJECTOR = Type.getInternalName(MembersInjector.class);
+  private static final String INJECTION_LISTENER = Type.getInternalName(InjectionListener.class);
+  private static final String DEPENDENCY_DESC = Type.getDescriptor(Dependency.class);
+  private static final String INTERNAL_FACTORY_DESC = Type.getDescriptor(InternalFactory.class);
+  private static final String INJECTION_POINT_DESC = Type.getDescriptor(InjectionPoint.class);
+  private static final String MEMBER_INJECTION_DESC = Type.getDescriptor(MemberInjection.class);
+  private static final String MEMBERS_INJECTOR_DESC = Type.getDescriptor(MembersInjector.class);
+  private static final String INJECTION_LISTENER_DESC
+      = Type.getDescriptor(InjectionListener.class);
+  private static final String TYPE_LITERAL_DESC = Type.getDescriptor(TypeLiteral.class);
+  private static final String GET_DESC = "(L" + ERRORS + ";L" + CONTEXT + ";" + DEPENDENCY_DESC
+      + ")Ljava/lang/Object;";
+  private static final String SET_DEPENDENCY_DESC = "(" + DEPENDENCY_DESC + ")V";
+  private static final String WITH_SOURCE_DESC = "(Ljava/lang/Object;)L" + ERRORS + ";";
+  private static final String MERGE_DESC = "(L" + ERRORS + ";)L" + ERRORS + ";";
+  private static final String INJECT_DESC
+      = "(L" + ERRORS + ";L" + CONTEXT + ";Ljava/lang/Object;)V";
+
+  // locals of the generated injectMembers method
+  private static final int INSTANCE = 1;
+  private static final int ERRORS_LOCAL = 2;
+  private static final int CONTEXT_LOCAL = 3;
+  private static final int NUM_ERRORS_BEFORE = 4;
+  private static final int NUM_ERRORS_BEFORE_PARAMETER = 5;
+  private static final int EXCEPTION = 6;
+  private static final int FIRST_PARAMETER = 7;
+
+  private final TypeLiteral<?> type;
+  private final Class<?> rawType;
+  private final ImmutableList<SingleMemberInjector> memberInjectors;
+  private final ImmutableList<? extends MembersInjector<?>> userMembersInjectors;
+  private final ImmutableList<? extends InjectionListener<?>> injectionListeners;
+  private final String className;
+  private final String internalName;
+
+  /** True for each member that generated code injects directly rather than by delegating. */
+  private final boolean[] direct;
+
+  /** The fields of the generated class, in the order their values are passed to its constructor. */
+  private final List<String> fieldNames = Lists.newArrayList();
+  private final List<String> fieldDescs = Lists.newArrayList();
+  private final List<Object> fieldValues = Lists.newArrayList();
+
+  /** The class whose package we must share, or null if the generated class only uses public API. */
+  private Class<?> samePackageAs;
+
+  private MembersInjectorGenerator(TypeLiteral<?> type,
+      ImmutableList<SingleMemberInjector> memberInjectors,
+      ImmutableList<? extends MembersInjector<?>> userMembersInjectors,
+      ImmutableList<? extends InjectionListener<?>> injectionListeners) {
+    this.type = type;
+    this.rawType = type.getRawType();
+    this.memberInjectors = memberInjectors;
+    this.userMembersInjectors = userMembersInjectors;
+    this.injectionListeners = injectionListeners;
+    this.direct = new boolean[memberInjectors.size()];
+
+    String prefix = rawType.getName();
+    if (prefix.startsWith("java.")) {
+      prefix = "$" + prefix;
+    }
+    this.className = prefix + "$$MembersInjectorByGuice$$"
+        + Integer.toHexString(counter.incrementAndGet());
+    this.internalName = className.replace('.', '/');
+  }
+
+  /**
+   * Returns a generated members injector for {@code type}, or {@code null} if it couldn't be
+   * generated.
+   *
+   * @param hiddenClasses true to define the members injector as a hidden class of {@code type},
+   *     where the VM supports them.
+   */
+  static <T> GeneratedMembersInjector<T> create(TypeLiteral<T> type,
+      ImmutableList<SingleMemberInjector> memberInjectors,
+      ImmutableList<MembersInjector<? super T>> userMembersInjectors,
+      ImmutableList<InjectionListener<? super T>> injectionListeners, boolean hiddenClasses) {
+    MembersInjectorGenerator generator = new MembersInjectorGenerator(
+        type, memberInjectors, userMembersInjectors, injectionListeners);
+
+    try {
+      return generator.generate(hiddenClasses);
+    } catch (Exception e) {
+      logger.log(Level.FINE, "Failed to generate a members injector for " + type, e);
+      return null;
+    } catch (LinkageError e) {
+      logger.log(Level.FINE, "Failed to generate a members injector for " + type, e);
+      return null;
+    }
+  }
+
+  /** Returns true if generated code can assign {@code fieldInjector}'s field. */
+  private boolean canInject(SingleFieldInjector fieldInjector) {
+    Field field = fieldInjector.field;
+    return !Modifier.isFinal(field.getModifiers())
+        && canAccess(field)
+        && canAccess(field.getType());
+  }
+
+  /** Returns true if generated code can call {@code methodInjector}'s method. */
+  private boolean canInject(SingleMethodInjector methodInjector) {
+    Method method = (Method) methodInjector.injectionPoint.getMember();
+    if (!canAccess(method)) {
+      return false;
+    }
+    for (Class<?> parameterType : method.getParameterTypes()) {
+      if (!canAccess(parameterType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns true if generated code can call or assign {@code member}. */
+  private boolean canAccess(Member member) {
+    int modifiers = member.getModifiers();
+    if (Modifier.isPrivate(modifiers) || !canAccess(member.getDeclaringClass())) {
+      return false;
+    }
+    // protected members are only visible to subclasses in other packages
+    return Modifier.isPublic(modifiers) || requireSamePackage(member.getDeclaringClass());
+  }
+
+  /** Returns true if generated code can reference {@code type}. */
+  private boolean canAccess(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    // the VM treats protected nested classes as public, and private ones as package-private
+    return type.isPrimitive()
+        || BytecodeGen.Visibility.forType(type) == BytecodeGen.Visibility.PUBLIC
+        || requireSamePackage(type);
+  }
+
+  private boolean requireSamePackage(Class<?> type) {
+    if (rawType.getClassLoader() == null
+        || type.getClassLoader() != rawType.getClassLoader()
+        || !packageName(type).equals(packageName(rawType))) {
+      return false;
+    }
+    samePackageAs = rawType;
+    return true;
+  }
+
+  private static String packageName(Class<?> type) {
+    String name = type.getName();
+    int lastDot = name.lastIndexOf('.');
+    return lastDot != -1 ? name.substring(0, lastDot) : "";
+  }
+
+  @SuppressWarnings("unchecked") // the generated class injects instances of T
+  private <T> GeneratedMembersInjector<T> generate(boolean hiddenClasses) throws Exception {
+    addField("type", TYPE_LITERAL_DESC, type);
+    for (int i = 0; i < memberInjectors.size(); i++) {
+      SingleMemberInjector memberInjector = memberInjectors.get(i);
+      if (memberInjector instanceof SingleFieldInjector
+          && canInject((SingleFieldInjector) memberInjector)) {
+        SingleFieldInjector fieldInjector = (SingleFieldInjector) memberInjector;
+        direct[i] = true;
+        addField("dependency" + i, DEPENDENCY_DESC, fieldInjector.dependency);
+        addField("factory" + i, INTERNAL_FACTORY_DESC, fieldInjector.factory);
+        addField("injectionPoint" + i, INJECTION_POINT_DESC, fieldInjector.injectionPoint);
+      } else if (memberInjector instanceof SingleMethodInjector
+          && canInject((SingleMethodInjector) memberInjector)) {
+        SingleMethodInjector methodInjector = (SingleMethodInjector) memberInjector;
+        direct[i] = true;
+        addField("injectionPoint" + i, INJECTION_POINT_DESC, methodInjector.injectionPoint);
+        SingleParameterInjector<?>[] parameterInjectors = parameterInjectors(methodInjector);
+        for (int p = 0; p < parameterInjectors.length; p++) {
+          addField("dependency" + i + "_" + p, DEPENDENCY_DESC, parameterInjectors[p].dependency);
+          addField("factory" + i + "_" + p, INTERNAL_FACTORY_DESC, parameterInjectors[p].factory);
+        }
+      } else {
+        addField("member" + i, MEMBER_INJECTION_DESC, new Delegate(memberInjector));
+      }
+    }
+    for (int i = 0; i < userMembersInjectors.size(); i++) {
+      addField("userMembersInjector" + i, MEMBERS_INJECTOR_DESC, userMembersInjectors.get(i));
+    }
+    for (int i = 0; i < injectionListeners.size(); i++) {
+      addField("injectionListener" + i, INJECTION_LISTENER_DESC, injectionListeners.get(i));
+    }
+
+    ClassLoader classLoader = samePackageAs != null
+        ? samePackageAs.getClassLoader()
+        : BytecodeGen.getClassLoader(rawType);
+    Class<?> injectorClass = BytecodeGen.defineClass(
+        rawType, className, toBytecode(), classLoader, hiddenClasses);
+    return (GeneratedMembersInjector<T>) injectorClass.getConstructor(Object[].class)
+        .newInstance(new Object[] { fieldValues.toArray() });
+  }
+
+  private void addField(String name, String desc, Object value) {
+    fieldNames.add(name);
+    fieldDescs.add(desc);
+    fieldValues.add(value);
+  }
+
+  private static SingleParameterInjector<?>[] parameterInjectors(
+      SingleMethodInjector methodInjector) {
+    return methodInjector.parameterInjectors != null
+        ? methodInjector.parameterInjectors
+        : new SingleParameterInjector<?>[0];
+  }
+
+  private byte[] toBytecode() {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, internalName, null, SUPERCLASS, null);
+
+    for (int i = 0; i < fieldNames.size(); i++) {
+      cw.visitField(ACC_PRIVATE | ACC_FINAL, fieldNames.get(i), fieldDescs.get(i), null, null);
+    }
+
+    generateConstructor(cw);
+    generateInjectMembers(cw);
+    generateNotifyListeners(cw);
+
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /** Copies the dependencies, factories, injectors and listeners from an array into fields. */
+  private void generateConstructor(ClassWriter cw) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, SUPERCLASS, "<init>", "()V");
+
+    for (int i = 0; i < fieldNames.size(); i++) {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitLdcInsn(i);
+      mv.visitInsn(AALOAD);
+      mv.visitTypeInsn(CHECKCAST, Type.getType(fieldDescs.get(i)).getInternalName());
+      mv.visitFieldInsn(PUTFIELD, internalName, fieldNames.get(i), fieldDescs.get(i));
+    }
+
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /**
+   * Injects each member like {@link MembersInjectorImpl#injectMembers(Object, Errors,
+   * InternalContext)}, and then runs the user members injectors.
+   */
+  private void generateInjectMembers(ClassWriter cw) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "injectMembers",
+        "(Ljava/lang/Object;L" + ERRORS + ";L" + CONTEXT + ";)V", null, null);
+    mv.visitCode();
+
+    for (int i = 0; i < memberInjectors.size(); i++) {
+      SingleMemberInjector memberInjector = memberInjectors.get(i);
+      if (!direct[i]) {
+        loadField(mv, "member" + i, MEMBER_INJECTION_DESC);
+        mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+        mv.visitVarInsn(ALOAD, CONTEXT_LOCAL);
+        mv.visitVarInsn(ALOAD, INSTANCE);
+        mv.visitMethodInsn(INVOKEINTERFACE, MEMBER_INJECTION, "inject", INJECT_DESC);
+      } else if (memberInjector instanceof SingleFieldInjector) {
+        injectField(mv, i, ((SingleFieldInjector) memberInjector).field);
+      } else {
+        injectMethod(mv, i, (SingleMethodInjector) memberInjector);
+      }
+    }
+
+    for (int i = 0; i < userMembersInjectors.size(); i++) {
+      String userMembersInjector = "userMembersInjector" + i;
+      Label start = new Label();
+      Label end = new Label();
+      Label onRuntimeException = new Label();
+      Label done = new Label();
+      mv.visitTryCatchBlock(start, end, onRuntimeException, "java/lang/RuntimeException");
+
+      mv.visitLabel(start);
+      loadField(mv, userMembersInjector, MEMBERS_INJECTOR_DESC);
+      mv.visitVarInsn(ALOAD, INSTANCE);
+      mv.visitMethodInsn(INVOKEINTERFACE, MEMBERS_INJECTOR, "injectMembers",
+          "(Ljava/lang/Object;)V");
+      mv.visitLabel(end);
+      mv.visitJumpInsn(GOTO, done);
+
+      // errors.errorInUserInjector(userMembersInjector, type, e);
+      mv.visitLabel(onRuntimeException);
+      mv.visitVarInsn(ASTORE, EXCEPTION);
+      mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+      loadField(mv, userMembersInjector, MEMBERS_INJECTOR_DESC);
+      loadField(mv, "type", TYPE_LITERAL_DESC);
+      mv.visitVarInsn(ALOAD, EXCEPTION);
+      mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "errorInUserInjector",
+          "(" + MEMBERS_INJECTOR_DESC + TYPE_LITERAL_DESC + "Ljava/lang/RuntimeException;)L"
+              + ERRORS + ";");
+      mv.visitInsn(POP);
+
+      mv.visitLabel(done);
+    }
+
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /** Injects a field like {@link SingleFieldInjector#inject}. */
+  private void injectField(MethodVisitor mv, int i, Field field) {
+    String dependency = "dependency" + i;
+
+    mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "size", "()I");
+    mv.visitVarInsn(ISTORE, NUM_ERRORS_BEFORE);
+
+    Label start = new Label();
+    Label end = new Label();
+    Label onErrorsException = new Label();
+    Label onThrowable = new Label();
+    Label done = new Label();
+    mv.visitTryCatchBlock(start, end, onErrorsException, ERRORS_EXCEPTION);
+    mv.visitTryCatchBlock(start, end, onThrowable, null);
+
+    setDependency(mv, dependency);
+    mv.visitLabel(start);
+    String declaringClass = Type.getInternalName(field.getDeclaringClass());
+    mv.visitVarInsn(ALOAD, INSTANCE);
+    mv.visitTypeInsn(CHECKCAST, declaringClass);
+    getDependency(mv, "factory" + i, dependency);
+    unbox(mv, field.getType());
+    mv.visitFieldInsn(PUTFIELD, declaringClass, field.getName(),
+        Type.getDescriptor(field.getType()));
+    mv.visitLabel(end);
+    mv.visitJumpInsn(GOTO, done);
+
+    // errors.withSource(injectionPoint).merge(e.getErrors());
+    mv.visitLabel(onErrorsException);
+    mv.visitVarInsn(ASTORE, EXCEPTION);
+    mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+    loadField(mv, "injectionPoint" + i, INJECTION_POINT_DESC);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "withSource", WITH_SOURCE_DESC);
+    mergeException(mv);
+    mv.visitJumpInsn(GOTO, done);
+
+    // finally
+    mv.visitLabel(onThrowable);
+    mv.visitVarInsn(ASTORE, EXCEPTION);
+    finishDependency(mv, dependency, NUM_ERRORS_BEFORE);
+    mv.visitVarInsn(ALOAD, EXCEPTION);
+    mv.visitInsn(ATHROW);
+
+    mv.visitLabel(done);
+    finishDependency(mv, dependency, NUM_ERRORS_BEFORE);
+  }
+
+  /**
+   * Injects a method like {@link SingleMethodInjector#inject}: resolves each parameter like {@link
+   * SingleParameterInjector#getAll}, collecting all errors, and then calls the method directly
+   * unless there were any.
+   */
+  private void injectMethod(MethodVisitor mv, int i, SingleMethodInjector methodInjector) {
+    Method method = (Method) methodInjector.injectionPoint.getMember();
+    SingleParameterInjector<?>[] parameterInjectors = parameterInjectors(methodInjector);
+
+    mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "size", "()I");
+    mv.visitVarInsn(ISTORE, NUM_ERRORS_BEFORE);
+
+    for (int p = 0; p < parameterInjectors.length; p++) {
+      String dependency = "dependency" + i + "_" + p;
+      mv.visitInsn(ACONST_NULL);
+      mv.visitVarInsn(ASTORE, FIRST_PARAMETER + p);
+
+      Label start = new Label();
+      Label end = new Label();
+      Label onErrorsException = new Label();
+      Label onThrowable = new Label();
+      Label done = new Label();
+      Label next = new Label();
+      mv.visitTryCatchBlock(start, end, onErrorsException, ERRORS_EXCEPTION);
+      mv.visitTryCatchBlock(start, end, onThrowable, null);
+
+      mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+      mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "size", "()I");
+      mv.visitVarInsn(ISTORE, NUM_ERRORS_BEFORE_PARAMETER);
+      setDependency(mv, dependency);
+      mv.visitLabel(start);
+      getDependency(mv, "factory" + i + "_" + p, dependency);
+      mv.visitVarInsn(ASTORE, FIRST_PARAMETER + p);
+      mv.visitLabel(end);
+      mv.visitJumpInsn(GOTO, done);
+
+      // errors.merge(e.getErrors()), after the finally block
+      mv.visitLabel(onErrorsException);
+      mv.visitVarInsn(ASTORE, EXCEPTION);
+      finishDependency(mv, dependency, NUM_ERRORS_BEFORE_PARAMETER);
+      mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+      mergeException(mv);
+      mv.visitJumpInsn(GOTO, next);
+
+      // finally
+      mv.visitLabel(onThrowable);
+      mv.visitVarInsn(ASTORE, EXCEPTION);
+      finishDependency(mv, dependency, NUM_ERRORS_BEFORE_PARAMETER);
+      mv.visitVarInsn(ALOAD, EXCEPTION);
+      mv.visitInsn(ATHROW);
+
+      mv.visitLabel(done);
+      finishDependency(mv, dependency, NUM_ERRORS_BEFORE_PARAMETER);
+      mv.visitLabel(next);
+    }
+
+    // skip the method if any of its parameters couldn't be resolved
+    Label skip = new Label();
+    mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "size", "()I");
+    mv.visitVarInsn(ILOAD, NUM_ERRORS_BEFORE);
+    mv.visitJumpInsn(IF_ICMPNE, skip);
+
+    String declaringClass = Type.getInternalName(method.getDeclaringClass());
+    mv.visitVarInsn(ALOAD, INSTANCE);
+    mv.visitTypeInsn(CHECKCAST, declaringClass);
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    for (int p = 0; p < parameterTypes.length; p++) {
+      mv.visitVarInsn(ALOAD, FIRST_PARAMETER + p);
+      unbox(mv, parameterTypes[p]);
+    }
+
+    // errors.withSource(injectionPoint).errorInjectingMethod(e), as reflection would report it
+    Label start = new Label();
+    Label end = new Label();
+    Label onThrowable = new Label();
+    mv.visitTryCatchBlock(start, end, onThrowable, "java/lang/Throwable");
+    mv.visitLabel(start);
+    mv.visitMethodInsn(INVOKEVIRTUAL, declaringClass, method.getName(),
+        Type.getMethodDescriptor(method));
+    mv.visitLabel(end);
+    Class<?> returnType = method.getReturnType();
+    if (returnType == long.class || returnType == double.class) {
+      mv.visitInsn(POP2);
+    } else if (returnType != void.class) {
+      mv.visitInsn(POP);
+    }
+    mv.visitJumpInsn(GOTO, skip);
+
+    mv.visitLabel(onThrowable);
+    mv.visitVarInsn(ASTORE, EXCEPTION);
+    mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+    loadField(mv, "injectionPoint" + i, INJECTION_POINT_DESC);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "withSource", WITH_SOURCE_DESC);
+    mv.visitVarInsn(ALOAD, EXCEPTION);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "errorInjectingMethod",
+        "(Ljava/lang/Throwable;)L" + ERRORS + ";");
+    mv.visitInsn(POP);
+
+    mv.visitLabel(skip);
+  }
+
+  /** Notifies each listener like {@link MembersInjectorImpl#notifyListeners}. */
+  private void generateNotifyListeners(ClassWriter cw) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "notifyListeners",
+        "(Ljava/lang/Object;L" + ERRORS + ";)V", null, new String[] { ERRORS_EXCEPTION });
+    mv.visitCode();
+
+    // locals: this, instance, errors, numErrorsBefore, exception
+    int instance = 1;
+    int errors = 2;
+    int numErrorsBefore = 3;
+    int exception = 4;
+
+    mv.visitVarInsn(ALOAD, errors);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "size", "()I");
+    mv.visitVarInsn(ISTORE, numErrorsBefore);
+
+    for (int i = 0; i < injectionListeners.size(); i++) {
+      String injectionListener = "injectionListener" + i;
+      Label start = new Label();
+      Label end = new Label();
+      Label onRuntimeException = new Label();
+      Label done = new Label();
+      mv.visitTryCatchBlock(start, end, onRuntimeException, "java/lang/RuntimeException");
+
+      mv.visitLabel(start);
+      loadField(mv, injectionListener, INJECTION_LISTENER_DESC);
+      mv.visitVarInsn(ALOAD, instance);
+      mv.visitMethodInsn(INVOKEINTERFACE, INJECTION_LISTENER, "afterInjection",
+          "(Ljava/lang/Object;)V");
+      mv.visitLabel(end);
+      mv.visitJumpInsn(GOTO, done);
+
+      // errors.errorNotifyingInjectionListener(injectionListener, type, e);
+      mv.visitLabel(onRuntimeException);
+      mv.visitVarInsn(ASTORE, exception);
+      mv.visitVarInsn(ALOAD, errors);
+      loadField(mv, injectionListener, INJECTION_LISTENER_DESC);
+      loadField(mv, "type", TYPE_LITERAL_DESC);
+      mv.visitVarInsn(ALOAD, exception);
+      mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "errorNotifyingInjectionListener",
+          "(" + INJECTION_LISTENER_DESC + TYPE_LITERAL_DESC + "Ljava/lang/RuntimeException;)L"
+              + ERRORS + ";");
+      mv.visitInsn(POP);
+
+      mv.visitLabel(done);
+    }
+
+    mv.visitVarInsn(ALOAD, errors);
+    mv.visitVarInsn(ILOAD, numErrorsBefore);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "throwIfNewErrors", "(I)V");
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void loadField(MethodVisitor mv, String name, String desc) {
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, internalName, name, desc);
+  }
+
+  /** Pushes {@code factory.get(errors, context, dependency)}. */
+  private void getDependency(MethodVisitor mv, String factory, String dependency) {
+    loadField(mv, factory, INTERNAL_FACTORY_DESC);
+    mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+    mv.visitVarInsn(ALOAD, CONTEXT_LOCAL);
+    loadField(mv, dependency, DEPENDENCY_DESC);
+    mv.visitMethodInsn(INVOKEINTERFACE, INTERNAL_FACTORY, "get", GET_DESC);
+  }
+
+  private void setDependency(MethodVisitor mv, String dependency) {
+    mv.visitVarInsn(ALOAD, CONTEXT_LOCAL);
+    loadField(mv, dependency, DEPENDENCY_DESC);
+    mv.visitMethodInsn(INVOKEVIRTUAL, CONTEXT, "setDependency", SET_DEPENDENCY_DESC);
+  }
+
+  /** Merges the caught exception's errors into the errors on the stack. */
+  private void mergeException(MethodVisitor mv) {
+    mv.visitVarInsn(ALOAD, EXCEPTION);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS_EXCEPTION, "getErrors", "()L" + ERRORS + ";");
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "merge", MERGE_DESC);
+    mv.visitInsn(POP);
+  }
+
+  /** Clears the context's dependency and attributes new errors to it. */
+  private void finishDependency(MethodVisitor mv, String dependency, int numErrorsBefore) {
+    mv.visitVarInsn(ALOAD, CONTEXT_LOCAL);
+    mv.visitInsn(ACONST_NULL);
+    mv.visitMethodInsn(INVOKEVIRTUAL, CONTEXT, "setDependency", SET_DEPENDENCY_DESC);
+    mv.visitVarInsn(ALOAD, ERRORS_LOCAL);
+    loadField(mv, dependency, DEPENDENCY_DESC);
+    mv.visitVarInsn(ILOAD, numErrorsBefore);
+    mv.visitMethodInsn(INVOKEVIRTUAL, ERRORS, "addSourceToNewErrors", "(Ljava/lang/Object;I)V");
+  }
+
+  /** Converts the object on the stack to {@code type}, unboxing primitives. */
+  private static void unbox(MethodVisitor mv, Class<?> type) {
+    if (!type.isPrimitive()) {
+      mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+      return;
+    }
+
+    String wrapperName = Type.getInternalName(
+        MoreTypes.makeKeySafe(TypeLiteral.get(type)).getRawType());
+    mv.visitTypeInsn(CHECKCAST, wrapperName);
+    mv.visitMethodInsn(INVOKEVIRTUAL, wrapperName, type.getName() + "Value",
+        "()" + Type.getDescriptor(type));
+  }
+
+  /**
+   * Lets generated code inject a member that it can't access directly, without exposing {@link
+   * SingleMemberInjector} outside of this package.
+   */
+  private static class Delegate implements MemberInjection {
+    final SingleMemberInjector memberInjector;
+
+    Delegate(SingleMemberInjector memberInjector) {
+      this.memberInjector = memberInjector;
+    }
+
+    public void inject(Errors errors, InternalContext context, Object o) {
+      memberInjector.inject(errors, context, o);
+    }
+  }
+}
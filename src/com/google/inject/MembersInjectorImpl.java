@@ -18,6 +18,7 @@ package com.google.inject;
 
 import com.google.inject.internal.Errors;
 import com.google.inject.internal.ErrorsException;
+import com.google.inject.internal.GeneratedMembersInjector;
 import com.google.inject.internal.ImmutableList;
 import com.google.inject.internal.ImmutableSet;
 import com.google.inject.internal.InternalContext;
@@ -35,17 +36,40 @@ class MembersInjectorImpl<T> implements MembersInjector<T> {
   private final ImmutableList<SingleMemberInjector> memberInjectors;
   private final ImmutableList<MembersInjector<? super T>> userMembersInjectors;
   private final ImmutableList<InjectionListener<? super T>> injectionListeners;
+  /** Injects members and notifies listeners with generated code, or null to loop over them. */
+  private final GeneratedMembersInjector<T> generated;
   /*if[AOP]*/
   private final ImmutableList<MethodAspect> addedAspects;
   /*end[AOP]*/
 
   MembersInjectorImpl(InjectorImpl injector, TypeLiteral<T> typeLiteral,
       EncounterImpl<T> encounter, ImmutableList<SingleMemberInjector> memberInjectors) {
+    this(injector, typeLiteral, encounter, memberInjectors, false);
+  }
+
+  /**
+   * @param generate true to inject members and notify listeners with a class generated for this
+   *     type, where possible.
+   */
+  MembersInjectorImpl(InjectorImpl injector, TypeLiteral<T> typeLiteral,
+      EncounterImpl<T> encounter, ImmutableList<SingleMemberInjector> memberInjectors,
+      boolean generate) {
     this.injector = injector;
     this.typeLiteral = typeLiteral;
     this.memberInjectors = memberInjectors;
     this.userMembersInjectors = encounter.getMembersInjectors();
     this.injectionListeners = encounter.getInjectionListeners();
+    GeneratedMembersInjector<T> generated = null;
+    /*if[AOP]*/
+    if (generate && !(memberInjectors.isEmpty()
+        && userMembersInjectors.isEmpty()
+        && injectionListeners.isEmpty())) {
+      generated = MembersInjectorGenerator.create(
+          typeLiteral, memberInjectors, userMembersInjectors, injectionListeners,
+          injector.options.hiddenClasses);
+    }
+    /*end[AOP]*/
+    this.generated = generated;
     /*if[AOP]*/
     this.addedAspects = encounter.getAspects();
     /*end[AOP]*/
@@ -82,6 +106,11 @@ class MembersInjectorImpl<T> implements MembersInjector<T> {
   }
 
   void notifyListeners(T instance, Errors errors) throws ErrorsException {
+    if (generated != null) {
+      generated.notifyListeners(instance, errors);
+      return;
+    }
+
     int numErrorsBefore = errors.size();
     for (InjectionListener<? super T> injectionListener : injectionListeners) {
       try {
@@ -94,11 +123,21 @@ class MembersInjectorImpl<T> implements MembersInjector<T> {
   }
 
   void injectMembers(T t, Errors errors, InternalContext context) {
+    if (generated != null) {
+      generated.injectMembers(t, errors, context);
+      return;
+    }
+
     // optimization: use manual for/each to save allocating an iterator here
     for (int i = 0, size = memberInjectors.size(); i < size; i++) {
       memberInjectors.get(i).inject(errors, context, t);
     }
 
+    injectUserMembers(t, errors);
+  }
+
+  /** Runs the members injectors registered by type listeners. */
+  void injectUserMembers(T t, Errors errors) {
     // optimization: use manual for/each to save allocating an iterator here
     for (int i = 0, size = userMembersInjectors.size(); i < size; i++) {
       MembersInjector<? super T> userMembersInjector = userMembersInjectors.get(i);
@@ -34,6 +34,7 @@ import java.util.Set;
  */
 class MembersInjectorStore {
   private final InjectorImpl injector;
+  private final boolean generateMembersInjectors;
   private final ImmutableList<TypeListenerBinding> typeListenerBindings;
 
   private final FailableCache<TypeLiteral<?>, MembersInjectorImpl<?>> cache
@@ -47,6 +48,7 @@ class MembersInjectorStore {
   MembersInjectorStore(InjectorImpl injector,
       List<TypeListenerBinding> typeListenerBindings) {
     this.injector = injector;
+    this.generateMembersInjectors = injector.options.generateMembersInjectors;
     this.typeListenerBindings = ImmutableList.copyOf(typeListenerBindings);
   }
 
@@ -96,7 +98,8 @@ class MembersInjectorStore {
     encounter.invalidate();
     errors.throwIfNewErrors(numErrorsBefore);
 
-    return new MembersInjectorImpl<T>(injector, type, encounter, injectors);
+    return new MembersInjectorImpl<T>(
+        injector, type, encounter, injectors, generateMembersInjectors);
   }
 
   /**
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.ImmutableList;
+import com.google.inject.internal.IndexableMatcher;
+import com.google.inject.internal.Lists;
+import com.google.inject.internal.Maps;
+import com.google.inject.matcher.Matcher;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Method aspects indexed by the conditions that their matchers require, like an annotation or an
+ * exact class or package. Looking up a class or method only checks the aspects that could match it
+ * rather than every aspect. Aspects are always returned in the order that they were bound.
+ */
+final class MethodAspectIndex {
+
+  private final ImmutableList<MethodAspect> aspects;
+
+  private final Index classIndex = new Index();
+  private final Index methodIndex = new Index();
+
+  MethodAspectIndex(List<MethodAspect> aspects) {
+    this.aspects = ImmutableList.copyOf(aspects);
+    for (int i = 0; i < this.aspects.size(); i++) {
+      MethodAspect aspect = this.aspects.get(i);
+      classIndex.add(aspect.classMatcher, i);
+      methodIndex.add(aspect.methodMatcher, i);
+    }
+  }
+
+  boolean isEmpty() {
+    return aspects.isEmpty();
+  }
+
+  /** Returns the aspects whose class matchers match {@code clazz}. */
+  List<MethodAspect> applicableTo(Class<?> clazz) {
+    if (aspects.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    List<Integer> candidates = Lists.newArrayList();
+    classIndex.addCandidates(clazz, candidates);
+    classIndex.addCandidates(packageName(clazz), candidates);
+
+    List<MethodAspect> result = Lists.newArrayList();
+    for (int i : sorted(candidates)) {
+      MethodAspect aspect = aspects.get(i);
+      if (aspect.matches(clazz)) {
+        result.add(aspect);
+      }
+    }
+    return result;
+  }
+
+  /** Returns the aspects whose method matchers match {@code method}. */
+  List<MethodAspect> applicableTo(Method method) {
+    if (aspects.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    List<Integer> candidates = Lists.newArrayList();
+    methodIndex.addCandidates(method, candidates);
+
+    List<MethodAspect> result = Lists.newArrayList();
+    for (int i : sorted(candidates)) {
+      MethodAspect aspect = aspects.get(i);
+      if (aspect.matches(method)) {
+        result.add(aspect);
+      }
+    }
+    return result;
+  }
+
+  private static String packageName(Class<?> clazz) {
+    Package p = clazz.getPackage();
+    if (p != null) {
+      return p.getName();
+    }
+    String name = clazz.getName();
+    int dot = name.lastIndexOf('.');
+    return dot == -1 ? "" : name.substring(0, dot);
+  }
+
+  private static List<Integer> sorted(List<Integer> candidates) {
+    if (candidates.size() > 1) {
+      Collections.sort(candidates);
+    }
+    return candidates;
+  }
+
+  /** Aspect indices keyed by the condition that one of their matchers requires. */
+  private static class Index {
+    final Map<Object, List<Integer>> byValue = Maps.newHashMap();
+    final Map<String, List<Integer>> byPackageName = Maps.newHashMap();
+    final Map<Class<? extends Annotation>, List<Integer>> byAnnotationType = Maps.newHashMap();
+    final List<Integer> unindexed = Lists.newArrayList();
+
+    void add(Matcher<?> matcher, int i) {
+      if (matcher instanceof IndexableMatcher) {
+        IndexableMatcher indexable = (IndexableMatcher) matcher;
+        Object value = indexable.getRequiredValue();
+        if (value != null) {
+          put(byValue, value, i);
+          return;
+        }
+        Class<? extends Annotation> annotationType = indexable.getRequiredAnnotationType();
+        if (annotationType != null) {
+          put(byAnnotationType, annotationType, i);
+          return;
+        }
+        String packageName = indexable.getRequiredPackageName();
+        if (packageName != null) {
+          put(byPackageName, packageName, i);
+          return;
+        }
+      }
+      unindexed.add(i);
+    }
+
+    /** Adds the aspects that may match {@code element}, by value and by annotation. */
+    void addCandidates(AnnotatedElement element, List<Integer> candidates) {
+      candidates.addAll(unindexed);
+      addAll(byValue.get(element), candidates);
+      if (!byAnnotationType.isEmpty()) {
+        for (Annotation annotation : element.getAnnotations()) {
+          addAll(byAnnotationType.get(annotation.annotationType()), candidates);
+        }
+      }
+    }
+
+    void addCandidates(String packageName, List<Integer> candidates) {
+      addAll(byPackageName.get(packageName), candidates);
+    }
+
+    private static <K> void put(Map<K, List<Integer>> map, K key, int i) {
+      List<Integer> indices = map.get(key);
+      if (indices == null) {
+        indices = Lists.newArrayList();
+        map.put(key, indices);
+      }
+      indices.add(i);
+    }
+
+    private static void addAll(List<Integer> indices, List<Integer> candidates) {
+      if (indices != null) {
+        candidates.addAll(indices);
+      }
+    }
+  }
+}
@@ -16,11 +16,12 @@
 
 package com.google.inject;
 
+import com.google.inject.internal.BindingMetrics;
 import com.google.inject.internal.Errors;
 import com.google.inject.internal.ErrorsException;
 import com.google.inject.internal.InternalContext;
 import com.google.inject.internal.InternalFactory;
-import com.google.inject.spi.Dependency;
+import com.google.inject.internal.SourceProvider;
 
 /**
  * @author crazybob@google.com (Bob Lee)
@@ -29,29 +30,49 @@ class ProviderToInternalFactoryAdapter<T> implements Provider<T> {
 
   private final InjectorImpl injector;
   private final InternalFactory<? extends T> internalFactory;
+  private final BindingMetrics metrics;
 
   public ProviderToInternalFactoryAdapter(InjectorImpl injector,
       InternalFactory<? extends T> internalFactory) {
+    this(injector, internalFactory, null);
+  }
+
+  /** @param metrics the metrics of the binding that's scoped, or null if they aren't collected */
+  ProviderToInternalFactoryAdapter(InjectorImpl injector,
+      InternalFactory<? extends T> internalFactory, BindingMetrics metrics) {
     this.injector = injector;
     this.internalFactory = internalFactory;
+    this.metrics = metrics;
   }
 
   public T get() {
-    final Errors errors = new Errors();
+    // like InjectorImpl's providers, this reuses the context's errors to avoid allocating
+    InternalContext context = injector.contextPool.enter();
+    boolean outermost = context.enter();
+    Errors errors = context.getErrors();
+    int numErrorsBefore = errors.size();
     try {
-      T t = injector.callInContext(new ContextualCallable<T>() {
-        public T call(InternalContext context) throws ErrorsException {
-          Dependency dependency = context.getDependency();
-          return internalFactory.get(errors, context, dependency);
-        }
-      });
-      errors.throwIfNewErrors(0);
+      T t = internalFactory.get(errors, context, context.getDependency());
+      errors.throwIfNewErrors(numErrorsBefore);
       return t;
     } catch (ErrorsException e) {
-      throw new ProvisionException(errors.merge(e.getErrors()).getMessages());
+      throw new ProvisionException(errors.removeNewErrors(
+          SourceProvider.UNKNOWN_SOURCE, numErrorsBefore, e.getErrors()).getMessages());
+    } finally {
+      if (outermost) {
+        injector.contextPool.exit(context);
+      }
     }
   }
 
+  InjectorImpl getInjector() {
+    return injector;
+  }
+
+  BindingMetrics getMetrics() {
+    return metrics;
+  }
+
   @Override public String toString() {
     return internalFactory.toString();
   }
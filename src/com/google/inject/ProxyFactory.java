@@ -17,11 +17,14 @@
 package com.google.inject;
 
 import com.google.inject.internal.BytecodeGen;
+import com.google.inject.internal.Function;
 import static com.google.inject.internal.BytecodeGen.newFastClass;
 import com.google.inject.internal.ImmutableList;
 import com.google.inject.internal.ImmutableMap;
 import com.google.inject.internal.Lists;
+import com.google.inject.internal.MapMaker;
 import com.google.inject.internal.Maps;
+import com.google.inject.internal.StartupReport;
 import com.google.inject.spi.InjectionPoint;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -32,9 +35,9 @@ import java.util.Map;
 import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.CallbackFilter;
 import net.sf.cglib.proxy.Enhancer;
-import net.sf.cglib.proxy.MethodProxy;
 import net.sf.cglib.reflect.FastClass;
 import net.sf.cglib.reflect.FastConstructor;
+import net.sf.cglib.reflect.FastMethod;
 import org.aopalliance.intercept.MethodInterceptor;
 
 /**
@@ -45,20 +48,31 @@ import org.aopalliance.intercept.MethodInterceptor;
  */
 class ProxyFactory<T> implements ConstructionProxyFactory<T> {
 
-  private static final net.sf.cglib.proxy.MethodInterceptor NO_OP_METHOD_INTERCEPTOR
-      = new net.sf.cglib.proxy.MethodInterceptor() {
-    public Object intercept(
-        Object proxy, Method method, Object[] arguments, MethodProxy methodProxy)
-        throws Throwable {
-      return methodProxy.invokeSuper(proxy, arguments);
+  /** The static method of enhanced classes that binds callbacks to the next constructed instance. */
+  private static final String SET_THREAD_CALLBACKS_NAME = "CGLIB$SET_THREAD_CALLBACKS";
+  private static final Object[] UNBIND_CALLBACKS = new Object[] { null };
+
+  /**
+   * Enhanced classes by declaring class, shared by all injectors. Both keys and values are weakly
+   * referenced so that the classes can still be unloaded; the construction proxies of each
+   * injector keep the enhanced classes that they use cached.
+   */
+  private static final Map<Class<?>, EnhancedClasses> enhancedClasses
+      = new MapMaker().weakKeys().weakValues().makeComputingMap(
+          new Function<Class<?>, EnhancedClasses>() {
+    public EnhancedClasses apply(Class<?> declaringClass) {
+      return new EnhancedClasses(declaringClass);
     }
-  };
+  });
 
   private final InjectionPoint injectionPoint;
+  private final boolean generateInvoker;
+  private final boolean hiddenClasses;
   private final ImmutableMap<Method, List<MethodInterceptor>> interceptors;
   private final Class<T> declaringClass;
-  private final List<Method> methods;
-  private final Callback[] callbacks;
+
+  /** The callbacks of the intercepted methods. Other methods proceed without interception. */
+  private final ImmutableMap<Method, Callback> callbacks;
 
   /**
    * PUBLIC is default; it's used if all the methods we're intercepting are public. This impacts
@@ -67,29 +81,47 @@ class ProxyFactory<T> implements ConstructionProxyFactory<T> {
   private BytecodeGen.Visibility visibility = BytecodeGen.Visibility.PUBLIC;
 
   ProxyFactory(InjectionPoint injectionPoint, Iterable<MethodAspect> methodAspects) {
+    this(injectionPoint, methodAspects, false, false);
+  }
+
+  /**
+   * @param generateInvoker true to call the constructor of unintercepted types with a generated
+   *     invoker where possible.
+   * @param hiddenClasses true to define that invoker as a hidden class of the constructed type,
+   *     where the VM supports them.
+   */
+  ProxyFactory(InjectionPoint injectionPoint, Iterable<MethodAspect> methodAspects,
+      boolean generateInvoker, boolean hiddenClasses) {
+    this(injectionPoint, new MethodAspectIndex(ImmutableList.copyOf(methodAspects)),
+        generateInvoker, hiddenClasses);
+  }
+
+  /**
+   * @param methodAspects the injector's aspects, indexed so that only the aspects that could apply
+   *     to the declaring class and each of its methods are checked.
+   */
+  ProxyFactory(InjectionPoint injectionPoint, MethodAspectIndex methodAspects,
+      boolean generateInvoker, boolean hiddenClasses) {
     this.injectionPoint = injectionPoint;
+    this.generateInvoker = generateInvoker;
+    this.hiddenClasses = hiddenClasses;
 
     @SuppressWarnings("unchecked") // the member of injectionPoint is always a Constructor<T>
         Constructor<T> constructor = (Constructor<T>) injectionPoint.getMember();
     declaringClass = constructor.getDeclaringClass();
 
     // Find applicable aspects. Bow out if none are applicable to this class.
-    List<MethodAspect> applicableAspects = Lists.newArrayList();
-    for (MethodAspect methodAspect : methodAspects) {
-      if (methodAspect.matches(declaringClass)) {
-        applicableAspects.add(methodAspect);
-      }
-    }
+    MethodAspectIndex applicableAspects
+        = new MethodAspectIndex(methodAspects.applicableTo(declaringClass));
 
     if (applicableAspects.isEmpty()) {
       interceptors = ImmutableMap.of();
-      methods = ImmutableList.of();
-      callbacks = null;
+      callbacks = ImmutableMap.of();
       return;
     }
 
     // Get list of methods from cglib.
-    methods = Lists.newArrayList();
+    List<Method> methods = Lists.newArrayList();
     Enhancer.getMethods(declaringClass, null, methods);
 
     // Create method/interceptor holders and record indices.
@@ -98,46 +130,35 @@ class ProxyFactory<T> implements ConstructionProxyFactory<T> {
       methodInterceptorsPairs.add(new MethodInterceptorsPair(method));
     }
 
-    // Iterate over aspects and add interceptors for the methods they apply to
+    // Add the interceptors of the aspects that apply to each method, in the order they were bound
     boolean anyMatched = false;
-    for (MethodAspect methodAspect : applicableAspects) {
-      for (MethodInterceptorsPair pair : methodInterceptorsPairs) {
-        if (methodAspect.matches(pair.method)) {
-          visibility = visibility.and(BytecodeGen.Visibility.forMember(pair.method));
-          pair.addAll(methodAspect.interceptors());
-          anyMatched = true;
-        }
+    for (MethodInterceptorsPair pair : methodInterceptorsPairs) {
+      for (MethodAspect methodAspect : applicableAspects.applicableTo(pair.method)) {
+        visibility = visibility.and(BytecodeGen.Visibility.forMember(pair.method));
+        pair.addAll(methodAspect.interceptors());
+        anyMatched = true;
       }
     }
 
     if (!anyMatched) {
       interceptors = ImmutableMap.of();
-      callbacks = null;
+      callbacks = ImmutableMap.of();
       return;
     }
 
-    ImmutableMap.Builder<Method, List<MethodInterceptor>> interceptorsMapBuilder = null; // lazy
-
-    callbacks = new Callback[methods.size()];
-    for (int i = 0; i < methods.size(); i++) {
-      MethodInterceptorsPair pair = methodInterceptorsPairs.get(i);
-
-      if (!pair.hasInterceptors()) {
-        callbacks[i] = NO_OP_METHOD_INTERCEPTOR;
-        continue;
+    ImmutableMap.Builder<Method, List<MethodInterceptor>> interceptorsMapBuilder
+        = ImmutableMap.builder();
+    ImmutableMap.Builder<Method, Callback> callbacksBuilder = ImmutableMap.builder();
+    for (MethodInterceptorsPair pair : methodInterceptorsPairs) {
+      if (pair.hasInterceptors()) {
+        interceptorsMapBuilder.put(pair.method, ImmutableList.copyOf(pair.interceptors));
+        callbacksBuilder.put(
+            pair.method, InterceptorStackCallback.create(pair.method, pair.interceptors));
       }
-
-      if (interceptorsMapBuilder == null) {
-        interceptorsMapBuilder = ImmutableMap.builder();
-      }
-
-      interceptorsMapBuilder.put(pair.method, ImmutableList.copyOf(pair.interceptors));
-      callbacks[i] = new InterceptorStackCallback(pair.method, pair.interceptors);
     }
 
-    interceptors = interceptorsMapBuilder != null
-        ? interceptorsMapBuilder.build()
-        : ImmutableMap.<Method, List<MethodInterceptor>>of();
+    interceptors = interceptorsMapBuilder.build();
+    callbacks = callbacksBuilder.build();
   }
 
   /**
@@ -149,19 +170,13 @@ class ProxyFactory<T> implements ConstructionProxyFactory<T> {
 
   public ConstructionProxy<T> create() {
     if (interceptors.isEmpty()) {
-      return new DefaultConstructionProxyFactory<T>(injectionPoint).create();
+      return new DefaultConstructionProxyFactory<T>(injectionPoint, generateInvoker, hiddenClasses)
+          .create();
     }
 
-    @SuppressWarnings("unchecked")
-    Class<? extends Callback>[] callbackTypes = new Class[methods.size()];
-    Arrays.fill(callbackTypes, net.sf.cglib.proxy.MethodInterceptor.class);
-
-    // Create the proxied class. We're careful to ensure that all enhancer state is not-specific
-    // to this injector. Otherwise, the proxies for each injector will waste PermGen memory
-    Enhancer enhancer = BytecodeGen.newEnhancer(declaringClass, visibility);
-    enhancer.setCallbackFilter(new IndicesCallbackFilter(declaringClass, methods));
-    enhancer.setCallbackTypes(callbackTypes);
-    return new ProxyConstructor<T>(enhancer, injectionPoint, callbacks, interceptors);
+    // All injectors share the enhanced classes of a type; interceptors are bound to each instance
+    return new ProxyConstructor<T>(enhancedClasses.get(declaringClass), visibility,
+        injectionPoint, callbacks, interceptors);
   }
 
   private static class MethodInterceptorsPair {
@@ -184,6 +199,80 @@ class ProxyFactory<T> implements ConstructionProxyFactory<T> {
     }
   }
 
+  /**
+   * The enhanced classes of a declaring class, one for each classloader that intercepted methods
+   * may require. Every method of an enhanced class is intercepted, so the same class serves any
+   * combination of interceptors.
+   */
+  private static class EnhancedClasses {
+    final Map<BytecodeGen.Visibility, EnhancedClass> byVisibility;
+
+    EnhancedClasses(final Class<?> declaringClass) {
+      byVisibility = new MapMaker().makeComputingMap(
+          new Function<BytecodeGen.Visibility, EnhancedClass>() {
+        public EnhancedClass apply(BytecodeGen.Visibility visibility) {
+          return new EnhancedClass(declaringClass, visibility);
+        }
+      });
+    }
+  }
+
+  /**
+   * An enhanced class and what's needed to construct its instances. Callbacks are passed to the
+   * generated class's own static setter immediately before each instance is constructed, which
+   * binds them to that instance. This avoids {@link Enhancer#registerCallbacks}, which looks up
+   * the setter reflectively on every call.
+   */
+  private static class EnhancedClass {
+    final Class<?> type;
+    final List<Method> methods = Lists.newArrayList();
+    final FastMethod setThreadCallbacks;
+    final Map<BytecodeGen.Visibility, FastClass> fastClasses
+        = new MapMaker().makeComputingMap(new Function<BytecodeGen.Visibility, FastClass>() {
+      public FastClass apply(BytecodeGen.Visibility visibility) {
+        return newFastClass(type, visibility);
+      }
+    });
+
+    EnhancedClass(Class<?> declaringClass, BytecodeGen.Visibility visibility) {
+      StartupReport report = StartupReport.current();
+      long start = System.nanoTime();
+      Enhancer.getMethods(declaringClass, null, methods);
+
+      @SuppressWarnings("unchecked")
+      Class<? extends Callback>[] callbackTypes = new Class[methods.size()];
+      Arrays.fill(callbackTypes, net.sf.cglib.proxy.MethodInterceptor.class);
+
+      // We're careful to ensure that all enhancer state is not-specific to this injector.
+      // Otherwise, the proxies for each injector will waste PermGen memory
+      Enhancer enhancer = BytecodeGen.newEnhancer(declaringClass, visibility);
+      enhancer.setCallbackFilter(new IndicesCallbackFilter(declaringClass, methods));
+      enhancer.setCallbackTypes(callbackTypes);
+      type = enhancer.createClass();
+
+      try {
+        setThreadCallbacks = fastClasses.get(BytecodeGen.Visibility.PUBLIC).getMethod(
+            type.getMethod(SET_THREAD_CALLBACKS_NAME, Callback[].class));
+      } catch (NoSuchMethodException e) {
+        throw new AssertionError(e);
+      }
+
+      if (report != null) {
+        report.record(StartupReport.Category.PROXY_CLASS, type.getName(), start);
+      }
+    }
+
+    /** Returns the callbacks for each method of this class, in the order it expects them. */
+    Callback[] callbacks(Map<Method, Callback> interceptedMethodCallbacks) {
+      Callback[] result = new Callback[methods.size()];
+      for (int i = 0; i < result.length; i++) {
+        Callback callback = interceptedMethodCallbacks.get(methods.get(i));
+        result[i] = callback != null ? callback : InterceptorStackCallback.INVOKE_SUPER;
+      }
+      return result;
+    }
+  }
+
   /**
    * A callback filter that maps methods to unique IDs. We define equals and hashCode using the
    * declaring class so that enhanced classes can be shared between injectors.
@@ -221,34 +310,38 @@ class ProxyFactory<T> implements ConstructionProxyFactory<T> {
    * Constructs instances that participate in AOP.
    */
   private static class ProxyConstructor<T> implements ConstructionProxy<T> {
-    final Class<?> enhanced;
+    final EnhancedClasses enhancedClasses; // keeps the shared classes cached for this injector
     final InjectionPoint injectionPoint;
     final Constructor<T> constructor;
-    final Callback[] callbacks;
+    final FastMethod setThreadCallbacks;
+    final Object[] bindCallbacks;
 
     final FastConstructor fastConstructor;
     final ImmutableMap<Method, List<MethodInterceptor>> methodInterceptors;
 
     @SuppressWarnings("unchecked") // the constructor promises to construct 'T's
-    ProxyConstructor(Enhancer enhancer, InjectionPoint injectionPoint, Callback[] callbacks,
+    ProxyConstructor(EnhancedClasses enhancedClasses, BytecodeGen.Visibility visibility,
+        InjectionPoint injectionPoint, Map<Method, Callback> callbacks,
         ImmutableMap<Method, List<MethodInterceptor>> methodInterceptors) {
-      this.enhanced = enhancer.createClass(); // this returns a cached class if possible
+      EnhancedClass enhanced = enhancedClasses.byVisibility.get(visibility);
+      this.enhancedClasses = enhancedClasses;
       this.injectionPoint = injectionPoint;
       this.constructor = (Constructor<T>) injectionPoint.getMember();
-      this.callbacks = callbacks;
+      this.setThreadCallbacks = enhanced.setThreadCallbacks;
+      this.bindCallbacks = new Object[] { enhanced.callbacks(callbacks) };
       this.methodInterceptors = methodInterceptors;
 
-      FastClass fastClass = newFastClass(enhanced, BytecodeGen.Visibility.forMember(constructor));
+      FastClass fastClass = enhanced.fastClasses.get(BytecodeGen.Visibility.forMember(constructor));
       this.fastConstructor = fastClass.getConstructor(constructor.getParameterTypes());
     }
 
     @SuppressWarnings("unchecked") // the constructor promises to produce 'T's
     public T newInstance(Object[] arguments) throws InvocationTargetException {
-      Enhancer.registerCallbacks(enhanced, callbacks);
+      setThreadCallbacks.invoke(null, bindCallbacks);
       try {
         return (T) fastConstructor.newInstance(arguments);
       } finally {
-        Enhancer.registerCallbacks(enhanced, null);
+        setThreadCallbacks.invoke(null, UNBIND_CALLBACKS);
       }
     }
 
@@ -16,11 +16,16 @@
 
 package com.google.inject;
 
+import com.google.inject.internal.BindingImpl;
+import com.google.inject.internal.BindingMetrics;
+import com.google.inject.internal.ConstructionContext;
 import com.google.inject.internal.Errors;
 import com.google.inject.internal.InternalFactory;
+import com.google.inject.internal.ProvisionTracer;
 import com.google.inject.internal.Scoping;
 import com.google.inject.spi.CachingProvider;
 import java.lang.annotation.Annotation;
+import java.util.Set;
 
 /**
  * Built-in scope implementations.
@@ -35,30 +40,56 @@ public class Scopes {
    * One instance per {@link Injector}. Also see {@code @}{@link Singleton}.
    */
   public static final Scope SINGLETON = new Scope() {
-    public <T> Provider<T> scope(Key<T> key, final Provider<T> creator) {
+    public <T> Provider<T> scope(final Key<T> key, final Provider<T> creator) {
+      final BindingMetrics metrics = creator instanceof ProviderToInternalFactoryAdapter
+          ? ((ProviderToInternalFactoryAdapter<T>) creator).getMetrics()
+          : null;
+
       return new CachingProvider<T>() {
 
         private volatile T instance;
+        private volatile Object lock;
 
         // DCL on a volatile is safe as of Java 5, which we obviously require.
         @SuppressWarnings("DoubleCheckedLocking")
         public T get() {
           if (instance == null) {
             /*
-             * Use a pretty coarse lock. We don't want to run into deadlocks
-             * when two threads try to load circularly-dependent objects.
-             * Maybe one of these days we will identify independent graphs of
-             * objects and offer to load them in parallel.
+             * Lock per independent graph of objects, so that unrelated singletons can be loaded in
+             * parallel. Singletons that depend upon each other circularly share a lock, as do
+             * singletons whose dependencies we can't see; otherwise two threads entering the same
+             * cycle from different ends could deadlock.
              */
-            synchronized (InjectorImpl.class) {
+            long waitStart = metrics != null ? System.nanoTime() : 0L;
+            synchronized (lock()) {
+              if (metrics != null) {
+                metrics.recordScopeWait(System.nanoTime() - waitStart);
+              }
               if (instance == null) {
-                instance = creator.get();
+                T provided = creator.get();
+                // Don't publish a circular proxy; the real instance is assigned further up the stack
+                if (ConstructionContext.isCircularProxy(provided)) {
+                  return provided;
+                }
+                instance = provided;
               }
             }
           }
           return instance;
         }
 
+        /** Decides which lock to use once, so that all threads agree on it. */
+        private Object lock() {
+          if (lock == null) {
+            synchronized (this) {
+              if (lock == null) {
+                lock = singletonLock(key, creator, this);
+              }
+            }
+          }
+          return lock;
+        }
+
         public T getCachedValue() {
           return instance;
         }
@@ -95,20 +126,64 @@ public class Scopes {
     }
   };
 
+  /**
+   * Returns the lock to hold while constructing the singleton bound to {@code key}.
+   *
+   * <p>If the singleton and everything it depends on form an acyclic graph, it locks only on
+   * itself. Threads then take locks in dependency order and cannot deadlock. Bindings in a
+   * dependency cycle share one lock for the whole cycle: the set of its members, which the
+   * dependency graph gives to each of them. If we can't tell what the singleton depends on, such as
+   * when it injects the injector, we fall back to one coarse lock for all singletons.
+   */
+  static Object singletonLock(Key<?> key, Provider<?> creator, Object bindingLock) {
+    if (!(creator instanceof ProviderToInternalFactoryAdapter)) {
+      return InjectorImpl.class;
+    }
+
+    BindingImpl<?> binding = ((ProviderToInternalFactoryAdapter<?>) creator).getInjector()
+        .getExistingBinding(key);
+    if (binding == null) {
+      return InjectorImpl.class;
+    }
+
+    Set<BindingImpl<?>> cycle = DependencyGraph.getCycle(binding);
+    if (cycle == null) {
+      return InjectorImpl.class;
+    }
+    return cycle.size() == 1 ? bindingLock : cycle;
+  }
+
   /** Scopes an internal factory. */
   static <T> InternalFactory<? extends T> scope(Key<T> key, InjectorImpl injector,
       InternalFactory<? extends T> creator, Scoping scoping) {
+    BindingMetrics metrics = injector.options.collectMetrics ? new BindingMetrics() : null;
 
     if (scoping.isNoScope()) {
-      return creator;
+      if (metrics == null) {
+        return creator;
+      }
+      // constants and linked keys don't create instances of their own
+      return creator instanceof ConstantFactory || creator instanceof FactoryProxy
+          ? metrics.countProvisions(creator)
+          : metrics.timeCreations(creator, true);
+    }
+
+    if (metrics != null
+        && !(creator instanceof ConstantFactory) && !(creator instanceof FactoryProxy)) {
+      creator = metrics.timeCreations(creator, false);
     }
 
     Scope scope = scoping.getScopeInstance();
 
     Provider<T> scoped
-        = scope.scope(key, new ProviderToInternalFactoryAdapter<T>(injector, creator));
-    return new InternalFactoryToProviderAdapter<T>(
+        = scope.scope(key, new ProviderToInternalFactoryAdapter<T>(injector, creator, metrics));
+    InternalFactory<? extends T> scopedFactory = new InternalFactoryToProviderAdapter<T>(
         Initializables.<Provider<? extends T>>of(scoped));
+    if (injector.options.trace) {
+      scopedFactory = ProvisionTracer.trace(
+          ProvisionTracer.Category.SCOPE, key.toString(), scopedFactory);
+    }
+    return metrics != null ? metrics.countProvisions(scopedFactory) : scopedFactory;
   }
 
   /**
@@ -49,8 +49,7 @@ class SingleFieldInjector implements SingleMemberInjector {
   }
 
   public void inject(Errors errors, InternalContext context, Object o) {
-    errors = errors.withSource(dependency);
-
+    int numErrorsBefore = errors.size();
     context.setDependency(dependency);
     try {
       Object value = factory.get(errors, context, dependency);
@@ -61,6 +60,7 @@ class SingleFieldInjector implements SingleMemberInjector {
       throw new AssertionError(e); // a security manager is blocking us, we're hosed
     } finally {
       context.setDependency(null);
+      errors.addSourceToNewErrors(dependency, numErrorsBefore);
     }
   }
 }
@@ -21,6 +21,7 @@ import com.google.inject.internal.BytecodeGen;
 import com.google.inject.internal.BytecodeGen.Visibility;
 import com.google.inject.internal.Errors;
 import com.google.inject.internal.ErrorsException;
+import com.google.inject.internal.GeneratedMethodInvoker;
 import com.google.inject.internal.InternalContext;
 import com.google.inject.spi.InjectionPoint;
 import java.lang.reflect.InvocationTargetException;
@@ -39,11 +40,28 @@ class SingleMethodInjector implements SingleMemberInjector {
       throws ErrorsException {
     this.injectionPoint = injectionPoint;
     final Method method = (Method) injectionPoint.getMember();
-    methodInvoker = createMethodInvoker(method);
+    methodInvoker = createMethodInvoker(
+        method, injector.options.generateInvokers, injector.options.hiddenClasses);
     parameterInjectors = injector.getParametersInjectors(injectionPoint.getDependencies(), errors);
   }
 
-  private MethodInvoker createMethodInvoker(final Method method) {
+  private MethodInvoker createMethodInvoker(final Method method, boolean generateInvoker,
+      boolean hiddenClasses) {
+
+    /*if[AOP]*/
+    // Generated invokers can call package-private and protected methods too.
+    final GeneratedMethodInvoker invoker = generateInvoker
+        ? com.google.inject.internal.MemberInvokerGenerator.getMethodInvoker(method, hiddenClasses)
+        : null;
+    if (invoker != null) {
+      return new MethodInvoker() {
+        public Object invoke(Object target, Object... parameters)
+            throws InvocationTargetException {
+          return invoker.invoke(target, parameters);
+        }
+      };
+    }
+    /*end[AOP]*/
 
     // We can't use FastMethod if the method is private.
     int modifiers = method.getModifiers();
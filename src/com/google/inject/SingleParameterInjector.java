@@ -28,8 +28,8 @@ import com.google.inject.spi.Dependency;
 class SingleParameterInjector<T> {
   private static final Object[] NO_ARGUMENTS = {}; 
 
-  private final Dependency<T> dependency;
-  private final InternalFactory<? extends T> factory;
+  final Dependency<T> dependency;
+  final InternalFactory<? extends T> factory;
 
   SingleParameterInjector(Dependency<T> dependency, InternalFactory<? extends T> factory) {
     this.dependency = dependency;
@@ -37,11 +37,13 @@ class SingleParameterInjector<T> {
   }
 
   private T inject(Errors errors, InternalContext context) throws ErrorsException {
+    int numErrorsBefore = errors.size();
     context.setDependency(dependency);
     try {
-      return factory.get(errors.withSource(dependency), context, dependency);
+      return factory.get(errors, context, dependency);
     } finally {
       context.setDependency(null);
+      errors.addSourceToNewErrors(dependency, numErrorsBefore);
     }
   }
 
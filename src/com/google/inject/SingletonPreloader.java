@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.BindingImpl;
+import com.google.inject.internal.Errors;
+import com.google.inject.internal.Lists;
+import com.google.inject.internal.Maps;
+import com.google.inject.internal.Sets;
+import com.google.inject.internal.StartupReport;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads eager singletons concurrently. A singleton is started only once the eager singletons it
+ * depends upon have been loaded, so independent parts of the object graph are constructed in
+ * parallel and threads rarely wait on each other's singleton locks.
+ *
+ * <p>Each singleton collects errors separately. They're merged in binding order once all singletons
+ * are loaded, so the reported errors are the same as if we'd loaded them one after another.
+ */
+final class SingletonPreloader {
+
+  private final List<BindingImpl<?>> singletons;
+  private final int threads;
+  private final StartupReport report;
+
+  /** Eager singletons that each singleton depends on. */
+  private final Map<BindingImpl<?>, Set<BindingImpl<?>>> prerequisites = Maps.newIdentityHashMap();
+
+  /** Eager singletons that depend upon each singleton. */
+  private final Map<BindingImpl<?>, List<BindingImpl<?>>> dependents = Maps.newIdentityHashMap();
+
+  SingletonPreloader(List<BindingImpl<?>> singletons, int threads, StartupReport report) {
+    this.singletons = singletons;
+    this.threads = threads;
+    this.report = report;
+  }
+
+  void load(Errors errors) {
+    if (singletons.isEmpty()) {
+      return;
+    }
+
+    computePrerequisites();
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(threads, singletons.size()), new PreloaderThreadFactory());
+    Map<BindingImpl<?>, Errors> errorsBySingleton = Maps.newIdentityHashMap();
+    try {
+      CompletionService<BindingImpl<?>> completionService
+          = new ExecutorCompletionService<BindingImpl<?>>(executor);
+      int running = 0;
+      for (BindingImpl<?> singleton : singletons) {
+        if (prerequisites.get(singleton).isEmpty()) {
+          submit(completionService, singleton, errorsBySingleton);
+          running++;
+        }
+      }
+      if (running == 0) {
+        running = submitCycles(completionService, errorsBySingleton);
+      }
+
+      while (running > 0) {
+        BindingImpl<?> loaded = takeLoaded(completionService);
+        running--;
+
+        for (BindingImpl<?> dependent : dependents.get(loaded)) {
+          // dependents started by submitCycles() no longer wait for anything
+          Set<BindingImpl<?>> waitingFor = prerequisites.get(dependent);
+          if (waitingFor.remove(loaded) && waitingFor.isEmpty()) {
+            submit(completionService, dependent, errorsBySingleton);
+            running++;
+          }
+        }
+
+        if (running == 0) {
+          running = submitCycles(completionService, errorsBySingleton);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    for (BindingImpl<?> singleton : singletons) {
+      Errors singletonErrors = errorsBySingleton.get(singleton);
+      if (singletonErrors != null) {
+        errors.merge(singletonErrors);
+      }
+    }
+  }
+
+  /**
+   * Singletons in a cycle wait on each other forever. Singleton locks serialize them safely, so
+   * this starts them all once nothing else is left to do. Returns the number started.
+   */
+  private int submitCycles(CompletionService<BindingImpl<?>> completionService,
+      Map<BindingImpl<?>, Errors> errorsBySingleton) {
+    int submitted = 0;
+    for (BindingImpl<?> singleton : singletons) {
+      if (!prerequisites.get(singleton).isEmpty()) {
+        prerequisites.get(singleton).clear();
+        submit(completionService, singleton, errorsBySingleton);
+        submitted++;
+      }
+    }
+    return submitted;
+  }
+
+  /**
+   * Finds the eager singletons that each singleton depends on, either directly or through bindings
+   * that aren't eager themselves.
+   */
+  private void computePrerequisites() {
+    Set<BindingImpl<?>> eager = Sets.newSetFromMap(
+        Maps.<BindingImpl<?>, Boolean>newIdentityHashMap());
+    eager.addAll(singletons);
+    for (BindingImpl<?> singleton : singletons) {
+      dependents.put(singleton, Lists.<BindingImpl<?>>newArrayList());
+    }
+
+    for (BindingImpl<?> singleton : singletons) {
+      Set<BindingImpl<?>> found = Sets.newSetFromMap(
+          Maps.<BindingImpl<?>, Boolean>newIdentityHashMap());
+      Set<BindingImpl<?>> visited = Sets.newSetFromMap(
+          Maps.<BindingImpl<?>, Boolean>newIdentityHashMap());
+      List<BindingImpl<?>> queue = Lists.newArrayList();
+      queue.add(singleton);
+
+      while (!queue.isEmpty()) {
+        Collection<BindingImpl<?>> dependencies = DependencyGraph.getDependencies(queue.remove(0));
+        if (dependencies == null) {
+          continue; // these take the coarse singleton lock, so any order is safe
+        }
+        for (BindingImpl<?> dependency : dependencies) {
+          if (!visited.add(dependency)) {
+            continue;
+          }
+          if (eager.contains(dependency)) {
+            if (dependency != singleton) {
+              found.add(dependency);
+            }
+          } else {
+            queue.add(dependency);
+          }
+        }
+      }
+
+      prerequisites.put(singleton, found);
+      for (BindingImpl<?> prerequisite : found) {
+        dependents.get(prerequisite).add(singleton);
+      }
+    }
+  }
+
+  private void submit(CompletionService<BindingImpl<?>> completionService,
+      final BindingImpl<?> singleton, Map<BindingImpl<?>, Errors> errorsBySingleton) {
+    final Errors errors = new Errors();
+    errorsBySingleton.put(singleton, errors);
+    completionService.submit(new Callable<BindingImpl<?>>() {
+      public BindingImpl<?> call() {
+        StartupReport previousReport = StartupReport.setCurrent(report);
+        try {
+          InjectorBuilder.loadEagerSingleton(singleton, errors);
+        } finally {
+          StartupReport.setCurrent(previousReport);
+        }
+        return singleton;
+      }
+    });
+  }
+
+  private BindingImpl<?> takeLoaded(CompletionService<BindingImpl<?>> completionService) {
+    try {
+      return completionService.take().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while preloading singletons", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private static class PreloaderThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "Guice singleton preloader #" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
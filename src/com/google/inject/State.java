@@ -80,6 +80,10 @@ interface State {
     public ImmutableList<MethodAspect> getMethodAspects() {
       return ImmutableList.of();
     }
+
+    public MethodAspectIndex getMethodAspectIndex() {
+      return new MethodAspectIndex(ImmutableList.<MethodAspect>of());
+    }
     /*end[AOP]*/
 
     public void addTypeListener(TypeListenerBinding typeListenerBinding) {
@@ -130,6 +134,9 @@ interface State {
   void addMethodAspect(MethodAspect methodAspect);
 
   ImmutableList<MethodAspect> getMethodAspects();
+
+  /** Returns the method aspects of this and parent injectors, indexed by their matchers. */
+  MethodAspectIndex getMethodAspectIndex();
   /*end[AOP]*/
 
   void addTypeListener(TypeListenerBinding typeListenerBinding);
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.MapMaker;
+import static com.google.inject.internal.Preconditions.checkNotNull;
+import java.util.Map;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * A method interceptor that can be enabled and disabled at runtime, such as for tracing. Bind it
+ * like any other interceptor:
+ *
+ * <pre>
+ *   SwitchableInterceptor tracing = new SwitchableInterceptor(new TracingInterceptor(), false);
+ *   bindInterceptor(any(), annotatedWith(Traced.class), tracing);</pre>
+ *
+ * Switching it relinks the callbacks of the proxied methods that it intercepts, so that calls to
+ * them never check whether it's enabled. While it's disabled, those methods skip it entirely, and
+ * methods that no other interceptor intercepts are called directly.
+ *
+ * <p>This is a standard MBean, so it can be registered with an MBean server to switch it from JMX.
+ */
+public final class SwitchableInterceptor
+    implements MethodInterceptor, SwitchableInterceptorMBean {
+
+  private final MethodInterceptor delegate;
+  private volatile boolean enabled;
+
+  /** The callbacks that use this interceptor. Weak so that they're collected with injectors. */
+  private final Map<InterceptorStackCallback.SwitchingCallback, Boolean> callbacks
+      = new MapMaker().weakKeys().makeMap();
+
+  /** Creates an interceptor that's initially enabled. */
+  public SwitchableInterceptor(MethodInterceptor delegate) {
+    this(delegate, true);
+  }
+
+  public SwitchableInterceptor(MethodInterceptor delegate, boolean enabled) {
+    this.delegate = checkNotNull(delegate, "delegate");
+    this.enabled = enabled;
+  }
+
+  /** Returns the interceptor that runs while this is enabled. */
+  public MethodInterceptor getDelegate() {
+    return delegate;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    synchronized (callbacks) {
+      if (this.enabled == enabled) {
+        return;
+      }
+      this.enabled = enabled;
+      for (InterceptorStackCallback.SwitchingCallback callback : callbacks.keySet()) {
+        callback.relink();
+      }
+    }
+  }
+
+  /** Intercepts invocations made by code other than Guice's proxies. */
+  public Object invoke(MethodInvocation methodInvocation) throws Throwable {
+    return enabled ? delegate.invoke(methodInvocation) : methodInvocation.proceed();
+  }
+
+  void addCallback(InterceptorStackCallback.SwitchingCallback callback) {
+    synchronized (callbacks) {
+      callbacks.put(callback, Boolean.TRUE);
+      callback.relink();
+    }
+  }
+
+  @Override public String toString() {
+    return "SwitchableInterceptor[" + delegate + (enabled ? "]" : ", disabled]");
+  }
+}
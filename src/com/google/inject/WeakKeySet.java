@@ -16,6 +16,7 @@
 
 package com.google.inject;
 
+import com.google.inject.internal.MapMaker;
 import com.google.inject.internal.Sets;
 import java.util.Set;
 
@@ -32,8 +33,10 @@ final class WeakKeySet {
    * <p>One potential problem with this approach is that parent and child injectors cannot define
    * keys whose class names are equal but class loaders are different. This shouldn't be an issue
    * in practice.
+   *
+   * <p>This set is concurrent, since just-in-time bindings are created by threads concurrently.
    */
-  private Set<String> backingSet = Sets.newHashSet();
+  private Set<String> backingSet = Sets.newSetFromMap(new MapMaker().<String, Boolean>makeMap());
 
   public boolean add(Key<?> key) {
     return backingSet.add(key.toString());
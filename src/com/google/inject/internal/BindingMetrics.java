@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.inject.Binding;
+import com.google.inject.spi.CachedValue;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.ProvisionMetrics;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects the {@link ProvisionMetrics} of a binding.
+ *
+ * <p>Counters are kept in cells that are summed when read, like {@code
+ * java.util.concurrent.atomic.LongAdder}. A binding starts with a single cell, and only gets more
+ * when a count finds its cell contended, up to about twice the number of processors. Each thread
+ * counts on a cell picked by a hash of its ID. Every count is an atomic add, so none are lost.
+ * Reading the clock costs more than counting, so only one in {@link #SAMPLE_INTERVAL} creations in
+ * each cell is timed, including the first. Creation times include the time to provision the
+ * instance's dependencies.
+ */
+public final class BindingMetrics implements ProvisionMetrics {
+
+  /** One in this many creations is timed. */
+  public static final int SAMPLE_INTERVAL = 16;
+
+  private static final int PROVISIONS = 0;
+  private static final int CREATIONS = 1;
+  private static final int TIMED_CREATIONS = 2;
+  private static final int CREATION_NANOS = 3;
+  private static final int SCOPE_WAITS = 4;
+  private static final int SCOPE_WAIT_NANOS = 5;
+
+  /** Longs per cell, spanning two cache lines so that the counters of two cells don't share one. */
+  private static final int CELL_SIZE = 16;
+
+  private static final int MAX_CELLS = maxCells();
+
+  /** Counter cells. Their number is a power of two, and only grows. */
+  private volatile AtomicLongArray[] cells = { new AtomicLongArray(CELL_SIZE) };
+
+  /** Timed creations by bucket. They're sampled, so they rarely contend. */
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+  /** True if every provision creates an instance, so provisions needn't be counted separately. */
+  private volatile boolean unscoped;
+
+  /** Returns the metrics of {@code binding}, or null if they weren't collected. */
+  public static BindingMetrics of(Binding<?> binding) {
+    if (binding instanceof BindingImpl) {
+      InternalFactory<?> factory = ((BindingImpl<?>) binding).getInternalFactory();
+      if (factory instanceof MeteredFactory) {
+        return ((MeteredFactory<?>) factory).metrics;
+      }
+    }
+    return null;
+  }
+
+  /** Returns a factory that counts provisions from {@code factory}. */
+  public <T> InternalFactory<T> countProvisions(InternalFactory<? extends T> factory) {
+    return new ProvisionCounter<T>(this, factory);
+  }
+
+  /**
+   * Returns a factory that counts and samples the time of instances created by {@code creator}.
+   *
+   * @param unscoped true if the factory is the binding's own, so that each provision creates an
+   *     instance.
+   */
+  public <T> InternalFactory<T> timeCreations(InternalFactory<? extends T> creator,
+      boolean unscoped) {
+    this.unscoped = unscoped;
+    return new CreationTimer<T>(this, creator);
+  }
+
+  /** Records that a thread waited {@code nanos} to enter the binding's scope. */
+  public void recordScopeWait(long nanos) {
+    add(SCOPE_WAITS, 1);
+    add(SCOPE_WAIT_NANOS, nanos);
+  }
+
+  /** Returns the number of times this binding was provisioned. */
+  public long getProvisionCount() {
+    return unscoped ? sum(CREATIONS) : sum(PROVISIONS);
+  }
+
+  /** Returns the number of instances created by this binding, before scoping. */
+  public long getCreationCount() {
+    return sum(CREATIONS);
+  }
+
+  /** Returns the number of creations that were timed. */
+  public long getTimedCreationCount() {
+    return sum(TIMED_CREATIONS);
+  }
+
+  /** Returns the total time of the creations that were timed, in nanoseconds. */
+  public long getTimedCreationNanos() {
+    return sum(CREATION_NANOS);
+  }
+
+  /** Returns the mean time to create an instance, in nanoseconds, or 0 if none were timed. */
+  public long getMeanCreationNanos() {
+    long timed = getTimedCreationCount();
+    return timed != 0 ? getTimedCreationNanos() / timed : 0;
+  }
+
+  /** Returns the number of times a thread waited to enter the binding's scope. */
+  public long getScopeWaitCount() {
+    return sum(SCOPE_WAITS);
+  }
+
+  /** Returns the total time that threads waited to enter the binding's scope, in nanoseconds. */
+  public long getScopeWaitNanos() {
+    return sum(SCOPE_WAIT_NANOS);
+  }
+
+  /** Returns the number of timed creations in each bucket. See {@link #BUCKETS}. */
+  public long[] getCreationHistogram() {
+    long[] result = new long[BUCKETS];
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      result[bucket] = histogram.get(bucket);
+    }
+    return result;
+  }
+
+  @Override public String toString() {
+    return new ToStringBuilder(BindingMetrics.class)
+        .add("provisions", getProvisionCount())
+        .add("creations", getCreationCount())
+        .add("meanCreationNanos", getMeanCreationNanos())
+        .add("scopeWaitNanos", getScopeWaitNanos())
+        .toString();
+  }
+
+  /** Records a provision. This is on the path of every cached singleton. */
+  private void recordProvision() {
+    add(PROVISIONS, 1);
+  }
+
+  /** Records a creation, and returns true if it should be timed. */
+  private boolean recordCreation() {
+    return (add(CREATIONS, 1) & (SAMPLE_INTERVAL - 1)) == 1;
+  }
+
+  private void recordCreationNanos(long nanos) {
+    add(TIMED_CREATIONS, 1);
+    add(CREATION_NANOS, nanos);
+    int bucket = Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1);
+    histogram.incrementAndGet(bucket);
+  }
+
+  /** Adds {@code delta} to {@code counter} in the current thread's cell, and returns its value. */
+  private long add(int counter, long delta) {
+    AtomicLongArray[] cells = this.cells;
+    int index = hash() & (cells.length - 1);
+    AtomicLongArray cell = cells[index];
+    long value = cell.get(counter);
+    if (cell.compareAndSet(counter, value, value + delta)) {
+      return value + delta;
+    }
+
+    // contended, so spread the threads over more cells and count on the next one
+    cells = grow(cells);
+    return cells[(index + 1) & (cells.length - 1)].addAndGet(counter, delta);
+  }
+
+  /** Doubles the number of cells, unless another thread already has or there are enough. */
+  private synchronized AtomicLongArray[] grow(AtomicLongArray[] expected) {
+    AtomicLongArray[] cells = this.cells;
+    if (cells != expected || cells.length >= MAX_CELLS) {
+      return cells;
+    }
+
+    AtomicLongArray[] grown = new AtomicLongArray[cells.length * 2];
+    System.arraycopy(cells, 0, grown, 0, cells.length);
+    for (int i = cells.length; i < grown.length; i++) {
+      grown[i] = new AtomicLongArray(CELL_SIZE);
+    }
+    this.cells = grown;
+    return grown;
+  }
+
+  private long sum(int counter) {
+    long result = 0;
+    for (AtomicLongArray cell : cells) {
+      result += cell.get(counter);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the hash of the current thread. Thread IDs are mostly consecutive, so they're hashed
+   * to spread threads that start together, such as a server's request threads, across the cells.
+   */
+  private static int hash() {
+    long id = Thread.currentThread().getId();
+    return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+  }
+
+  /** Returns a power of two that's at least twice the number of processors, up to 32. */
+  private static int maxCells() {
+    int processors = Math.min(2 * Runtime.getRuntime().availableProcessors(), 32);
+    int cells = 1;
+    while (cells < processors) {
+      cells <<= 1;
+    }
+    return cells;
+  }
+
+  /** A factory whose binding's metrics are collected. */
+  private abstract static class MeteredFactory<T> implements InternalFactory<T>, CachedValue<T> {
+    final BindingMetrics metrics;
+
+    MeteredFactory(BindingMetrics metrics) {
+      this.metrics = metrics;
+    }
+  }
+
+  private static class ProvisionCounter<T> extends MeteredFactory<T> {
+    final InternalFactory<? extends T> factory;
+
+    ProvisionCounter(BindingMetrics metrics, InternalFactory<? extends T> factory) {
+      super(metrics);
+      this.factory = factory;
+    }
+
+    public T get(Errors errors, InternalContext context, Dependency<?> dependency)
+        throws ErrorsException {
+      metrics.recordProvision();
+      return factory.get(errors, context, dependency);
+    }
+
+    @SuppressWarnings("unchecked") // the factory provides Ts
+    public T getCachedValue() {
+      return factory instanceof CachedValue
+          ? ((CachedValue<T>) factory).getCachedValue()
+          : null;
+    }
+
+    @Override public String toString() {
+      return factory.toString();
+    }
+  }
+
+  private static class CreationTimer<T> extends MeteredFactory<T> {
+    final InternalFactory<? extends T> creator;
+
+    CreationTimer(BindingMetrics metrics, InternalFactory<? extends T> creator) {
+      super(metrics);
+      this.creator = creator;
+    }
+
+    public T get(Errors errors, InternalContext context, Dependency<?> dependency)
+        throws ErrorsException {
+      if (!metrics.recordCreation()) {
+        return creator.get(errors, context, dependency);
+      }
+
+      long start = System.nanoTime();
+      try {
+        return creator.get(errors, context, dependency);
+      } finally {
+        metrics.recordCreationNanos(System.nanoTime() - start);
+      }
+    }
+
+    @SuppressWarnings("unchecked") // the creator provides Ts
+    public T getCachedValue() {
+      return creator instanceof CachedValue
+          ? ((CachedValue<T>) creator).getCachedValue()
+          : null;
+    }
+
+    @Override public String toString() {
+      return creator.toString();
+    }
+  }
+}
@@ -193,6 +193,112 @@ public final class BytecodeGen {
     logger.fine("Loading " + type + " Enhancer with " + enhancer.getClassLoader());
     return enhancer;
   }
+
+  /**
+   * Defines a class that was generated for {@code host}, in the same package. If {@code hidden}
+   * and hidden classes are supported, it's defined as a hidden nestmate of {@code host}: it needs
+   * no bridge class loader and can be unloaded as soon as it's unreachable. Otherwise it's defined
+   * by name in {@code classLoader}.
+   */
+  public static Class<?> defineClass(Class<?> host, String className, byte[] bytecode,
+      ClassLoader classLoader, boolean hidden) throws Exception {
+    if (hidden) {
+      Class<?> hiddenClass = HiddenClasses.define(host, bytecode);
+      if (hiddenClass != null) {
+        return hiddenClass;
+      }
+    }
+    return net.sf.cglib.core.ReflectUtils.defineClass(className, bytecode, classLoader);
+  }
+
+  /**
+   * Defines a class that was generated for {@code host} as a hidden nestmate of {@code host}, so
+   * that it can access {@code host}'s private members. Returns null if hidden classes aren't
+   * supported or the class couldn't be defined.
+   */
+  public static Class<?> defineHiddenClass(Class<?> host, byte[] bytecode) {
+    return HiddenClasses.define(host, bytecode);
+  }
+
+  /**
+   * Defines hidden classes with {@code java.lang.invoke.MethodHandles.Lookup}, which is called
+   * reflectively so that Guice still runs on VMs that don't have it. Only Guice's own generated
+   * classes can be hidden; cglib looks up its generated classes by name, which hidden classes
+   * don't have.
+   */
+  private static class HiddenClasses {
+    static final Object LOOKUP;
+    static final Method PRIVATE_LOOKUP_IN;
+    static final Method DEFINE_HIDDEN_CLASS;
+    static final Method LOOKUP_CLASS;
+    static final Object NESTMATE;
+
+    static {
+      Object lookup = null;
+      Method privateLookupIn = null;
+      Method defineHiddenClass = null;
+      Method lookupClass = null;
+      Object nestmate = null;
+      try {
+        Class<?> methodHandles = Class.forName("java.lang.invoke.MethodHandles");
+        Class<?> lookupType = Class.forName("java.lang.invoke.MethodHandles$Lookup");
+        Class<?> classOption = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+        nestmate = java.lang.reflect.Array.newInstance(classOption, 1);
+        java.lang.reflect.Array.set(nestmate, 0, classOption.getField("NESTMATE").get(null));
+        lookup = methodHandles.getMethod("lookup").invoke(null);
+        privateLookupIn = methodHandles.getMethod("privateLookupIn", Class.class, lookupType);
+        defineHiddenClass = lookupType.getMethod(
+            "defineHiddenClass", byte[].class, boolean.class, nestmate.getClass());
+        lookupClass = lookupType.getMethod("lookupClass");
+      } catch (Exception e) {
+        logger.fine("Hidden classes aren't supported: " + e);
+        lookup = null;
+      }
+      LOOKUP = lookup;
+      PRIVATE_LOOKUP_IN = privateLookupIn;
+      DEFINE_HIDDEN_CLASS = defineHiddenClass;
+      LOOKUP_CLASS = lookupClass;
+      NESTMATE = nestmate;
+    }
+
+    /** Returns the hidden class, or null if it couldn't be defined. */
+    static Class<?> define(Class<?> host, byte[] bytecode) {
+      if (LOOKUP == null || !canSeeGuice(host.getClassLoader())) {
+        return null;
+      }
+
+      try {
+        Object hostLookup = PRIVATE_LOOKUP_IN.invoke(null, host, LOOKUP);
+        Object hiddenLookup = DEFINE_HIDDEN_CLASS.invoke(hostLookup, bytecode, true, NESTMATE);
+        return (Class<?>) LOOKUP_CLASS.invoke(hiddenLookup);
+      } catch (Exception e) {
+        // for example, if host's package isn't open to Guice
+        logger.fine("Failed to define a hidden class for " + host + ": " + e);
+        return null;
+      } catch (LinkageError e) {
+        logger.fine("Failed to define a hidden class for " + host + ": " + e);
+        return null;
+      }
+    }
+
+    /**
+     * Returns true if {@code classLoader} resolves Guice's classes to ours. A hidden class resolves
+     * its references through its host's loader, and only when they're first used, so a loader that
+     * can't see Guice would fail long after the class was defined.
+     */
+    static boolean canSeeGuice(ClassLoader classLoader) {
+      if (classLoader == null) {
+        return false;
+      }
+      try {
+        return classLoader.loadClass(BytecodeGen.class.getName()) == BytecodeGen.class;
+      } catch (ClassNotFoundException e) {
+        return false;
+      } catch (LinkageError e) {
+        return false;
+      }
+    }
+  }
   /*end[AOP]*/
 
   /**
@@ -82,6 +82,16 @@ public class ConstructionContext<T> {
         new Class[] { expectedType }, invocationHandler));
   }
 
+  /**
+   * Returns true if {@code object} is a proxy created by {@link #createProxy} to stand in for an
+   * instance that is still being constructed.
+   */
+  public static boolean isCircularProxy(Object object) {
+    return object != null
+        && Proxy.isProxyClass(object.getClass())
+        && Proxy.getInvocationHandler(object) instanceof DelegatingInvocationHandler;
+  }
+
   public void setProxyDelegates(T delegate) {
     if (invocationHandlers != null) {
       for (DelegatingInvocationHandler<T> handler : invocationHandlers) {
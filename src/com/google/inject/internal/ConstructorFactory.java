@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Constructs and injects instances of one particular type. Subclasses are generated at runtime
+ * so that each dependency is fetched from its own call site and passed to the constructor or
+ * assigned to its field directly, without going through reflection.
+ *
+ * <p>This class is public so that generated subclasses can extend it from the user's class loader.
+ */
+public abstract class ConstructorFactory<T> {
+
+  /**
+   * Resolves the constructor's dependencies and invokes it. Errors resolving the dependencies are
+   * collected in {@code errors}, just as they would be by reflective construction.
+   *
+   * @throws InvocationTargetException if the constructor throws
+   */
+  public abstract T newInstance(Errors errors, InternalContext context)
+      throws ErrorsException, InvocationTargetException;
+
+  /**
+   * Injects the fields of {@code instance}. Does nothing unless this factory {@link
+   * #injectsMembers injects members}.
+   */
+  public abstract void injectMembers(T instance, Errors errors, InternalContext context);
+
+  /**
+   * Returns true if {@link #injectMembers} injects all of the type's injectable fields and methods,
+   * so they needn't be injected reflectively.
+   */
+  public abstract boolean injectsMembers();
+}
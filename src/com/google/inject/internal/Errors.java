@@ -393,6 +393,47 @@ public final class Errors implements Serializable {
     return this;
   }
 
+  /**
+   * Inserts {@code source} after this object's sources in each message added since {@code
+   * numErrorsBefore}. Calling this after passing this object to a method attributes errors the
+   * same way as passing {@code withSource(source)} would, but only allocates once something has
+   * gone wrong. Use it on hot paths that usually succeed.
+   */
+  public void addSourceToNewErrors(Object source, int numErrorsBefore) {
+    if (size() == numErrorsBefore || source == SourceProvider.UNKNOWN_SOURCE) {
+      return;
+    }
+
+    int index = getSources().size();
+    for (int i = numErrorsBefore, size = root.errors.size(); i < size; i++) {
+      Message message = root.errors.get(i);
+      List<Object> sources = Lists.newArrayList(message.getSources());
+      sources.add(Math.min(index, sources.size()), source);
+      root.errors.set(i, new Message(sources, message.getMessage(), message.getCause()));
+    }
+  }
+
+  /**
+   * Removes the messages added since {@code numErrorsBefore} and returns them, with {@code
+   * source} prepended, in a new errors object. Messages from {@code thrown} are merged in too,
+   * unless they were added here. This errors object is left as it was before, so it can be reused.
+   */
+  public Errors removeNewErrors(Object source, int numErrorsBefore, Errors thrown) {
+    Errors result = new Errors(source);
+    if (size() != numErrorsBefore) {
+      List<Message> added = root.errors.subList(numErrorsBefore, root.errors.size());
+      result.merge(Lists.newArrayList(added));
+      added.clear();
+      if (root.errors.isEmpty()) {
+        root.errors = null;
+      }
+    }
+    if (thrown != null && thrown.root != root) {
+      result.merge(thrown);
+    }
+    return result;
+  }
+
   public List<Object> getSources() {
     List<Object> sources = Lists.newArrayList();
     for (Errors e = this; e != null; e = e.parent) {
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+/**
+ * Injects the members of instances of one particular type. Subclasses are generated at runtime so
+ * that each field and method is injected by its own straight-line code, followed by the type's
+ * user members injectors, rather than by looping over the members and using reflection.
+ *
+ * <p>This class is public so that generated subclasses can extend it from the user's class loader.
+ */
+public abstract class GeneratedMembersInjector<T> {
+
+  /**
+   * Injects a single field or method. Generated code delegates to this for members that it can't
+   * access directly, like private fields.
+   */
+  public interface MemberInjection {
+    void inject(Errors errors, InternalContext context, Object o);
+  }
+
+  /**
+   * Injects the fields and methods of {@code instance} in order, and then runs the members
+   * injectors registered by type listeners. Errors are collected in {@code errors}.
+   */
+  public abstract void injectMembers(T instance, Errors errors, InternalContext context);
+
+  /**
+   * Notifies the injection listeners registered by type listeners that {@code instance} is ready.
+   */
+  public abstract void notifyListeners(T instance, Errors errors) throws ErrorsException;
+}
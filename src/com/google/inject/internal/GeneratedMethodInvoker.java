@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Calls one particular constructor or method. Subclasses are generated at runtime by {@link
+ * MemberInvokerGenerator} so that the member is called directly rather than through reflection.
+ *
+ * <p>This class is public so that generated subclasses can extend it from the user's class loader.
+ */
+public abstract class GeneratedMethodInvoker {
+
+  /**
+   * Invokes the constructor or method, and returns the new instance or the method's result.
+   * Results of primitive types are boxed, and void methods return null.
+   *
+   * @param target the instance to invoke a method on. Ignored for constructors and static methods.
+   * @throws InvocationTargetException if the constructor or method throws
+   */
+  public abstract Object invoke(Object target, Object[] arguments)
+      throws InvocationTargetException;
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * A matcher that can describe a condition that everything it matches meets, so that matchers can
+ * be indexed by that condition. Each method returns null if the matcher doesn't require it.
+ * Indexes only use these conditions to skip matchers; candidates must still be matched.
+ */
+public interface IndexableMatcher {
+
+  /** Returns the only object that this matcher matches. */
+  Object getRequiredValue();
+
+  /** Returns the annotation type that each class or method that this matcher matches has. */
+  Class<? extends Annotation> getRequiredAnnotationType();
+
+  /** Returns the name of the package of each class that this matcher matches. */
+  String getRequiredPackageName();
+}
@@ -17,7 +17,6 @@
 package com.google.inject.internal;
 
 import com.google.inject.spi.Dependency;
-import java.util.Map;
 
 /**
  * Internal context. Used to coordinate injections and support circular
@@ -27,20 +26,89 @@ import java.util.Map;
  */
 public final class InternalContext {
 
-  private Map<Object, ConstructionContext<?>> constructionContexts = Maps.newHashMap();
+  /**
+   * The constructions in progress on this context, innermost last, and the constructor injectors
+   * they're for. Contexts past {@code constructionDepth} are kept for reuse; a construction context
+   * doesn't refer to anything once its construction completes.
+   */
+  private Object[] constructionKeys = new Object[16];
+  private ConstructionContext<?>[] constructionContexts = new ConstructionContext<?>[16];
+  private int constructionDepth;
   private Dependency dependency;
+  private boolean entered;
 
+  /** Errors for provisions on this context. Empty except while a provision is failing. */
+  private Errors errors = new Errors();
+
+  /**
+   * Marks this context as in use. Returns true if it wasn't already, in which case the caller must
+   * call {@link #exit} when it's done. Contexts are reused, so that provisioning doesn't allocate.
+   */
+  public boolean enter() {
+    if (entered) {
+      return false;
+    }
+    entered = true;
+    return true;
+  }
+
+  /** Releases this context, dropping any state that refers to the provisions made with it. */
+  public void exit() {
+    entered = false;
+    dependency = null;
+    if (errors.hasErrors()) {
+      errors = new Errors();
+    }
+  }
+
+  public Errors getErrors() {
+    return errors;
+  }
+
+  /**
+   * Returns the construction in progress for {@code key}, or null if there's none. Constructions
+   * only nest as deeply as the dependencies being provisioned, so this search is short.
+   */
   @SuppressWarnings("unchecked")
   public <T> ConstructionContext<T> getConstructionContext(Object key) {
+    for (int i = constructionDepth - 1; i >= 0; i--) {
+      if (constructionKeys[i] == key) {
+        return (ConstructionContext<T>) constructionContexts[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Starts a construction for {@code key}, and returns its context. The caller must call {@link
+   * #exitConstruction} when the construction completes.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> ConstructionContext<T> enterConstruction(Object key) {
+    if (constructionDepth == constructionKeys.length) {
+      Object[] keys = new Object[constructionDepth * 2];
+      System.arraycopy(constructionKeys, 0, keys, 0, constructionDepth);
+      constructionKeys = keys;
+      ConstructionContext<?>[] contexts = new ConstructionContext<?>[constructionDepth * 2];
+      System.arraycopy(constructionContexts, 0, contexts, 0, constructionDepth);
+      constructionContexts = contexts;
+    }
+
     ConstructionContext<T> constructionContext
-        = (ConstructionContext<T>) constructionContexts.get(key);
+        = (ConstructionContext<T>) constructionContexts[constructionDepth];
     if (constructionContext == null) {
       constructionContext = new ConstructionContext<T>();
-      constructionContexts.put(key, constructionContext);
+      constructionContexts[constructionDepth] = constructionContext;
     }
+    constructionKeys[constructionDepth++] = key;
     return constructionContext;
   }
 
+  /** Completes the innermost construction. */
+  public void exitConstruction() {
+    constructionKeys[--constructionDepth] = null;
+  }
+
   public Dependency getDependency() {
     return dependency;
   }
@@ -0,0 +1,340 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_5;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates {@link GeneratedMethodInvoker} classes. Each generated class is defined in the package
+ * of its member's declaring class, so that it can call package-private and protected constructors
+ * and methods as well as public ones. Private members can only be called from a hidden nestmate of
+ * their class, so they're left to reflection unless invokers are hidden classes. Members of classes
+ * loaded by the bootstrap class loader can't be accessed from generated code either.
+ *
+ * <p>Fields are always assigned with reflection, which is as fast as generated code.
+ */
+public final class MemberInvokerGenerator {
+
+  private static final Logger logger = Logger.getLogger(MemberInvokerGenerator.class.getName());
+
+  private static final AtomicInteger counter = new AtomicInteger();
+
+  private static final String METHOD_INVOKER = Type.getInternalName(GeneratedMethodInvoker.class);
+  private static final String INVOCATION_TARGET_EXCEPTION
+      = Type.getInternalName(InvocationTargetException.class);
+
+  /** Marks members that generated code can't access. */
+  private static final GeneratedMethodInvoker INACCESSIBLE = new GeneratedMethodInvoker() {
+    public Object invoke(Object target, Object[] arguments) {
+      throw new AssertionError();
+    }
+  };
+
+  /**
+   * Invokers by declaring class and member, shared by all injectors. Classes are weakly referenced
+   * so that they can still be unloaded, and their invokers are softly referenced since they refer
+   * to them. Members are compared by equality since reflection returns a new copy each time.
+   */
+  private static final Map<Class<?>, Map<Member, GeneratedMethodInvoker>> invokers
+      = newInvokerCache(false);
+
+  /** Invokers that are hidden classes, for injectors that define them. */
+  private static final Map<Class<?>, Map<Member, GeneratedMethodInvoker>> hiddenInvokers
+      = newInvokerCache(true);
+
+  private MemberInvokerGenerator() {}
+
+  /**
+   * Returns an invoker for {@code member}, which must be a constructor or method. Returns null if
+   * generated code can't access it.
+   *
+   * @param hiddenClasses true to define the invoker as a hidden class of the member's class, where
+   *     the VM supports them.
+   */
+  public static GeneratedMethodInvoker getMethodInvoker(Member member, boolean hiddenClasses) {
+    GeneratedMethodInvoker invoker = (hiddenClasses ? hiddenInvokers : invokers)
+        .get(member.getDeclaringClass()).get(member);
+    return invoker != INACCESSIBLE ? invoker : null;
+  }
+
+  private static Map<Class<?>, Map<Member, GeneratedMethodInvoker>> newInvokerCache(
+      final boolean hiddenClasses) {
+    return new MapMaker().weakKeys().softValues().makeComputingMap(
+        new Function<Class<?>, Map<Member, GeneratedMethodInvoker>>() {
+      public Map<Member, GeneratedMethodInvoker> apply(Class<?> declaringClass) {
+        return new MapMaker().makeComputingMap(new Function<Member, GeneratedMethodInvoker>() {
+          public GeneratedMethodInvoker apply(Member member) {
+            return generate(member, hiddenClasses);
+          }
+        });
+      }
+    });
+  }
+
+  private static GeneratedMethodInvoker generate(Member member, boolean hiddenClasses) {
+    boolean isPrivate = Modifier.isPrivate(member.getModifiers());
+    if ((isPrivate && !hiddenClasses) || !canAccess(member)) {
+      return INACCESSIBLE;
+    }
+
+    Class<?> declaringClass = member.getDeclaringClass();
+    String className = declaringClass.getName() + "$$MemberInvokerByGuice$$"
+        + Integer.toHexString(counter.incrementAndGet());
+    // members that are public through and through can be called from Guice's bridge class loader
+    ClassLoader classLoader = isPublic(member)
+        ? BytecodeGen.getClassLoader(declaringClass)
+        : declaringClass.getClassLoader();
+
+    try {
+      byte[] bytecode = toBytecode(member, className.replace('.', '/'));
+      // private members have no fallback to a class defined by name, which would fail on first call
+      Class<?> invokerClass = isPrivate
+          ? BytecodeGen.defineHiddenClass(declaringClass, bytecode)
+          : BytecodeGen.defineClass(
+              declaringClass, className, bytecode, classLoader, hiddenClasses);
+      if (invokerClass == null) {
+        return INACCESSIBLE;
+      }
+      return (GeneratedMethodInvoker) invokerClass.getConstructor().newInstance();
+    } catch (Exception e) {
+      logger.log(Level.FINE, "Failed to generate an invoker for " + member, e);
+      return INACCESSIBLE;
+    } catch (LinkageError e) {
+      logger.log(Level.FINE, "Failed to generate an invoker for " + member, e);
+      return INACCESSIBLE;
+    }
+  }
+
+  /**
+   * Returns true if a class in the package of {@code member}'s class can access it, or a nestmate
+   * of that class if it's private.
+   */
+  private static boolean canAccess(Member member) {
+    Class<?> declaringClass = member.getDeclaringClass();
+    if (declaringClass.getClassLoader() == null
+        || declaringClass.isInterface()
+        || !canAccess(declaringClass, declaringClass)) {
+      return false;
+    }
+
+    for (Class<?> type : referencedTypes(member)) {
+      if (!canAccess(type, declaringClass)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns true if a class in the package of {@code from} can reference {@code type}. */
+  private static boolean canAccess(Class<?> type, Class<?> from) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    // the VM treats protected nested classes as public, and private ones as package-private
+    return type.isPrimitive()
+        || BytecodeGen.Visibility.forType(type) == BytecodeGen.Visibility.PUBLIC
+        || (type.getClassLoader() == from.getClassLoader()
+            && packageName(type).equals(packageName(from)));
+  }
+
+  private static boolean isPublic(Member member) {
+    if (!Modifier.isPublic(member.getModifiers())
+        || BytecodeGen.Visibility.forType(member.getDeclaringClass())
+            != BytecodeGen.Visibility.PUBLIC) {
+      return false;
+    }
+    for (Class<?> type : referencedTypes(member)) {
+      while (type.isArray()) {
+        type = type.getComponentType();
+      }
+      if (!type.isPrimitive()
+          && BytecodeGen.Visibility.forType(type) != BytecodeGen.Visibility.PUBLIC) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the types that generated code casts to when calling {@code member}. */
+  private static Class<?>[] referencedTypes(Member member) {
+    if (member instanceof Method) {
+      return ((Method) member).getParameterTypes();
+    } else {
+      return ((Constructor<?>) member).getParameterTypes();
+    }
+  }
+
+  private static String packageName(Class<?> type) {
+    String name = type.getName();
+    int lastDot = name.lastIndexOf('.');
+    return lastDot != -1 ? name.substring(0, lastDot) : "";
+  }
+
+  private static byte[] toBytecode(Member member, String internalName) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, internalName, null, METHOD_INVOKER, null);
+
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, METHOD_INVOKER, "<init>", "()V");
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    generateInvoke(cw, member);
+
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /** Calls the constructor or method, wrapping its exceptions like reflection does. */
+  private static void generateInvoke(ClassWriter cw, Member member) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "invoke",
+        "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;", null,
+        new String[] { INVOCATION_TARGET_EXCEPTION });
+    mv.visitCode();
+
+    // locals: this, target, arguments, exception
+    int target = 1;
+    int arguments = 2;
+    int exception = 3;
+
+    String owner = Type.getInternalName(member.getDeclaringClass());
+    boolean isStatic = Modifier.isStatic(member.getModifiers());
+    if (member instanceof Constructor) {
+      mv.visitTypeInsn(NEW, owner);
+      mv.visitInsn(DUP);
+    } else if (!isStatic) {
+      mv.visitVarInsn(ALOAD, target);
+      mv.visitTypeInsn(CHECKCAST, owner);
+    }
+
+    Class<?>[] parameterTypes = referencedTypes(member);
+    for (int i = 0; i < parameterTypes.length; i++) {
+      mv.visitVarInsn(ALOAD, arguments);
+      mv.visitLdcInsn(i);
+      mv.visitInsn(AALOAD);
+      unbox(mv, parameterTypes[i]);
+    }
+
+    // only the call itself is covered, so that bad arguments fail like they do with reflection
+    Label start = new Label();
+    Label end = new Label();
+    Label onThrowable = new Label();
+    mv.visitTryCatchBlock(start, end, onThrowable, "java/lang/Throwable");
+    mv.visitLabel(start);
+    if (member instanceof Constructor) {
+      mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>",
+          Type.getConstructorDescriptor((Constructor<?>) member));
+    } else {
+      Method method = (Method) member;
+      mv.visitMethodInsn(isStatic ? INVOKESTATIC : INVOKEVIRTUAL, owner, method.getName(),
+          Type.getMethodDescriptor(method));
+    }
+    mv.visitLabel(end);
+    if (member instanceof Method) {
+      box(mv, ((Method) member).getReturnType());
+    }
+    mv.visitInsn(ARETURN);
+
+    mv.visitLabel(onThrowable);
+    mv.visitVarInsn(ASTORE, exception);
+    mv.visitTypeInsn(NEW, INVOCATION_TARGET_EXCEPTION);
+    mv.visitInsn(DUP);
+    mv.visitVarInsn(ALOAD, exception);
+    mv.visitMethodInsn(INVOKESPECIAL, INVOCATION_TARGET_EXCEPTION, "<init>",
+        "(Ljava/lang/Throwable;)V");
+    mv.visitInsn(ATHROW);
+
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /** Converts the object on the stack to {@code type}, unboxing primitives. */
+  private static void unbox(MethodVisitor mv, Class<?> type) {
+    if (!type.isPrimitive()) {
+      mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+      return;
+    }
+
+    String wrapper = Type.getInternalName(wrapperOf(type));
+    mv.visitTypeInsn(CHECKCAST, wrapper);
+    mv.visitMethodInsn(INVOKEVIRTUAL, wrapper, type.getName() + "Value",
+        "()" + Type.getDescriptor(type));
+  }
+
+  /** Converts the value of {@code type} on the stack to an object, boxing primitives. */
+  private static void box(MethodVisitor mv, Class<?> type) {
+    if (type == void.class) {
+      mv.visitInsn(ACONST_NULL);
+    } else if (type.isPrimitive()) {
+      String wrapper = Type.getInternalName(wrapperOf(type));
+      mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf",
+          "(" + Type.getDescriptor(type) + ")L" + wrapper + ";");
+    }
+  }
+
+  private static Class<?> wrapperOf(Class<?> primitive) {
+    if (primitive == boolean.class) {
+      return Boolean.class;
+    } else if (primitive == byte.class) {
+      return Byte.class;
+    } else if (primitive == char.class) {
+      return Character.class;
+    } else if (primitive == short.class) {
+      return Short.class;
+    } else if (primitive == int.class) {
+      return Integer.class;
+    } else if (primitive == long.class) {
+      return Long.class;
+    } else if (primitive == float.class) {
+      return Float.class;
+    } else {
+      return Double.class;
+    }
+  }
+}
@@ -42,6 +42,9 @@ public class ProviderMethod<T> implements ProviderWithDependencies<T> {
   private final ImmutableSet<Dependency<?>> dependencies;
   private final List<Provider<?>> parameterProviders;
   private final boolean exposed;
+  private final GeneratedMethodInvoker invoker;
+  /** The name of provisions in the provisioning trace, or null to not trace them. */
+  private final String tracedName;
 
   /**
    * @param method the method to invoke. It's return type must be the same type as {@code key}.
@@ -56,10 +59,44 @@ public class ProviderMethod<T> implements ProviderWithDependencies<T> {
     this.method = method;
     this.parameterProviders = parameterProviders;
     this.exposed = method.isAnnotationPresent(Exposed.class);
+    this.invoker = null;
+    this.tracedName = null;
 
     method.setAccessible(true);
   }
 
+  private ProviderMethod(ProviderMethod<T> original, GeneratedMethodInvoker invoker,
+      String tracedName) {
+    this.key = original.key;
+    this.scopeAnnotation = original.scopeAnnotation;
+    this.instance = original.instance;
+    this.dependencies = original.dependencies;
+    this.method = original.method;
+    this.parameterProviders = original.parameterProviders;
+    this.exposed = original.exposed;
+    this.invoker = invoker;
+    this.tracedName = tracedName;
+  }
+
+  /**
+   * Returns the provider that an injector should call. Injectors that generate invokers call the
+   * method with a generated invoker where possible, defined as a hidden class if {@code
+   * hiddenClasses}, and injectors that trace provisioning trace each call. The binding still
+   * exposes this provider.
+   */
+  public ProviderMethod<T> forInjector(boolean generateInvoker, boolean hiddenClasses,
+      boolean trace) {
+    GeneratedMethodInvoker invoker = null;
+    /*if[AOP]*/
+    invoker = generateInvoker
+        ? MemberInvokerGenerator.getMethodInvoker(method, hiddenClasses)
+        : null;
+    /*end[AOP]*/
+    return invoker != null || trace
+        ? new ProviderMethod<T>(this, invoker, trace ? key.toString() : null)
+        : this;
+  }
+
   public Key<T> getKey() {
     return key;
   }
@@ -90,6 +127,19 @@ public class ProviderMethod<T> implements ProviderWithDependencies<T> {
   }
 
   public T get() {
+    if (tracedName == null) {
+      return provision();
+    }
+
+    ProvisionTracer.begin(ProvisionTracer.Category.PROVIDER_METHOD, tracedName);
+    try {
+      return provision();
+    } finally {
+      ProvisionTracer.end(ProvisionTracer.Category.PROVIDER_METHOD, tracedName);
+    }
+  }
+
+  private T provision() {
     Object[] parameters = new Object[parameterProviders.size()];
     for (int i = 0; i < parameters.length; i++) {
       parameters[i] = parameterProviders.get(i).get();
@@ -98,7 +148,9 @@ public class ProviderMethod<T> implements ProviderWithDependencies<T> {
     try {
       // We know this cast is safe becase T is the method's return type.
       @SuppressWarnings({ "unchecked", "UnnecessaryLocalVariable" })
-      T result = (T) method.invoke(instance, parameters);
+      T result = (T) (invoker != null
+          ? invoker.invoke(instance, parameters)
+          : method.invoke(instance, parameters));
       return result;
     } catch (IllegalAccessException e) {
       throw new AssertionError(e);
@@ -0,0 +1,257 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.inject.spi.CachedValue;
+import com.google.inject.spi.Dependency;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records when provisioning starts and ends, for Chrome's trace viewer or Perfetto. Each thread
+ * records begin and end events into its own ring buffer, so provisions are nested by dependency in
+ * the trace. Recording takes no locks and allocates nothing after a thread's first event. Once a
+ * thread's buffer is full, its oldest events are overwritten.
+ *
+ * <p>Events are named by strings rather than by keys or types, so that buffers don't keep user
+ * classes and their class loaders reachable. The buffers of threads that have terminated are
+ * dropped whenever another thread records its first event, and by {@link #clear}.
+ *
+ * <p>Events are written in Chrome's JSON trace event format. Threads may keep recording while the
+ * trace is written; events they overwrite meanwhile are left out.
+ */
+public final class ProvisionTracer {
+
+  /** Events kept for each thread. */
+  public static final int EVENTS_PER_THREAD = 4096;
+
+  private static final int MASK = EVENTS_PER_THREAD - 1;
+  private static final int END = 1;
+
+  /** What an event traces. */
+  public enum Category {
+    /** Constructing an instance and injecting its members. */
+    CONSTRUCTOR("constructor"),
+    /** Getting an instance from a scope, which may create it. */
+    SCOPE("scope"),
+    /** Calling a {@code @Provides} method, including getting its parameters. */
+    PROVIDER_METHOD("provider method");
+
+    final String label;
+
+    Category(String label) {
+      this.label = label;
+    }
+  }
+
+  private static final long EPOCH = System.nanoTime();
+
+  private static final Queue<Buffer> buffers = new ConcurrentLinkedQueue<Buffer>();
+
+  private static final ThreadLocal<Buffer> localBuffer = new ThreadLocal<Buffer>() {
+    @Override protected Buffer initialValue() {
+      removeTerminatedThreads();
+      Buffer buffer = new Buffer(Thread.currentThread());
+      buffers.add(buffer);
+      return buffer;
+    }
+  };
+
+  private ProvisionTracer() {}
+
+  /** Records that provisioning {@code name} started on the current thread. */
+  public static void begin(Category category, String name) {
+    localBuffer.get().add(name, category.ordinal() << 1);
+  }
+
+  /** Records that provisioning {@code name} ended on the current thread. */
+  public static void end(Category category, String name) {
+    localBuffer.get().add(name, category.ordinal() << 1 | END);
+  }
+
+  /** Returns a factory that traces each provision from {@code factory}. */
+  public static <T> InternalFactory<T> trace(
+      Category category, String name, InternalFactory<? extends T> factory) {
+    return new TracingFactory<T>(category, name, factory);
+  }
+
+  /** Discards the events recorded so far, and the buffers of threads that have terminated. */
+  public static void clear() {
+    removeTerminatedThreads();
+    for (Buffer buffer : buffers) {
+      buffer.cleared = buffer.count;
+    }
+  }
+
+  private static void removeTerminatedThreads() {
+    for (Iterator<Buffer> i = buffers.iterator(); i.hasNext(); ) {
+      Thread thread = i.next().thread.get();
+      if (thread == null || !thread.isAlive()) {
+        i.remove();
+      }
+    }
+  }
+
+  /** Returns the recorded events as a trace event JSON object. */
+  public static String toJson() {
+    StringBuilder json = new StringBuilder();
+    json.append("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[");
+    boolean first = true;
+    for (Buffer buffer : buffers) {
+      first = buffer.appendEvents(json, first);
+    }
+    return json.append("]}").toString();
+  }
+
+  /** Writes the recorded events to {@code file} as a trace event JSON object. */
+  public static void writeTo(File file) throws IOException {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      writer.write(toJson());
+    } finally {
+      writer.close();
+    }
+  }
+
+  /** One thread's events. Only that thread writes them. */
+  private static class Buffer {
+    final WeakReference<Thread> thread;
+    final long threadId;
+    final String threadName;
+
+    final long[] nanos = new long[EVENTS_PER_THREAD];
+    final String[] names = new String[EVENTS_PER_THREAD];
+    final byte[] events = new byte[EVENTS_PER_THREAD];
+
+    /** The number of events recorded. Writing it publishes them to other threads. */
+    volatile long count;
+
+    /** The number of events recorded when the buffer was last cleared. */
+    volatile long cleared;
+
+    Buffer(Thread thread) {
+      this.thread = new WeakReference<Thread>(thread);
+      this.threadId = thread.getId();
+      this.threadName = thread.getName();
+    }
+
+    void add(String name, int event) {
+      long index = count;
+      int i = (int) index & MASK;
+      nanos[i] = System.nanoTime();
+      names[i] = name;
+      events[i] = (byte) event;
+      count = index + 1;
+    }
+
+    boolean appendEvents(StringBuilder json, boolean first) {
+      long end = count;
+      long start = Math.max(cleared, end - EVENTS_PER_THREAD);
+      int size = (int) (end - start);
+      long[] nanos = new long[size];
+      String[] names = new String[size];
+      byte[] events = new byte[size];
+      for (int i = 0; i < size; i++) {
+        int slot = (int) (start + i) & MASK;
+        nanos[i] = this.nanos[slot];
+        names[i] = this.names[slot];
+        events[i] = this.events[slot];
+      }
+
+      // skip events that were overwritten while we copied them
+      int skipped = (int) Math.max(0, count - EVENTS_PER_THREAD + 1 - start);
+      if (skipped >= size) {
+        return first;
+      }
+
+      if (!first) {
+        json.append(',');
+      }
+      json.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(threadId)
+          .append(",\"args\":{\"name\":");
+      Json.appendString(json, threadName);
+      json.append("}}");
+
+      int depth = 0;
+      for (int i = skipped; i < size; i++) {
+        boolean isEnd = (events[i] & END) != 0;
+        if (isEnd) {
+          // the event that began it was overwritten
+          if (depth == 0) {
+            continue;
+          }
+          depth--;
+        } else {
+          depth++;
+        }
+
+        Category category = Category.values()[events[i] >> 1];
+        json.append(",{\"name\":");
+        Json.appendString(json, names[i]);
+        json.append(",\"cat\":");
+        Json.appendString(json, category.label);
+        json.append(",\"ph\":\"").append(isEnd ? 'E' : 'B').append("\",\"ts\":");
+        long elapsed = nanos[i] - EPOCH;
+        long fraction = elapsed % 1000;
+        json.append(elapsed / 1000).append('.')
+            .append(fraction < 10 ? "00" : fraction < 100 ? "0" : "").append(fraction);
+        json.append(",\"pid\":1,\"tid\":").append(threadId).append('}');
+      }
+      return false;
+    }
+  }
+
+  private static class TracingFactory<T> implements InternalFactory<T>, CachedValue<T> {
+    final Category category;
+    final String name;
+    final InternalFactory<? extends T> factory;
+
+    TracingFactory(Category category, String name, InternalFactory<? extends T> factory) {
+      this.category = category;
+      this.name = name;
+      this.factory = factory;
+    }
+
+    public T get(Errors errors, InternalContext context, Dependency<?> dependency)
+        throws ErrorsException {
+      begin(category, name);
+      try {
+        return factory.get(errors, context, dependency);
+      } finally {
+        end(category, name);
+      }
+    }
+
+    @SuppressWarnings("unchecked") // the factory provides Ts
+    public T getCachedValue() {
+      return factory instanceof CachedValue
+          ? ((CachedValue<T>) factory).getCachedValue()
+          : null;
+    }
+
+    @Override public String toString() {
+      return factory.toString();
+    }
+  }
+}
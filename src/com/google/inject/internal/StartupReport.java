@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject.internal;
+
+import com.google.inject.Injector;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records a {@link com.google.inject.spi.StartupReport} of an injector's construction.
+ *
+ * <p>Work is recorded to the report that's current for the thread doing it, so just-in-time
+ * bindings created after the injector is built aren't recorded.
+ */
+public final class StartupReport implements com.google.inject.spi.StartupReport {
+
+  private static final ThreadLocal<StartupReport> current = new ThreadLocal<StartupReport>();
+
+  private static final Map<Injector, StartupReport> reports
+      = new MapMaker().weakKeys().makeMap();
+
+  private final long startNanos = System.nanoTime();
+  private final List<Entry> entries = Lists.newArrayList();
+
+  /** Returns the startup report of {@code injector}, or null if it wasn't built by Guice. */
+  public static StartupReport of(Injector injector) {
+    return reports.get(injector);
+  }
+
+  /** Makes this the report of {@code injector}. */
+  public void attach(Injector injector) {
+    reports.put(injector, this);
+  }
+
+  /** Returns the report that work on the current thread is recorded to, or null for none. */
+  public static StartupReport current() {
+    return current.get();
+  }
+
+  /**
+   * Records work on the current thread to {@code report}, which may be null to stop recording.
+   * Returns the report that work was recorded to before.
+   */
+  public static StartupReport setCurrent(StartupReport report) {
+    StartupReport previous = current.get();
+    if (report != null) {
+      current.set(report);
+    } else {
+      current.remove();
+    }
+    return previous;
+  }
+
+  /** Records work that started at {@code startNanos}, as read from {@link System#nanoTime}. */
+  public void record(Category category, String name, long startNanos) {
+    long now = System.nanoTime();
+    Entry entry = new Entry(category, name, Thread.currentThread().getName(),
+        startNanos - this.startNanos, now - startNanos);
+    synchronized (entries) {
+      entries.add(entry);
+    }
+  }
+
+  /** Returns all entries, in the order they finished. */
+  public List<Entry> getEntries() {
+    synchronized (entries) {
+      return ImmutableList.copyOf(entries);
+    }
+  }
+
+  /** Returns the entries in {@code category}, in the order they finished. */
+  public List<Entry> getEntries(Category category) {
+    List<Entry> result = Lists.newArrayList();
+    for (Entry entry : getEntries()) {
+      if (entry.category == category) {
+        result.add(entry);
+      }
+    }
+    return ImmutableList.copyOf(result);
+  }
+
+  /** Returns the total time of all phases, in nanoseconds. */
+  public long getTotalNanos() {
+    long result = 0;
+    for (Entry entry : getEntries(Category.PHASE)) {
+      result += entry.durationNanos;
+    }
+    return result;
+  }
+
+  /**
+   * Returns this report as a JSON object with {@code totalNanos} and an {@code entries} array.
+   * Each entry has a {@code category}, {@code name}, {@code thread}, {@code startNanos} (relative
+   * to when construction started) and {@code durationNanos}.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder();
+    json.append("{\"totalNanos\":").append(getTotalNanos()).append(",\"entries\":[");
+    boolean first = true;
+    for (Entry entry : getEntries()) {
+      if (!first) {
+        json.append(',');
+      }
+      first = false;
+      json.append("{\"category\":");
+      Json.appendString(json, entry.category.name());
+      json.append(",\"name\":");
+      Json.appendString(json, entry.name);
+      json.append(",\"thread\":");
+      Json.appendString(json, entry.threadName);
+      json.append(",\"startNanos\":").append(entry.startNanos);
+      json.append(",\"durationNanos\":").append(entry.durationNanos);
+      json.append('}');
+    }
+    return json.append("]}").toString();
+  }
+
+  @Override public String toString() {
+    return toJson();
+  }
+
+  /** The time taken by one piece of work. */
+  public static final class Entry implements com.google.inject.spi.StartupReport.Entry {
+    private final Category category;
+    private final String name;
+    private final String threadName;
+    private final long startNanos;
+    private final long durationNanos;
+
+    Entry(Category category, String name, String threadName, long startNanos,
+        long durationNanos) {
+      this.category = category;
+      this.name = name;
+      this.threadName = threadName;
+      this.startNanos = startNanos;
+      this.durationNanos = durationNanos;
+    }
+
+    public Category getCategory() {
+      return category;
+    }
+
+    /** Returns the phase label, module class, binding key or proxy class name. */
+    public String getName() {
+      return name;
+    }
+
+    /** Returns the name of the thread that did the work. */
+    public String getThreadName() {
+      return threadName;
+    }
+
+    /** Returns when the work started, in nanoseconds since injector construction started. */
+    public long getStartNanos() {
+      return startNanos;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    @Override public String toString() {
+      return category + " " + name + ": " + durationNanos + "ns";
+    }
+  }
+}
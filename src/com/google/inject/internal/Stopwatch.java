@@ -26,13 +26,27 @@ import java.util.logging.Logger;
 public class Stopwatch {
   private static final Logger logger = Logger.getLogger(Stopwatch.class.getName());
 
-  private long start = System.currentTimeMillis();
+  private final StartupReport report;
+  private long start = System.nanoTime();
+
+  public Stopwatch() {
+    this(null);
+  }
+
+  /** Creates a stopwatch that also records each logged interval as a phase of {@code report}. */
+  public Stopwatch(StartupReport report) {
+    this.report = report;
+  }
 
   /**
    * Resets and returns elapsed time in milliseconds.
    */
   public long reset() {
-    long now = System.currentTimeMillis();
+    return resetNanos() / 1000000;
+  }
+
+  private long resetNanos() {
+    long now = System.nanoTime();
     try {
       return now - start;
     } finally {
@@ -44,6 +58,11 @@ public class Stopwatch {
    * Resets and logs elapsed time in milliseconds.
    */
   public void resetAndLog(String label) {
-    logger.fine(label + ": " + reset() + "ms");
+    long startNanos = start;
+    long elapsedNanos = resetNanos();
+    if (report != null) {
+      report.record(StartupReport.Category.PHASE, label, startNanos);
+    }
+    logger.fine(label + ": " + (elapsedNanos / 1000000) + "ms");
   }
 }
@@ -16,7 +16,9 @@
 
 package com.google.inject.matcher;
 
+import com.google.inject.internal.IndexableMatcher;
 import java.io.Serializable;
+import java.lang.annotation.Annotation;
 
 /**
  * Implements {@code and()} and {@code or()}.
@@ -33,7 +35,8 @@ public abstract class AbstractMatcher<T> implements Matcher<T> {
     return new OrMatcher<T>(this, other);
   }
 
-  private static class AndMatcher<T> extends AbstractMatcher<T> implements Serializable {
+  private static class AndMatcher<T> extends AbstractMatcher<T>
+      implements IndexableMatcher, Serializable {
     private final Matcher<? super T> a, b;
 
     public AndMatcher(Matcher<? super T> a, Matcher<? super T> b) {
@@ -45,6 +48,35 @@ public abstract class AbstractMatcher<T> implements Matcher<T> {
       return a.matches(t) && b.matches(t);
     }
 
+    // both conditions must be met, so either one can be used
+
+    public Object getRequiredValue() {
+      Object value = a instanceof IndexableMatcher
+          ? ((IndexableMatcher) a).getRequiredValue()
+          : null;
+      return value != null || !(b instanceof IndexableMatcher)
+          ? value
+          : ((IndexableMatcher) b).getRequiredValue();
+    }
+
+    public Class<? extends Annotation> getRequiredAnnotationType() {
+      Class<? extends Annotation> annotationType = a instanceof IndexableMatcher
+          ? ((IndexableMatcher) a).getRequiredAnnotationType()
+          : null;
+      return annotationType != null || !(b instanceof IndexableMatcher)
+          ? annotationType
+          : ((IndexableMatcher) b).getRequiredAnnotationType();
+    }
+
+    public String getRequiredPackageName() {
+      String packageName = a instanceof IndexableMatcher
+          ? ((IndexableMatcher) a).getRequiredPackageName()
+          : null;
+      return packageName != null || !(b instanceof IndexableMatcher)
+          ? packageName
+          : ((IndexableMatcher) b).getRequiredPackageName();
+    }
+
     @Override public boolean equals(Object other) {
       return other instanceof AndMatcher
           && ((AndMatcher) other).a.equals(a)
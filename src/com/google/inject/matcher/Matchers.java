@@ -18,6 +18,7 @@ package com.google.inject.matcher;
 
 import static com.google.inject.internal.Preconditions.checkArgument;
 import static com.google.inject.internal.Preconditions.checkNotNull;
+import com.google.inject.internal.IndexableMatcher;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
@@ -109,7 +110,7 @@ public class Matchers {
   }
 
   private static class AnnotatedWithType extends AbstractMatcher<AnnotatedElement>
-      implements Serializable {
+      implements IndexableMatcher, Serializable {
     private final Class<? extends Annotation> annotationType;
 
     public AnnotatedWithType(Class<? extends Annotation> annotationType) {
@@ -121,6 +122,18 @@ public class Matchers {
       return element.getAnnotation(annotationType) != null;
     }
 
+    public Object getRequiredValue() {
+      return null;
+    }
+
+    public Class<? extends Annotation> getRequiredAnnotationType() {
+      return annotationType;
+    }
+
+    public String getRequiredPackageName() {
+      return null;
+    }
+
     @Override public boolean equals(Object other) {
       return other instanceof AnnotatedWithType
           && ((AnnotatedWithType) other).annotationType.equals(annotationType);
@@ -147,7 +160,7 @@ public class Matchers {
   }
 
   private static class AnnotatedWith extends AbstractMatcher<AnnotatedElement>
-      implements Serializable {
+      implements IndexableMatcher, Serializable {
     private final Annotation annotation;
 
     public AnnotatedWith(Annotation annotation) {
@@ -160,6 +173,18 @@ public class Matchers {
       return fromElement != null && annotation.equals(fromElement);
     }
 
+    public Object getRequiredValue() {
+      return null;
+    }
+
+    public Class<? extends Annotation> getRequiredAnnotationType() {
+      return annotation.annotationType();
+    }
+
+    public String getRequiredPackageName() {
+      return null;
+    }
+
     @Override public boolean equals(Object other) {
       return other instanceof AnnotatedWith
           && ((AnnotatedWith) other).annotation.equals(annotation);
@@ -220,7 +245,7 @@ public class Matchers {
   }
 
   private static class Only extends AbstractMatcher<Object>
-      implements Serializable {
+      implements IndexableMatcher, Serializable {
     private final Object value;
 
     public Only(Object value) {
@@ -231,6 +256,18 @@ public class Matchers {
       return value.equals(other);
     }
 
+    public Object getRequiredValue() {
+      return value;
+    }
+
+    public Class<? extends Annotation> getRequiredAnnotationType() {
+      return null;
+    }
+
+    public String getRequiredPackageName() {
+      return null;
+    }
+
     @Override public boolean equals(Object other) {
       return other instanceof Only
           && ((Only) other).value.equals(value);
@@ -255,7 +292,7 @@ public class Matchers {
   }
 
   private static class IdenticalTo extends AbstractMatcher<Object>
-      implements Serializable {
+      implements IndexableMatcher, Serializable {
     private final Object value;
 
     public IdenticalTo(Object value) {
@@ -266,6 +303,18 @@ public class Matchers {
       return value == other;
     }
 
+    public Object getRequiredValue() {
+      return value;
+    }
+
+    public Class<? extends Annotation> getRequiredAnnotationType() {
+      return null;
+    }
+
+    public String getRequiredPackageName() {
+      return null;
+    }
+
     @Override public boolean equals(Object other) {
       return other instanceof IdenticalTo
           && ((IdenticalTo) other).value == value;
@@ -290,7 +339,8 @@ public class Matchers {
     return new InPackage(targetPackage);
   }
 
-  private static class InPackage extends AbstractMatcher<Class> implements Serializable {
+  private static class InPackage extends AbstractMatcher<Class>
+      implements IndexableMatcher, Serializable {
     private final transient Package targetPackage;
     private final String packageName;
 
@@ -303,6 +353,18 @@ public class Matchers {
       return c.getPackage().equals(targetPackage);
     }
 
+    public Object getRequiredValue() {
+      return null;
+    }
+
+    public Class<? extends Annotation> getRequiredAnnotationType() {
+      return null;
+    }
+
+    public String getRequiredPackageName() {
+      return packageName;
+    }
+
     @Override public boolean equals(Object other) {
       return other instanceof InPackage
           && ((InPackage) other).targetPackage.equals(targetPackage);
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.inject.spi;
+
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.internal.BindingMetrics;
+import com.google.inject.internal.ProvisionTracer;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reports of how long injectors took to build and how their bindings are provisioned, and traces
+ * of their provisions.
+ */
+public final class Diagnostics {
+
+  private Diagnostics() {}
+
+  /** Returns the startup report of {@code injector}, or null if it wasn't built by Guice. */
+  public static StartupReport getStartupReport(Injector injector) {
+    return com.google.inject.internal.StartupReport.of(injector);
+  }
+
+  /**
+   * Returns the provisioning metrics of {@code binding}, or null if they weren't collected. Use
+   * "-Dguice.metrics=true" to collect them for the bindings of injectors built afterwards.
+   */
+  public static ProvisionMetrics getProvisionMetrics(Binding<?> binding) {
+    return BindingMetrics.of(binding);
+  }
+
+  /**
+   * Writes the provisions traced so far to {@code file}, in the trace event JSON format that trace
+   * viewers like {@code chrome://tracing} open. Use "-Dguice.trace=true" to trace the provisions of
+   * injectors built afterwards. Only the most recent events of each thread are kept.
+   */
+  public static void writeTrace(File file) throws IOException {
+    ProvisionTracer.writeTo(file);
+  }
+
+  /** Discards the provisions traced so far, as before tracing the part of a run of interest. */
+  public static void clearTrace() {
+    ProvisionTracer.clear();
+  }
+}
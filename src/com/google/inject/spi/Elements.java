@@ -42,6 +42,7 @@ import com.google.inject.internal.PrivateElementsImpl;
 import com.google.inject.internal.ProviderMethodsModule;
 import com.google.inject.internal.Sets;
 import com.google.inject.internal.SourceProvider;
+import com.google.inject.internal.StartupReport;
 import com.google.inject.internal.ExposureBuilder;
 import com.google.inject.matcher.Matcher;
 import java.lang.annotation.Annotation;
@@ -219,6 +220,10 @@ public final class Elements {
           binder = binder.newPrivateBinder();
         }
 
+        StartupReport report = module instanceof ProviderMethodsModule
+            ? null
+            : StartupReport.current();
+        long start = System.nanoTime();
         try {
           module.configure(binder);
         } catch (RuntimeException e) {
@@ -230,6 +235,9 @@ public final class Elements {
           }
         }
         binder.install(ProviderMethodsModule.forModule(module));
+        if (report != null) {
+          report.record(StartupReport.Category.MODULE, module.getClass().getName(), start);
+        }
       }
     }
 
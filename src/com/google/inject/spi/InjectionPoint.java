@@ -23,9 +23,11 @@ import com.google.inject.TypeLiteral;
 import com.google.inject.internal.Annotations;
 import com.google.inject.internal.Errors;
 import com.google.inject.internal.ErrorsException;
+import com.google.inject.internal.Function;
 import com.google.inject.internal.ImmutableList;
 import com.google.inject.internal.ImmutableSet;
 import com.google.inject.internal.Lists;
+import com.google.inject.internal.MapMaker;
 import com.google.inject.internal.MoreTypes;
 import static com.google.inject.internal.MoreTypes.getRawType;
 import com.google.inject.internal.Nullability;
@@ -33,13 +35,18 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -52,6 +59,26 @@ import java.util.Set;
  */
 public final class InjectionPoint {
 
+  /**
+   * Injection points by class and then by type, shared by all injectors so that each class's
+   * members are scanned only once. Classes are weakly referenced so that they can still be
+   * unloaded, and the cached injection points are softly referenced since they refer to their
+   * class. Each type is kept under the class of its own that comes from the youngest class loader
+   * (see {@link #cacheKeyOf}), so that only that loader's users keep its soft reference fresh.
+   */
+  private static final Map<Class<?>, Map<TypeLiteral<?>, CachedInjectionPoints>> cache
+      = new MapMaker().weakKeys().softValues().makeComputingMap(
+          new Function<Class<?>, Map<TypeLiteral<?>, CachedInjectionPoints>>() {
+    public Map<TypeLiteral<?>, CachedInjectionPoints> apply(Class<?> rawType) {
+      return new MapMaker().makeComputingMap(
+          new Function<TypeLiteral<?>, CachedInjectionPoints>() {
+        public CachedInjectionPoints apply(TypeLiteral<?> type) {
+          return new CachedInjectionPoints();
+        }
+      });
+    }
+  });
+
   private final boolean optional;
   private final Member member;
   private final ImmutableList<Dependency<?>> dependencies;
@@ -178,6 +205,24 @@ public final class InjectionPoint {
    *     parameter with multiple binding annotations.
    */
   public static InjectionPoint forConstructorOf(TypeLiteral<?> type) {
+    CachedInjectionPoints cached = getCached(type);
+    Result<InjectionPoint> constructor = cached.constructor;
+    if (constructor == null) {
+      try {
+        constructor = new Result<InjectionPoint>(findConstructorOf(type), new Errors());
+      } catch (ConfigurationException e) {
+        constructor = new Result<InjectionPoint>(null, new Errors().merge(e.getErrorMessages()));
+      }
+      cached.constructor = constructor;
+    }
+
+    if (!constructor.errors.isEmpty()) {
+      throw new ConfigurationException(constructor.errors);
+    }
+    return constructor.value;
+  }
+
+  private static InjectionPoint findConstructorOf(TypeLiteral<?> type) {
     Class<?> rawType = getRawType(type.getType());
     Errors errors = new Errors(rawType);
 
@@ -248,17 +293,13 @@ public final class InjectionPoint {
    *      of the valid injection points.
    */
   public static Set<InjectionPoint> forStaticMethodsAndFields(TypeLiteral type) {
-    List<InjectionPoint> sink = Lists.newArrayList();
-    Errors errors = new Errors();
-
-    addInjectionPoints(type, Factory.FIELDS, true, sink, errors);
-    addInjectionPoints(type, Factory.METHODS, true, sink, errors);
-
-    ImmutableSet<InjectionPoint> result = ImmutableSet.copyOf(sink);
-    if (errors.hasErrors()) {
-      throw new ConfigurationException(errors.getMessages()).withPartialValue(result);
+    CachedInjectionPoints cached = getCached(type);
+    Result<ImmutableSet<InjectionPoint>> members = cached.staticMembers;
+    if (members == null) {
+      members = findMethodsAndFields(type, true);
+      cached.staticMembers = members;
     }
-    return result;
+    return getMethodsAndFields(members);
   }
 
   /**
@@ -288,18 +329,13 @@ public final class InjectionPoint {
    *      of the valid injection points.
    */
   public static Set<InjectionPoint> forInstanceMethodsAndFields(TypeLiteral<?> type) {
-    List<InjectionPoint> sink = Lists.newArrayList();
-    Errors errors = new Errors();
-
-    // TODO (crazybob): Filter out overridden members.
-    addInjectionPoints(type, Factory.FIELDS, false, sink, errors);
-    addInjectionPoints(type, Factory.METHODS, false, sink, errors);
-
-    ImmutableSet<InjectionPoint> result = ImmutableSet.copyOf(sink);
-    if (errors.hasErrors()) {
-      throw new ConfigurationException(errors.getMessages()).withPartialValue(result);
+    CachedInjectionPoints cached = getCached(type);
+    Result<ImmutableSet<InjectionPoint>> members = cached.instanceMembers;
+    if (members == null) {
+      members = findMethodsAndFields(type, false);
+      cached.instanceMembers = members;
     }
-    return result;
+    return getMethodsAndFields(members);
   }
 
   /**
@@ -317,6 +353,105 @@ public final class InjectionPoint {
     return forInstanceMethodsAndFields(TypeLiteral.get(type));
   }
 
+  private static CachedInjectionPoints getCached(TypeLiteral<?> type) {
+    Class<?> key = cacheKeyOf(type);
+    // the classes of unrelated loaders would keep each other's loaders, so they aren't cached
+    return key != null ? cache.get(key).get(type) : new CachedInjectionPoints();
+  }
+
+  /**
+   * Returns the class that {@code type}'s injection points are cached under: the class in
+   * {@code type} whose loader has the loaders of all its other classes as ancestors. For example,
+   * {@code Repository<Tenant>} is cached under {@code Tenant} if {@code Repository} comes from a
+   * loader shared by several web applications. The entry then goes away with the application
+   * rather than with the shared loader. Returns null if two of the classes come from unrelated
+   * loaders.
+   */
+  static Class<?> cacheKeyOf(TypeLiteral<?> type) {
+    Class<?> rawType = type.getRawType();
+    return type.getType() instanceof Class ? rawType : youngest(rawType, type.getType());
+  }
+
+  /**
+   * Returns whichever of {@code key} and the classes in {@code type} comes from the youngest class
+   * loader, or null if there's no youngest.
+   */
+  private static Class<?> youngest(Class<?> key, Type type) {
+    if (key == null) {
+      return null;
+
+    } else if (type instanceof Class) {
+      Class<?> c = (Class<?>) type;
+      ClassLoader keyLoader = key.getClassLoader();
+      ClassLoader loader = c.getClassLoader();
+      if (keyLoader == loader || isAncestor(loader, keyLoader)) {
+        return key;
+      }
+      return isAncestor(keyLoader, loader) ? c : null;
+
+    } else if (type instanceof ParameterizedType) {
+      ParameterizedType parameterizedType = (ParameterizedType) type;
+      key = youngest(key, parameterizedType.getRawType());
+      if (parameterizedType.getOwnerType() != null) {
+        key = youngest(key, parameterizedType.getOwnerType());
+      }
+      for (Type argument : parameterizedType.getActualTypeArguments()) {
+        key = youngest(key, argument);
+      }
+      return key;
+
+    } else if (type instanceof GenericArrayType) {
+      return youngest(key, ((GenericArrayType) type).getGenericComponentType());
+
+    } else if (type instanceof WildcardType) {
+      WildcardType wildcardType = (WildcardType) type;
+      for (Type bound : wildcardType.getUpperBounds()) {
+        key = youngest(key, bound);
+      }
+      for (Type bound : wildcardType.getLowerBounds()) {
+        key = youngest(key, bound);
+      }
+      return key;
+
+    } else {
+      // type variables don't refer to a loader's classes
+      return key;
+    }
+  }
+
+  /** Returns true if {@code ancestor} is above {@code loader}. Null is the bootstrap loader. */
+  private static boolean isAncestor(ClassLoader ancestor, ClassLoader loader) {
+    if (ancestor == null) {
+      return true;
+    }
+    for (ClassLoader parent = loader; parent != null; parent = parent.getParent()) {
+      if (parent == ancestor) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Result<ImmutableSet<InjectionPoint>> findMethodsAndFields(
+      TypeLiteral<?> type, boolean statics) {
+    List<InjectionPoint> sink = Lists.newArrayList();
+    Errors errors = new Errors();
+
+    // TODO (crazybob): Filter out overridden members.
+    addInjectionPoints(type, Factory.FIELDS, statics, sink, errors);
+    addInjectionPoints(type, Factory.METHODS, statics, sink, errors);
+
+    return new Result<ImmutableSet<InjectionPoint>>(ImmutableSet.copyOf(sink), errors);
+  }
+
+  private static Set<InjectionPoint> getMethodsAndFields(
+      Result<ImmutableSet<InjectionPoint>> members) {
+    if (!members.errors.isEmpty()) {
+      throw new ConfigurationException(members.errors).withPartialValue(members.value);
+    }
+    return members.value;
+  }
+
   private static void checkForMisplacedBindingAnnotations(Member member, Errors errors) {
     Annotation misplacedBindingAnnotation = Annotations.findBindingAnnotation(
         errors, member, ((AnnotatedElement) member).getAnnotations());
@@ -349,8 +484,23 @@ public final class InjectionPoint {
     TypeLiteral<?> superType = type.getSupertype(type.getRawType().getSuperclass());
     addInjectionPoints(superType, factory, statics, injectionPoints, errors);
 
-    // Add injectors for all members next
-    addInjectorsForMembers(type, factory, statics, injectionPoints, errors);
+    // Add injectors for all members next. These are cached separately, so that they're reused by
+    // each subclass.
+    Map<Factory<?>, Result<ImmutableList<InjectionPoint>>> cachedDeclared = statics
+        ? getCached(type).declaredStatics
+        : getCached(type).declaredInstances;
+    Result<ImmutableList<InjectionPoint>> declared = cachedDeclared.get(factory);
+    if (declared == null) {
+      List<InjectionPoint> sink = Lists.newArrayList();
+      Errors declaredErrors = new Errors();
+      addInjectorsForMembers(type, factory, statics, sink, declaredErrors);
+      declared = new Result<ImmutableList<InjectionPoint>>(
+          ImmutableList.copyOf(sink), declaredErrors);
+      cachedDeclared.put(factory, declared);
+    }
+
+    injectionPoints.addAll(declared.value);
+    errors.merge(declared.errors);
   }
 
   private static <M extends Member & AnnotatedElement> void addInjectorsForMembers(
@@ -403,4 +553,31 @@ public final class InjectionPoint {
     M[] getMembers(Class<?> type);
     InjectionPoint create(TypeLiteral<?> typeLiteral, M member, Errors errors);
   }
+
+  /**
+   * The injection points of one type. Each is found when it's first needed; if two threads race to
+   * find the same injection points, both find equal ones.
+   */
+  private static class CachedInjectionPoints {
+    volatile Result<InjectionPoint> constructor;
+    volatile Result<ImmutableSet<InjectionPoint>> staticMembers;
+    volatile Result<ImmutableSet<InjectionPoint>> instanceMembers;
+
+    /** The static and instance members declared by the type itself, by factory. */
+    final Map<Factory<?>, Result<ImmutableList<InjectionPoint>>> declaredStatics
+        = new MapMaker().makeMap();
+    final Map<Factory<?>, Result<ImmutableList<InjectionPoint>>> declaredInstances
+        = new MapMaker().makeMap();
+  }
+
+  /** Injection points, and the errors encountered while finding them. */
+  private static class Result<V> {
+    final V value;
+    final ImmutableList<Message> errors;
+
+    Result(V value, Errors errors) {
+      this.value = value;
+      this.errors = ImmutableList.copyOf(errors.getMessages());
+    }
+  }
 }
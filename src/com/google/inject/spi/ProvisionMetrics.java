@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.inject.spi;
+
+/**
+ * Provisioning statistics of a binding: how often it's provisioned, how many instances it creates
+ * and how long that takes, and how long threads wait for its scope's lock. Only one in every few
+ * creations is timed, including the first. Creation times include the time to provision the
+ * instance's dependencies.
+ *
+ * @see Diagnostics#getProvisionMetrics
+ */
+public interface ProvisionMetrics {
+
+  /**
+   * The number of creation time histogram buckets. Bucket 0 counts times under 1ns, bucket {@code
+   * i} counts times from 2<sup>i-1</sup>ns up to 2<sup>i</sup>ns, and the last bucket counts all
+   * slower times.
+   */
+  int BUCKETS = 32;
+
+  /** Returns the number of times this binding was provisioned. */
+  long getProvisionCount();
+
+  /** Returns the number of instances created by this binding, before scoping. */
+  long getCreationCount();
+
+  /** Returns the number of creations that were timed. */
+  long getTimedCreationCount();
+
+  /** Returns the total time of the creations that were timed, in nanoseconds. */
+  long getTimedCreationNanos();
+
+  /** Returns the mean time to create an instance, in nanoseconds, or 0 if none were timed. */
+  long getMeanCreationNanos();
+
+  /** Returns the number of times a thread waited to enter the binding's scope. */
+  long getScopeWaitCount();
+
+  /** Returns the total time that threads waited to enter the binding's scope, in nanoseconds. */
+  long getScopeWaitNanos();
+
+  /** Returns the number of timed creations in each bucket. See {@link #BUCKETS}. */
+  long[] getCreationHistogram();
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.inject.spi;
+
+import java.util.List;
+
+/**
+ * Where the time went while an injector was created. Each entry times one phase of injector
+ * construction, one module's {@code configure()} method, one just-in-time binding, one eager
+ * singleton or one proxy class, in nanoseconds. Entries are in the order they finished; nested
+ * work, like the modules a module installs or the dependencies of an eager singleton, is included
+ * in the enclosing entry's duration.
+ *
+ * <p>Just-in-time bindings created after the injector is built aren't recorded. Proxy classes are
+ * shared by injectors, so only the injector that first needs one records its generation.
+ *
+ * @see Diagnostics#getStartupReport
+ */
+public interface StartupReport {
+
+  /** What an entry timed. */
+  enum Category {
+    /** A phase of injector construction, such as module execution or binding validation. */
+    PHASE,
+    /** A module's {@code configure()} method, including the modules it installs. */
+    MODULE,
+    /** The creation of a just-in-time binding, including its dependencies' bindings. */
+    JIT_BINDING,
+    /** The provisioning of an eager singleton, including its dependencies. */
+    EAGER_SINGLETON,
+    /** The generation of a class that proxies intercepted methods. */
+    PROXY_CLASS
+  }
+
+  /** Returns all entries, in the order they finished. */
+  List<? extends Entry> getEntries();
+
+  /** Returns the entries in {@code category}, in the order they finished. */
+  List<? extends Entry> getEntries(Category category);
+
+  /** Returns the total time of all phases, in nanoseconds. */
+  long getTotalNanos();
+
+  /**
+   * Returns this report as a JSON object with {@code totalNanos} and an {@code entries} array.
+   * Each entry has a {@code category}, {@code name}, {@code thread}, {@code startNanos} (relative
+   * to when construction started) and {@code durationNanos}.
+   */
+  String toJson();
+
+  /** The time taken by one piece of work. */
+  interface Entry {
+    Category getCategory();
+
+    /** Returns the phase label, module class, binding key or proxy class name. */
+    String getName();
+
+    /** Returns the name of the thread that did the work. */
+    String getThreadName();
+
+    /** Returns when the work started, in nanoseconds since injector construction started. */
+    long getStartNanos();
+
+    long getDurationNanos();
+  }
+}
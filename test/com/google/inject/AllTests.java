@@ -58,6 +58,7 @@ public class AllTests {
     suite.addTestSuite(BinderTest.class);
     suite.addTest(BinderTestSuite.suite());
     suite.addTestSuite(BindingAnnotationTest.class);
+    suite.addTestSuite(BindingMetricsTest.class);
     suite.addTestSuite(BindingOrderTest.class);
     suite.addTestSuite(BindingTest.class);
     suite.addTestSuite(BoundInstanceInjectionTest.class);
@@ -68,7 +69,10 @@ public class AllTests {
     suite.addTestSuite(GenericInjectionTest.class);
     suite.addTestSuite(ImplicitBindingTest.class);
     suite.addTestSuite(TypeListenerTest.class);
+    suite.addTestSuite(InjectorOptionsTest.class);
     suite.addTestSuite(InjectorTest.class);
+    suite.addTestSuite(InternalContextPoolTest.class);
+    suite.addTestSuite(JitBindingCreatorTest.class);
     // IntegrationTest is AOP-only
     suite.addTestSuite(KeyTest.class);
     suite.addTestSuite(LoggerInjectionTest.class);
@@ -82,12 +86,15 @@ public class AllTests {
     suite.addTestSuite(ParentInjectorTest.class);
     suite.addTestSuite(PrivateModuleTest.class);
     suite.addTestSuite(ProviderInjectionTest.class);
+    suite.addTestSuite(ProvisionAllocationTest.class);
     suite.addTestSuite(ProvisionExceptionTest.class);
+    suite.addTestSuite(ProvisionTracerTest.class);
     // ProxyFactoryTest is AOP-only
     suite.addTestSuite(ReflectionTest.class);
     suite.addTestSuite(RequestInjectionTest.class);
     suite.addTestSuite(ScopesTest.class);
     suite.addTestSuite(SerializationTest.class);
+    suite.addTestSuite(StartupReportTest.class);
     suite.addTestSuite(SuperclassTest.class);
     suite.addTestSuite(TypeConversionTest.class);
     suite.addTestSuite(TypeLiteralInjectionTest.class);
@@ -126,6 +133,9 @@ public class AllTests {
     suite.addTestSuite(TypesTest.class);
 
     /*if[AOP]*/
+    suite.addTestSuite(ConstructorFactoryGeneratorTest.class);
+    suite.addTestSuite(MemberInvokerGeneratorTest.class);
+    suite.addTestSuite(MembersInjectorGeneratorTest.class);
     suite.addTestSuite(ProxyFactoryTest.class);
     suite.addTestSuite(IntegrationTest.class);
     suite.addTestSuite(MethodInterceptionTest.class);
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import static com.google.inject.InjectorOptionsTest.createInjector;
+import static com.google.inject.spi.Diagnostics.getProvisionMetrics;
+import com.google.inject.spi.ProvisionMetrics;
+import junit.framework.TestCase;
+
+public class BindingMetricsTest extends TestCase {
+
+  private static final InjectorOptions METRICS = new InjectorOptions().collectMetrics(true);
+
+  public void testMetricsAreOnlyCollectedWhenEnabled() {
+    Injector injector = createInjector(new InjectorOptions(), new AbstractModule() {
+      protected void configure() {
+        bind(Unscoped.class);
+      }
+    });
+    assertNull(getProvisionMetrics(injector.getBinding(Unscoped.class)));
+  }
+
+  public void testUnscopedBindingsCreateEachProvision() {
+    Injector injector = createInjector(METRICS, new AbstractModule() {
+      protected void configure() {
+        bind(Unscoped.class);
+      }
+    });
+
+    for (int i = 0; i < 40; i++) {
+      injector.getInstance(Unscoped.class);
+    }
+
+    ProvisionMetrics metrics = getProvisionMetrics(injector.getBinding(Unscoped.class));
+    assertEquals(40, metrics.getProvisionCount());
+    assertEquals(40, metrics.getCreationCount());
+    // the 1st, 17th and 33rd creations on this thread's stripe are timed
+    assertEquals(3, metrics.getTimedCreationCount());
+    assertEquals(3, sum(metrics.getCreationHistogram()));
+    assertEquals(0, metrics.getScopeWaitCount());
+  }
+
+  public void testSingletonsAreCreatedOnce() {
+    Injector injector = createInjector(METRICS, new AbstractModule() {
+      protected void configure() {
+        bind(Unscoped.class).in(Scopes.SINGLETON);
+        bind(Dependent.class);
+      }
+    });
+
+    for (int i = 0; i < 5; i++) {
+      injector.getInstance(Dependent.class);
+    }
+
+    ProvisionMetrics singleton = getProvisionMetrics(injector.getBinding(Unscoped.class));
+    assertEquals(5, singleton.getProvisionCount());
+    assertEquals(1, singleton.getCreationCount());
+    assertEquals(1, singleton.getTimedCreationCount());
+    assertEquals(1, singleton.getScopeWaitCount());
+
+    ProvisionMetrics dependent = getProvisionMetrics(injector.getBinding(Dependent.class));
+    assertEquals(5, dependent.getProvisionCount());
+    assertEquals(5, dependent.getCreationCount());
+  }
+
+  public void testInstancesAndLinkedKeysDontCreateInstances() {
+    Injector injector = createInjector(METRICS, new AbstractModule() {
+      protected void configure() {
+        bind(String.class).toInstance("hello");
+        bind(Object.class).to(Unscoped.class);
+        bind(Runnable.class).toProvider(new Provider<Runnable>() {
+          public Runnable get() {
+            return new Runnable() {
+              public void run() {}
+            };
+          }
+        });
+      }
+    });
+
+    injector.getInstance(String.class);
+    injector.getInstance(Object.class);
+    injector.getInstance(Runnable.class);
+
+    ProvisionMetrics instance = getProvisionMetrics(injector.getBinding(String.class));
+    assertEquals(1, instance.getProvisionCount());
+    assertEquals(0, instance.getCreationCount());
+
+    ProvisionMetrics linked = getProvisionMetrics(injector.getBinding(Object.class));
+    assertEquals(1, linked.getProvisionCount());
+    assertEquals(0, linked.getCreationCount());
+    assertEquals(1, getProvisionMetrics(injector.getBinding(Unscoped.class)).getCreationCount());
+
+    ProvisionMetrics provided = getProvisionMetrics(injector.getBinding(Runnable.class));
+    assertEquals(1, provided.getProvisionCount());
+    assertEquals(1, provided.getCreationCount());
+  }
+
+  public void testConcurrentProvisionsAreAllCounted() throws InterruptedException {
+    final Injector injector = createInjector(METRICS, new AbstractModule() {
+      protected void configure() {
+        bind(Unscoped.class).in(Scopes.SINGLETON);
+      }
+    });
+    final Provider<Unscoped> provider = injector.getProvider(Unscoped.class);
+
+    // many more threads than stripes, as in a busy server
+    Thread[] threads = new Thread[64];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override public void run() {
+          for (int i = 0; i < 10000; i++) {
+            provider.get();
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    ProvisionMetrics metrics = getProvisionMetrics(injector.getBinding(Unscoped.class));
+    assertEquals(640000, metrics.getProvisionCount());
+  }
+
+  private long sum(long[] values) {
+    long result = 0;
+    for (long value : values) {
+      result += value;
+    }
+    return result;
+  }
+
+  static class Unscoped {}
+
+  static class Dependent {
+    @Inject Unscoped unscoped;
+  }
+}
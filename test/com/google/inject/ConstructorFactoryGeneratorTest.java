@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import static com.google.inject.InjectorOptionsTest.createInjector;
+import static com.google.inject.Asserts.assertContains;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class ConstructorFactoryGeneratorTest extends TestCase {
+
+  private static final InjectorOptions GENERATED_FACTORIES
+      = new InjectorOptions().generateFactories(true);
+
+  public void testConstructorAndFieldsAreInjectedByGeneratedCode() {
+    Injector injector = createInjector(GENERATED_FACTORIES, new AbstractModule() {
+      protected void configure() {
+        bindConstant().annotatedWith(Names.named("size")).to(5);
+        bind(String.class).toInstance("hello");
+      }
+    });
+
+    Generated generated = injector.getInstance(Generated.class);
+    assertEquals(5, generated.size);
+    assertEquals("hello", generated.greeting);
+    assertNotNull(generated.dependency);
+    assertEquals("hello", generated.field);
+    assertEquals(5, generated.primitiveField);
+    assertContains(generated.constructedBy, "$$ConstructorFactoryByGuice$$");
+  }
+
+  public void testFactoriesAreHiddenClassesWhenSet() throws Exception {
+    Injector injector = createInjector(
+        new InjectorOptions().generateFactories(true).hiddenClasses(true), new AbstractModule() {
+      protected void configure() {
+        bindConstant().annotatedWith(Names.named("size")).to(5);
+        bind(String.class).toInstance("hello");
+      }
+    });
+
+    Generated generated = injector.getInstance(Generated.class);
+    assertEquals(5, generated.size);
+    assertEquals("hello", generated.field);
+    try {
+      Class.class.getMethod("isHidden");
+      // hidden classes are left out of stack traces
+      assertFalse(generated.constructedBy.contains("$$ConstructorFactoryByGuice$$"));
+    } catch (NoSuchMethodException vmWithoutHiddenClasses) {
+      assertContains(generated.constructedBy, "$$ConstructorFactoryByGuice$$");
+    }
+  }
+
+  public void testPrivateConstructorsAreInjectedReflectively() {
+    Injector injector = createInjector(GENERATED_FACTORIES, new AbstractModule() {
+      protected void configure() {
+        bind(String.class).toInstance("hello");
+      }
+    });
+
+    PrivateConstructor privateConstructor = injector.getInstance(PrivateConstructor.class);
+    assertEquals("hello", privateConstructor.greeting);
+    assertEquals("hello", privateConstructor.privateField);
+  }
+
+  public void testMethodsAreInjectedAfterFields() {
+    Injector injector = createInjector(GENERATED_FACTORIES, new AbstractModule() {
+      protected void configure() {
+        bind(String.class).toInstance("hello");
+      }
+    });
+
+    assertEquals("hello", injector.getInstance(FieldsAndMethods.class).fieldSeenByMethod);
+  }
+
+  public void testConstructorExceptionsAreReported() {
+    Injector injector = createInjector(GENERATED_FACTORIES, new AbstractModule() {
+      protected void configure() {}
+    });
+
+    try {
+      injector.getInstance(Throwing.class);
+      fail();
+    } catch (ProvisionException expected) {
+      assertContains(expected.getMessage(), "Error injecting constructor",
+          "UnsupportedOperationException: from constructor");
+    }
+  }
+
+  public void testAllParameterErrorsAreReported() {
+    Injector injector = createInjector(GENERATED_FACTORIES, new AbstractModule() {
+      protected void configure() {
+        bind(String.class).toProvider(new Provider<String>() {
+          public String get() {
+            throw new UnsupportedOperationException("from provider");
+          }
+        });
+      }
+    });
+
+    try {
+      injector.getInstance(TwoStrings.class);
+      fail();
+    } catch (ProvisionException expected) {
+      assertEquals(2, expected.getErrorMessages().size());
+      assertContains(expected.getMessage(), "1) Error in custom provider",
+          "2) Error in custom provider");
+    }
+  }
+
+  public void testCircularDependencies() {
+    Injector injector = createInjector(GENERATED_FACTORIES, new AbstractModule() {
+      protected void configure() {
+        bind(Chicken.class).to(ChickenImpl.class);
+        bind(Egg.class).to(EggImpl.class);
+      }
+    });
+
+    Chicken chicken = injector.getInstance(Chicken.class);
+    assertSame(chicken, chicken.egg().chicken().egg().chicken());
+  }
+
+  public void testJavaTypes() {
+    Injector injector = createInjector(GENERATED_FACTORIES, new AbstractModule() {
+      protected void configure() {
+        bind(List.class).to(java.util.ArrayList.class);
+      }
+    });
+
+    assertTrue(injector.getInstance(List.class).isEmpty());
+  }
+
+  static class Dependency {}
+
+  static class Generated {
+    final int size;
+    final String greeting;
+    final Dependency dependency;
+    final String constructedBy;
+    @Inject String field;
+    @Inject @Named("size") int primitiveField;
+
+    @Inject Generated(@Named("size") int size, String greeting, Dependency dependency) {
+      this.size = size;
+      this.greeting = greeting;
+      this.dependency = dependency;
+      this.constructedBy = new Throwable().getStackTrace()[1].getClassName();
+    }
+  }
+
+  static class PrivateConstructor {
+    final String greeting;
+    @Inject private String privateField;
+
+    @Inject private PrivateConstructor(String greeting) {
+      this.greeting = greeting;
+    }
+  }
+
+  static class FieldsAndMethods {
+    @Inject String field;
+    String fieldSeenByMethod;
+
+    @Inject void method() {
+      fieldSeenByMethod = field;
+    }
+  }
+
+  static class Throwing {
+    @Inject Throwing() {
+      throw new UnsupportedOperationException("from constructor");
+    }
+  }
+
+  static class TwoStrings {
+    @Inject TwoStrings(String a, String b) {}
+  }
+
+  interface Chicken {
+    Egg egg();
+  }
+
+  interface Egg {
+    Chicken chicken();
+  }
+
+  static class ChickenImpl implements Chicken {
+    @Inject Egg egg;
+    public Egg egg() {
+      return egg;
+    }
+  }
+
+  static class EggImpl implements Egg {
+    final Chicken chicken;
+    @Inject EggImpl(Chicken chicken) {
+      this.chicken = chicken;
+    }
+    public Chicken chicken() {
+      return chicken;
+    }
+  }
+}
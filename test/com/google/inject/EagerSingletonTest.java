@@ -16,6 +16,10 @@
 
 package com.google.inject;
 
+import static com.google.inject.InjectorOptionsTest.createInjector;
+import com.google.inject.name.Names;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import junit.framework.TestCase;
 
 /**
@@ -23,6 +27,8 @@ import junit.framework.TestCase;
  */
 public class EagerSingletonTest extends TestCase {
 
+  private static final InjectorOptions PRELOAD_THREADS = new InjectorOptions().preloadThreads(4);
+
   public void testJustInTimeEagerSingletons() {
     A.instanceCount = 0;
     B.instanceCount = 0;
@@ -47,6 +53,109 @@ public class EagerSingletonTest extends TestCase {
     assertEquals(1, C.instanceCount);
   }
 
+  public void testParallelPreloadingConstructsIndependentSingletonsConcurrently() {
+    final CountDownLatch bothConstructing = new CountDownLatch(2);
+    Injector injector = createInjector(PRELOAD_THREADS, Stage.PRODUCTION, new AbstractModule() {
+      protected void configure() {
+        bind(CountDownLatch.class).toInstance(bothConstructing);
+        bind(Waiter.class).annotatedWith(Names.named("a")).to(Waiter.class).asEagerSingleton();
+        bind(OtherWaiter.class).asEagerSingleton();
+      }
+    });
+
+    assertTrue(injector.getInstance(Key.get(Waiter.class, Names.named("a"))).sawOtherThread);
+  }
+
+  public void testParallelPreloadingHonoursDependencies() {
+    Injector injector = createInjector(PRELOAD_THREADS, Stage.PRODUCTION, new AbstractModule() {
+      protected void configure() {
+        bind(Last.class).asEagerSingleton();
+        bind(Middle.class).asEagerSingleton();
+        bind(First.class).asEagerSingleton();
+      }
+    });
+
+    Last last = injector.getInstance(Last.class);
+    assertSame(injector.getInstance(Middle.class), last.middle);
+    assertSame(injector.getInstance(First.class), last.middle.first);
+  }
+
+  public void testParallelPreloadingReportsErrors() {
+    try {
+      createInjector(PRELOAD_THREADS, Stage.PRODUCTION, new AbstractModule() {
+        protected void configure() {
+          bind(First.class).asEagerSingleton();
+          bind(Broken.class).asEagerSingleton();
+        }
+      });
+      fail();
+    } catch (CreationException expected) {
+      assertEquals(1, expected.getErrorMessages().size());
+      Asserts.assertContains(expected.getMessage(),
+          "Error injecting constructor, java.lang.UnsupportedOperationException",
+          "at " + Broken.class.getName() + ".<init>(EagerSingletonTest.java:",
+          "while locating " + Broken.class.getName());
+    }
+  }
+
+  public void testParallelPreloadingWhenEverySingletonIsInACycle() {
+    Injector injector = createInjector(PRELOAD_THREADS, Stage.PRODUCTION, new AbstractModule() {
+      protected void configure() {
+        bind(CycleA.class).in(Scopes.SINGLETON);
+        bind(CycleB.class).in(Scopes.SINGLETON);
+      }
+    });
+
+    CycleA a = injector.getInstance(CycleA.class);
+    assertSame(injector.getInstance(CycleB.class), a.b);
+    assertSame(a, a.b.a);
+  }
+
+  static class Waiter {
+    final boolean sawOtherThread;
+    @Inject Waiter(CountDownLatch latch) throws InterruptedException {
+      latch.countDown();
+      sawOtherThread = latch.await(5, TimeUnit.SECONDS);
+    }
+  }
+
+  static class OtherWaiter {
+    @Inject OtherWaiter(CountDownLatch latch) throws InterruptedException {
+      latch.countDown();
+      latch.await(5, TimeUnit.SECONDS);
+    }
+  }
+
+  static class First {}
+
+  static class Middle {
+    final First first;
+    @Inject Middle(First first) {
+      this.first = first;
+    }
+  }
+
+  static class Last {
+    final Middle middle;
+    @Inject Last(Middle middle) {
+      this.middle = middle;
+    }
+  }
+
+  static class CycleA {
+    @Inject CycleB b;
+  }
+
+  static class CycleB {
+    @Inject CycleA a;
+  }
+
+  static class Broken {
+    @Inject Broken(First first) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   @Singleton
   static class A {
     static int instanceCount = 0;
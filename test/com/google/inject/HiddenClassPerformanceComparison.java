@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.BytecodeGen;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+/**
+ * A microbenchmark of defining the classes Guice generates for a type, like its invokers, members
+ * injector and constructor factory. It compares defining them by name in the type's class loader
+ * with defining them as hidden classes of the type. Run it with {@code --add-opens
+ * java.base/java.lang=ALL-UNNAMED} so that classes can be defined by name.
+ */
+public class HiddenClassPerformanceComparison {
+
+  private static final int CLASSES = 5000;
+
+  private static int counter;
+
+  public static void main(String[] args) throws Exception {
+    if (BytecodeGen.defineHiddenClass(Host.class, toBytecode(nextName())) == null) {
+      System.err.println("Hidden classes aren't supported by this VM.");
+      return;
+    }
+
+    for (int i = 0; i < 10; i++) {
+      define(false);
+      define(true);
+      System.err.println();
+    }
+  }
+
+  static void define(boolean hidden) throws Exception {
+    byte[][] bytecode = new byte[CLASSES][];
+    String[] names = new String[CLASSES];
+    for (int i = 0; i < CLASSES; i++) {
+      names[i] = nextName();
+      bytecode[i] = toBytecode(names[i]);
+    }
+
+    ClassLoader classLoader = Host.class.getClassLoader();
+    long start = System.nanoTime();
+    for (int i = 0; i < CLASSES; i++) {
+      BytecodeGen.defineClass(Host.class, names[i], bytecode[i], classLoader, hidden)
+          .getConstructor().newInstance();
+    }
+    report(hidden ? "Hidden:   " : "By name:  ", System.nanoTime() - start);
+  }
+
+  static String nextName() {
+    return Host.class.getName() + "$$Generated$$" + Integer.toHexString(++counter);
+  }
+
+  static byte[] toBytecode(String className) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className.replace('.', '/'), null,
+        "java/lang/Object", null);
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  static void report(String label, long time) {
+    System.err.println(label + (time / 100 / CLASSES) / 10.0 + "us per class");
+  }
+
+  static class Host {}
+}
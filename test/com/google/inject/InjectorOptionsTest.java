@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import static com.google.inject.Asserts.assertContains;
+import com.google.inject.spi.ExposedBinding;
+import junit.framework.TestCase;
+
+public class InjectorOptionsTest extends TestCase {
+
+  /**
+   * Creates an injector with {@code options} rather than with the options set by system
+   * properties, so that tests don't depend on or change the JVM's settings.
+   */
+  static Injector createInjector(InjectorOptions options, Module... modules) {
+    return createInjector(options, Stage.DEVELOPMENT, modules);
+  }
+
+  static Injector createInjector(InjectorOptions options, Stage stage, Module... modules) {
+    return Guice.createInjector(stage, options, modules);
+  }
+
+  public void testOptionsAreOffUnlessSet() {
+    InjectorImpl injector = (InjectorImpl) createInjector(new InjectorOptions());
+    assertFalse(injector.options.generateFactories);
+    assertFalse(injector.options.generateInvokers);
+    assertFalse(injector.options.generateMembersInjectors);
+    assertFalse(injector.options.hiddenClasses);
+    assertFalse(injector.options.collectMetrics);
+    assertFalse(injector.options.trace);
+    assertEquals(1, injector.options.preloadThreads);
+  }
+
+  public void testChildInjectorsAndPrivateEnvironmentsInheritOptions() {
+    InjectorImpl parent = (InjectorImpl) createInjector(new InjectorOptions().trace(true),
+        new PrivateModule() {
+          protected void configure() {
+            bind(Object.class).toInstance("private");
+            expose(Object.class);
+          }
+        });
+    InjectorImpl child = (InjectorImpl) parent.createChildInjector();
+    InjectorImpl privateEnvironment = (InjectorImpl)
+        ((ExposedBinding<?>) parent.getBinding(Object.class)).getPrivateElements().getInjector();
+
+    assertTrue(parent.options.trace);
+    assertTrue(child.options.trace);
+    assertNotSame(parent, privateEnvironment);
+    assertTrue(privateEnvironment.options.trace);
+  }
+
+  public void testOptionsAreCopiedWhenTheInjectorIsBuilt() {
+    InjectorOptions options = new InjectorOptions();
+    InjectorImpl injector = (InjectorImpl) createInjector(options);
+    options.trace(true);
+    assertFalse(injector.options.trace);
+  }
+
+  public void testOptionsArePerInjector() {
+    InjectorImpl traced = (InjectorImpl) Guice.createInjector(
+        Stage.DEVELOPMENT, new InjectorOptions().trace(true).generateInvokers(true));
+    InjectorImpl plain = (InjectorImpl) Guice.createInjector(
+        Stage.DEVELOPMENT, new InjectorOptions());
+    assertTrue(traced.options.trace);
+    assertTrue(traced.options.generateInvokers);
+    assertFalse(plain.options.trace);
+    assertFalse(plain.options.generateInvokers);
+  }
+
+  public void testGuiceReadsOptionsFromSystemProperties() {
+    String previous = System.getProperty(InjectorOptions.TRACE_SETTING);
+    System.setProperty(InjectorOptions.TRACE_SETTING, "true");
+    try {
+      assertTrue(((InjectorImpl) Guice.createInjector()).options.trace);
+    } finally {
+      if (previous != null) {
+        System.setProperty(InjectorOptions.TRACE_SETTING, previous);
+      } else {
+        System.clearProperty(InjectorOptions.TRACE_SETTING);
+      }
+    }
+  }
+
+  public void testPreloadThreadsMustBePositive() {
+    assertEquals(4, new InjectorOptions().preloadThreads(4).preloadThreads);
+    for (int preloadThreads : new int[] { 0, -1 }) {
+      try {
+        new InjectorOptions().preloadThreads(preloadThreads);
+        fail();
+      } catch (IllegalArgumentException expected) {
+        assertEquals("preloadThreads must be at least 1, but was " + preloadThreads,
+            expected.getMessage());
+      }
+    }
+  }
+
+  public void testBadPreloadThreadsSettingIsRejected() {
+    String previous = System.getProperty(InjectorOptions.PRELOAD_THREADS_SETTING);
+    try {
+      System.setProperty(InjectorOptions.PRELOAD_THREADS_SETTING, "2");
+      assertEquals(2, InjectorOptions.fromSystemProperties().preloadThreads);
+
+      for (String bad : new String[] { "0", "-3", "many" }) {
+        System.setProperty(InjectorOptions.PRELOAD_THREADS_SETTING, bad);
+        try {
+          InjectorOptions.fromSystemProperties();
+          fail(bad);
+        } catch (IllegalArgumentException expected) {
+          assertContains(expected.getMessage(), bad);
+        }
+      }
+    } finally {
+      if (previous != null) {
+        System.setProperty(InjectorOptions.PRELOAD_THREADS_SETTING, previous);
+      } else {
+        System.clearProperty(InjectorOptions.PRELOAD_THREADS_SETTING);
+      }
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.ImmutableList;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.List;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.MethodProxy;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * A microbenchmark of intercepted method calls. It compares the callbacks that {@link
+ * ProxyFactory} installs with a copy of the original stack callback, which every intercepted
+ * method used to get. Methods with a single interceptor now get a {@link
+ * InterceptorStackCallback.SingleInterceptorCallback}, which is also compared with the current
+ * stack callback. It also measures a method whose only interceptor is switched off.
+ */
+public class InterceptionPerformanceComparison {
+
+  private static final int CALLS = 10000000;
+
+  public static void main(String[] args) throws Exception {
+    Method method = Dao.class.getMethod("find", int.class);
+    List<MethodInterceptor> one = ImmutableList.<MethodInterceptor>of(new PassThrough());
+    List<MethodInterceptor> three = ImmutableList.<MethodInterceptor>of(
+        new PassThrough(), new PassThrough(), new PassThrough());
+
+    Dao original1 = proxy(new OriginalStackCallback(method, one));
+    Dao current1 = proxy(InterceptorStackCallback.create(method, one));
+    Dao stack1 = proxy(new InterceptorStackCallback(method, one));
+    Dao original3 = proxy(new OriginalStackCallback(method, three));
+    Dao current3 = proxy(InterceptorStackCallback.create(method, three));
+    Dao disabled = proxy(InterceptorStackCallback.create(method,
+        ImmutableList.<MethodInterceptor>of(new SwitchableInterceptor(new PassThrough(), false))));
+
+    for (int i = 0; i < 10; i++) {
+      iterate(original1, "Original, 1 interceptor:  ");
+      iterate(current1,  "Current, 1 interceptor:   ");
+      iterate(stack1,    "Stack, 1 interceptor:     ");
+      iterate(original3, "Original, 3 interceptors: ");
+      iterate(current3,  "Current, 3 interceptors:  ");
+      iterate(disabled,  "Switched off:             ");
+      System.err.println();
+    }
+  }
+
+  static Dao proxy(net.sf.cglib.proxy.MethodInterceptor callback) {
+    Enhancer enhancer = new Enhancer();
+    enhancer.setSuperclass(Dao.class);
+    enhancer.setUseFactory(false);
+    enhancer.setCallback(callback);
+    return (Dao) enhancer.create();
+  }
+
+  static void iterate(Dao dao, String label) {
+    long sum = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < CALLS; i++) {
+      sum += dao.find(i);
+    }
+    long time = System.nanoTime() - start;
+    if (sum == 42) {
+      System.err.print(""); // keep the calls from being eliminated
+    }
+    System.err.println(label + (time * 10 / CALLS) / 10.0 + "ns per call");
+  }
+
+  public static class Dao {
+    public int find(int id) {
+      return id & 7;
+    }
+  }
+
+  static class PassThrough implements MethodInterceptor {
+    public Object invoke(MethodInvocation methodInvocation) throws Throwable {
+      return methodInvocation.proceed();
+    }
+  }
+
+  /** The stack callback that ProxyFactory used to install for every intercepted method. */
+  static class OriginalStackCallback implements net.sf.cglib.proxy.MethodInterceptor {
+    final MethodInterceptor[] interceptors;
+    final Method method;
+
+    OriginalStackCallback(Method method, List<MethodInterceptor> interceptors) {
+      this.method = method;
+      this.interceptors = interceptors.toArray(new MethodInterceptor[interceptors.size()]);
+    }
+
+    public Object intercept(Object proxy, Method method, Object[] arguments,
+        MethodProxy methodProxy) throws Throwable {
+      return new Invocation(proxy, methodProxy, arguments).proceed();
+    }
+
+    class Invocation implements MethodInvocation {
+      final Object proxy;
+      final Object[] arguments;
+      final MethodProxy methodProxy;
+      int index = -1;
+
+      Invocation(Object proxy, MethodProxy methodProxy, Object[] arguments) {
+        this.proxy = proxy;
+        this.methodProxy = methodProxy;
+        this.arguments = arguments;
+      }
+
+      public Object proceed() throws Throwable {
+        try {
+          index++;
+          return index == interceptors.length
+              ? methodProxy.invokeSuper(proxy, arguments)
+              : interceptors[index].invoke(this);
+        } finally {
+          index--;
+        }
+      }
+
+      public Method getMethod() {
+        return method;
+      }
+
+      public Object[] getArguments() {
+        return arguments;
+      }
+
+      public Object getThis() {
+        return proxy;
+      }
+
+      public AccessibleObject getStaticPart() {
+        return method;
+      }
+    }
+  }
+}
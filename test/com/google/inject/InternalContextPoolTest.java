@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.InternalContext;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+
+public class InternalContextPoolTest extends TestCase {
+
+  private final InternalContextPool contextPool = new InternalContextPool();
+
+  public void testNestedCallsShareTheThreadsContext() {
+    InternalContext outer = contextPool.enter();
+    assertTrue(outer.enter());
+
+    InternalContext inner = contextPool.enter();
+    assertSame(outer, inner);
+    assertFalse(inner.enter());
+
+    contextPool.exit(outer);
+  }
+
+  public void testContextsAreReusedByOtherThreads() throws InterruptedException {
+    InternalContext context = contextPool.enter();
+    assertTrue(context.enter());
+    contextPool.exit(context);
+
+    InternalContext otherThreadsContext = enterOnAnotherThread();
+    assertSame(context, otherThreadsContext);
+  }
+
+  public void testConcurrentProvisionsGetTheirOwnContexts() throws InterruptedException {
+    InternalContext context = contextPool.enter();
+    assertTrue(context.enter());
+    try {
+      assertNotSame(context, enterOnAnotherThread());
+    } finally {
+      contextPool.exit(context);
+    }
+  }
+
+  /** Enters the pool on another thread, and returns the context it got. */
+  private InternalContext enterOnAnotherThread() throws InterruptedException {
+    final AtomicReference<InternalContext> result = new AtomicReference<InternalContext>();
+    Thread thread = new Thread() {
+      public void run() {
+        InternalContext context = contextPool.enter();
+        assertTrue(context.enter());
+        result.set(context);
+        contextPool.exit(context);
+      }
+    };
+    thread.start();
+    thread.join();
+    return result.get();
+  }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.matcher.Matchers;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class JitBindingCreatorTest extends TestCase {
+
+  private static final int THREADS = 8;
+
+  private ExecutorService executor;
+
+  @Override protected void setUp() throws Exception {
+    super.setUp();
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @Override protected void tearDown() throws Exception {
+    executor.shutdownNow();
+    super.tearDown();
+  }
+
+  public void testConcurrentThreadsShareOneBinding() throws Exception {
+    final Injector injector = Guice.createInjector();
+    final CyclicBarrier start = new CyclicBarrier(THREADS);
+    List<Future<Binding<?>>> bindings = executor.invokeAll(Collections.nCopies(THREADS,
+        new Callable<Binding<?>>() {
+          public Binding<?> call() throws Exception {
+            start.await(10, TimeUnit.SECONDS);
+            return injector.getBinding(Shared.class);
+          }
+        }));
+
+    Binding<?> expected = injector.getBinding(Shared.class);
+    for (Future<Binding<?>> binding : bindings) {
+      assertSame(expected, binding.get(10, TimeUnit.SECONDS));
+    }
+  }
+
+  public void testCircularBindingsCreatedByTwoThreads() throws Exception {
+    final CyclicBarrier bothCreating = new CyclicBarrier(2);
+    final Injector injector = Guice.createInjector(new AbstractModule() {
+      protected void configure() {
+        // hold each thread until both have claimed one end of the cycle
+        bindListener(Matchers.any(), new TypeListener() {
+          public <I> void hear(TypeLiteral<I> type, TypeEncounter<I> encounter) {
+            if (type.getRawType() == ChickenGate.class || type.getRawType() == EggGate.class) {
+              try {
+                bothCreating.await(10, TimeUnit.SECONDS);
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            }
+          }
+        });
+      }
+    });
+
+    Future<Binding<?>> chicken = executor.submit(new Callable<Binding<?>>() {
+      public Binding<?> call() {
+        return injector.getBinding(Chicken.class);
+      }
+    });
+    Future<Binding<?>> egg = executor.submit(new Callable<Binding<?>>() {
+      public Binding<?> call() {
+        return injector.getBinding(Egg.class);
+      }
+    });
+
+    assertSame(injector.getBinding(Chicken.class), chicken.get(10, TimeUnit.SECONDS));
+    assertSame(injector.getBinding(Egg.class), egg.get(10, TimeUnit.SECONDS));
+    Chicken instance = injector.getInstance(Chicken.class);
+    assertSame(instance, instance.egg.chicken);
+  }
+
+  public void testMergedSessionsCreateEachBindingOnce() throws Exception {
+    final CyclicBarrier bothCreating = new CyclicBarrier(2);
+    final Thread[] rightThread = new Thread[1];
+    final Injector[] injectorHolder = new Injector[1];
+    final Binding<?>[] leftSeenByRight = new Binding<?>[1];
+    final Injector injector = Guice.createInjector(new AbstractModule() {
+      protected void configure() {
+        bindListener(Matchers.any(), new TypeListener() {
+          public <I> void hear(TypeLiteral<I> type, TypeEncounter<I> encounter) {
+            try {
+              if (type.getRawType() == LeftGate.class || type.getRawType() == RightGate.class) {
+                // hold each thread until both have claimed one side, so that they merge
+                if (type.getRawType() == RightGate.class) {
+                  rightThread[0] = Thread.currentThread();
+                }
+                bothCreating.await(10, TimeUnit.SECONDS);
+              } else if (type.getRawType() == LateGate.class) {
+                // hold the left thread, which hasn't staged Left yet, until the right thread waits
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (rightThread[0].getState() != Thread.State.WAITING
+                    && System.nanoTime() < deadline) {
+                  Thread.sleep(1);
+                }
+              } else if (type.getRawType() == Right.class) {
+                leftSeenByRight[0] = injectorHolder[0].getBinding(Left.class);
+              }
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          }
+        });
+      }
+    });
+    injectorHolder[0] = injector;
+
+    Future<Binding<?>> left = executor.submit(new Callable<Binding<?>>() {
+      public Binding<?> call() {
+        return injector.getBinding(Left.class);
+      }
+    });
+    Future<Binding<?>> right = executor.submit(new Callable<Binding<?>>() {
+      public Binding<?> call() {
+        return injector.getBinding(Right.class);
+      }
+    });
+
+    assertSame(injector.getBinding(Left.class), left.get(10, TimeUnit.SECONDS));
+    assertSame(injector.getBinding(Right.class), right.get(10, TimeUnit.SECONDS));
+    assertSame(injector.getBinding(Left.class), leftSeenByRight[0]);
+    Left instance = injector.getInstance(Left.class);
+    assertSame(instance, injector.getInstance(Right.class).left);
+  }
+
+  public void testFailedBindingsAreNotCached() throws Exception {
+    final Injector injector = Guice.createInjector();
+    for (int i = 0; i < 2; i++) {
+      Future<?> failure = executor.submit(new Callable<Object>() {
+        public Object call() {
+          return injector.getBinding(NeedsUnbound.class);
+        }
+      });
+      try {
+        failure.get(10, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException expected) {
+        assertTrue(expected.getCause() instanceof ConfigurationException);
+      }
+    }
+  }
+
+  static class Shared {}
+
+  static class ChickenGate {}
+
+  static class EggGate {}
+
+  static class Chicken {
+    @Inject Egg egg;
+    @Inject Chicken(ChickenGate gate) {}
+  }
+
+  static class Egg {
+    @Inject Chicken chicken;
+    @Inject Egg(EggGate gate) {}
+  }
+
+  static class LeftGate {}
+
+  static class RightGate {}
+
+  static class LateGate {}
+
+  @ImplementedBy(LeftImpl.class)
+  interface Left {}
+
+  @Singleton
+  static class LeftImpl implements Left {
+    @Inject LeftImpl(LeftGate gate, Provider<Right> right, LateGate late) {}
+  }
+
+  static class Right {
+    final Left left;
+    @Inject Right(RightGate gate, Left left) {
+      this.left = left;
+    }
+  }
+
+  interface Unbound {}
+
+  static class NeedsUnbound {
+    @Inject NeedsUnbound(Unbound unbound) {}
+  }
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import static com.google.inject.InjectorOptionsTest.createInjector;
+import static com.google.inject.Asserts.assertContains;
+import com.google.inject.internal.BytecodeGen;
+import com.google.inject.internal.GeneratedMethodInvoker;
+import com.google.inject.internal.MemberInvokerGenerator;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import junit.framework.TestCase;
+
+public class MemberInvokerGeneratorTest extends TestCase {
+
+  private static final InjectorOptions GENERATED_INVOKERS
+      = new InjectorOptions().generateInvokers(true);
+
+  public void testConstructorsAndMethodsAreCalledByGeneratedCode() {
+    Injector injector = createInjector(GENERATED_INVOKERS, new AbstractModule() {
+      protected void configure() {
+        bindConstant().annotatedWith(Names.named("size")).to(5);
+        bindConstant().annotatedWith(Names.named("timeout")).to(6L);
+        bind(String.class).toInstance("hello");
+      }
+    });
+
+    Generated generated = injector.getInstance(Generated.class);
+    assertEquals("hello", generated.greeting);
+    assertEquals(5, generated.size);
+    assertEquals(6L, generated.timeout);
+    assertContains(generated.constructedBy, "$$MemberInvokerByGuice$$");
+    assertContains(generated.sizedBy, "$$MemberInvokerByGuice$$");
+    assertContains(generated.timedBy, "$$MemberInvokerByGuice$$");
+  }
+
+  public void testFieldsAreAssignedWithReflection() throws Exception {
+    Injector injector = createInjector(GENERATED_INVOKERS, new AbstractModule() {
+      protected void configure() {
+        bindConstant().annotatedWith(Names.named("size")).to(5);
+        bindConstant().annotatedWith(Names.named("timeout")).to(6L);
+        bind(String.class).toInstance("hello");
+      }
+    });
+
+    Generated generated = injector.getInstance(Generated.class);
+    assertEquals("hello", generated.field);
+    assertEquals(5, generated.primitiveField);
+  }
+
+  public void testPrivateMembersAreLeftForReflection() throws Exception {
+    assertNull(MemberInvokerGenerator.getMethodInvoker(
+        Private.class.getDeclaredConstructor(String.class), false));
+    assertNull(MemberInvokerGenerator.getMethodInvoker(
+        Private.class.getDeclaredMethod("privateMethod", String.class), false));
+
+    Injector injector = createInjector(GENERATED_INVOKERS, new AbstractModule() {
+      protected void configure() {
+        bind(String.class).toInstance("hello");
+      }
+    });
+
+    Private instance = injector.getInstance(Private.class);
+    assertEquals("hello", instance.greeting);
+    assertEquals("hello", instance.privateField);
+    assertEquals("hello", instance.fromMethod);
+  }
+
+  public void testPrivateMembersAreCalledByHiddenInvokers() throws Exception {
+    GeneratedMethodInvoker constructor = MemberInvokerGenerator.getMethodInvoker(
+        Private.class.getDeclaredConstructor(String.class), true);
+    GeneratedMethodInvoker method = MemberInvokerGenerator.getMethodInvoker(
+        Private.class.getDeclaredMethod("privateMethod", String.class), true);
+    GeneratedMethodInvoker staticMethod = MemberInvokerGenerator.getMethodInvoker(
+        Private.class.getDeclaredMethod("privateStaticMethod", String.class), true);
+    try {
+      Class.class.getMethod("isHidden");
+    } catch (NoSuchMethodException vmWithoutHiddenClasses) {
+      assertNull(constructor);
+      assertNull(method);
+      assertNull(staticMethod);
+      return;
+    }
+
+    Private instance = (Private) constructor.invoke(null, new Object[] { "hello" });
+    assertEquals("hello", instance.greeting);
+    method.invoke(instance, new Object[] { "world" });
+    assertEquals("world", instance.fromMethod);
+    assertEquals("static world", staticMethod.invoke(null, new Object[] { "world" }));
+  }
+
+  public void testProviderMethodsAreCalledByGeneratedCode() {
+    Injector injector = createInjector(GENERATED_INVOKERS, new AbstractModule() {
+      protected void configure() {}
+
+      @Provides @Named("caller") String provideCaller(@Named("size") int size) {
+        return new Throwable().getStackTrace()[1].getClassName() + size;
+      }
+
+      @Provides @Named("size") int provideSize() {
+        return 5;
+      }
+    });
+
+    String caller = injector.getInstance(Key.get(String.class, Names.named("caller")));
+    assertContains(caller, "$$MemberInvokerByGuice$$");
+    assertTrue(caller.endsWith("5"));
+  }
+
+  public void testProviderMethodsFollowTheSettingOfTheirInjector() {
+    Module module = new AbstractModule() {
+      protected void configure() {}
+
+      @Provides @Named("caller") String provideCaller() {
+        return new Throwable().getStackTrace()[1].getClassName();
+      }
+    };
+    Key<String> key = Key.get(String.class, Names.named("caller"));
+
+    assertContains(createInjector(GENERATED_INVOKERS, module).getInstance(key),
+        "$$MemberInvokerByGuice$$");
+    assertFalse(createInjector(new InjectorOptions(), module).getInstance(key)
+        .contains("$$MemberInvokerByGuice$$"));
+  }
+
+  public void testExceptionsAreWrappedLikeReflection() throws Exception {
+    Injector injector = createInjector(GENERATED_INVOKERS, new AbstractModule() {
+      protected void configure() {
+        bind(String.class).toInstance("hello");
+      }
+    });
+
+    try {
+      injector.getInstance(Throwing.class);
+      fail();
+    } catch (ProvisionException expected) {
+      assertContains(expected.getMessage(), "Error injecting method",
+          "UnsupportedOperationException: from method");
+    }
+
+    GeneratedMethodInvoker invoker = MemberInvokerGenerator.getMethodInvoker(
+        Throwing.class.getDeclaredConstructor(), false);
+    try {
+      invoker.invoke(null, new Object[0]);
+      fail();
+    } catch (InvocationTargetException expected) {
+      assertEquals("from constructor", expected.getCause().getMessage());
+    }
+  }
+
+  public void testInvokersAreSharedByInjectors() throws Exception {
+    assertSame(
+        MemberInvokerGenerator.getMethodInvoker(
+            Generated.class.getDeclaredMethod("setSize", int.class), false),
+        MemberInvokerGenerator.getMethodInvoker(
+            Generated.class.getDeclaredMethod("setSize", int.class), false));
+  }
+
+  public void testHiddenInvokersAreNotSharedWithInjectorsThatDefineThemByName() throws Exception {
+    Method greet = Hidden.class.getDeclaredMethod("greet", String.class);
+    GeneratedMethodInvoker named = MemberInvokerGenerator.getMethodInvoker(greet, false);
+    GeneratedMethodInvoker hidden = MemberInvokerGenerator.getMethodInvoker(greet, true);
+    assertNotSame(named, hidden);
+    assertSame(hidden, MemberInvokerGenerator.getMethodInvoker(greet, true));
+    assertSame(named.getClass(), Class.forName(named.getClass().getName(), false,
+        named.getClass().getClassLoader()));
+  }
+
+  public void testInvokersCanBeHiddenClasses() throws Exception {
+    GeneratedMethodInvoker invoker = MemberInvokerGenerator.getMethodInvoker(
+        Hidden.class.getDeclaredMethod("greet", String.class), true);
+
+    assertEquals("hello world", invoker.invoke(new Hidden(), new Object[] { "world" }));
+    assertSame(Hidden.class.getClassLoader(), invoker.getClass().getClassLoader());
+    assertContains(invoker.getClass().getName(), "$$MemberInvokerByGuice$$");
+    try {
+      Object hidden = Class.class.getMethod("isHidden").invoke(invoker.getClass());
+      assertEquals(Boolean.TRUE, hidden);
+    } catch (NoSuchMethodException vmWithoutHiddenClasses) {
+      // the invoker was defined by name instead
+    }
+  }
+
+  public void testHiddenClassesAreNotDefinedForHostsThatCantSeeGuice() throws Exception {
+    URL testClasses = Isolated.class.getProtectionDomain().getCodeSource().getLocation();
+    URL guiceClasses = BytecodeGen.class.getProtectionDomain().getCodeSource().getLocation();
+    // the host's loader has a copy of Guice of its own, which a hidden class would link against
+    Class<?> isolated = new URLClassLoader(new URL[] { testClasses, guiceClasses }, null)
+        .loadClass(Isolated.class.getName());
+    assertNotSame(Isolated.class, isolated);
+
+    GeneratedMethodInvoker invoker
+        = MemberInvokerGenerator.getMethodInvoker(isolated.getMethod("greet", String.class), true);
+
+    assertEquals("hello world", invoker.invoke(isolated.newInstance(), new Object[] { "world" }));
+    assertNotSame(isolated.getClassLoader(), invoker.getClass().getClassLoader());
+  }
+
+  static class Generated {
+    final String greeting;
+    final String constructedBy;
+    int size;
+    String sizedBy;
+    long timeout;
+    String timedBy;
+    @Inject String field;
+    @Inject @Named("size") int primitiveField;
+
+    @Inject Generated(String greeting) {
+      this.greeting = greeting;
+      this.constructedBy = new Throwable().getStackTrace()[1].getClassName();
+    }
+
+    @Inject void setSize(@Named("size") int size) {
+      this.size = size;
+      this.sizedBy = new Throwable().getStackTrace()[1].getClassName();
+    }
+
+    @Inject protected void setTimeout(@Named("timeout") long timeout) {
+      this.timeout = timeout;
+      this.timedBy = new Throwable().getStackTrace()[1].getClassName();
+    }
+  }
+
+  static class Private {
+    final String greeting;
+    @Inject private String privateField;
+    String fromMethod;
+
+    @Inject private Private(String greeting) {
+      this.greeting = greeting;
+    }
+
+    @Inject private void privateMethod(String value) {
+      this.fromMethod = value;
+    }
+
+    private static String privateStaticMethod(String value) {
+      return "static " + value;
+    }
+  }
+
+  static class Hidden {
+    String greet(String name) {
+      return "hello " + name;
+    }
+  }
+
+  /** Loaded by a class loader that can't see this copy of Guice. */
+  public static class Isolated {
+    public String greet(String name) {
+      return "hello " + name;
+    }
+  }
+
+  static class Throwing {
+    Throwing() {
+      throw new UnsupportedOperationException("from constructor");
+    }
+
+    @Inject Throwing(String unused) {}
+
+    @Inject void method() {
+      throw new UnsupportedOperationException("from method");
+    }
+  }
+}
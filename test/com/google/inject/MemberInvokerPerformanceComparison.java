@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.GeneratedMethodInvoker;
+import com.google.inject.internal.MemberInvokerGenerator;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * A microbenchmark of calling injectable methods and package-private constructors. It compares
+ * {@link MemberInvokerGenerator}'s invokers with reflection. Like in {@link SingleMethodInjector}
+ * and {@link DefaultConstructionProxyFactory}, every member is reached through one call site, so
+ * that the call isn't inlined into the benchmark's loop.
+ */
+public class MemberInvokerPerformanceComparison {
+
+  private static final int CALLS = 20000000;
+  private static final int MEMBERS = 8;
+
+  public static void main(String[] args) throws Exception {
+    Method[] methods = new Method[MEMBERS];
+    GeneratedMethodInvoker[] methodInvokers = new GeneratedMethodInvoker[MEMBERS];
+    Constructor<?>[] constructors = new Constructor<?>[MEMBERS];
+    GeneratedMethodInvoker[] constructorInvokers = new GeneratedMethodInvoker[MEMBERS];
+    Class<?>[] types = { Value0.class, Value1.class, Value2.class, Value3.class,
+        Value4.class, Value5.class, Value6.class, Value7.class };
+    for (int i = 0; i < MEMBERS; i++) {
+      methods[i] = Target.class.getDeclaredMethod("set" + i, int.class);
+      methods[i].setAccessible(true);
+      methodInvokers[i] = MemberInvokerGenerator.getMethodInvoker(methods[i], false);
+      constructors[i] = types[i].getDeclaredConstructor(int.class);
+      constructors[i].setAccessible(true);
+      constructorInvokers[i] = MemberInvokerGenerator.getMethodInvoker(constructors[i], false);
+    }
+
+    Target target = new Target();
+    for (int i = 0; i < 10; i++) {
+      reflectiveMethods(methods, target);
+      generatedMethods(methodInvokers, target);
+      reflectiveConstructors(constructors, target);
+      generatedConstructors(constructorInvokers, target);
+      System.err.println();
+    }
+    if (target.sum() == 42) {
+      System.err.print(""); // keep the calls from being eliminated
+    }
+  }
+
+  static void reflectiveMethods(Method[] methods, Target target) throws Exception {
+    Object[] arguments = { 1 };
+    long start = System.nanoTime();
+    for (int i = 0; i < CALLS; i++) {
+      methods[i % MEMBERS].invoke(target, arguments);
+    }
+    report("Reflection, methods:      ", System.nanoTime() - start);
+  }
+
+  static void generatedMethods(GeneratedMethodInvoker[] invokers, Target target)
+      throws Exception {
+    Object[] arguments = { 1 };
+    long start = System.nanoTime();
+    for (int i = 0; i < CALLS; i++) {
+      invokers[i % MEMBERS].invoke(target, arguments);
+    }
+    report("Generated, methods:       ", System.nanoTime() - start);
+  }
+
+  static void reflectiveConstructors(Constructor<?>[] constructors, Target target)
+      throws Exception {
+    Object[] arguments = { 1 };
+    long start = System.nanoTime();
+    for (int i = 0; i < CALLS; i++) {
+      target.last = constructors[i % MEMBERS].newInstance(arguments);
+    }
+    report("Reflection, constructors: ", System.nanoTime() - start);
+  }
+
+  static void generatedConstructors(GeneratedMethodInvoker[] invokers, Target target)
+      throws Exception {
+    Object[] arguments = { 1 };
+    long start = System.nanoTime();
+    for (int i = 0; i < CALLS; i++) {
+      target.last = invokers[i % MEMBERS].invoke(null, arguments);
+    }
+    report("Generated, constructors:  ", System.nanoTime() - start);
+  }
+
+  static void report(String label, long time) {
+    System.err.println(label + (time * 10 / CALLS) / 10.0 + "ns per call");
+  }
+
+  static class Target {
+    int value0, value1, value2, value3, value4, value5, value6, value7;
+    Object last;
+
+    void set0(int value) { value0 += value; }
+    void set1(int value) { value1 += value; }
+    void set2(int value) { value2 += value; }
+    void set3(int value) { value3 += value; }
+    void set4(int value) { value4 += value; }
+    void set5(int value) { value5 += value; }
+    void set6(int value) { value6 += value; }
+    void set7(int value) { value7 += value; }
+
+    int sum() {
+      return value0 + value1 + value2 + value3 + value4 + value5 + value6 + value7
+          + last.hashCode();
+    }
+  }
+
+  static class Value0 { Value0(int value) {} }
+  static class Value1 { Value1(int value) {} }
+  static class Value2 { Value2(int value) {} }
+  static class Value3 { Value3(int value) {} }
+  static class Value4 { Value4(int value) {} }
+  static class Value5 { Value5(int value) {} }
+  static class Value6 { Value6(int value) {} }
+  static class Value7 { Value7(int value) {} }
+}
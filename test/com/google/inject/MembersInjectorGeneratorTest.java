@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import static com.google.inject.InjectorOptionsTest.createInjector;
+import static com.google.inject.Asserts.assertContains;
+import com.google.inject.internal.ImmutableList;
+import com.google.inject.internal.Lists;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+import com.google.inject.spi.InjectionListener;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class MembersInjectorGeneratorTest extends TestCase {
+
+  private static final InjectorOptions GENERATED_MEMBERS_INJECTORS
+      = new InjectorOptions().generateMembersInjectors(true);
+
+  public void testMembersAreInjectedInOrderByGeneratedCode() {
+    Injector injector = createInjector(GENERATED_MEMBERS_INJECTORS, new AbstractModule() {
+      protected void configure() {
+        bindConstant().annotatedWith(Names.named("size")).to(5);
+        bindConstant().annotatedWith(Names.named("timeout")).to(6L);
+        bind(String.class).toInstance("hello");
+      }
+    });
+
+    Generated generated = new Generated();
+    injector.injectMembers(generated);
+    assertEquals("hello", generated.field);
+    assertEquals(5, generated.primitiveField);
+    assertEquals("hello", generated.privateField);
+    assertEquals("hello", generated.fieldsSeenByMethod);
+    assertEquals(6L, generated.timeout);
+    assertEquals(5, generated.size);
+    assertTrue(generated.privateMethodInjected);
+    assertEquals(ImmutableList.of("superField", "superMethod", "method"), generated.events);
+    assertContains(generated.injectedBy, "$$MembersInjectorByGuice$$");
+
+    Generated constructed = injector.getInstance(Generated.class);
+    assertEquals("hello", constructed.field);
+    assertEquals(6L, constructed.timeout);
+  }
+
+  public void testUserMembersInjectorsAndListenersAreCalled() {
+    final List<String> events = Lists.newArrayList();
+    Injector injector = createInjector(GENERATED_MEMBERS_INJECTORS, new AbstractModule() {
+      protected void configure() {
+        bind(String.class).toInstance("hello");
+        bindListener(Matchers.only(TypeLiteral.get(Simple.class)), new TypeListener() {
+          public <I> void hear(TypeLiteral<I> type, TypeEncounter<I> encounter) {
+            encounter.register(new MembersInjector<I>() {
+              public void injectMembers(I instance) {
+                events.add("user injector " + ((Simple) instance).field);
+              }
+            });
+            encounter.register(new InjectionListener<I>() {
+              public void afterInjection(I injectee) {
+                events.add("listener");
+              }
+            });
+          }
+        });
+      }
+    });
+
+    injector.injectMembers(new Simple());
+    assertEquals(ImmutableList.of("user injector hello", "listener"), events);
+
+    events.clear();
+    injector.getInstance(Simple.class);
+    assertEquals(ImmutableList.of("user injector hello", "listener"), events);
+  }
+
+  public void testErrorsAreReportedLikeReflection() {
+    Injector injector = createInjector(GENERATED_MEMBERS_INJECTORS, new AbstractModule() {
+      protected void configure() {
+        bind(String.class).toProvider(new Provider<String>() {
+          public String get() {
+            throw new UnsupportedOperationException("from provider");
+          }
+        });
+        bindListener(Matchers.only(TypeLiteral.get(Throwing.class)), new TypeListener() {
+          public <I> void hear(TypeLiteral<I> type, TypeEncounter<I> encounter) {
+            encounter.register(new MembersInjector<I>() {
+              public void injectMembers(I instance) {
+                throw new IllegalStateException("from user injector");
+              }
+            });
+            encounter.register(new InjectionListener<I>() {
+              public void afterInjection(I injectee) {
+                throw new IllegalStateException("from listener");
+              }
+            });
+          }
+        });
+      }
+    });
+
+    try {
+      injector.injectMembers(new Throwing());
+      fail();
+    } catch (ProvisionException expected) {
+      assertEquals(5, expected.getErrorMessages().size());
+      assertContains(expected.getMessage(),
+          "1) Error in custom provider, java.lang.UnsupportedOperationException: from provider",
+          "2) Error in custom provider, java.lang.UnsupportedOperationException: from provider",
+          "3) Error injecting " + Throwing.class.getName() + " using",
+          "Reason: java.lang.IllegalStateException: from user injector",
+          "4) Error notifying InjectionListener",
+          "Reason: java.lang.IllegalStateException: from listener",
+          "5) Error injecting method, java.lang.UnsupportedOperationException: from method");
+    }
+  }
+
+  static class Super {
+    final List<String> events = Lists.newArrayList();
+    @Inject String superField;
+
+    @Inject void superMethod() {
+      events.add(superField != null ? "superField" : "missing superField");
+      events.add("superMethod");
+    }
+  }
+
+  static class Generated extends Super {
+    @Inject String field;
+    @Inject @Named("size") int primitiveField;
+    @Inject private String privateField;
+    String fieldsSeenByMethod;
+    long timeout;
+    int size;
+    String injectedBy;
+    boolean privateMethodInjected;
+
+    @Inject void method(@Named("timeout") long timeout, @Named("size") int size) {
+      this.fieldsSeenByMethod = privateField;
+      this.timeout = timeout;
+      this.size = size;
+      this.injectedBy = new Throwable().getStackTrace()[1].getClassName();
+      events.add("method");
+    }
+
+    @Inject private void privateMethod() {
+      privateMethodInjected = true;
+    }
+  }
+
+  static class Simple {
+    @Inject String field;
+  }
+
+  static class Throwing {
+    @Inject void method() {
+      throw new UnsupportedOperationException("from method");
+    }
+
+    @Inject void unresolvable(String a, String b) {
+      fail("shouldn't be called when its parameters can't be resolved");
+    }
+  }
+}
@@ -130,6 +130,41 @@ public class MethodInterceptionTest extends TestCase {
     assertEquals("expected counting interceptor to be invoked first", 1, count.get());
   }
 
+  public void testSwitchableInterceptors() throws NoSuchMethodException {
+    final SwitchableInterceptor counting = new SwitchableInterceptor(countingInterceptor, false);
+    final SwitchableInterceptor returnNull = new SwitchableInterceptor(returnNullInterceptor);
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      protected void configure() {
+        bindInterceptor(Matchers.any(), Matchers.any(), counting);
+        bindInterceptor(Matchers.any(), Matchers.returns(only(Foo.class)), returnNull);
+      }
+    });
+
+    Interceptable interceptable = injector.getInstance(Interceptable.class);
+    assertNull(interceptable.foo());
+    assertNotNull(interceptable.bar());
+    assertEquals(0, count.get());
+
+    counting.setEnabled(true);
+    assertNull(interceptable.foo());
+    assertNotNull(interceptable.bar());
+    assertEquals(2, count.get());
+
+    returnNull.setEnabled(false);
+    assertNotNull(interceptable.foo());
+    assertNotNull(injector.getInstance(Interceptable.class).foo());
+    assertEquals(4, count.get());
+
+    counting.setEnabled(false);
+    assertNotNull(interceptable.foo());
+    assertNotNull(interceptable.bar());
+    assertEquals(4, count.get());
+
+    assertEquals(ImmutableList.of(counting, returnNull),
+        ((ConstructorBinding<?>) injector.getBinding(Interceptable.class))
+            .getMethodInterceptors().get(Interceptable.class.getMethod("foo")));
+  }
+
   static class Foo {}
   static class Bar {}
 
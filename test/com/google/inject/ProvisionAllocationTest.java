@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import static com.google.inject.Asserts.assertContains;
+import com.google.inject.name.Names;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import junit.framework.TestCase;
+
+/**
+ * Checks that successful provisions don't allocate anything but the user's objects. This uses
+ * the allocation counters of Sun's {@code ThreadMXBean}, and passes trivially on VMs without them.
+ */
+public class ProvisionAllocationTest extends TestCase {
+
+  private static final int ITERATIONS = 100000;
+
+  /** Keeps instances reachable, so the VM can't optimize their allocation away. */
+  static Object sink;
+
+  public void testSuccessfulProvisionsDontAllocate() throws Exception {
+    final Object instance = new Object();
+    final Service service = new Service();
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      protected void configure() {
+        bind(Object.class).toInstance(instance);
+        bind(Service.class).toProvider(new Provider<Service>() {
+          public Service get() {
+            return service;
+          }
+        });
+        bind(Runnable.class).to(SingletonRunnable.class);
+        bind(Service.class).annotatedWith(Names.named("bound"))
+            .toProvider(ServiceProvider.class);
+      }
+    });
+
+    assertNoAllocation(injector.getProvider(Object.class));
+    assertNoAllocation(injector.getProvider(Service.class));
+    assertNoAllocation(injector.getProvider(Runnable.class));
+    assertNoAllocation(injector.getProvider(ImplementedBySingleton.class));
+    assertNoAllocation(injector.getProvider(Key.get(Service.class, Names.named("bound"))));
+  }
+
+  public void testConstructorProvisionsOnlyAllocateTheInstance() throws Exception {
+    Injector injector = Guice.createInjector();
+    final Provider<Service> provider = injector.getProvider(Service.class);
+
+    long perInstance = allocatedBytes(new Provider<Object>() {
+      public Object get() {
+        return sink = new Service();
+      }
+    });
+    long perProvision = allocatedBytes(new Provider<Object>() {
+      public Object get() {
+        return sink = provider.get();
+      }
+    });
+    if (perProvision < 0) {
+      return;
+    }
+
+    assertTrue(provider + " allocated " + perProvision + " bytes in " + ITERATIONS
+        + " provisions, vs. " + perInstance + " bytes for the instances alone",
+        perProvision - perInstance < ITERATIONS);
+  }
+
+  public void testPooledContextsDontKeepChildInjectors() throws Exception {
+    Injector injector = Guice.createInjector();
+    WeakReference<Injector> childReference = null;
+    for (int i = 0; i < 100; i++) {
+      Injector child = injector.createChildInjector(new AbstractModule() {
+        protected void configure() {
+          bind(Service.class);
+        }
+      });
+      assertNotNull(child.getInstance(Service.class));
+      childReference = new WeakReference<Injector>(child);
+    }
+
+    for (int i = 0; i < 10 && childReference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(childReference.get());
+  }
+
+  public void testErrorsAreAttributedAfterReusingTheContext() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      protected void configure() {
+        bind(Runnable.class).toProvider(new Provider<Runnable>() {
+          public Runnable get() {
+            throw new UnsupportedOperationException();
+          }
+        });
+      }
+    });
+
+    // a failure must not leave errors behind for the next provision on this thread
+    for (int i = 0; i < 2; i++) {
+      try {
+        injector.getInstance(NeedsRunnable.class);
+        fail();
+      } catch (ProvisionException expected) {
+        assertEquals(1, expected.getErrorMessages().size());
+        assertContains(expected.getMessage(),
+            "1) Error in custom provider, java.lang.UnsupportedOperationException",
+            "while locating java.lang.Runnable",
+            "for parameter 0 at " + NeedsRunnable.class.getName() + ".<init>(",
+            "while locating " + NeedsRunnable.class.getName());
+      }
+    }
+    assertNotNull(injector.getInstance(Service.class));
+  }
+
+  private void assertNoAllocation(Provider<?> provider) throws Exception {
+    long allocated = allocatedBytes(provider);
+
+    // allow for the reflective calls to measure, but not even a byte per provision
+    assertTrue(provider + " allocated " + allocated + " bytes in " + ITERATIONS + " provisions",
+        allocated < ITERATIONS);
+  }
+
+  /**
+   * Returns the bytes allocated by {@link #ITERATIONS} calls to {@code provider}, or -1 if this VM
+   * doesn't count allocations.
+   */
+  private long allocatedBytes(Provider<?> provider) throws Exception {
+    Method getThreadAllocatedBytes = getThreadAllocatedBytesMethod();
+    if (getThreadAllocatedBytes == null) {
+      return -1;
+    }
+
+    // warm up, so that class loading and compilation aren't counted
+    for (int i = 0; i < ITERATIONS; i++) {
+      provider.get();
+    }
+
+    Object threadMXBean = ManagementFactory.getThreadMXBean();
+    Long threadId = Thread.currentThread().getId();
+    long before = (Long) getThreadAllocatedBytes.invoke(threadMXBean, threadId);
+    for (int i = 0; i < ITERATIONS; i++) {
+      provider.get();
+    }
+    return (Long) getThreadAllocatedBytes.invoke(threadMXBean, threadId) - before;
+  }
+
+  private Method getThreadAllocatedBytesMethod() {
+    try {
+      Class<?> threadMXBeanClass = Class.forName("com.sun.management.ThreadMXBean");
+      if (!threadMXBeanClass.isInstance(ManagementFactory.getThreadMXBean())) {
+        return null;
+      }
+      return threadMXBeanClass.getMethod("getThreadAllocatedBytes", long.class);
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  static class Service {}
+
+  @Singleton
+  static class ServiceProvider implements Provider<Service> {
+    final Service service = new Service();
+    public Service get() {
+      return service;
+    }
+  }
+
+  @Singleton
+  static class SingletonRunnable implements Runnable {
+    public void run() {}
+  }
+
+  @ImplementedBy(SingletonImpl.class)
+  interface ImplementedBySingleton {}
+
+  @Singleton
+  static class SingletonImpl implements ImplementedBySingleton {}
+
+  static class NeedsRunnable {
+    @Inject NeedsRunnable(Runnable runnable) {}
+  }
+}
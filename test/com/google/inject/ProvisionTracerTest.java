@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import static com.google.inject.InjectorOptionsTest.createInjector;
+import com.google.inject.internal.ProvisionTracer;
+import com.google.inject.internal.ProvisionTracer.Category;
+import com.google.inject.spi.Diagnostics;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import junit.framework.TestCase;
+
+public class ProvisionTracerTest extends TestCase {
+
+  private static final InjectorOptions TRACING = new InjectorOptions().trace(true);
+
+  private static final String NO_EVENTS = "{\"displayTimeUnit\":\"ns\",\"traceEvents\":[]}";
+
+  @Override protected void setUp() throws Exception {
+    super.setUp();
+    Diagnostics.clearTrace();
+  }
+
+  public void testProvisionsAreNestedByDependency() {
+    Injector injector = createInjector(TRACING, new AbstractModule() {
+      protected void configure() {
+        bind(Outer.class).in(Scopes.SINGLETON);
+      }
+      @Provides String provideName() {
+        return "inner";
+      }
+    });
+    ProvisionTracer.clear();
+
+    injector.getInstance(Outer.class);
+    String outerKey = Key.get(Outer.class).toString();
+    String innerKey = Key.get(String.class).toString();
+    assertInOrder(ProvisionTracer.toJson(),
+        "{\"name\":\"thread_name\",\"ph\":\"M\"",
+        "{\"name\":\"" + outerKey + "\",\"cat\":\"scope\",\"ph\":\"B\"",
+        "{\"name\":\"" + Outer.class.getName() + "\",\"cat\":\"constructor\",\"ph\":\"B\"",
+        "{\"name\":\"" + innerKey + "\",\"cat\":\"provider method\",\"ph\":\"B\"",
+        "{\"name\":\"" + innerKey + "\",\"cat\":\"provider method\",\"ph\":\"E\"",
+        "{\"name\":\"" + Outer.class.getName() + "\",\"cat\":\"constructor\",\"ph\":\"E\"",
+        "{\"name\":\"" + outerKey + "\",\"cat\":\"scope\",\"ph\":\"E\"");
+  }
+
+  public void testProvisionsAreNotTracedUnlessEnabled() {
+    createInjector(new InjectorOptions()).getInstance(Outer.class);
+    assertEquals(NO_EVENTS, ProvisionTracer.toJson());
+  }
+
+  public void testOldestEventsAreOverwritten() {
+    ProvisionTracer.begin(Category.SCOPE, "overwritten");
+    for (int i = 0; i < ProvisionTracer.EVENTS_PER_THREAD; i++) {
+      ProvisionTracer.begin(Category.CONSTRUCTOR, "newer");
+      ProvisionTracer.end(Category.CONSTRUCTOR, "newer");
+    }
+    ProvisionTracer.end(Category.SCOPE, "overwritten");
+
+    // neither the overwritten begin event nor the end event it would have matched are written
+    String json = ProvisionTracer.toJson();
+    assertFalse(json, json.contains("overwritten"));
+    assertTrue(json.contains("\"newer\""));
+  }
+
+  public void testBuffersOfTerminatedThreadsAreDropped() throws InterruptedException {
+    record("terminated");
+    assertTrue(ProvisionTracer.toJson().contains("\"terminated\""));
+
+    // the next thread to record drops the buffer of the thread that has terminated
+    record("alive");
+    String json = ProvisionTracer.toJson();
+    assertFalse(json, json.contains("\"terminated\""));
+  }
+
+  private void record(final String name) throws InterruptedException {
+    Thread thread = new Thread() {
+      @Override public void run() {
+        ProvisionTracer.begin(Category.CONSTRUCTOR, name);
+        ProvisionTracer.end(Category.CONSTRUCTOR, name);
+      }
+    };
+    thread.start();
+    thread.join();
+  }
+
+  public void testWriteTrace() throws IOException {
+    ProvisionTracer.begin(Category.CONSTRUCTOR, "written");
+    ProvisionTracer.end(Category.CONSTRUCTOR, "written");
+
+    File file = File.createTempFile("trace", ".json");
+    try {
+      Diagnostics.writeTrace(file);
+      BufferedReader reader
+          = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      try {
+        assertEquals(ProvisionTracer.toJson(), reader.readLine());
+      } finally {
+        reader.close();
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  private void assertInOrder(String s, String... substrings) {
+    int index = 0;
+    for (String substring : substrings) {
+      index = s.indexOf(substring, index);
+      assertTrue(substring + " not in order in " + s, index >= 0);
+      index += substring.length();
+    }
+  }
+
+  static class Outer {
+    @Inject String name;
+  }
+}
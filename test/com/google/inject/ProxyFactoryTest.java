@@ -17,15 +17,18 @@
 package com.google.inject;
 
 import com.google.inject.internal.ErrorsException;
+import com.google.inject.internal.ImmutableList;
 import com.google.inject.internal.Lists;
 import static com.google.inject.matcher.Matchers.annotatedWith;
 import static com.google.inject.matcher.Matchers.any;
+import static com.google.inject.matcher.Matchers.inPackage;
 import static com.google.inject.matcher.Matchers.not;
 import static com.google.inject.matcher.Matchers.only;
 import com.google.inject.spi.InjectionPoint;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.List;
 import junit.framework.TestCase;
 import org.aopalliance.intercept.MethodInterceptor;
@@ -178,6 +181,159 @@ public class ProxyFactoryTest extends TestCase {
     assertEquals(2, countingInterceptor.count);
   }
 
+  public void testSingleInterceptorProceedsMoreThanOnce()
+      throws NoSuchMethodException, InvocationTargetException, ErrorsException {
+    aspects.add(new MethodAspect(any(), any(), new DoubleInterceptor()));
+    Counter counter = new ProxyFactory<Counter>(
+        InjectionPoint.forConstructorOf(Counter.class), aspects).create().newInstance();
+    counter.inc();
+    assertEquals(2, counter.count);
+  }
+
+  public void testInterceptorsRunInOrder()
+      throws NoSuchMethodException, InvocationTargetException, ErrorsException {
+    final List<String> calls = Lists.newArrayList();
+    aspects.add(new MethodAspect(any(), any(),
+        new RecordingInterceptor("a", calls), new RecordingInterceptor("b", calls),
+        new RecordingInterceptor("c", calls)));
+    Counter counter = new ProxyFactory<Counter>(
+        InjectionPoint.forConstructorOf(Counter.class), aspects).create().newInstance();
+    counter.inc();
+    assertEquals(ImmutableList.of("a", "b", "c", "/c", "/b", "/a"), calls);
+    assertEquals(1, counter.count);
+  }
+
+  public void testInvocationDescribesTheCall() throws Exception {
+    final List<MethodInvocation> invocations = Lists.newArrayList();
+    aspects.add(new MethodAspect(any(), any(), new MethodInterceptor() {
+      public Object invoke(MethodInvocation methodInvocation) throws Throwable {
+        invocations.add(methodInvocation);
+        return methodInvocation.proceed();
+      }
+    }));
+    Echo echo = new ProxyFactory<Echo>(
+        InjectionPoint.forConstructorOf(Echo.class), aspects).create().newInstance();
+    assertEquals("hello", echo.echo("hello"));
+
+    MethodInvocation invocation = invocations.get(0);
+    assertEquals(Echo.class.getDeclaredMethod("echo", String.class), invocation.getMethod());
+    assertEquals(invocation.getMethod(), invocation.getStaticPart());
+    assertEquals(Arrays.asList("hello"), Arrays.asList(invocation.getArguments()));
+    assertSame(echo, invocation.getThis());
+  }
+
+  public void testExceptionsPropagateUnwrapped()
+      throws NoSuchMethodException, InvocationTargetException, ErrorsException {
+    aspects.add(new MethodAspect(any(), any(), new CountingInterceptor()));
+    Echo echo = new ProxyFactory<Echo>(
+        InjectionPoint.forConstructorOf(Echo.class), aspects).create().newInstance();
+    try {
+      echo.echo(null);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertEquals("null", expected.getMessage());
+    }
+  }
+
+  public void testIndexedAndUnindexedAspectsApplyInBindingOrder() throws Exception {
+    final List<String> calls = Lists.newArrayList();
+    aspects.add(new MethodAspect(any(), annotatedWith(Intercept.class),
+        new RecordingInterceptor("a", calls)));
+    aspects.add(new MethodAspect(only(Bar.class), not(annotatedWith(Intercept.class)),
+        new RecordingInterceptor("b", calls)));
+    aspects.add(new MethodAspect(inPackage(Bar.class.getPackage()),
+        only(Bar.class.getDeclaredMethod("intercepted")), new RecordingInterceptor("c", calls)));
+    aspects.add(new MethodAspect(annotatedWith(Intercept.class), any(),
+        new RecordingInterceptor("d", calls)));
+    aspects.add(new MethodAspect(annotatedWith(Intercept.class).and(only(Bar.class)),
+        any(), new RecordingInterceptor("e", calls)));
+    aspects.add(new MethodAspect(not(only(Foo.class)), annotatedWith(Intercept.class),
+        new RecordingInterceptor("f", calls)));
+
+    Bar bar = new ProxyFactory<Bar>(
+        InjectionPoint.forConstructorOf(Bar.class), aspects).create().newInstance();
+    bar.intercepted();
+    assertEquals(ImmutableList.of("a", "c", "f", "/f", "/c", "/a"), calls);
+    calls.clear();
+    bar.bar();
+    assertEquals(ImmutableList.of("b", "/b"), calls);
+
+    calls.clear();
+    Foo foo = new ProxyFactory<Foo>(
+        InjectionPoint.forConstructorOf(Foo.class), aspects).create().newInstance();
+    foo.foo();
+    assertEquals(ImmutableList.of("a", "/a"), calls);
+
+    calls.clear();
+    AnnotatedCounter counter = new ProxyFactory<AnnotatedCounter>(
+        InjectionPoint.forConstructorOf(AnnotatedCounter.class), aspects).create().newInstance();
+    counter.inc();
+    assertEquals(ImmutableList.of("d", "/d"), calls);
+    assertEquals(1, counter.count);
+  }
+
+  public void testIndexOnlyReturnsMatchingAspects() throws Exception {
+    MethodAspect annotatedClass = new MethodAspect(annotatedWith(Intercept.class), any());
+    MethodAspect onlyBar = new MethodAspect(only(Bar.class), any());
+    MethodAspect inThisPackage = new MethodAspect(inPackage(Bar.class.getPackage()), any());
+    MethodAspect notBar = new MethodAspect(not(only(Bar.class)), any());
+    MethodAspectIndex index = new MethodAspectIndex(
+        ImmutableList.of(annotatedClass, onlyBar, inThisPackage, notBar));
+
+    assertEquals(ImmutableList.of(onlyBar, inThisPackage), index.applicableTo(Bar.class));
+    assertEquals(ImmutableList.of(annotatedClass, inThisPackage, notBar),
+        index.applicableTo(AnnotatedCounter.class));
+    assertEquals(ImmutableList.of(notBar), index.applicableTo(String.class));
+  }
+
+  @Intercept
+  static class AnnotatedCounter extends Counter {}
+
+  public void testProxyClassesAreSharedWithPerInstanceInterceptors() throws Exception {
+    final List<String> calls = Lists.newArrayList();
+    List<MethodAspect> otherAspects = Lists.newArrayList();
+    aspects.add(new MethodAspect(any(), any(), new RecordingInterceptor("a", calls)));
+    otherAspects.add(new MethodAspect(any(), any(), new RecordingInterceptor("b", calls)));
+
+    Counter a = new ProxyFactory<Counter>(
+        InjectionPoint.forConstructorOf(Counter.class), aspects).create().newInstance();
+    Counter b = new ProxyFactory<Counter>(
+        InjectionPoint.forConstructorOf(Counter.class), otherAspects).create().newInstance();
+    assertSame(a.getClass(), b.getClass());
+
+    a.inc();
+    b.inc();
+    assertEquals(ImmutableList.of("a", "/a", "b", "/b"), calls);
+  }
+
+  static class RecordingInterceptor implements MethodInterceptor {
+    final String name;
+    final List<String> calls;
+
+    RecordingInterceptor(String name, List<String> calls) {
+      this.name = name;
+      this.calls = calls;
+    }
+
+    public Object invoke(MethodInvocation methodInvocation) throws Throwable {
+      calls.add(name);
+      try {
+        return methodInvocation.proceed();
+      } finally {
+        calls.add("/" + name);
+      }
+    }
+  }
+
+  static class Echo {
+    String echo(String value) {
+      if (value == null) {
+        throw new IllegalArgumentException("null");
+      }
+      return value;
+    }
+  }
+
   static class CountingInterceptor implements MethodInterceptor {
 
     int count;
@@ -17,8 +17,11 @@
 package com.google.inject;
 
 import static com.google.inject.Asserts.assertContains;
+import com.google.inject.internal.BindingImpl;
 import com.google.inject.internal.Maps;
 import com.google.inject.spi.CachingProvider;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.ProviderWithDependencies;
 import java.io.IOException;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -26,10 +29,13 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import java.lang.annotation.Target;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import junit.framework.TestCase;
 
 /**
@@ -382,6 +388,205 @@ public class ScopesTest extends TestCase {
         injector.getInstance(new Key<In<Short>>() {}));
   }
 
+  public void testIndependentSingletonsAreConstructedConcurrently() throws Exception {
+    final Injector injector = Guice.createInjector();
+    final CountDownLatch bothConstructing = new CountDownLatch(2);
+    Waiter.latch = bothConstructing;
+    OtherWaiter.latch = bothConstructing;
+
+    Thread thread = new Thread() {
+      public void run() {
+        injector.getInstance(OtherWaiter.class);
+      }
+    };
+    thread.start();
+    Waiter waiter = injector.getInstance(Waiter.class);
+    thread.join(5000);
+
+    assertTrue("singletons from unrelated graphs blocked each other", waiter.sawOtherThread);
+  }
+
+  public void testCircularSingletonsOnManyThreadsDontDeadlock() throws Exception {
+    final Injector injector = Guice.createInjector();
+    final List<Object> results = Collections.synchronizedList(new ArrayList<Object>());
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      final Class<?> type = i % 2 == 0 ? CircularA.class : CircularB.class;
+      threads.add(new Thread() {
+        public void run() {
+          results.add(injector.getInstance(type));
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join(5000);
+      assertFalse("deadlocked constructing circular singletons", thread.isAlive());
+    }
+
+    // Don't compare against B.a() or A.b(): whichever singleton was entered second got a circular
+    // proxy for the other, and which one that was depends on how the threads were scheduled.
+    assertEquals(4, results.size());
+    for (Object result : results) {
+      Object expected = result instanceof CircularA
+          ? injector.getInstance(CircularA.class)
+          : injector.getInstance(CircularB.class);
+      assertSame(expected, result);
+    }
+  }
+
+  public void testSingletonsOfACycleShareOneComponent() {
+    Injector injector = Guice.createInjector();
+    Set<BindingImpl<?>> cycle = DependencyGraph.getCycle(
+        (BindingImpl<?>) injector.getBinding(CircularAImpl.class));
+    assertTrue(cycle.contains(injector.getBinding(CircularBImpl.class)));
+    assertSame(cycle,
+        DependencyGraph.getCycle((BindingImpl<?>) injector.getBinding(CircularBImpl.class)));
+    assertEquals(Collections.singleton(injector.getBinding(AnnotatedSingleton.class)),
+        DependencyGraph.getCycle((BindingImpl<?>) injector.getBinding(AnnotatedSingleton.class)));
+  }
+
+  public void testDependenciesWithoutBindingsAreUnknown() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      protected void configure() {
+        bind(Object.class).toProvider(new ProviderWithDependencies<Object>() {
+          public Object get() {
+            return new Object();
+          }
+          public Set<Dependency<?>> getDependencies() {
+            // a just-in-time binding that hasn't been created yet
+            return Collections.<Dependency<?>>singleton(Dependency.get(Key.get(NotYetBound.class)));
+          }
+        }).in(Scopes.SINGLETON);
+      }
+    });
+    assertNull(DependencyGraph.getCycle((BindingImpl<?>) injector.getBinding(Object.class)));
+  }
+
+  public void testProvidersThatHideACycleDontDeadlock() throws Exception {
+    final CountDownLatch bothProviding = new CountDownLatch(2);
+    final Injector injector = Guice.createInjector(new AbstractModule() {
+      protected void configure() {
+        bind(HiddenA.class).toProvider(new HidingProvider<HiddenA>(
+            getProvider(HiddenB.class), bothProviding, new HiddenA())).in(Scopes.SINGLETON);
+        bind(HiddenB.class).toProvider(new HidingProvider<HiddenB>(
+            getProvider(HiddenA.class), bothProviding, new HiddenB())).in(Scopes.SINGLETON);
+      }
+    });
+    assertNull(DependencyGraph.getCycle((BindingImpl<?>) injector.getBinding(HiddenA.class)));
+
+    Thread other = new Thread() {
+      public void run() {
+        injector.getInstance(HiddenB.class);
+      }
+    };
+    other.setDaemon(true);
+    other.start();
+    Thread self = new Thread() {
+      public void run() {
+        injector.getInstance(HiddenA.class);
+      }
+    };
+    self.setDaemon(true);
+    self.start();
+
+    self.join(5000);
+    other.join(5000);
+    assertFalse("deadlocked constructing singletons whose providers hide a cycle",
+        self.isAlive() || other.isAlive());
+  }
+
+  static class HiddenA {}
+  static class HiddenB {}
+
+  /** Gets the other end of the cycle from a provider that isn't among its dependencies. */
+  static class HidingProvider<T> implements Provider<T> {
+    final Provider<?> other;
+    final CountDownLatch bothProviding;
+    final T instance;
+    boolean providing;
+
+    HidingProvider(Provider<?> other, CountDownLatch bothProviding, T instance) {
+      this.other = other;
+      this.bothProviding = bothProviding;
+      this.instance = instance;
+    }
+
+    public synchronized T get() {
+      if (!providing) {
+        providing = true;
+        bothProviding.countDown();
+        try {
+          bothProviding.await(500, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        other.get();
+      }
+      return instance;
+    }
+  }
+
+  static class NotYetBound {}
+
+  @Singleton
+  static class Waiter {
+    static CountDownLatch latch;
+    final boolean sawOtherThread;
+
+    @Inject Waiter() throws InterruptedException {
+      latch.countDown();
+      sawOtherThread = latch.await(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Singleton
+  static class OtherWaiter {
+    static CountDownLatch latch;
+
+    @Inject OtherWaiter() throws InterruptedException {
+      latch.countDown();
+      latch.await(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @ImplementedBy(CircularAImpl.class)
+  interface CircularA {
+    CircularB b();
+  }
+
+  @ImplementedBy(CircularBImpl.class)
+  interface CircularB {
+    CircularA a();
+  }
+
+  @Singleton
+  static class CircularAImpl implements CircularA {
+    final CircularB b;
+    @Inject CircularAImpl(CircularB b) throws InterruptedException {
+      Thread.sleep(10);
+      this.b = b;
+    }
+    public CircularB b() {
+      return b;
+    }
+  }
+
+  @Singleton
+  static class CircularBImpl implements CircularB {
+    final CircularA a;
+    @Inject CircularBImpl(CircularA a) throws InterruptedException {
+      Thread.sleep(10);
+      this.a = a;
+    }
+    public CircularA a() {
+      return a;
+    }
+  }
+
   @ImplementedBy(Injected.class) public interface In<T> {}
   @Singleton public static class Injected<T>  implements In<T> {}
 
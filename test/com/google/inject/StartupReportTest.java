@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.inject;
+
+import com.google.inject.internal.Lists;
+import static com.google.inject.spi.Diagnostics.getStartupReport;
+import com.google.inject.spi.StartupReport;
+import com.google.inject.spi.StartupReport.Category;
+import com.google.inject.spi.StartupReport.Entry;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class StartupReportTest extends TestCase {
+
+  public void testPhasesModulesAndJustInTimeBindingsAreRecorded() {
+    Injector injector = Guice.createInjector(new OuterModule());
+    StartupReport report = getStartupReport(injector);
+
+    List<String> phases = names(report.getEntries(Category.PHASE));
+    assertTrue(phases.contains("Module execution"));
+    assertTrue(phases.contains("Binding initialization"));
+    assertTrue(phases.contains("Preloading singletons"));
+    assertTrue(report.getTotalNanos() > 0);
+
+    // the inner module finishes first, and is included in the outer module's time
+    List<? extends Entry> modules = report.getEntries(Category.MODULE);
+    List<String> moduleNames = names(modules);
+    int inner = moduleNames.indexOf(InnerModule.class.getName());
+    int outer = moduleNames.indexOf(OuterModule.class.getName());
+    assertTrue(inner >= 0 && inner < outer);
+    assertTrue(modules.get(outer).getDurationNanos() >= modules.get(inner).getDurationNanos());
+
+    assertTrue(names(report.getEntries(Category.JIT_BINDING))
+        .contains(Key.get(Dependency.class).toString()));
+  }
+
+  public void testEagerSingletonsAreRecorded() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      protected void configure() {
+        bind(Eager.class).asEagerSingleton();
+      }
+    });
+
+    List<? extends Entry> singletons
+        = getStartupReport(injector).getEntries(Category.EAGER_SINGLETON);
+    assertEquals(Lists.newArrayList(Key.get(Eager.class).toString()), names(singletons));
+  }
+
+  public void testJustInTimeBindingsAfterStartupAreNotRecorded() {
+    Injector injector = Guice.createInjector();
+    injector.getInstance(Dependency.class);
+    assertTrue(getStartupReport(injector).getEntries(Category.JIT_BINDING).isEmpty());
+    assertNull(com.google.inject.internal.StartupReport.current());
+  }
+
+  public void testToolStageInjectorsHaveReports() {
+    Injector injector = Guice.createInjector(Stage.TOOL, new InnerModule());
+    assertTrue(names(getStartupReport(injector).getEntries(Category.MODULE))
+        .contains(InnerModule.class.getName()));
+  }
+
+  public void testJson() {
+    com.google.inject.internal.StartupReport report
+        = new com.google.inject.internal.StartupReport();
+    report.record(Category.MODULE, "a \"quoted\"\tname", System.nanoTime());
+    String json = report.toJson();
+    assertTrue(json, json.startsWith("{\"totalNanos\":0,\"entries\":[{\"category\":\"MODULE\","
+        + "\"name\":\"a \\\"quoted\\\"\\tname\",\"thread\":"));
+    assertTrue(json, json.endsWith("}]}"));
+  }
+
+  /*if[AOP]*/
+  public void testProxyClassesAreRecorded() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      protected void configure() {
+        bindInterceptor(com.google.inject.matcher.Matchers.only(Intercepted.class),
+            com.google.inject.matcher.Matchers.any(),
+            new org.aopalliance.intercept.MethodInterceptor() {
+              public Object invoke(org.aopalliance.intercept.MethodInvocation invocation)
+                  throws Throwable {
+                return invocation.proceed();
+              }
+            });
+        bind(Intercepted.class);
+      }
+    });
+
+    List<? extends Entry> proxies = getStartupReport(injector).getEntries(Category.PROXY_CLASS);
+    assertEquals(1, proxies.size());
+    assertEquals(injector.getInstance(Intercepted.class).getClass().getName(),
+        proxies.get(0).getName());
+  }
+
+  public static class Intercepted {
+    public void foo() {}
+  }
+  /*end[AOP]*/
+
+  private static List<String> names(List<? extends Entry> entries) {
+    List<String> result = Lists.newArrayList();
+    for (Entry entry : entries) {
+      result.add(entry.getName());
+    }
+    return result;
+  }
+
+  static class OuterModule extends AbstractModule {
+    protected void configure() {
+      install(new InnerModule());
+      bind(Dependent.class);
+    }
+  }
+
+  static class InnerModule extends AbstractModule {
+    protected void configure() {
+      bind(String.class).toInstance("inner");
+    }
+  }
+
+  static class Dependent {
+    @Inject Dependency dependency;
+  }
+
+  static class Dependency {}
+
+  static class Eager {}
+}
@@ -16,8 +16,11 @@
 
 package com.google.inject.spi;
 
+import static com.google.inject.Asserts.assertContains;
 import static com.google.inject.Asserts.assertEqualsBothWays;
 import static com.google.inject.Asserts.assertNotSerializable;
+import com.google.inject.BindingAnnotation;
+import com.google.inject.ConfigurationException;
 import com.google.inject.Inject;
 import com.google.inject.Key;
 import com.google.inject.TypeLiteral;
@@ -26,7 +29,12 @@ import com.google.inject.internal.ImmutableSet;
 import static com.google.inject.internal.Iterables.getOnlyElement;
 import com.google.inject.name.Named;
 import static com.google.inject.name.Names.named;
+import com.google.inject.util.Types;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import java.lang.annotation.Retention;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -179,4 +187,120 @@ public class InjectionPointTest extends TestCase {
     @Inject Set<T> setOfTees;
     @Inject public ParameterizedInjections(Map<T, T> map) {}
   }
+
+  public void testInjectionPointsAreCached() {
+    assertSame(InjectionPoint.forConstructorOf(HasInjections.class),
+        InjectionPoint.forConstructorOf(HasInjections.class));
+    assertSame(InjectionPoint.forInstanceMethodsAndFields(HasInjections.class),
+        InjectionPoint.forInstanceMethodsAndFields(HasInjections.class));
+    assertSame(InjectionPoint.forStaticMethodsAndFields(HasInjections.class),
+        InjectionPoint.forStaticMethodsAndFields(HasInjections.class));
+  }
+
+  public void testSubclassesReuseTheirSuperclassesInjectionPoints() {
+    InjectionPoint superclassField = getOnlyElement(InjectionPoint.forInstanceMethodsAndFields(
+        new TypeLiteral<ParameterizedInjections<String>>() {}));
+
+    Set<InjectionPoint> subclassInjectionPoints
+        = InjectionPoint.forInstanceMethodsAndFields(StringInjections.class);
+    assertEquals(2, subclassInjectionPoints.size());
+    assertSame(superclassField, subclassInjectionPoints.iterator().next());
+  }
+
+  static class StringInjections extends ParameterizedInjections<String> {
+    @Inject String string;
+    @Inject StringInjections(Map<String, String> map) {
+      super(map);
+    }
+  }
+
+  public void testTypesAreCachedUnderTheirYoungestLoadersClass() throws Exception {
+    Class<?> tenant = new TenantClassLoader(InjectionPointTest.class.getClassLoader())
+        .loadClass(Tenant.class.getName());
+    assertNotSame(Tenant.class, tenant);
+
+    TypeLiteral<?> repository = TypeLiteral.get(
+        Types.newParameterizedTypeWithOwner(InjectionPointTest.class, Repository.class, tenant));
+    assertSame(tenant, InjectionPoint.cacheKeyOf(repository));
+    assertSame(InjectionPoint.forInstanceMethodsAndFields(repository),
+        InjectionPoint.forInstanceMethodsAndFields(repository));
+
+    TypeLiteral<?> repositories = TypeLiteral.get(Types.newParameterizedTypeWithOwner(
+        InjectionPointTest.class, Repository.class, Types.listOf(Types.subtypeOf(tenant))));
+    assertSame(tenant, InjectionPoint.cacheKeyOf(repositories));
+
+    assertSame(Repository.class,
+        InjectionPoint.cacheKeyOf(new TypeLiteral<Repository<String>>() {}));
+    assertSame(Repository.class, InjectionPoint.cacheKeyOf(TypeLiteral.get(Repository.class)));
+
+    // neither loader is above the other
+    Class<?> unrelated = new TenantClassLoader(null).loadClass(Tenant.class.getName());
+    assertNull(InjectionPoint.cacheKeyOf(TypeLiteral.get(
+        Types.newParameterizedTypeWithOwner(InjectionPointTest.class, Repository.class, unrelated))));
+  }
+
+  static class Repository<T> {
+    @Inject Set<T> all;
+  }
+
+  static class Tenant {}
+
+  /** Loads its own copy of {@link Tenant}, as a web application's loader would. */
+  static class TenantClassLoader extends ClassLoader {
+    TenantClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    @Override protected Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      if (!name.equals(Tenant.class.getName())) {
+        return super.loadClass(name, resolve);
+      }
+
+      try {
+        InputStream in = InjectionPointTest.class.getClassLoader()
+            .getResourceAsStream(name.replace('.', '/') + ".class");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+          bytes.write(buffer, 0, read);
+        }
+        in.close();
+        return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+      } catch (IOException e) {
+        throw new ClassNotFoundException(name, e);
+      }
+    }
+  }
+
+  public void testCachedErrorsAreReportedEachTime() {
+    for (int i = 0; i < 2; i++) {
+      try {
+        InjectionPoint.forConstructorOf(TwoConstructors.class);
+        fail();
+      } catch (ConfigurationException expected) {
+        assertContains(expected.getMessage(), "has more than one constructor annotated");
+      }
+
+      try {
+        InjectionPoint.forInstanceMethodsAndFields(TwoBindingAnnotations.class);
+        fail();
+      } catch (ConfigurationException expected) {
+        assertContains(expected.getMessage(), "more than one annotation annotated");
+        assertEquals(1, ((Set<?>) expected.getPartialValue()).size());
+      }
+    }
+  }
+
+  static class TwoConstructors {
+    @Inject TwoConstructors() {}
+    @Inject TwoConstructors(String s) {}
+  }
+
+  static class TwoBindingAnnotations {
+    @Inject @Named("a") @Blue String twoAnnotations;
+    @Inject String valid;
+  }
+
+  @Retention(RUNTIME) @BindingAnnotation @interface Blue {}
 }